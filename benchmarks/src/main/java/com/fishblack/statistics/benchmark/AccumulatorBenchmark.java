@@ -0,0 +1,135 @@
+package com.fishblack.statistics.benchmark;
+
+import com.fishblack.statistics.ColumnStats;
+import com.fishblack.statistics.accumulator.AccumulatorOptions;
+import com.fishblack.statistics.accumulator.ColumnAccumulator;
+import com.fishblack.statistics.accumulator.ColumnAccumulators;
+import com.fishblack.statistics.accumulator.DecimalColumnAccumulator;
+import com.fishblack.statistics.accumulator.DoubleColumnAccumulator;
+import com.fishblack.statistics.accumulator.LongColumnAccumulator;
+import com.fishblack.statistics.accumulator.StringColumnAccumulator;
+import com.fishblack.statistics.accumulator.TemporalColumnAccumulator;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.fishblack.statistics.Calculator.MILLIS_PER_DAY;
+
+/**
+ * One column accumulator fed with the primitive values the parquet scan gives it, the score is in values per second.
+ * The options parameter compares the plain statistics with the percentiles, top values and histograms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AccumulatorBenchmark {
+
+    private static final int VALUES = 1 << 20;
+    private static final int DECIMAL_SCALE = 4;
+
+    @Param({"integer", "double", "decimal", "date", "timestamp", "string"})
+    public String dataType;
+
+    @Param({"1000", "1000000"})
+    public int cardinality;
+
+    @Param({"default", "basic"})
+    public String options;
+
+    private long[] longValues;
+    private double[] doubleValues;
+    private String[] stringValues;
+    private long valueBytes;
+    private AccumulatorOptions accumulatorOptions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        longValues = new long[VALUES];
+        doubleValues = new double[VALUES];
+        stringValues = new String[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            int rank = random.nextInt(cardinality);
+            switch (dataType) {
+                case "double":
+                    doubleValues[i] = random.nextGaussian() * rank;
+                    valueBytes += Double.BYTES;
+                    break;
+                case "string":
+                    stringValues[i] = "value-" + Integer.toString(rank, 36);
+                    valueBytes += stringValues[i].getBytes(StandardCharsets.UTF_8).length;
+                    break;
+                case "date":
+                    longValues[i] = (15000L + rank) * MILLIS_PER_DAY;
+                    valueBytes += Integer.BYTES;
+                    break;
+                default:
+                    longValues[i] = rank * 7919L - 500000;
+                    valueBytes += Long.BYTES;
+            }
+        }
+        accumulatorOptions = "basic".equals(options)
+                ? AccumulatorOptions.DEFAULT.withQuantileSketchSize(0).withTopValues(0, 0).withHistogramBuckets(0)
+                : AccumulatorOptions.DEFAULT;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public ColumnStats accumulate(Counters counters) throws IOException {
+        ColumnAccumulator accumulator = ColumnAccumulators.create("c", dataType, CardinalityCalculatorFactory.ADAPTIVE,
+                accumulatorOptions);
+        switch (dataType) {
+            case "integer":
+                LongColumnAccumulator longAccumulator = (LongColumnAccumulator) accumulator;
+                for (long value : longValues) {
+                    longAccumulator.addLong(value);
+                }
+                break;
+            case "double":
+                DoubleColumnAccumulator doubleAccumulator = (DoubleColumnAccumulator) accumulator;
+                for (double value : doubleValues) {
+                    doubleAccumulator.addDouble(value);
+                }
+                break;
+            case "decimal":
+                DecimalColumnAccumulator decimalAccumulator = (DecimalColumnAccumulator) accumulator;
+                for (long value : longValues) {
+                    decimalAccumulator.addUnscaled(value, DECIMAL_SCALE);
+                }
+                break;
+            case "string":
+                StringColumnAccumulator stringAccumulator = (StringColumnAccumulator) accumulator;
+                for (String value : stringValues) {
+                    stringAccumulator.addString(value);
+                }
+                break;
+            default:
+                TemporalColumnAccumulator temporalAccumulator = (TemporalColumnAccumulator) accumulator;
+                for (long value : longValues) {
+                    temporalAccumulator.addMillis(value);
+                }
+        }
+        counters.values += VALUES;
+        counters.bytes += valueBytes;
+        return accumulator.finish();
+    }
+}
@@ -0,0 +1,95 @@
+package com.fishblack.statistics.benchmark;
+
+import com.fishblack.statistics.cardinality.CardinalityCalculator;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distinct counts of integer and string values at low, medium and high cardinality, the score is in values per
+ * second. High cardinality values are about all distinct.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CardinalityBenchmark {
+
+    private static final int VALUES = 1 << 21;
+
+    @Param({"MEMORY", "FILE", "ADAPTIVE", "HYPER_LOG_LOG"})
+    public String calculator;
+
+    @Param({"integer", "string"})
+    public String dataType;
+
+    @Param({"100", "100000", "100000000"})
+    public int cardinality;
+
+    private long[] longValues;
+    private String[] stringValues;
+    private long valueBytes;
+    private CardinalityCalculatorFactory factory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        longValues = new long[VALUES];
+        stringValues = new String[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            longValues[i] = random.nextInt(cardinality);
+            stringValues[i] = "value-" + Long.toString(longValues[i], 36);
+            valueBytes += "integer".equals(dataType) ? Long.BYTES : stringValues[i].getBytes(StandardCharsets.UTF_8).length;
+        }
+        switch (calculator) {
+            case "MEMORY":
+                factory = CardinalityCalculatorFactory.MEMORY;
+                break;
+            case "FILE":
+                factory = CardinalityCalculatorFactory.FILE;
+                break;
+            case "ADAPTIVE":
+                factory = CardinalityCalculatorFactory.ADAPTIVE;
+                break;
+            default:
+                factory = CardinalityCalculatorFactory.HYPER_LOG_LOG;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public long count(Counters counters) throws IOException {
+        CardinalityCalculator cardinalityCalculator = factory.create(dataType);
+        if ("integer".equals(dataType)) {
+            for (long value : longValues) {
+                cardinalityCalculator.addLong(value);
+            }
+        }
+        else {
+            for (String value : stringValues) {
+                cardinalityCalculator.add(value);
+            }
+        }
+        counters.values += VALUES;
+        counters.bytes += valueBytes;
+        return cardinalityCalculator.count();
+    }
+}
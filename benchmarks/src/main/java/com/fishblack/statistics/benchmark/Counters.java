@@ -0,0 +1,26 @@
+package com.fishblack.statistics.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary results of a benchmark, reported by JMH per second next to the score: the values and the bytes
+ * processed. With {@code -prof gc} the gc.alloc.rate.norm result is the bytes allocated per operation, and the
+ * operations of the benchmarks are values.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Counters {
+
+    public long values;
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        values = 0;
+        bytes = 0;
+    }
+}
@@ -0,0 +1,322 @@
+package com.fishblack.statistics.benchmark;
+
+import com.fishblack.fastparquet.common.FieldMetadata;
+import com.fishblack.fastparquet.common.SchemaConverter;
+import org.apache.avro.LogicalType;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.avro.AvroParquetWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes local parquet files of synthetic columns for the benchmarks.
+ * The files only depend on the settings and the seed: every column draws its values from its own random generator,
+ * a value is null with the null ratio, otherwise it is the value of a rank among cardinality ranks drawn from a Zipf
+ * distribution of the skew exponent, 0 for uniform ranks.
+ * Run {@link #main(String[])} with key=value arguments to write a file, e.g.
+ * {@code rows=1000000 columns=14 types=string,double nulls=0.1 cardinality=1000 skew=1.1 out=data.parquet}.
+ */
+public class DatasetGenerator {
+
+    public static final List<String> ALL_TYPES = Arrays.asList("string", "double", "decimal", "integer", "date", "time", "timestamp");
+
+    // the days and millis the temporal values start from
+    private static final int FIRST_DAY = 15000;
+    private static final long FIRST_TIMESTAMP = 1500000000000L;
+
+    private long rows = 1000000;
+    private int columns = ALL_TYPES.size();
+    private List<String> types = ALL_TYPES;
+    private double nullRatio = 0.1;
+    private long cardinality = 1000;
+    private double skew = 0;
+    private long seed = 42;
+    private int rowGroupSize = 32 * 1024 * 1024;
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @param columns the number of columns, their types repeat the types in order.
+     */
+    public void setColumns(int columns) {
+        this.columns = columns;
+    }
+
+    public List<String> getTypes() {
+        return types;
+    }
+
+    /**
+     * @param types the types of the columns among {@link #ALL_TYPES}.
+     */
+    public void setTypes(List<String> types) {
+        for (String type : types) {
+            if (!ALL_TYPES.contains(type)) {
+                throw new IllegalArgumentException("Unknown column type " + type + ", expected one of " + ALL_TYPES);
+            }
+        }
+        this.types = types;
+    }
+
+    public double getNullRatio() {
+        return nullRatio;
+    }
+
+    public void setNullRatio(double nullRatio) {
+        if (nullRatio < 0 || nullRatio > 1) {
+            throw new IllegalArgumentException("Null ratio must be between 0 and 1: " + nullRatio);
+        }
+        this.nullRatio = nullRatio;
+    }
+
+    public long getCardinality() {
+        return cardinality;
+    }
+
+    /**
+     * @param cardinality the number of distinct values a column draws from, a column of fewer rows has fewer.
+     */
+    public void setCardinality(long cardinality) {
+        if (cardinality < 1) {
+            throw new IllegalArgumentException("Cardinality must be at least 1: " + cardinality);
+        }
+        this.cardinality = cardinality;
+    }
+
+    public double getSkew() {
+        return skew;
+    }
+
+    /**
+     * @param skew the exponent of the Zipf distribution of the values, 0 for uniform values, about 1 for real data.
+     */
+    public void setSkew(double skew) {
+        if (skew < 0) {
+            throw new IllegalArgumentException("Skew must not be negative: " + skew);
+        }
+        this.skew = skew;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public int getRowGroupSize() {
+        return rowGroupSize;
+    }
+
+    public void setRowGroupSize(int rowGroupSize) {
+        this.rowGroupSize = rowGroupSize;
+    }
+
+    /**
+     * @return the fields of the columns, named after their type and position.
+     */
+    public List<FieldMetadata> getFields() {
+        List<FieldMetadata> fields = new ArrayList<>();
+        for (int i = 0; i < columns; i++) {
+            String type = types.get(i % types.size());
+            fields.add(new FieldMetadata(type + "_" + i, toFieldType(type)));
+        }
+        return fields;
+    }
+
+    /**
+     * Write the file, replacing any existing one.
+     * @param file the parquet file.
+     * @return the fields of the columns.
+     * @throws IOException
+     */
+    public List<FieldMetadata> write(File file) throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot replace " + file);
+        }
+        List<FieldMetadata> fields = getFields();
+        Schema schema = SchemaConverter.toAvroSchema(fields);
+        List<Schema.Field> schemaFields = schema.getFields();
+        Random[] randoms = new Random[columns];
+        for (int i = 0; i < columns; i++) {
+            randoms[i] = new Random(seed * 31 + i);
+        }
+        try (ParquetWriter<GenericRecord> writer = AvroParquetWriter.<GenericRecord>builder(new Path(file.getPath()))
+                .withSchema(schema).withRowGroupSize(rowGroupSize).build()) {
+            for (long row = 0; row < rows; row++) {
+                GenericRecord record = new GenericData.Record(schema);
+                for (int i = 0; i < columns; i++) {
+                    Random random = randoms[i];
+                    if (random.nextDouble() < nullRatio) {
+                        continue;
+                    }
+                    Schema.Field field = schemaFields.get(i);
+                    record.put(field.pos(), toValue(types.get(i % types.size()), nextRank(random), valueSchema(field.schema())));
+                }
+                writer.write(record);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * @return a rank from 0 to cardinality - 1, rank 0 the most frequent, by inverting the continuous Zipf
+     * distribution.
+     */
+    private long nextRank(Random random) {
+        double u = random.nextDouble();
+        if (skew == 0) {
+            return (long) (u * cardinality);
+        }
+        double rank;
+        if (Math.abs(skew - 1) < 1e-9) {
+            rank = Math.pow(cardinality + 1, u);
+        }
+        else {
+            double exponent = 1 - skew;
+            rank = Math.pow(u * (Math.pow(cardinality + 1, exponent) - 1) + 1, 1 / exponent);
+        }
+        return Math.min(cardinality - 1, (long) rank - 1);
+    }
+
+    /**
+     * The distinct ranks give distinct values of every type.
+     */
+    private static Object toValue(String type, long rank, Schema schema) {
+        switch (type) {
+            case "string":
+                return "value-" + Long.toString(rank, 36);
+            case "double":
+                return (rank - 1000) * 1.0625;
+            case "decimal":
+                return toDecimal(BigInteger.valueOf(rank * 7919 - 500000), schema);
+            case "integer":
+                return toInteger(rank - 1000, schema);
+            case "date":
+                return toInteger(FIRST_DAY + rank, schema);
+            case "time":
+                return toInteger(schema.getLogicalType() instanceof LogicalTypes.TimeMicros ? rank * 1000 % 86400000000L : rank % 86400000, schema);
+            default:
+                LogicalType logicalType = schema.getLogicalType();
+                return toInteger(logicalType instanceof LogicalTypes.TimestampMicros ? (FIRST_TIMESTAMP + rank) * 1000 : FIRST_TIMESTAMP + rank, schema);
+        }
+    }
+
+    private static Object toInteger(long value, Schema schema) {
+        return schema.getType() == Schema.Type.INT ? (Object) (int) value : (Object) value;
+    }
+
+    private static Object toDecimal(BigInteger unscaledValue, Schema schema) {
+        byte[] bytes = unscaledValue.toByteArray();
+        if (schema.getType() != Schema.Type.FIXED) {
+            return ByteBuffer.wrap(bytes);
+        }
+        // sign extended to the fixed size
+        byte[] fixed = new byte[schema.getFixedSize()];
+        Arrays.fill(fixed, 0, fixed.length - bytes.length, unscaledValue.signum() < 0 ? (byte) -1 : 0);
+        System.arraycopy(bytes, 0, fixed, fixed.length - bytes.length, bytes.length);
+        return new GenericData.Fixed(schema, fixed);
+    }
+
+    /**
+     * @return the schema of the values of an optional field.
+     */
+    private static Schema valueSchema(Schema schema) {
+        if (schema.getType() == Schema.Type.UNION) {
+            for (Schema type : schema.getTypes()) {
+                if (type.getType() != Schema.Type.NULL) {
+                    return type;
+                }
+            }
+        }
+        return schema;
+    }
+
+    private static String toFieldType(String type) {
+        switch (type) {
+            case "string":
+                return "varchar(64)";
+            case "decimal":
+                return "number(18,4)";
+            default:
+                return type;
+        }
+    }
+
+    /**
+     * Write a file from key=value arguments: rows, columns, types (comma separated), nulls, cardinality, skew,
+     * seed, rowGroupSize and out, the path of the file.
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        DatasetGenerator generator = new DatasetGenerator();
+        String out = "dataset.parquet";
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected key=value: " + arg);
+            }
+            String key = arg.substring(0, separator);
+            String value = arg.substring(separator + 1);
+            switch (key) {
+                case "rows":
+                    generator.setRows(Long.parseLong(value));
+                    break;
+                case "columns":
+                    generator.setColumns(Integer.parseInt(value));
+                    break;
+                case "types":
+                    generator.setTypes(Arrays.asList(value.split(",")));
+                    break;
+                case "nulls":
+                    generator.setNullRatio(Double.parseDouble(value));
+                    break;
+                case "cardinality":
+                    generator.setCardinality(Long.parseLong(value));
+                    break;
+                case "skew":
+                    generator.setSkew(Double.parseDouble(value));
+                    break;
+                case "seed":
+                    generator.setSeed(Long.parseLong(value));
+                    break;
+                case "rowGroupSize":
+                    generator.setRowGroupSize(Integer.parseInt(value));
+                    break;
+                case "out":
+                    out = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument " + key);
+            }
+        }
+        File file = new File(out);
+        List<FieldMetadata> fields = generator.write(file);
+        System.out.println("Wrote " + generator.getRows() + " rows of " + fields.size() + " columns to " + file
+                + " (" + file.length() + " bytes)");
+    }
+}
@@ -0,0 +1,65 @@
+package com.fishblack.statistics.benchmark;
+
+import com.fishblack.fastparquet.common.FieldMetadata;
+import com.fishblack.fastparquet.common.TempFile;
+import com.fishblack.statistics.Calculator;
+import com.fishblack.statistics.DataInsights;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of the profile of a wide generated file, the score is in column stats per second and the
+ * bytes counter is the JSON written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JsonBenchmark {
+
+    private static final int COLUMNS = 210;
+
+    private DataInsights dataInsights;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        DatasetGenerator generator = new DatasetGenerator();
+        generator.setRows(10000);
+        generator.setColumns(COLUMNS);
+        File file = File.createTempFile("json-benchmark", ".parquet");
+        try {
+            List<FieldMetadata> fields = generator.write(file);
+            dataInsights = new Calculator().getDataInsightsFromParquetFile(new TempFile(file.getPath()), fields);
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COLUMNS)
+    public String toJson(Counters counters) {
+        String json = dataInsights.toJSON();
+        counters.values += COLUMNS;
+        counters.bytes += json.getBytes(StandardCharsets.UTF_8).length;
+        return json;
+    }
+}
@@ -0,0 +1,98 @@
+package com.fishblack.statistics.benchmark;
+
+import com.fishblack.fastparquet.common.FieldMetadata;
+import com.fishblack.fastparquet.common.TempFile;
+import com.fishblack.statistics.Calculator;
+import com.fishblack.statistics.DataInsights;
+import com.fishblack.statistics.ScanMode;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Profiling of a whole generated file of one column of every type, the score is in values per second, null values
+ * included. The bytes counter is the size of the file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ProfileBenchmark {
+
+    private static final int ROWS = 1000000;
+    private static final int COLUMNS = 7;
+
+    @Param({"SINGLE_PASS", "PARALLEL", "PER_COLUMN"})
+    public ScanMode scanMode;
+
+    @Param({"100", "1000000"})
+    public long cardinality;
+
+    @Param({"0", "1.1"})
+    public double skew;
+
+    @Param({"0.1"})
+    public double nullRatio;
+
+    @Param({"ADAPTIVE", "HYPER_LOG_LOG"})
+    public String cardinalityCalculator;
+
+    private File file;
+    private List<FieldMetadata> fields;
+    private ExecutorService executorService;
+    private Calculator calculator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        DatasetGenerator generator = new DatasetGenerator();
+        generator.setRows(ROWS);
+        generator.setColumns(COLUMNS);
+        generator.setCardinality(cardinality);
+        generator.setSkew(skew);
+        generator.setNullRatio(nullRatio);
+        file = File.createTempFile("profile-benchmark", ".parquet");
+        fields = generator.write(file);
+        executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        calculator = new Calculator();
+        calculator.setScanMode(scanMode);
+        calculator.setExecutorService(executorService);
+        calculator.setCardinalityCalculatorFactory("ADAPTIVE".equals(cardinalityCalculator)
+                ? CardinalityCalculatorFactory.ADAPTIVE : CardinalityCalculatorFactory.HYPER_LOG_LOG);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executorService.shutdown();
+        file.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS * COLUMNS)
+    public DataInsights profile(Counters counters) throws IOException {
+        DataInsights dataInsights = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), fields);
+        counters.values += (long) ROWS * COLUMNS;
+        counters.bytes += file.length();
+        return dataInsights;
+    }
+}
@@ -0,0 +1,143 @@
+package com.fishblack.statistics;
+
+import com.fishblack.statistics.accumulator.ColumnAccumulator;
+import com.fishblack.statistics.accumulator.DecimalColumnAccumulator;
+import com.fishblack.statistics.accumulator.DoubleColumnAccumulator;
+import com.fishblack.statistics.accumulator.LongColumnAccumulator;
+import com.fishblack.statistics.accumulator.StringColumnAccumulator;
+import com.fishblack.statistics.accumulator.TemporalColumnAccumulator;
+import org.apache.avro.LogicalType;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericFixed;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import static com.fishblack.statistics.Calculator.MILLIS_PER_DAY;
+
+/**
+ * Pushes a value of an avro record to a column accumulator, the same way the parquet scan feeds the value once
+ * the record is written. Typed accumulators are fed the primitive avro values directly, the values of other
+ * classes, like the java.time values of an avro data model with conversions, go through
+ * {@link ColumnAccumulator#add(Object)}.
+ */
+interface AvroValueFeeder {
+
+    void feed(Object value) throws IOException;
+
+    static AvroValueFeeder forField(Schema schema, ColumnAccumulator accumulator) {
+        Schema type = getNonNullType(schema);
+        LogicalType logicalType = type.getLogicalType();
+        Schema.Type typeName = type.getType();
+        if (accumulator instanceof DoubleColumnAccumulator && logicalType == null
+                && (typeName == Schema.Type.DOUBLE || typeName == Schema.Type.FLOAT)) {
+            DoubleColumnAccumulator doubleAccumulator = (DoubleColumnAccumulator) accumulator;
+            return value -> {
+                if (value instanceof Number) {
+                    doubleAccumulator.addDouble(((Number) value).doubleValue());
+                }
+                else {
+                    addObject(accumulator, value);
+                }
+            };
+        }
+        if (accumulator instanceof LongColumnAccumulator && logicalType == null
+                && (typeName == Schema.Type.INT || typeName == Schema.Type.LONG)) {
+            LongColumnAccumulator longAccumulator = (LongColumnAccumulator) accumulator;
+            return value -> {
+                if (value instanceof Number) {
+                    longAccumulator.addLong(((Number) value).longValue());
+                }
+                else {
+                    addObject(accumulator, value);
+                }
+            };
+        }
+        if (accumulator instanceof TemporalColumnAccumulator && logicalType != null) {
+            TemporalColumnAccumulator temporalAccumulator = (TemporalColumnAccumulator) accumulator;
+            long millisPerUnit;
+            long unitsPerMilli;
+            if (logicalType instanceof LogicalTypes.Date) {
+                millisPerUnit = MILLIS_PER_DAY;
+                unitsPerMilli = 1;
+            }
+            else if (logicalType instanceof LogicalTypes.TimeMillis || logicalType instanceof LogicalTypes.TimestampMillis) {
+                millisPerUnit = 1;
+                unitsPerMilli = 1;
+            }
+            else if (logicalType instanceof LogicalTypes.TimeMicros || logicalType instanceof LogicalTypes.TimestampMicros) {
+                millisPerUnit = 1;
+                unitsPerMilli = 1000;
+            }
+            else {
+                return value -> addObject(accumulator, value);
+            }
+            return value -> {
+                if (value instanceof Number) {
+                    temporalAccumulator.addMillis(Math.floorDiv(((Number) value).longValue(), unitsPerMilli) * millisPerUnit);
+                }
+                else {
+                    addObject(accumulator, value);
+                }
+            };
+        }
+        if (accumulator instanceof DecimalColumnAccumulator && logicalType instanceof LogicalTypes.Decimal) {
+            DecimalColumnAccumulator decimalAccumulator = (DecimalColumnAccumulator) accumulator;
+            int scale = ((LogicalTypes.Decimal) logicalType).getScale();
+            return value -> {
+                if (value instanceof ByteBuffer) {
+                    ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    decimalAccumulator.addDecimal(new BigDecimal(new BigInteger(bytes), scale));
+                }
+                else if (value instanceof GenericFixed) {
+                    decimalAccumulator.addDecimal(new BigDecimal(new BigInteger(((GenericFixed) value).bytes()), scale));
+                }
+                else {
+                    addObject(accumulator, value);
+                }
+            };
+        }
+        if (accumulator instanceof StringColumnAccumulator && logicalType == null && typeName == Schema.Type.STRING) {
+            StringColumnAccumulator stringAccumulator = (StringColumnAccumulator) accumulator;
+            return value -> {
+                if (value instanceof CharSequence) {
+                    stringAccumulator.addString(value.toString());
+                }
+                else {
+                    addObject(accumulator, value);
+                }
+            };
+        }
+        return value -> addObject(accumulator, value);
+    }
+
+    // avro strings are Utf8 instances, the parquet reader gives strings
+    static void addObject(ColumnAccumulator accumulator, Object value) throws IOException {
+        if (value == null) {
+            accumulator.addNull();
+        }
+        else {
+            accumulator.add(value instanceof CharSequence ? value.toString() : value);
+        }
+    }
+
+    /**
+     * @return the type of an optional field, the field schema when it is not a union.
+     */
+    static Schema getNonNullType(Schema schema) {
+        if (schema.getType() != Schema.Type.UNION) {
+            return schema;
+        }
+        for (Schema type : schema.getTypes()) {
+            if (type.getType() != Schema.Type.NULL) {
+                return type;
+            }
+        }
+        return schema;
+    }
+}
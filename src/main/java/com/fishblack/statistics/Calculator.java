@@ -6,25 +6,59 @@ import com.fishblack.fastparquet.common.TempFile;
 import com.fishblack.fastparquet.reader.ParquetColumnReader;
 import com.fishblack.fastparquet.reader.ParquetColumnReaderImpl;
 import com.fishblack.fastparquet.utils.ParquetAvroUtils;
-import com.fishblack.statistics.cardinality.CardinalityCalculator;
-import com.fishblack.statistics.cardinality.MemoryCardinalityCalculator;
+import com.fishblack.statistics.accumulator.AbstractColumnAccumulator;
+import com.fishblack.statistics.accumulator.AccumulatorOptions;
+import com.fishblack.statistics.accumulator.ColumnAccumulator;
+import com.fishblack.statistics.accumulator.ColumnAccumulators;
+import com.fishblack.statistics.accumulator.QuantileSketch;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+import com.fishblack.statistics.cardinality.MeteredCardinalityCalculator;
+import com.fishblack.statistics.cardinality.SampleCardinalityCalculator;
+import com.fishblack.statistics.parquet.ParquetFooterStatistics;
+import com.fishblack.statistics.parquet.ParquetRowGroupScanner;
+import com.fishblack.statistics.parquet.ScanControl;
+import com.fishblack.statistics.text.CsvFormat;
+import com.fishblack.statistics.text.CsvScanner;
+import com.fishblack.statistics.text.TextScanner;
+import com.fishblack.statistics.text.TextValueParser;
+import com.fishblack.statistics.text.XlsxScanner;
 import org.apache.avro.Schema;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.StringEscapeUtils;
 import org.apache.parquet.schema.Type;
 import org.w3c.dom.Document;
 
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class Calculator {
     private static final Logger logger = Logger.getLogger(Calculator.class.getName());
@@ -34,7 +68,21 @@ public class Calculator {
     public static final DateTimeFormatter localDateTimeFormatter = DateTimeFormatter.ofPattern(localDateTimeFormat);
     public static final DateTimeFormatter localDateFormatter = DateTimeFormatter.ofPattern(localDateFormat);
     public static final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern(timeFormat);
-    
+    public static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    private static final Pattern DECIMAL_SCALE = Pattern.compile("number\\s*\\(\\s*\\d+\\s*,\\s*(\\d+)\\s*\\)");
+
+    private ScanMode scanMode = ScanMode.SINGLE_PASS;
+    private ExecutorService executorService;
+    private CardinalityCalculatorFactory cardinalityCalculatorFactory = CardinalityCalculatorFactory.ADAPTIVE;
+    private MemoryBudget memoryBudget;
+    private SampleSpec sampleSpec;
+    private AccumulatorOptions accumulatorOptions = AccumulatorOptions.DEFAULT;
+    private ProfileSpec profileSpec = ProfileSpec.ALL;
+    private ProfileListener profileListener;
+    private boolean metricsIncluded;
+    private long deadlineMillis;
+    private long snapshotIntervalMillis = 1000;
+
     /**
      * Calculate the statistics from given parquet file for the dataset with typeOption.
      * @param tempParquetFile
@@ -48,75 +96,961 @@ public class Calculator {
     }
 
     public DataInsights getDataInsightsFromParquetFile(TempFile tempParquetFile, List<FieldMetadata> fields) throws IOException {
-        Schema sc = SchemaConverter.toAvroSchema(fields);
-        List<Schema.Field> schemaList = sc.getFields();
+        return getDataInsightsFromParquetFile(tempParquetFile, fields, deadlineMillis > 0 ? new ScanControl(deadlineMillis) : null, null);
+    }
+
+    /**
+     * Calculate the statistics of the parquet file on the executor of this calculator, the common ForkJoinPool
+     * when not set. In {@link ScanMode#PARALLEL} the job waits for its scan tasks on the same executor, which then
+     * needs more than one thread. Snapshots of the statistics are published while the file is scanned, at most
+     * one per snapshot interval: after every row group, or after every column in {@link ScanMode#PER_COLUMN}.
+     * @param tempParquetFile
+     * @param fields
+     * @param snapshotListener called with every snapshot on the thread of the job, null for none.
+     * @return the handle of the job.
+     */
+    public ProfileHandle getDataInsightsFromParquetFileAsync(TempFile tempParquetFile, List<FieldMetadata> fields,
+                                                             Consumer<DataInsights> snapshotListener) {
+        ScanControl scanControl = new ScanControl(deadlineMillis);
+        ProfileHandle handle = new ProfileHandle(scanControl, snapshotListener);
+        ExecutorService executor = executorService == null ? ForkJoinPool.commonPool() : executorService;
+        executor.execute(() -> {
+            try {
+                handle.getFuture().complete(getDataInsightsFromParquetFile(tempParquetFile, fields, scanControl, handle::publish));
+            }
+            catch (Throwable e) {
+                handle.getFuture().completeExceptionally(e);
+            }
+        });
+        return handle;
+    }
+
+    /**
+     * @param scanControl the control of the job, null when it can not be stopped.
+     * @param snapshotListener receives the snapshots of the job, null for none.
+     */
+    private DataInsights getDataInsightsFromParquetFile(TempFile tempParquetFile, List<FieldMetadata> fields,
+                                                        ScanControl scanControl, Consumer<DataInsights> snapshotListener) throws IOException {
+        long start = System.nanoTime();
+        ProfileMetrics metrics = newProfileMetrics(1);
         DataInsights dataInsights = new DataInsights();
         HashMap<String, String> fieldNameMap = new HashMap<>();
         HashMap<String, String> fieldTypeMap = new HashMap<>();
-        for (int i=0; i<fields.size(); i++){
-            String originalColumnName = StringEscapeUtils.escapeJava(fields.get(i).getFieldName());
-            String fieldName = schemaList.get(i).name();
-            String fieldType = convertOACDataType(fields.get(i).getFieldType());
-            fieldNameMap.put(fieldName, originalColumnName);
-            fieldTypeMap.put(fieldName, fieldType);
+        mapFields(fields, fieldNameMap, fieldTypeMap);
+        // the footer answers a cheap profile whatever the scan mode
+        if (scanMode != ScanMode.PER_COLUMN || profileSpec.isAnsweredByFooter()) {
+            calAllColumnStats(dataInsights, fieldNameMap, fieldTypeMap, tempParquetFile, metrics, scanControl, snapshotListener);
+            finishProfileMetrics(metrics, start, dataInsights);
+            return dataInsights;
+        }
+        if (snapshotListener != null) {
+            scanControl.setProgressListener(() -> snapshotListener.accept(copyOf(dataInsights)), snapshotIntervalMillis);
         }
         for(Type type : ParquetAvroUtils.getParquetFileColumns(tempParquetFile.getPath())) {
             String fieldName = type.getName();
             String originName = fieldNameMap.get(fieldName);
             String fieldType = fieldTypeMap.get(fieldName);
+            if (!profileSpec.isSelected(originName)) {
+                continue;
+            }
             dataInsights.setColumnCount(dataInsights.getColumnCount() + 1);
-            calColumnStats(dataInsights, originName, fieldName, fieldType, tempParquetFile);
+            calColumnStats(dataInsights, originName, fieldName, fieldType, tempParquetFile, metrics, scanControl);
+            if (scanControl != null) {
+                scanControl.progress();
+            }
         }
+        if (dataInsights.isPartial() && dataInsights.getRowCount() == 0) {
+            // stopped on the first column, the row count is taken from the footer
+            try (ParquetRowGroupScanner scanner = new ParquetRowGroupScanner(tempParquetFile.getPath())) {
+                dataInsights.setRowCount(scanner.getRowCount());
+            }
+        }
+        finishProfileMetrics(metrics, start, dataInsights);
         return dataInsights;
     }
 
+    /**
+     * Scan every row of the parquet file and keep the unfinished statistics, so they can be saved and merged
+     * with the statistics of the files appended later instead of scanning the whole dataset again.
+     * The scan is parallel in {@link ScanMode#PARALLEL} and a single pass otherwise, the sample spec is ignored.
+     * @param tempParquetFile
+     * @param fields
+     * @return the profile state of the file.
+     * @throws IOException
+     */
+    public ProfileState getProfileStateFromParquetFile(TempFile tempParquetFile, List<FieldMetadata> fields) throws IOException {
+        HashMap<String, String> fieldNameMap = new HashMap<>();
+        HashMap<String, String> fieldTypeMap = new HashMap<>();
+        mapFields(fields, fieldNameMap, fieldTypeMap);
+        return createProfileState(tempParquetFile, fieldNameMap, fieldTypeMap, null, scanMode == ScanMode.PARALLEL,
+                ProfileSpec.ALL, newJobMemoryBudget(), null, null);
+    }
+
+    /**
+     * Calculate the statistics of a dataset split in several parquet files of the same schema, as if the files
+     * were one file holding their rows in the given order, see {@link ProfileState#merge(ProfileState)}. The files
+     * are scanned concurrently on the executor of this calculator, one file per task, and their statistics merged.
+     * The sample spec and the scan mode are ignored, the profile spec is not.
+     * @param tempParquetFiles
+     * @param fields
+     * @return the statistics of the dataset.
+     * @throws IOException
+     * @throws IllegalArgumentException if there is no file or the files do not have the same columns.
+     */
+    public DataInsights getDataInsightsFromParquetFiles(List<TempFile> tempParquetFiles, List<FieldMetadata> fields) throws IOException {
+        if (tempParquetFiles.isEmpty()) {
+            throw new IllegalArgumentException("No parquet file to profile");
+        }
+        HashMap<String, String> fieldNameMap = new HashMap<>();
+        HashMap<String, String> fieldTypeMap = new HashMap<>();
+        mapFields(fields, fieldNameMap, fieldTypeMap);
+        long start = System.nanoTime();
+        ProfileMetrics metrics = newProfileMetrics(tempParquetFiles.size());
+        Map<String, ColumnMetrics> columnMetrics = metrics == null ? null : new ConcurrentHashMap<>();
+        ProfileState state = createProfileState(tempParquetFiles, fieldNameMap, fieldTypeMap, metrics, columnMetrics);
+        logger.log(Level.FINE, "Dataset scan of {0} files took {1} ms",
+                new Object[]{tempParquetFiles.size(), (System.nanoTime() - start) / 1000000});
+        DataInsights dataInsights = state.toDataInsights();
+        for (ColumnStats columnStats : dataInsights.getColumnStats()) {
+            profileSpec.retain(columnStats);
+        }
+        if (metrics != null) {
+            for (AbstractColumnAccumulator accumulator : state.getAccumulators()) {
+                ColumnMetrics metricsOfColumn = columnMetrics.get(accumulator.getFieldName());
+                metricsOfColumn.finish(accumulator);
+                metrics.getColumnMetrics().add(metricsOfColumn);
+            }
+        }
+        finishProfileMetrics(metrics, start, dataInsights);
+        return dataInsights;
+    }
+
+    /**
+     * Calculate the statistics of the parquet files under a directory, see {@link #getDataInsightsFromParquetFiles}.
+     * The files are read in path order, the files and directories whose name starts with _ or . are skipped.
+     * @param directory
+     * @param fields
+     * @return the statistics of the dataset.
+     * @throws IOException
+     */
+    public DataInsights getDataInsightsFromParquetDataset(String directory, List<FieldMetadata> fields) throws IOException {
+        List<TempFile> tempParquetFiles = new ArrayList<>();
+        for (List<TempFile> partitionFiles : listParquetDataset(directory).values()) {
+            tempParquetFiles.addAll(partitionFiles);
+        }
+        return getDataInsightsFromParquetFiles(tempParquetFiles, fields);
+    }
+
+    /**
+     * Calculate the statistics of every partition of a Hive style partitioned dataset, the partition of a file
+     * is the path of the key=value directories it is in, empty for the files outside of such a directory.
+     * The partition values are not added as columns.
+     * @param directory
+     * @param fields
+     * @return the statistics of every partition, in partition path order.
+     * @throws IOException
+     */
+    public Map<String, DataInsights> getPartitionDataInsightsFromParquetDataset(String directory, List<FieldMetadata> fields) throws IOException {
+        Map<String, DataInsights> partitionInsights = new LinkedHashMap<>();
+        for (Map.Entry<String, List<TempFile>> partition : listParquetDataset(directory).entrySet()) {
+            partitionInsights.put(partition.getKey(), getDataInsightsFromParquetFiles(partition.getValue(), fields));
+        }
+        return partitionInsights;
+    }
+
+    /**
+     * Calculate the statistics of a CSV file without converting it to parquet first. The columns are typed by
+     * the fields like in the parquet conversion, so that the statistics are those of the converted file, and are
+     * matched to the fields by the names of the header or by position. Empty cells and cells that are not of
+     * the type of their column are null, see {@link TextValueParser}. In {@link ScanMode#PARALLEL} the records
+     * are split in chunks parsed concurrently on the executor of this calculator, otherwise the file is read in
+     * a single pass. The sample spec is ignored.
+     * @param csvFile
+     * @param fields
+     * @param format the layout of the file, {@link CsvFormat#DEFAULT} for comma separated values with a header.
+     * @return the statistics of the file.
+     * @throws IOException
+     */
+    public DataInsights getDataInsightsFromCsvFile(TempFile csvFile, List<FieldMetadata> fields, CsvFormat format) throws IOException {
+        try (CsvScanner scanner = new CsvScanner(csvFile.getPath(), format)) {
+            return getDataInsightsFromTextFile(scanner, fields);
+        }
+    }
+
+    /**
+     * Calculate the statistics of a sheet of an XLSX file without converting it to parquet first, the sheet is
+     * streamed and its first row holds the column names. The cells are typed like the cells of a CSV file, see
+     * {@link #getDataInsightsFromCsvFile(TempFile, List, CsvFormat)}, the sheet is read in a single pass.
+     * @param xlsxFile
+     * @param fields
+     * @param sheetName the name of the sheet, null for the first sheet.
+     * @return the statistics of the sheet.
+     * @throws IOException
+     */
+    public DataInsights getDataInsightsFromXlsxFile(TempFile xlsxFile, List<FieldMetadata> fields, String sheetName) throws IOException {
+        try (XlsxScanner scanner = new XlsxScanner(xlsxFile.getPath(), sheetName, true)) {
+            return getDataInsightsFromTextFile(scanner, fields);
+        }
+    }
+
+    /**
+     * Create a sink profiling the rows its producers push, with one stripe of accumulators per processor.
+     * The settings of this calculator are taken when the sink is created, the scan mode, sample spec and
+     * deadline do not apply.
+     * @param fields the fields of the rows.
+     * @return the sink, to finish or close.
+     */
+    public ProfileSink newProfileSink(List<FieldMetadata> fields) {
+        return newProfileSink(fields, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a sink profiling the rows its producers push, see {@link ProfileSink}.
+     * @param fields the fields of the rows.
+     * @param stripes the stripes of accumulators, the producers adding batches at the same time without waiting.
+     * @return the sink, to finish or close.
+     */
+    public ProfileSink newProfileSink(List<FieldMetadata> fields, int stripes) {
+        return new ProfileSink(this, fields, stripes);
+    }
+
+    public ScanMode getScanMode() {
+        return scanMode;
+    }
+
+    public void setScanMode(ScanMode scanMode) {
+        this.scanMode = scanMode;
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Set the executor used by {@link ScanMode#PARALLEL} and by the distinct counts writing runs to disk,
+     * the common ForkJoinPool is used when not set.
+     * @param executorService
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    public CardinalityCalculatorFactory getCardinalityCalculatorFactory() {
+        return cardinalityCalculatorFactory;
+    }
+
+    /**
+     * Set how distinct values are counted, by default exactly until a column's distinct values take 100 MB
+     * and estimated past that, see {@link com.fishblack.statistics.cardinality.AdaptiveCardinalityCalculator}.
+     * @param cardinalityCalculatorFactory
+     */
+    public void setCardinalityCalculatorFactory(CardinalityCalculatorFactory cardinalityCalculatorFactory) {
+        this.cardinalityCalculatorFactory = cardinalityCalculatorFactory;
+    }
+
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Set the memory budget the distinct counts of the built-in adaptive, file and memory calculators reserve
+     * from, to be shared by the calculators of a process. Null for none, the default.
+     * @param memoryBudget
+     */
+    public void setMemoryBudget(MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    public SampleSpec getSampleSpec() {
+        return sampleSpec;
+    }
+
+    /**
+     * Profile a random sample of the rows instead of every row, null to read every row.
+     * The counts and sums are extrapolated to the whole file and marked as estimated, the row count stays exact.
+     * A sample is read in a single pass whatever the scan mode, except in {@link ScanMode#PER_COLUMN} which
+     * always reads every row.
+     * @param sampleSpec
+     */
+    public void setSampleSpec(SampleSpec sampleSpec) {
+        this.sampleSpec = sampleSpec;
+    }
+
+    public int getQuantileSketchSize() {
+        return accumulatorOptions.getQuantileSketchSize();
+    }
+
+    /**
+     * Set the size of the sketches the percentiles of numeric and temporal columns are computed with, a larger sketch
+     * is more accurate and takes more memory, see {@link QuantileSketch}. 0 skips the percentiles.
+     * @param quantileSketchSize 0 or at least {@link QuantileSketch#MIN_SIZE}, {@link QuantileSketch#DEFAULT_SIZE} by default.
+     */
+    public void setQuantileSketchSize(int quantileSketchSize) {
+        this.accumulatorOptions = accumulatorOptions.withQuantileSketchSize(quantileSketchSize);
+    }
+
+    public AccumulatorOptions getAccumulatorOptions() {
+        return accumulatorOptions;
+    }
+
+    /**
+     * Set the settings of the percentiles, of the most frequent values, which are reported with the counts
+     * of the {@link com.fishblack.statistics.accumulator.FrequentValues} counters, the 10 most frequent values out
+     * of 1000 counted by default, and of the histograms of numeric and temporal columns, 20 buckets by default.
+     * @param accumulatorOptions
+     */
+    public void setAccumulatorOptions(AccumulatorOptions accumulatorOptions) {
+        this.accumulatorOptions = accumulatorOptions;
+    }
+
+    public ProfileSpec getProfileSpec() {
+        return profileSpec;
+    }
+
+    /**
+     * Set the columns profiled and the statistics computed, every column and statistic by default. The profile
+     * states always have every column and statistic, so that they can be merged whatever the spec.
+     * @param profileSpec the spec, null for every column and statistic.
+     */
+    public void setProfileSpec(ProfileSpec profileSpec) {
+        this.profileSpec = profileSpec == null ? ProfileSpec.ALL : profileSpec;
+    }
+
+    public ProfileListener getProfileListener() {
+        return profileListener;
+    }
+
+    /**
+     * Set the listener getting the metrics of every profile computed from parquet files, null for none.
+     * The scans are only measured when there is a listener or the metrics are included in the results.
+     * @param profileListener
+     */
+    public void setProfileListener(ProfileListener profileListener) {
+        this.profileListener = profileListener;
+    }
+
+    public boolean isMetricsIncluded() {
+        return metricsIncluded;
+    }
+
+    /**
+     * Add the {@link ProfileMetrics} of the scan to the computed {@link DataInsights}, false by default.
+     * @param metricsIncluded
+     */
+    public void setMetricsIncluded(boolean metricsIncluded) {
+        this.metricsIncluded = metricsIncluded;
+    }
+
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * Set the time after which the scan of a single parquet file stops, 0 for no deadline. The statistics of the
+     * rows read so far are returned, the columns not read in full are marked partial, see
+     * {@link ColumnStats#isPartial()}. A sample stopped by the deadline is a smaller sample and is not partial.
+     * @param deadlineMillis
+     */
+    public void setDeadlineMillis(long deadlineMillis) {
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    public long getSnapshotIntervalMillis() {
+        return snapshotIntervalMillis;
+    }
+
+    /**
+     * Set the least time between two snapshots of an asynchronous job, 1 second by default.
+     * @param snapshotIntervalMillis
+     */
+    public void setSnapshotIntervalMillis(long snapshotIntervalMillis) {
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+    }
+
+    private void calAllColumnStats(DataInsights dataInsights, HashMap<String, String> fieldNameMap,
+                                   HashMap<String, String> fieldTypeMap, TempFile tempParquetFile,
+                                   ProfileMetrics metrics, ScanControl scanControl,
+                                   Consumer<DataInsights> snapshotListener) throws IOException {
+        List<ColumnAccumulator> accumulators = new ArrayList<>();
+        try (ParquetRowGroupScanner scanner = new ParquetRowGroupScanner(tempParquetFile.getPath())) {
+            scanner.setScanControl(scanControl);
+            dataInsights.setRowCount(scanner.getRowCount());
+            // stats answered by the footer in METADATA mode, at the index of the column they replace
+            List<ColumnStats> footerStats = new ArrayList<>();
+            List<ColumnMetrics> columnMetrics = new ArrayList<>();
+            int scannedColumns = 0;
+            boolean sampling = sampleSpec != null && (sampleSpec.getTimeBudgetMillis() > 0
+                    || sampleSpec.getTargetRows(scanner.getRowCount()) < scanner.getRowCount());
+            MemoryBudget budget = newJobMemoryBudget();
+            CardinalityCalculatorFactory factory = sampling ? SampleCardinalityCalculator.factory(getCardinalityCalculatorFactory(metrics, profileSpec, budget), budget)
+                    : getCardinalityCalculatorFactory(metrics, profileSpec, budget);
+            AccumulatorOptions options = profileSpec.getAccumulatorOptions(accumulatorOptions);
+            for (Type type : scanner.getColumns()) {
+                String fieldName = type.getName();
+                if (!profileSpec.isSelected(fieldNameMap.get(fieldName))) {
+                    continue;
+                }
+                dataInsights.setColumnCount(dataInsights.getColumnCount() + 1);
+                if (scanMode == ScanMode.METADATA || profileSpec.isAnsweredByFooter()) {
+                    ColumnStats columnStats = ParquetFooterStatistics.forColumn(scanner.getFooter(), type,
+                            fieldNameMap.get(fieldName), fieldTypeMap.get(fieldName));
+                    if (columnStats != null) {
+                        accumulators.add(null);
+                        footerStats.add(columnStats);
+                        columnMetrics.add(null);
+                        continue;
+                    }
+                }
+                ColumnAccumulator accumulator = ColumnAccumulators.create(fieldNameMap.get(fieldName), fieldTypeMap.get(fieldName), factory, options);
+                ColumnMetrics metricsOfColumn = metrics == null ? null : new ColumnMetrics(fieldNameMap.get(fieldName));
+                try {
+                    scanner.addColumn(fieldName, accumulator, metricsOfColumn);
+                    accumulators.add(accumulator);
+                    footerStats.add(null);
+                    columnMetrics.add(metricsOfColumn);
+                    scannedColumns++;
+                }
+                catch (IllegalArgumentException ex){
+                    logger.log(Level.WARNING, "Parquet column reader read failed on column:"+fieldName, ex);
+                    addFailedColumn(metrics, fieldNameMap.get(fieldName));
+                    accumulator.release();
+                }
+            }
+            if (snapshotListener != null) {
+                scanControl.setProgressListener(() -> publishSnapshot(snapshotListener, dataInsights, accumulators,
+                        footerStats), snapshotIntervalMillis);
+            }
+            long start = System.nanoTime();
+            long sampleRows = 0;
+            if (sampling) {
+                Random random = sampleSpec.getSeed() == null ? new Random() : new Random(sampleSpec.getSeed());
+                sampleRows = scanner.scanSample(sampleSpec.getTargetRows(scanner.getRowCount()),
+                        TimeUnit.MILLISECONDS.toNanos(sampleSpec.getTimeBudgetMillis()), random);
+                logger.log(Level.FINE, "Sample scan of {0} rows in {1} columns took {2} ms",
+                        new Object[]{sampleRows, scannedColumns, (System.nanoTime() - start) / 1000000});
+            }
+            else {
+                scan(scanner, scannedColumns);
+            }
+            boolean sampled = sampleRows > 0 && sampleRows < scanner.getRowCount();
+            if (sampled) {
+                dataInsights.setSampleRowCount(sampleRows);
+            }
+            for (int i = 0; i < accumulators.size(); i++) {
+                ColumnAccumulator accumulator = accumulators.get(i);
+                if (accumulator == null) {
+                    profileSpec.retain(footerStats.get(i));
+                    dataInsights.getColumnStats().add(footerStats.get(i));
+                    continue;
+                }
+                ColumnStats columnStats = accumulator.finish();
+                if (sampled) {
+                    SampleEstimates.extrapolate(columnStats, (AbstractColumnAccumulator) accumulator,
+                            scanner.getRowCount(), sampleRows, sampleSpec.getConfidence());
+                }
+                // a sample stopped by the deadline is a smaller sample, the columns short of it are partial
+                if (markPartial(columnStats, accumulator, sampled ? sampleRows : scanner.getRowCount())) {
+                    dataInsights.setPartial(true);
+                }
+                profileSpec.retain(columnStats);
+                dataInsights.getColumnStats().add(columnStats);
+                if (metrics != null) {
+                    columnMetrics.get(i).finish((AbstractColumnAccumulator) accumulator);
+                    metrics.getColumnMetrics().add(columnMetrics.get(i));
+                }
+            }
+        }
+        finally {
+            // the accumulators not finished when the scan failed
+            for (ColumnAccumulator accumulator : accumulators) {
+                if (accumulator != null) {
+                    accumulator.release();
+                }
+            }
+        }
+    }
+
+    private DataInsights getDataInsightsFromTextFile(TextScanner scanner, List<FieldMetadata> fields) throws IOException {
+        long start = System.nanoTime();
+        ProfileMetrics metrics = newProfileMetrics(1);
+        DataInsights dataInsights = new DataInsights();
+        List<ColumnAccumulator> accumulators = new ArrayList<>();
+        List<ColumnMetrics> columnMetrics = new ArrayList<>();
+        try {
+            scanner.setScanControl(deadlineMillis > 0 ? new ScanControl(deadlineMillis) : null);
+            List<String> header = scanner.getHeader();
+            CardinalityCalculatorFactory factory = getCardinalityCalculatorFactory(metrics, profileSpec);
+            AccumulatorOptions options = profileSpec.getAccumulatorOptions(accumulatorOptions);
+            for (int i = 0; i < fields.size(); i++) {
+                FieldMetadata field = fields.get(i);
+                String originalColumnName = StringEscapeUtils.escapeJava(field.getFieldName());
+                if (!profileSpec.isSelected(originalColumnName)) {
+                    continue;
+                }
+                int index = header == null ? i : header.indexOf(field.getFieldName());
+                if (index < 0) {
+                    logger.log(Level.WARNING, "Text file has no column:" + field.getFieldName());
+                    addFailedColumn(metrics, originalColumnName);
+                    continue;
+                }
+                dataInsights.setColumnCount(dataInsights.getColumnCount() + 1);
+                String fieldType = convertOACDataType(field.getFieldType());
+                ColumnAccumulator accumulator = ColumnAccumulators.create(originalColumnName, fieldType, factory, options);
+                accumulators.add(accumulator);
+                ColumnMetrics metricsOfColumn = metrics == null ? null : new ColumnMetrics(originalColumnName);
+                columnMetrics.add(metricsOfColumn);
+                scanner.addColumn(index, accumulator, new TextValueParser(fieldType, getDecimalScale(field.getFieldType())), metricsOfColumn);
+            }
+            long scanStart = System.nanoTime();
+            if (scanMode == ScanMode.PARALLEL && scanner instanceof CsvScanner) {
+                ExecutorService executor = executorService == null ? ForkJoinPool.commonPool() : executorService;
+                ((CsvScanner) scanner).scanParallel(executor, getParallelism(executor));
+            }
+            else {
+                scanner.scan();
+            }
+            logger.log(Level.FINE, "Text scan of {0} rows in {1} columns took {2} ms",
+                    new Object[]{scanner.getRowCount(), accumulators.size(), (System.nanoTime() - scanStart) / 1000000});
+            dataInsights.setRowCount(scanner.getRowCount());
+            for (int i = 0; i < accumulators.size(); i++) {
+                ColumnAccumulator accumulator = accumulators.get(i);
+                ColumnStats columnStats = accumulator.finish();
+                // the rows of a stopped scan are the rows read, every column is partial
+                if (scanner.isStopped()) {
+                    columnStats.setPartial(true);
+                    columnStats.setScannedRowCount(scanner.getRowCount());
+                    dataInsights.setPartial(true);
+                }
+                profileSpec.retain(columnStats);
+                dataInsights.getColumnStats().add(columnStats);
+                if (metrics != null) {
+                    columnMetrics.get(i).finish((AbstractColumnAccumulator) accumulator);
+                    metrics.getColumnMetrics().add(columnMetrics.get(i));
+                }
+            }
+        }
+        finally {
+            // the accumulators not finished when the scan failed
+            for (ColumnAccumulator accumulator : accumulators) {
+                accumulator.release();
+            }
+        }
+        finishProfileMetrics(metrics, start, dataInsights);
+        return dataInsights;
+    }
+
+    /**
+     * Publish the statistics of the rows scanned so far, the accumulators are left as they are.
+     */
+    private void publishSnapshot(Consumer<DataInsights> snapshotListener, DataInsights dataInsights,
+                                        List<ColumnAccumulator> accumulators, List<ColumnStats> footerStats) {
+        DataInsights snapshot = new DataInsights();
+        snapshot.setRowCount(dataInsights.getRowCount());
+        snapshot.setColumnCount(dataInsights.getColumnCount());
+        try {
+            for (int i = 0; i < accumulators.size(); i++) {
+                ColumnAccumulator accumulator = accumulators.get(i);
+                if (accumulator == null) {
+                    snapshot.getColumnStats().add(footerStats.get(i));
+                    continue;
+                }
+                ColumnStats columnStats = accumulator.snapshot();
+                if (markPartial(columnStats, accumulator, dataInsights.getRowCount())) {
+                    snapshot.setPartial(true);
+                }
+                profileSpec.retain(columnStats);
+                snapshot.getColumnStats().add(columnStats);
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Profile snapshot failed", e);
+            return;
+        }
+        snapshotListener.accept(snapshot);
+    }
+
+    /**
+     * @return the statistics of the columns finished so far in {@link ScanMode#PER_COLUMN}, the missing columns
+     * make them partial.
+     */
+    private static DataInsights copyOf(DataInsights dataInsights) {
+        DataInsights snapshot = new DataInsights();
+        snapshot.setRowCount(dataInsights.getRowCount());
+        snapshot.setColumnCount(dataInsights.getColumnCount());
+        snapshot.setColumnStats(new ArrayList<>(dataInsights.getColumnStats()));
+        snapshot.setPartial(true);
+        return snapshot;
+    }
+
+    /**
+     * @param expectedRows the rows the accumulator has once the column is read in full.
+     * @return true if the column is partial.
+     */
+    private static boolean markPartial(ColumnStats columnStats, ColumnAccumulator accumulator, long expectedRows) {
+        long rows = ((AbstractColumnAccumulator) accumulator).getRowCount();
+        if (rows >= expectedRows) {
+            return false;
+        }
+        columnStats.setPartial(true);
+        columnStats.setScannedRowCount(rows);
+        return true;
+    }
+
+    /**
+     * @param metrics the metrics of the job, null when the scan is not measured.
+     * @param columnMetrics the metrics of the columns by field name, shared by the files of a dataset.
+     */
+    private ProfileState createProfileState(TempFile tempParquetFile, HashMap<String, String> fieldNameMap,
+                                            HashMap<String, String> fieldTypeMap, List<Type> expectedColumns,
+                                            boolean parallel, ProfileSpec spec, MemoryBudget budget,
+                                            ProfileMetrics metrics, Map<String, ColumnMetrics> columnMetrics) throws IOException {
+        ProfileState state = new ProfileState();
+        try (ParquetRowGroupScanner scanner = new ParquetRowGroupScanner(tempParquetFile.getPath())) {
+            if (expectedColumns != null && !expectedColumns.equals(scanner.getColumns())) {
+                throw new IllegalArgumentException("Parquet file " + tempParquetFile.getPath() + " columns "
+                        + scanner.getColumns() + " do not match the dataset columns " + expectedColumns);
+            }
+            state.setRowCount(scanner.getRowCount());
+            int scannedColumns = 0;
+            CardinalityCalculatorFactory factory = getCardinalityCalculatorFactory(metrics, spec, budget);
+            AccumulatorOptions options = spec.getAccumulatorOptions(accumulatorOptions);
+            for (Type type : scanner.getColumns()) {
+                String fieldName = type.getName();
+                if (!spec.isSelected(fieldNameMap.get(fieldName))) {
+                    continue;
+                }
+                state.setColumnCount(state.getColumnCount() + 1);
+                ColumnAccumulator accumulator = ColumnAccumulators.create(fieldNameMap.get(fieldName), fieldTypeMap.get(fieldName), factory, options);
+                try {
+                    scanner.addColumn(fieldName, accumulator, columnMetrics == null ? null
+                            : columnMetrics.computeIfAbsent(fieldNameMap.get(fieldName), ColumnMetrics::new));
+                    state.addColumn((AbstractColumnAccumulator) accumulator);
+                    scannedColumns++;
+                }
+                catch (IllegalArgumentException ex){
+                    logger.log(Level.WARNING, "Parquet column reader read failed on column:"+fieldName, ex);
+                    addFailedColumn(metrics, fieldNameMap.get(fieldName));
+                    accumulator.release();
+                }
+            }
+            if (parallel) {
+                scan(scanner, scannedColumns);
+            }
+            else {
+                scanner.scan();
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            state.release();
+            throw e;
+        }
+        return state;
+    }
+
+    /**
+     * Scan the files one per task, at most as many files are scanned or waiting to be merged as the executor
+     * runs tasks at the same time.
+     */
+    private ProfileState createProfileState(List<TempFile> tempParquetFiles, HashMap<String, String> fieldNameMap,
+                                            HashMap<String, String> fieldTypeMap, ProfileMetrics metrics,
+                                            Map<String, ColumnMetrics> columnMetrics) throws IOException {
+        ExecutorService executor = executorService == null ? ForkJoinPool.commonPool() : executorService;
+        int parallelism = Math.max(1, getParallelism(executor));
+        List<Type> columns = ParquetAvroUtils.getParquetFileColumns(tempParquetFiles.get(0).getPath());
+        // the states of the files are held until they are merged, the files reserve as one job
+        MemoryBudget budget = newJobMemoryBudget();
+        Deque<Future<ProfileState>> pending = new ArrayDeque<>();
+        int next = 0;
+        ProfileState state = null;
+        try {
+            while (next < tempParquetFiles.size() && pending.size() < parallelism) {
+                TempFile tempParquetFile = tempParquetFiles.get(next++);
+                pending.add(executor.submit(() -> createProfileState(tempParquetFile, fieldNameMap, fieldTypeMap, columns, false, profileSpec, budget, metrics, columnMetrics)));
+            }
+            while (!pending.isEmpty()) {
+                ProfileState fileState = waitFor(pending.poll());
+                if (next < tempParquetFiles.size()) {
+                    TempFile tempParquetFile = tempParquetFiles.get(next++);
+                    pending.add(executor.submit(() -> createProfileState(tempParquetFile, fieldNameMap, fieldTypeMap, columns, false, profileSpec, budget, metrics, columnMetrics)));
+                }
+                if (state == null) {
+                    state = fileState;
+                }
+                else {
+                    state.merge(fileState);
+                }
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            if (state != null) {
+                state.release();
+            }
+            throw e;
+        }
+        finally {
+            for (Future<ProfileState> future : pending) {
+                future.cancel(true);
+                releaseState(future);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Release the state of a file task that completed but was not merged.
+     */
+    private static void releaseState(Future<ProfileState> future) {
+        if (!future.isDone() || future.isCancelled()) {
+            return;
+        }
+        try {
+            future.get().release();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            // the failed task released its state
+        }
+    }
+
+    private static Map<String, List<TempFile>> listParquetDataset(String directory) throws IOException {
+        Path root = Paths.get(directory);
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(root)) {
+            paths = walk.filter(Files::isRegularFile)
+                    .filter(path -> isDatasetFile(root.relativize(path)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        Map<String, List<TempFile>> partitions = new TreeMap<>();
+        for (Path path : paths) {
+            StringBuilder partition = new StringBuilder();
+            Path parent = root.relativize(path).getParent();
+            if (parent != null) {
+                for (Path segment : parent) {
+                    if (segment.toString().indexOf('=') > 0) {
+                        partition.append(partition.length() == 0 ? "" : "/").append(segment);
+                    }
+                }
+            }
+            partitions.computeIfAbsent(partition.toString(), key -> new ArrayList<>()).add(new TempFile(path.toString()));
+        }
+        if (partitions.isEmpty()) {
+            throw new IllegalArgumentException("No parquet file in " + directory);
+        }
+        return partitions;
+    }
+
+    // skips the files and directories of the writers, like _SUCCESS, _temporary or .crc files
+    private static boolean isDatasetFile(Path relativePath) {
+        for (Path segment : relativePath) {
+            if (segment.toString().startsWith("_") || segment.toString().startsWith(".")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <T> T waitFor(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the parquet scan tasks");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private void scan(ParquetRowGroupScanner scanner, int scannedColumns) throws IOException {
+        long start = System.nanoTime();
+        if (scanMode == ScanMode.PARALLEL) {
+            ExecutorService executor = executorService == null ? ForkJoinPool.commonPool() : executorService;
+            int parallelism = getParallelism(executor);
+            scanner.scanParallel(executor, parallelism);
+            logger.log(Level.FINE, "Parallel scan of {0} columns with parallelism {1} took {2} ms",
+                    new Object[]{scannedColumns, parallelism, (System.nanoTime() - start) / 1000000});
+        }
+        else {
+            scanner.scan();
+            logger.log(Level.FINE, "Single pass scan of {0} columns took {1} ms",
+                    new Object[]{scannedColumns, (System.nanoTime() - start) / 1000000});
+        }
+    }
+
     private void calColumnStats(DataInsights dataInsights, String originalFieldName, String fieldName, String fieldType,
-                                TempFile tempParquetFile) throws IOException{
+                                TempFile tempParquetFile, ProfileMetrics metrics, ScanControl scanControl) throws IOException{
+        if (scanControl != null && scanControl.isStopped()) {
+            // the columns after the stop are not opened, they are listed without rows
+            ColumnStats columnStats = ColumnAccumulators.create(originalFieldName, fieldType, CardinalityCalculatorFactory.NONE, accumulatorOptions).finish();
+            columnStats.setPartial(true);
+            columnStats.setScannedRowCount(0L);
+            dataInsights.setPartial(true);
+            dataInsights.getColumnStats().add(columnStats);
+            return;
+        }
+        ColumnAccumulator accumulator = null;
         try (ParquetColumnReader reader = new ParquetColumnReaderImpl(tempParquetFile.getPath(), fieldName)) {
-            ColumnStats columnStats = new ColumnStats();
-            columnStats.setFieldName(originalFieldName);
-            columnStats.setDataType(fieldType);
-            CardinalityCalculator cardinalityCalculator = new MemoryCardinalityCalculator(fieldType);
+            accumulator = ColumnAccumulators.create(originalFieldName, fieldType,
+                    getCardinalityCalculatorFactory(metrics, profileSpec), profileSpec.getAccumulatorOptions(accumulatorOptions));
+            long start = System.nanoTime();
             long currentRowNum = 0;
-            long totalLength = 0;
-            while (reader.hasNext()) {
-                Object data = reader.next();
+            long sampledNanos = 0;
+            long sampledRows = 0;
+            boolean stopped = false;
+            while (!stopped && reader.hasNext()) {
+                Object value = reader.next();
+                // the accumulation of some rows is timed when measured, the rest is the reading
+                if (metrics != null && currentRowNum % MeteredCardinalityCalculator.SAMPLE_INTERVAL == 0) {
+                    long addStart = System.nanoTime();
+                    accumulator.add(value);
+                    sampledNanos += System.nanoTime() - addStart;
+                    sampledRows ++;
+                }
+                else {
+                    accumulator.add(value);
+                }
                 currentRowNum ++;
+                if ((currentRowNum & 4095) == 0 && scanControl != null) {
+                    stopped = scanControl.isStopped();
+                }
+            }
+            ColumnStats columnStats = accumulator.finish();
+            if (stopped && reader.hasNext()) {
+                columnStats.setPartial(true);
+                columnStats.setScannedRowCount(currentRowNum);
+                dataInsights.setPartial(true);
+            }
+            else {
                 dataInsights.setRowCount(currentRowNum);
-                if (data != null) {
-                    cardinalityCalculator.add(data);
-                    totalLength += String.valueOf(data).length();
-                }
-                recordDataStats(columnStats, data, currentRowNum, totalLength);
-            }
-            columnStats.setCardinality(cardinalityCalculator.count());
-            if (fieldType.equals("timestamp")){
-                LocalDateTime minTimestamp = (LocalDateTime) columnStats.getMin();
-                LocalDateTime maxTimestamp = (LocalDateTime) columnStats.getMax();
-                columnStats.setMin(minTimestamp.format(localDateTimeFormatter));
-                columnStats.setMax(maxTimestamp.format(localDateTimeFormatter));
-            }
-            else if (fieldType.equals("date")){
-                LocalDate minDate = (LocalDate) columnStats.getMin();
-                LocalDate maxDate = (LocalDate) columnStats.getMax();
-                columnStats.setMin(minDate.format(localDateFormatter));
-                columnStats.setMax(maxDate.format(localDateFormatter));
-            }
-            else if (fieldType.equals("time")){
-                LocalDateTime minTime = (LocalDateTime) columnStats.getMin();
-                LocalDateTime maxTime = (LocalDateTime) columnStats.getMax();
-                columnStats.setMin(minTime.format(timeFormatter));
-                columnStats.setMax(maxTime.format(timeFormatter));
             }
+            profileSpec.retain(columnStats);
             dataInsights.getColumnStats().add(columnStats);
+            if (metrics != null) {
+                long accumulationNanos = sampledRows == 0 ? 0 : (long) ((double) sampledNanos * currentRowNum / sampledRows);
+                ColumnMetrics columnMetrics = new ColumnMetrics(originalFieldName);
+                columnMetrics.addRowGroup(currentRowNum, 0, 0, Math.max(0, System.nanoTime() - start - accumulationNanos), accumulationNanos);
+                columnMetrics.finish((AbstractColumnAccumulator) accumulator);
+                metrics.getColumnMetrics().add(columnMetrics);
+            }
         }
         catch (IllegalArgumentException ex){
             logger.log(Level.WARNING, "Parquet column reader read failed on column:"+fieldName, ex);
+            addFailedColumn(metrics, originalFieldName);
+        }
+        finally {
+            if (accumulator != null) {
+                accumulator.release();
+            }
+        }
+    }
+
+    /**
+     * @param metrics the metrics of the job, null when the scan is not measured.
+     * @param spec the profile spec of the job.
+     * @return the factory of the distinct count calculators of the job.
+     */
+    CardinalityCalculatorFactory getCardinalityCalculatorFactory(ProfileMetrics metrics, ProfileSpec spec) {
+        return getCardinalityCalculatorFactory(metrics, spec, newJobMemoryBudget());
+    }
+
+    /**
+     * @param budget the view of the memory budget of the job, null for none.
+     */
+    private CardinalityCalculatorFactory getCardinalityCalculatorFactory(ProfileMetrics metrics, ProfileSpec spec,
+                                                                         MemoryBudget budget) {
+        CardinalityCalculatorFactory factory = spec.getCardinalityCalculatorFactory(
+                CardinalityCalculatorFactory.withResources(cardinalityCalculatorFactory, budget, executorService));
+        return metrics == null ? factory : MeteredCardinalityCalculator.factory(factory);
+    }
+
+    /**
+     * @return the view of the memory budget the calculators of a new job reserve from, null for none.
+     */
+    private MemoryBudget newJobMemoryBudget() {
+        return memoryBudget == null ? null : memoryBudget.forJob();
+    }
+
+    /**
+     * @return the metrics of a new job, null when there is no one to read them.
+     */
+    ProfileMetrics newProfileMetrics(int fileCount) {
+        if (profileListener == null && !metricsIncluded) {
+            return null;
         }
+        ProfileMetrics metrics = new ProfileMetrics();
+        metrics.setScanMode(scanMode.name());
+        metrics.setFileCount(fileCount);
+        return metrics;
+    }
 
+    void finishProfileMetrics(ProfileMetrics metrics, long start, DataInsights dataInsights) {
+        if (metrics == null) {
+            return;
+        }
+        metrics.setRowCount(dataInsights.getRowCount());
+        metrics.setWallNanos(System.nanoTime() - start);
+        if (metricsIncluded) {
+            dataInsights.setMetrics(metrics);
+        }
+        if (profileListener != null) {
+            try {
+                profileListener.profiled(metrics);
+            }
+            catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Profile listener failed", e);
+            }
+        }
     }
 
-    private String convertOACDataType(String oacType){
+    // the files of a dataset scanned concurrently fail on the same columns
+    private static void addFailedColumn(ProfileMetrics metrics, String fieldName) {
+        if (metrics == null) {
+            return;
+        }
+        synchronized (metrics) {
+            if (!metrics.getFailedColumns().contains(fieldName)) {
+                metrics.getFailedColumns().add(fieldName);
+            }
+        }
+    }
+
+    private static int getParallelism(ExecutorService executor) {
+        if (executor instanceof ForkJoinPool) {
+            return ((ForkJoinPool) executor).getParallelism();
+        }
+        if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private void mapFields(List<FieldMetadata> fields, HashMap<String, String> fieldNameMap, HashMap<String, String> fieldTypeMap) {
+        Schema sc = SchemaConverter.toAvroSchema(fields);
+        List<Schema.Field> schemaList = sc.getFields();
+        for (int i=0; i<fields.size(); i++){
+            String originalColumnName = StringEscapeUtils.escapeJava(fields.get(i).getFieldName());
+            String fieldName = schemaList.get(i).name();
+            String fieldType = convertOACDataType(fields.get(i).getFieldType());
+            fieldNameMap.put(fieldName, originalColumnName);
+            fieldTypeMap.put(fieldName, fieldType);
+        }
+    }
+
+    static String convertOACDataType(String oacType){
         String type = "";
         String lowerCaseType = oacType.toLowerCase();
         if (lowerCaseType.startsWith("varchar")){
@@ -143,78 +1077,12 @@ public class Calculator {
         return type;
     }
 
-    private void recordDataStats(ColumnStats columnStats, Object data, long currentRowNumber, long totalLength) {
-        if (data == null) {
-            addNullValueCount(columnStats);
-            return;
-        }
-
-        String dataStr = String.valueOf(data);
-        if (!columnStats.getDataType().equals("string") && StringUtils.isEmpty(dataStr)) {
-            addNullValueCount(columnStats);
-            return;
-        }
-
-        switch (columnStats.getDataType()) {
-            case "double":
-                columnStats.setSum(columnStats.getSum() == null ? (Double)data : (Double) columnStats.getSum() + (Double)data);
-                columnStats.setMean((double) columnStats.getSum() / currentRowNumber);
-                columnStats.setMin(Math.min(columnStats.getMin() == null ? (Double)data: (Double) columnStats.getMin(), (Double)data));
-                columnStats.setMax(Math.max(columnStats.getMax() == null ? (Double)data : (Double) columnStats.getMax(), (Double)data));
-                break;
-            case "integer":
-                columnStats.setSum(columnStats.getSum() == null ? ((Integer)data).longValue() : (Long) columnStats.getSum() + ((Integer)data).longValue());
-                columnStats.setMean(((Long)columnStats.getSum()).doubleValue() / currentRowNumber );
-                columnStats.setMin(Math.min(columnStats.getMin() == null ? Integer.parseInt(dataStr): Integer.valueOf(columnStats.getMin().toString()), Integer.parseInt(dataStr)));
-                columnStats.setMax(Math.max(columnStats.getMax() == null ? Integer.parseInt(dataStr) : Integer.valueOf(columnStats.getMax().toString()), Integer.parseInt(dataStr)));
-                break;
-            case "decimal":
-                BigDecimal value = (BigDecimal)data;
-                columnStats.setSum(columnStats.getSum() == null ? value : ((BigDecimal)columnStats.getSum()).add(value));
-                columnStats.setMean(((BigDecimal) columnStats.getSum()).divide(new BigDecimal(currentRowNumber), RoundingMode.UP ));
-                BigDecimal orgMin = columnStats.getMin() == null ? value: (BigDecimal)columnStats.getMin();
-                BigDecimal orgMax = columnStats.getMax() == null ? value: (BigDecimal)columnStats.getMax();
-                columnStats.setMin(value.min(orgMin));
-                columnStats.setMax(value.max(orgMax));
-                break;
-            case "timestamp":
-                LocalDateTime timestamp = (LocalDateTime) data;
-                if (columnStats.getMin() == null || ((LocalDateTime)columnStats.getMin()).isAfter(timestamp)) {
-                    columnStats.setMin(timestamp);
-                }
-                if (columnStats.getMax() == null || ((LocalDateTime)columnStats.getMax()).isBefore(timestamp)) {
-                    columnStats.setMax(timestamp);
-                }
-                break;
-            case "date":
-                LocalDate date = (LocalDate) data;
-                if (columnStats.getMin() == null || ((LocalDate)columnStats.getMin()).isAfter(date)) {
-                    columnStats.setMin(date);
-                }
-                if (columnStats.getMax() == null || ((LocalDate)columnStats.getMax()).isBefore(date)) {
-                    columnStats.setMax(date);
-                }
-                break;
-            case "time":
-                LocalDateTime time = (LocalDateTime) data;
-                if (columnStats.getMin() == null || ((LocalDateTime)columnStats.getMin()).isAfter(time)) {
-                    columnStats.setMin(time);
-                }
-                if (columnStats.getMax() == null || ((LocalDateTime)columnStats.getMax()).isBefore(time)) {
-                    columnStats.setMax(time);
-                }
-                break;
-            case "string":
-                columnStats.setAvgColumnLen( totalLength / currentRowNumber );
-                break;
-            default:
-                break;
-        }
-    }
-
-    private void addNullValueCount(ColumnStats columnStats){
-        long count = columnStats.getNullValueCount();
-        columnStats.setNullValueCount(count + 1);
+    /**
+     * @return the scale of a number type like number(18,4), -1 when the type has none.
+     */
+    private static int getDecimalScale(String oacType) {
+        Matcher matcher = DECIMAL_SCALE.matcher(oacType.toLowerCase());
+        return matcher.lookingAt() ? Integer.parseInt(matcher.group(1)) : -1;
     }
 
     public static long getLocalDateTimeMillis(LocalDateTime localDateTime){
@@ -224,4 +1092,12 @@ public class Calculator {
     public static long getLocalDateMillis(LocalDate localDate){
         return localDate.atStartOfDay().toInstant(ZoneOffset.ofHours(0)).toEpochMilli();
     }
+
+    public static LocalDateTime getLocalDateTime(long millis){
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L), (int) Math.floorMod(millis, 1000L) * 1000000, ZoneOffset.ofHours(0));
+    }
+
+    public static LocalDate getLocalDate(long millis){
+        return LocalDate.ofEpochDay(Math.floorDiv(millis, MILLIS_PER_DAY));
+    }
 }
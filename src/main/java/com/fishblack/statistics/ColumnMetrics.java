@@ -0,0 +1,172 @@
+package com.fishblack.statistics;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fishblack.statistics.accumulator.AbstractColumnAccumulator;
+import com.fishblack.statistics.cardinality.CardinalityCalculator;
+import com.fishblack.statistics.cardinality.MeteredCardinalityCalculator;
+
+
+/**
+ * How long the scan of one column took and what it read, see {@link ProfileMetrics}.
+ * The read time is the time reading the row groups from the file, shared between the columns by their compressed
+ * bytes. The decode time covers the decompression and decoding of the pages, the accumulation time the statistics
+ * of the values but for the distinct count, whose time is the cardinality time. The accumulation and cardinality
+ * times are estimated by timing one value out of {@value MeteredCardinalityCalculator#SAMPLE_INTERVAL}.
+ * The counts are added by every row group task of a scan, so they are added under a lock.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+public class ColumnMetrics {
+
+    private String fieldName;
+    private long rowCount;
+    private long byteCount;
+    private long readNanos;
+    private long decodeNanos;
+    private long accumulationNanos;
+    private long cardinalityNanos;
+    private long peakCardinalityMemory;
+    private int spillCount;
+    private long spillBytes;
+
+    public ColumnMetrics() {
+    }
+
+    public ColumnMetrics(String fieldName) {
+        this.fieldName = fieldName;
+    }
+
+    /**
+     * Add the metrics of the column in one row group.
+     * @param rows the rows read.
+     * @param bytes the compressed bytes of the column chunk.
+     * @param readNanos the share of the column in the time reading the row group.
+     * @param decodeNanos the time decoding the values.
+     * @param accumulationNanos the time accumulating the values, cardinality included.
+     */
+    public synchronized void addRowGroup(long rows, long bytes, long readNanos, long decodeNanos, long accumulationNanos) {
+        this.rowCount += rows;
+        this.byteCount += bytes;
+        this.readNanos += readNanos;
+        this.decodeNanos += decodeNanos;
+        this.accumulationNanos += accumulationNanos;
+    }
+
+    /**
+     * Take the time, memory and spills of the distinct count of a finished accumulator, the cardinality time is
+     * taken out of the accumulation time.
+     * @param accumulator the accumulator of the column.
+     */
+    public synchronized void finish(AbstractColumnAccumulator accumulator) {
+        CardinalityCalculator calculator = accumulator.getCardinalityCalculator();
+        MeteredCardinalityCalculator metered = MeteredCardinalityCalculator.of(calculator);
+        if (metered != null) {
+            cardinalityNanos = metered.getNanos();
+            accumulationNanos = Math.max(0, accumulationNanos - cardinalityNanos);
+        }
+        peakCardinalityMemory = calculator.getPeakMemoryUsage();
+        spillCount = calculator.getSpillCount();
+        spillBytes = calculator.getSpillBytes();
+    }
+
+    @JsonProperty("name")
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public void setFieldName(String fieldName) {
+        this.fieldName = fieldName;
+    }
+
+    @JsonProperty("rows")
+    public synchronized long getRowCount() {
+        return rowCount;
+    }
+
+    public synchronized void setRowCount(long rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * @return the compressed bytes of the column read from the file.
+     */
+    @JsonProperty("bytes")
+    public synchronized long getByteCount() {
+        return byteCount;
+    }
+
+    public synchronized void setByteCount(long byteCount) {
+        this.byteCount = byteCount;
+    }
+
+    @JsonProperty("read_nanos")
+    public synchronized long getReadNanos() {
+        return readNanos;
+    }
+
+    public synchronized void setReadNanos(long readNanos) {
+        this.readNanos = readNanos;
+    }
+
+    @JsonProperty("decode_nanos")
+    public synchronized long getDecodeNanos() {
+        return decodeNanos;
+    }
+
+    public synchronized void setDecodeNanos(long decodeNanos) {
+        this.decodeNanos = decodeNanos;
+    }
+
+    @JsonProperty("accumulation_nanos")
+    public synchronized long getAccumulationNanos() {
+        return accumulationNanos;
+    }
+
+    public synchronized void setAccumulationNanos(long accumulationNanos) {
+        this.accumulationNanos = accumulationNanos;
+    }
+
+    @JsonProperty("cardinality_nanos")
+    public synchronized long getCardinalityNanos() {
+        return cardinalityNanos;
+    }
+
+    public synchronized void setCardinalityNanos(long cardinalityNanos) {
+        this.cardinalityNanos = cardinalityNanos;
+    }
+
+    /**
+     * @return the most bytes the distinct count held in memory at once, -1 if the calculator does not tell.
+     */
+    @JsonProperty("peak_cardinality_memory")
+    public synchronized long getPeakCardinalityMemory() {
+        return peakCardinalityMemory;
+    }
+
+    public synchronized void setPeakCardinalityMemory(long peakCardinalityMemory) {
+        this.peakCardinalityMemory = peakCardinalityMemory;
+    }
+
+    /**
+     * @return the number of runs of distinct values written to disk.
+     */
+    @JsonProperty("spills")
+    public synchronized int getSpillCount() {
+        return spillCount;
+    }
+
+    public synchronized void setSpillCount(int spillCount) {
+        this.spillCount = spillCount;
+    }
+
+    @JsonProperty("spill_bytes")
+    public synchronized long getSpillBytes() {
+        return spillBytes;
+    }
+
+    public synchronized void setSpillBytes(long spillBytes) {
+        this.spillBytes = spillBytes;
+    }
+}
@@ -4,8 +4,13 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -13,16 +18,31 @@ import java.util.logging.Logger;
 @JsonInclude(JsonInclude.Include.NON_DEFAULT)
 public class ColumnStats {
     private static final Logger logger = Logger.getLogger(ColumnStats.class.getName());
+    private static final ObjectWriter JSON_WRITER = DataInsights.JSON_MAPPER.writerFor(ColumnStats.class);
 
     private String fieldName;
     private String dataType;
     private long cardinality;
+    private boolean cardinalityEstimated;
     private long nullValueCount;
     private long avgColumnLen;
     private Object min;
     private Object max;
     private Object mean;
     private Object sum;
+    private Double variance;
+    private Double stdDev;
+    private Double skewness;
+    private Double kurtosis;
+    private List<String> estimatedFields;
+    private boolean partial;
+    private Long scannedRowCount;
+    private double[] meanInterval;
+    private long[] cardinalityInterval;
+    private Map<String, Object> percentiles;
+    private List<FrequentValue> topValues;
+    private Histogram histogram;
+    private Histogram equiDepthHistogram;
 
     @JsonProperty("name")
     public String getFieldName() {
@@ -60,6 +80,15 @@ public class ColumnStats {
         this.cardinality = cardinality;
     }
     
+    @JsonProperty("distinct_estimated")
+    public boolean isCardinalityEstimated() {
+        return cardinalityEstimated;
+    }
+
+    public void setCardinalityEstimated(boolean cardinalityEstimated) {
+        this.cardinalityEstimated = cardinalityEstimated;
+    }
+
     @JsonProperty("min")
     public Object getMin() {
         return min;
@@ -96,6 +125,51 @@ public class ColumnStats {
         this.mean = mean;
     }
 
+    /**
+     * @return the sample variance of a numeric column.
+     */
+    @JsonProperty("variance")
+    public Double getVariance() {
+        return variance;
+    }
+
+    public void setVariance(Double variance) {
+        this.variance = variance;
+    }
+
+    @JsonProperty("stddev")
+    public Double getStdDev() {
+        return stdDev;
+    }
+
+    public void setStdDev(Double stdDev) {
+        this.stdDev = stdDev;
+    }
+
+    /**
+     * @return the skewness of a numeric column, null when its values are all equal.
+     */
+    @JsonProperty("skewness")
+    public Double getSkewness() {
+        return skewness;
+    }
+
+    public void setSkewness(Double skewness) {
+        this.skewness = skewness;
+    }
+
+    /**
+     * @return the excess kurtosis of a numeric column, 0 for a normal distribution, null when its values are all equal.
+     */
+    @JsonProperty("kurtosis")
+    public Double getKurtosis() {
+        return kurtosis;
+    }
+
+    public void setKurtosis(Double kurtosis) {
+        this.kurtosis = kurtosis;
+    }
+
     @JsonProperty("avg_len")
     public long getAvgColumnLen() {
         return avgColumnLen;
@@ -105,16 +179,144 @@ public class ColumnStats {
         this.avgColumnLen = avgColumnLen;
     }
 
+    /**
+     * @return the names of the fields that are extrapolated from a sample, null when the column was fully read.
+     */
+    @JsonProperty("estimated")
+    public List<String> getEstimatedFields() {
+        return estimatedFields;
+    }
+
+    public void setEstimatedFields(List<String> estimatedFields) {
+        this.estimatedFields = estimatedFields;
+    }
+
+    /**
+     * @return true when the scan of the column stopped before its last row, on a snapshot, a deadline or a
+     * cancellation. The statistics then only cover the first {@link #getScannedRowCount()} rows.
+     */
+    @JsonProperty("partial")
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+
+    /**
+     * @return the number of rows the statistics were computed on when the column is partial, null otherwise.
+     */
+    @JsonProperty("scanned_rows")
+    public Long getScannedRowCount() {
+        return scannedRowCount;
+    }
+
+    public void setScannedRowCount(Long scannedRowCount) {
+        this.scannedRowCount = scannedRowCount;
+    }
+
+    /**
+     * @return the confidence interval of the mean estimated from a sample.
+     */
+    @JsonProperty("mean_ci")
+    public double[] getMeanInterval() {
+        return meanInterval;
+    }
+
+    public void setMeanInterval(double[] meanInterval) {
+        this.meanInterval = meanInterval;
+    }
+
+    /**
+     * @return the bounds of the distinct count estimated from a sample.
+     */
+    @JsonProperty("distinct_ci")
+    public long[] getCardinalityInterval() {
+        return cardinalityInterval;
+    }
+
+    public void setCardinalityInterval(long[] cardinalityInterval) {
+        this.cardinalityInterval = cardinalityInterval;
+    }
+
+    /**
+     * @return the percentiles of a numeric or temporal column by name, p50 for the median, formatted like min and max.
+     */
+    @JsonProperty("percentiles")
+    public Map<String, Object> getPercentiles() {
+        return percentiles;
+    }
+
+    public void setPercentiles(Map<String, Object> percentiles) {
+        this.percentiles = percentiles;
+    }
+
+    /**
+     * @return the most frequent values of the column by decreasing count, formatted like min and max.
+     */
+    @JsonProperty("top_values")
+    public List<FrequentValue> getTopValues() {
+        return topValues;
+    }
+
+    public void setTopValues(List<FrequentValue> topValues) {
+        this.topValues = topValues;
+    }
+
+    /**
+     * @return the equi-width histogram of a numeric or temporal column, see
+     * {@link com.fishblack.statistics.accumulator.EquiWidthHistogram}.
+     */
+    @JsonProperty("histogram")
+    public Histogram getHistogram() {
+        return histogram;
+    }
+
+    public void setHistogram(Histogram histogram) {
+        this.histogram = histogram;
+    }
+
+    /**
+     * @return the histogram whose buckets hold about the same number of rows, bounded by the percentiles of the column.
+     */
+    @JsonProperty("equi_depth_histogram")
+    public Histogram getEquiDepthHistogram() {
+        return equiDepthHistogram;
+    }
+
+    public void setEquiDepthHistogram(Histogram equiDepthHistogram) {
+        this.equiDepthHistogram = equiDepthHistogram;
+    }
+
     /**
      * Generate Json string of this result.
      * @return Json string of this result.
      */
     public String toJSON() {
         try {
-            return (new ObjectMapper()).writeValueAsString(this);
+            return JSON_WRITER.writeValueAsString(this);
         } catch (JsonProcessingException e) {
             logger.log(Level.WARNING, "Cannot convert ColumnStats to JSON", e);
             return "[Cannot convert ColumnStats to JSON]";
         }
     }
+
+    /**
+     * Write the Json of this result as UTF-8 without building it as a string, the stream is not closed.
+     * @param outputStream
+     * @throws IOException
+     */
+    public void writeJSON(OutputStream outputStream) throws IOException {
+        JSON_WRITER.writeValue(outputStream, this);
+    }
+
+    /**
+     * Write the Json of this result without building it as a string, the writer is not closed.
+     * @param writer
+     * @throws IOException
+     */
+    public void writeJSON(Writer writer) throws IOException {
+        JSON_WRITER.writeValue(writer, this);
+    }
 }
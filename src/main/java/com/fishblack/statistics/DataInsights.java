@@ -3,9 +3,15 @@ package com.fishblack.statistics;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
@@ -15,10 +21,16 @@ import java.util.logging.Logger;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class DataInsights {
     private static final Logger logger = Logger.getLogger(DataInsights.class.getName());
+    // configured once, the writers built from it are immutable and shared by all threads
+    static final ObjectMapper JSON_MAPPER = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final ObjectWriter JSON_WRITER = JSON_MAPPER.writerFor(DataInsights.class);
 
     private long rowCount;
     private int columnCount;
+    private Long sampleRowCount;
+    private boolean partial;
     private List<ColumnStats> columnStats = new ArrayList<>();
+    private ProfileMetrics metrics;
 
     @JsonProperty("rows")
     public long getRowCount() {
@@ -38,6 +50,31 @@ public class DataInsights {
         this.columnCount = columnCount;
     }
 
+    /**
+     * @return the number of rows the statistics were computed on when only a sample was read, null otherwise.
+     */
+    @JsonProperty("sample_rows")
+    public Long getSampleRowCount() {
+        return sampleRowCount;
+    }
+
+    public void setSampleRowCount(Long sampleRowCount) {
+        this.sampleRowCount = sampleRowCount;
+    }
+
+    /**
+     * @return true when some of the columns are partial, see {@link ColumnStats#isPartial()}.
+     */
+    @JsonProperty("partial")
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+
     @JsonProperty("stats")
     public List<ColumnStats> getColumnStats() {
         return columnStats;
@@ -47,16 +84,67 @@ public class DataInsights {
         this.columnStats = columnStats;
     }
 
+    /**
+     * @return the metrics of the scan when the calculator included them, null otherwise.
+     */
+    @JsonProperty("metrics")
+    public ProfileMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(ProfileMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * Generate Json string of this result.
      * @return Json string of this result.
      */
     public String toJSON() {
         try {
-            return (new ObjectMapper()).writeValueAsString(this);
+            return JSON_WRITER.writeValueAsString(this);
         } catch (JsonProcessingException e) {
             logger.log(Level.WARNING, "Cannot convert ConvertDataInsights to JSON", e);
             return "[Cannot convert ConvertDataInsights to JSON]";
         }
     }
+
+    /**
+     * Write the Json of this result as UTF-8 without building it as a string, the stream is not closed.
+     * @param outputStream
+     * @throws IOException
+     */
+    public void writeJSON(OutputStream outputStream) throws IOException {
+        JSON_WRITER.writeValue(outputStream, this);
+    }
+
+    /**
+     * Write the Json of this result without building it as a string, the writer is not closed.
+     * @param writer
+     * @throws IOException
+     */
+    public void writeJSON(Writer writer) throws IOException {
+        JSON_WRITER.writeValue(writer, this);
+    }
+
+    /**
+     * Write this result in a compact binary form that {@link #readBinary(InputStream)} reads back exactly, the
+     * stream is not closed.
+     * @param outputStream
+     * @throws IOException
+     * @throws IllegalArgumentException if a statistic holds a value of a type the column stats do not use.
+     */
+    public void writeBinary(OutputStream outputStream) throws IOException {
+        DataInsightsBinary.write(this, outputStream);
+    }
+
+    /**
+     * Read a result written by {@link #writeBinary(OutputStream)}, the stream is not closed.
+     * @param inputStream
+     * @return the result.
+     * @throws IOException
+     */
+    public static DataInsights readBinary(InputStream inputStream) throws IOException {
+        return DataInsightsBinary.read(inputStream);
+    }
 }
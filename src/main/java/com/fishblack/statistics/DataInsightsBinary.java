@@ -0,0 +1,549 @@
+package com.fishblack.statistics;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The binary form of {@link DataInsights}, see {@link DataInsights#writeBinary(OutputStream)}.
+ * Counts are varints, doubles are their raw bits and the values of the columns are tagged with their type, so that
+ * reading gives back the same objects. A column writes a bit mask of its set fields then only these fields.
+ */
+final class DataInsightsBinary {
+
+    private static final int MAGIC = 0x45534449;
+    private static final int VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte INTEGER = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte DECIMAL = 4;
+    private static final byte BIG_DECIMAL = 5;
+    private static final byte STRING = 6;
+    private static final byte BOOLEAN = 7;
+
+    private static final int SAMPLE_ROWS = 1;
+    private static final int PARTIAL = 1 << 1;
+    private static final int METRICS = 1 << 2;
+
+    // the fields of a column in the order they are written
+    private static final int TYPE = 1;
+    private static final int DISTINCT = 1 << 1;
+    private static final int DISTINCT_ESTIMATED = 1 << 2;
+    private static final int NULLS = 1 << 3;
+    private static final int AVG_LEN = 1 << 4;
+    private static final int MIN = 1 << 5;
+    private static final int MAX = 1 << 6;
+    private static final int MEAN = 1 << 7;
+    private static final int SUM = 1 << 8;
+    private static final int VARIANCE = 1 << 9;
+    private static final int STDDEV = 1 << 10;
+    private static final int SKEWNESS = 1 << 11;
+    private static final int KURTOSIS = 1 << 12;
+    private static final int ESTIMATED = 1 << 13;
+    private static final int COLUMN_PARTIAL = 1 << 14;
+    private static final int SCANNED_ROWS = 1 << 15;
+    private static final int MEAN_CI = 1 << 16;
+    private static final int DISTINCT_CI = 1 << 17;
+    private static final int PERCENTILES = 1 << 18;
+    private static final int TOP_VALUES = 1 << 19;
+    private static final int HISTOGRAM = 1 << 20;
+    private static final int EQUI_DEPTH_HISTOGRAM = 1 << 21;
+
+    private DataInsightsBinary() {
+    }
+
+    static void write(DataInsights dataInsights, OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        int flags = (dataInsights.getSampleRowCount() != null ? SAMPLE_ROWS : 0)
+                | (dataInsights.isPartial() ? PARTIAL : 0)
+                | (dataInsights.getMetrics() != null ? METRICS : 0);
+        out.writeByte(flags);
+        writeVarLong(out, dataInsights.getRowCount());
+        writeVarLong(out, dataInsights.getColumnCount());
+        if (dataInsights.getSampleRowCount() != null) {
+            writeVarLong(out, dataInsights.getSampleRowCount());
+        }
+        List<ColumnStats> columnStats = dataInsights.getColumnStats();
+        writeVarLong(out, columnStats == null ? 0 : columnStats.size());
+        if (columnStats != null) {
+            for (ColumnStats stats : columnStats) {
+                writeColumnStats(out, stats);
+            }
+        }
+        if (dataInsights.getMetrics() != null) {
+            writeMetrics(out, dataInsights.getMetrics());
+        }
+        out.flush();
+    }
+
+    static DataInsights read(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not binary data insights");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary data insights version " + version);
+        }
+        int flags = in.readUnsignedByte();
+        DataInsights dataInsights = new DataInsights();
+        dataInsights.setPartial((flags & PARTIAL) != 0);
+        dataInsights.setRowCount(readVarLong(in));
+        dataInsights.setColumnCount((int) readVarLong(in));
+        if ((flags & SAMPLE_ROWS) != 0) {
+            dataInsights.setSampleRowCount(readVarLong(in));
+        }
+        int count = readSize(in);
+        for (int i = 0; i < count; i++) {
+            dataInsights.getColumnStats().add(readColumnStats(in));
+        }
+        if ((flags & METRICS) != 0) {
+            dataInsights.setMetrics(readMetrics(in));
+        }
+        return dataInsights;
+    }
+
+    private static void writeColumnStats(DataOutputStream out, ColumnStats stats) throws IOException {
+        int mask = (stats.getDataType() != null ? TYPE : 0)
+                | (stats.getCardinality() != 0 ? DISTINCT : 0)
+                | (stats.isCardinalityEstimated() ? DISTINCT_ESTIMATED : 0)
+                | (stats.getNullValueCount() != 0 ? NULLS : 0)
+                | (stats.getAvgColumnLen() != 0 ? AVG_LEN : 0)
+                | (stats.getMin() != null ? MIN : 0)
+                | (stats.getMax() != null ? MAX : 0)
+                | (stats.getMean() != null ? MEAN : 0)
+                | (stats.getSum() != null ? SUM : 0)
+                | (stats.getVariance() != null ? VARIANCE : 0)
+                | (stats.getStdDev() != null ? STDDEV : 0)
+                | (stats.getSkewness() != null ? SKEWNESS : 0)
+                | (stats.getKurtosis() != null ? KURTOSIS : 0)
+                | (stats.getEstimatedFields() != null ? ESTIMATED : 0)
+                | (stats.isPartial() ? COLUMN_PARTIAL : 0)
+                | (stats.getScannedRowCount() != null ? SCANNED_ROWS : 0)
+                | (stats.getMeanInterval() != null ? MEAN_CI : 0)
+                | (stats.getCardinalityInterval() != null ? DISTINCT_CI : 0)
+                | (stats.getPercentiles() != null ? PERCENTILES : 0)
+                | (stats.getTopValues() != null ? TOP_VALUES : 0)
+                | (stats.getHistogram() != null ? HISTOGRAM : 0)
+                | (stats.getEquiDepthHistogram() != null ? EQUI_DEPTH_HISTOGRAM : 0);
+        writeVarLong(out, mask);
+        writeValue(out, stats.getFieldName());
+        if ((mask & TYPE) != 0) {
+            writeString(out, stats.getDataType());
+        }
+        if ((mask & DISTINCT) != 0) {
+            writeVarLong(out, stats.getCardinality());
+        }
+        if ((mask & NULLS) != 0) {
+            writeVarLong(out, stats.getNullValueCount());
+        }
+        if ((mask & AVG_LEN) != 0) {
+            writeVarLong(out, stats.getAvgColumnLen());
+        }
+        if ((mask & MIN) != 0) {
+            writeValue(out, stats.getMin());
+        }
+        if ((mask & MAX) != 0) {
+            writeValue(out, stats.getMax());
+        }
+        if ((mask & MEAN) != 0) {
+            writeValue(out, stats.getMean());
+        }
+        if ((mask & SUM) != 0) {
+            writeValue(out, stats.getSum());
+        }
+        if ((mask & VARIANCE) != 0) {
+            out.writeDouble(stats.getVariance());
+        }
+        if ((mask & STDDEV) != 0) {
+            out.writeDouble(stats.getStdDev());
+        }
+        if ((mask & SKEWNESS) != 0) {
+            out.writeDouble(stats.getSkewness());
+        }
+        if ((mask & KURTOSIS) != 0) {
+            out.writeDouble(stats.getKurtosis());
+        }
+        if ((mask & ESTIMATED) != 0) {
+            writeStrings(out, stats.getEstimatedFields());
+        }
+        if ((mask & SCANNED_ROWS) != 0) {
+            writeVarLong(out, stats.getScannedRowCount());
+        }
+        if ((mask & MEAN_CI) != 0) {
+            writeVarLong(out, stats.getMeanInterval().length);
+            for (double value : stats.getMeanInterval()) {
+                out.writeDouble(value);
+            }
+        }
+        if ((mask & DISTINCT_CI) != 0) {
+            writeLongs(out, stats.getCardinalityInterval());
+        }
+        if ((mask & PERCENTILES) != 0) {
+            writeVarLong(out, stats.getPercentiles().size());
+            for (Map.Entry<String, Object> entry : stats.getPercentiles().entrySet()) {
+                writeString(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        }
+        if ((mask & TOP_VALUES) != 0) {
+            writeVarLong(out, stats.getTopValues().size());
+            for (FrequentValue topValue : stats.getTopValues()) {
+                writeValue(out, topValue.getValue());
+                writeVarLong(out, topValue.getCount());
+                writeVarLong(out, topValue.getError());
+            }
+        }
+        if ((mask & HISTOGRAM) != 0) {
+            writeHistogram(out, stats.getHistogram());
+        }
+        if ((mask & EQUI_DEPTH_HISTOGRAM) != 0) {
+            writeHistogram(out, stats.getEquiDepthHistogram());
+        }
+    }
+
+    private static ColumnStats readColumnStats(DataInputStream in) throws IOException {
+        int mask = (int) readVarLong(in);
+        ColumnStats stats = new ColumnStats();
+        stats.setFieldName((String) readValue(in));
+        stats.setCardinalityEstimated((mask & DISTINCT_ESTIMATED) != 0);
+        stats.setPartial((mask & COLUMN_PARTIAL) != 0);
+        if ((mask & TYPE) != 0) {
+            stats.setDataType(readString(in));
+        }
+        if ((mask & DISTINCT) != 0) {
+            stats.setCardinality(readVarLong(in));
+        }
+        if ((mask & NULLS) != 0) {
+            stats.setNullValueCount(readVarLong(in));
+        }
+        if ((mask & AVG_LEN) != 0) {
+            stats.setAvgColumnLen(readVarLong(in));
+        }
+        if ((mask & MIN) != 0) {
+            stats.setMin(readValue(in));
+        }
+        if ((mask & MAX) != 0) {
+            stats.setMax(readValue(in));
+        }
+        if ((mask & MEAN) != 0) {
+            stats.setMean(readValue(in));
+        }
+        if ((mask & SUM) != 0) {
+            stats.setSum(readValue(in));
+        }
+        if ((mask & VARIANCE) != 0) {
+            stats.setVariance(in.readDouble());
+        }
+        if ((mask & STDDEV) != 0) {
+            stats.setStdDev(in.readDouble());
+        }
+        if ((mask & SKEWNESS) != 0) {
+            stats.setSkewness(in.readDouble());
+        }
+        if ((mask & KURTOSIS) != 0) {
+            stats.setKurtosis(in.readDouble());
+        }
+        if ((mask & ESTIMATED) != 0) {
+            stats.setEstimatedFields(readStrings(in));
+        }
+        if ((mask & SCANNED_ROWS) != 0) {
+            stats.setScannedRowCount(readVarLong(in));
+        }
+        if ((mask & MEAN_CI) != 0) {
+            double[] meanInterval = new double[readSize(in)];
+            for (int i = 0; i < meanInterval.length; i++) {
+                meanInterval[i] = in.readDouble();
+            }
+            stats.setMeanInterval(meanInterval);
+        }
+        if ((mask & DISTINCT_CI) != 0) {
+            stats.setCardinalityInterval(readLongs(in));
+        }
+        if ((mask & PERCENTILES) != 0) {
+            int count = readSize(in);
+            Map<String, Object> percentiles = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                percentiles.put(readString(in), readValue(in));
+            }
+            stats.setPercentiles(percentiles);
+        }
+        if ((mask & TOP_VALUES) != 0) {
+            int count = readSize(in);
+            List<FrequentValue> topValues = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                topValues.add(new FrequentValue(readValue(in), readVarLong(in), readVarLong(in)));
+            }
+            stats.setTopValues(topValues);
+        }
+        if ((mask & HISTOGRAM) != 0) {
+            stats.setHistogram(readHistogram(in));
+        }
+        if ((mask & EQUI_DEPTH_HISTOGRAM) != 0) {
+            stats.setEquiDepthHistogram(readHistogram(in));
+        }
+        return stats;
+    }
+
+    private static void writeHistogram(DataOutputStream out, Histogram histogram) throws IOException {
+        List<Object> bounds = histogram.getBounds();
+        writeVarLong(out, bounds == null ? -1 : bounds.size());
+        if (bounds != null) {
+            for (Object bound : bounds) {
+                writeValue(out, bound);
+            }
+        }
+        writeLongs(out, histogram.getCounts());
+    }
+
+    private static Histogram readHistogram(DataInputStream in) throws IOException {
+        long count = readVarLong(in);
+        List<Object> bounds = null;
+        if (count >= 0) {
+            bounds = new ArrayList<>((int) count);
+            for (int i = 0; i < count; i++) {
+                bounds.add(readValue(in));
+            }
+        }
+        return new Histogram(bounds, readLongs(in));
+    }
+
+    private static void writeMetrics(DataOutputStream out, ProfileMetrics metrics) throws IOException {
+        writeValue(out, metrics.getScanMode());
+        writeVarLong(out, metrics.getFileCount());
+        writeVarLong(out, metrics.getRowCount());
+        writeVarLong(out, metrics.getWallNanos());
+        writeStrings(out, metrics.getFailedColumns());
+        List<ColumnMetrics> columnMetrics = metrics.getColumnMetrics();
+        writeVarLong(out, columnMetrics == null ? -1 : columnMetrics.size());
+        if (columnMetrics != null) {
+            for (ColumnMetrics metricsOfColumn : columnMetrics) {
+                writeValue(out, metricsOfColumn.getFieldName());
+                writeVarLong(out, metricsOfColumn.getRowCount());
+                writeVarLong(out, metricsOfColumn.getByteCount());
+                writeVarLong(out, metricsOfColumn.getReadNanos());
+                writeVarLong(out, metricsOfColumn.getDecodeNanos());
+                writeVarLong(out, metricsOfColumn.getAccumulationNanos());
+                writeVarLong(out, metricsOfColumn.getCardinalityNanos());
+                writeVarLong(out, metricsOfColumn.getPeakCardinalityMemory());
+                writeVarLong(out, metricsOfColumn.getSpillCount());
+                writeVarLong(out, metricsOfColumn.getSpillBytes());
+            }
+        }
+    }
+
+    private static ProfileMetrics readMetrics(DataInputStream in) throws IOException {
+        ProfileMetrics metrics = new ProfileMetrics();
+        metrics.setScanMode((String) readValue(in));
+        metrics.setFileCount((int) readVarLong(in));
+        metrics.setRowCount(readVarLong(in));
+        metrics.setWallNanos(readVarLong(in));
+        metrics.setFailedColumns(readStrings(in));
+        long count = readVarLong(in);
+        if (count < 0) {
+            metrics.setColumnMetrics(null);
+            return metrics;
+        }
+        for (int i = 0; i < count; i++) {
+            ColumnMetrics metricsOfColumn = new ColumnMetrics((String) readValue(in));
+            metricsOfColumn.setRowCount(readVarLong(in));
+            metricsOfColumn.setByteCount(readVarLong(in));
+            metricsOfColumn.setReadNanos(readVarLong(in));
+            metricsOfColumn.setDecodeNanos(readVarLong(in));
+            metricsOfColumn.setAccumulationNanos(readVarLong(in));
+            metricsOfColumn.setCardinalityNanos(readVarLong(in));
+            metricsOfColumn.setPeakCardinalityMemory(readVarLong(in));
+            metricsOfColumn.setSpillCount((int) readVarLong(in));
+            metricsOfColumn.setSpillBytes(readVarLong(in));
+            metrics.getColumnMetrics().add(metricsOfColumn);
+        }
+        return metrics;
+    }
+
+    /**
+     * Write a value of a column with its type, the numbers as small as they fit.
+     * @throws IllegalArgumentException if the type of the value is not one of the types of the column stats.
+     */
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        }
+        else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            writeSignedVarLong(out, (Integer) value);
+        }
+        else if (value instanceof Long) {
+            out.writeByte(LONG);
+            writeSignedVarLong(out, (Long) value);
+        }
+        else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        }
+        else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            BigInteger unscaledValue = decimal.unscaledValue();
+            if (unscaledValue.bitLength() < Long.SIZE) {
+                out.writeByte(DECIMAL);
+                writeSignedVarLong(out, unscaledValue.longValue());
+            }
+            else {
+                out.writeByte(BIG_DECIMAL);
+                byte[] bytes = unscaledValue.toByteArray();
+                writeVarLong(out, bytes.length);
+                out.write(bytes);
+            }
+            writeSignedVarLong(out, decimal.scale());
+        }
+        else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        }
+        else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        }
+        else {
+            throw new IllegalArgumentException("Cannot write a " + value.getClass().getName() + " value in binary data insights");
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case INTEGER:
+                return (int) readSignedVarLong(in);
+            case LONG:
+                return readSignedVarLong(in);
+            case DOUBLE:
+                return in.readDouble();
+            case DECIMAL:
+                long unscaledValue = readSignedVarLong(in);
+                return BigDecimal.valueOf(unscaledValue, (int) readSignedVarLong(in));
+            case BIG_DECIMAL:
+                byte[] bytes = new byte[readSize(in)];
+                in.readFully(bytes);
+                return new BigDecimal(new BigInteger(bytes), (int) readSignedVarLong(in));
+            case STRING:
+                return readString(in);
+            case BOOLEAN:
+                return in.readBoolean();
+            default:
+                throw new IOException("Unknown value type " + type + " in binary data insights");
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        writeVarLong(out, values == null ? -1 : values.size());
+        if (values != null) {
+            for (String value : values) {
+                writeString(out, value);
+            }
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        long count = readVarLong(in);
+        if (count < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>((int) count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    private static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        writeVarLong(out, values == null ? -1 : values.length);
+        if (values != null) {
+            for (long value : values) {
+                writeVarLong(out, value);
+            }
+        }
+    }
+
+    private static long[] readLongs(DataInputStream in) throws IOException {
+        long count = readVarLong(in);
+        if (count < 0) {
+            return null;
+        }
+        long[] values = new long[(int) count];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readVarLong(in);
+        }
+        return values;
+    }
+
+    /**
+     * Strings are written as the varint length of their UTF-8 bytes then the bytes, without the 64 KB limit of
+     * {@link DataOutputStream#writeUTF(String)}.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readSize(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write 7 bits per byte, small non negative values take one byte and negative values ten.
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in binary data insights");
+    }
+
+    private static void writeSignedVarLong(DataOutputStream out, long value) throws IOException {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    private static long readSignedVarLong(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int readSize(DataInputStream in) throws IOException {
+        long size = readVarLong(in);
+        if (size < 0 || size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Invalid size " + size + " in binary data insights");
+        }
+        return (int) size;
+    }
+}
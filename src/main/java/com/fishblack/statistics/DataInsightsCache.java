@@ -0,0 +1,364 @@
+package com.fishblack.statistics;
+
+import com.fishblack.fastparquet.common.FieldMetadata;
+import com.fishblack.fastparquet.common.TempFile;
+import com.fishblack.statistics.accumulator.AccumulatorOptions;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+import org.w3c.dom.Document;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Caches the {@link DataInsights} computed by a {@link Calculator}.
+ * An entry is keyed by the path, size and modification time of the parquet file, a checksum of its footer, the
+ * published fields and the calculator settings changing the result. The most recently used entries are kept in
+ * memory and, when a directory is given, every computed entry is also written there in the binary form of
+ * {@link DataInsights#writeBinary(OutputStream)} and read back on a memory miss.
+ * Concurrent requests for the same entry wait for a single computation.
+ * Samples without a seed or with a time budget are not repeatable and always computed, as are the statistics of a
+ * cardinality calculator factory without a name, see {@link CardinalityCalculatorFactory#getName()}.
+ * The cached instances are shared by every caller and must not be modified.
+ */
+public class DataInsightsCache {
+    private static final Logger logger = Logger.getLogger(DataInsightsCache.class.getName());
+    private static final String ENTRY_SUFFIX = ".insights";
+    private static final byte[] PARQUET_MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+
+    private final Calculator calculator;
+    private final int maxEntries;
+    private final Path directory;
+    private final Map<String, DataInsights> entries;
+    private final ConcurrentHashMap<String, CompletableFuture<DataInsights>> computing = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong diskHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param calculator the calculator computing the missing entries.
+     * @param maxEntries the number of entries kept in memory.
+     */
+    public DataInsightsCache(Calculator calculator, int maxEntries) {
+        this(calculator, maxEntries, null);
+    }
+
+    /**
+     * @param calculator the calculator computing the missing entries.
+     * @param maxEntries the number of entries kept in memory.
+     * @param directory the directory of the entries on disk, created when missing, null to keep them in memory only.
+     * @throws IllegalArgumentException if maxEntries is negative or the directory cannot be created.
+     */
+    public DataInsightsCache(Calculator calculator, int maxEntries, String directory) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Cache entries must not be negative: " + maxEntries);
+        }
+        this.calculator = calculator;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, DataInsights>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DataInsights> eldest) {
+                if (size() > DataInsightsCache.this.maxEntries) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        if (directory == null) {
+            this.directory = null;
+        }
+        else {
+            this.directory = Paths.get(directory);
+            try {
+                Files.createDirectories(this.directory);
+            }
+            catch (IOException e) {
+                throw new IllegalArgumentException("Cannot create cache directory " + directory, e);
+            }
+        }
+    }
+
+    /**
+     * See {@link Calculator#getStatisticsFromParquetFile(TempFile, Document)}.
+     */
+    public DataInsights getStatisticsFromParquetFile(TempFile tempParquetFile, Document typeoptionsXML) throws IOException {
+        List<FieldMetadata> fields = FieldMetadata.getPublishedFields(typeoptionsXML);
+        return getDataInsightsFromParquetFile(tempParquetFile, fields);
+    }
+
+    /**
+     * See {@link Calculator#getDataInsightsFromParquetFile(TempFile, List)}.
+     */
+    public DataInsights getDataInsightsFromParquetFile(TempFile tempParquetFile, List<FieldMetadata> fields) throws IOException {
+        SampleSpec sampleSpec = calculator.getSampleSpec();
+        if ((sampleSpec != null && (sampleSpec.getSeed() == null || sampleSpec.getTimeBudgetMillis() > 0))
+                || calculator.getCardinalityCalculatorFactory().getName() == null) {
+            missCount.incrementAndGet();
+            return calculator.getDataInsightsFromParquetFile(tempParquetFile, fields);
+        }
+        String key = getKey(tempParquetFile, fields);
+        synchronized (entries) {
+            DataInsights dataInsights = entries.get(key);
+            if (dataInsights != null) {
+                hitCount.incrementAndGet();
+                return dataInsights;
+            }
+        }
+        CompletableFuture<DataInsights> future = new CompletableFuture<>();
+        CompletableFuture<DataInsights> running = computing.putIfAbsent(key, future);
+        if (running != null) {
+            hitCount.incrementAndGet();
+            return join(running);
+        }
+        try {
+            DataInsights dataInsights;
+            synchronized (entries) {
+                // put by a computation that finished since the first lookup
+                dataInsights = entries.get(key);
+            }
+            if (dataInsights != null) {
+                hitCount.incrementAndGet();
+            }
+            else if ((dataInsights = readEntry(key)) != null) {
+                diskHitCount.incrementAndGet();
+            }
+            else {
+                missCount.incrementAndGet();
+                dataInsights = calculator.getDataInsightsFromParquetFile(tempParquetFile, fields);
+                if (dataInsights.isPartial()) {
+                    // stopped by the deadline of the calculator, the next call may read further
+                    future.complete(dataInsights);
+                    return dataInsights;
+                }
+                writeEntry(key, dataInsights);
+            }
+            synchronized (entries) {
+                entries.put(key, dataInsights);
+            }
+            future.complete(dataInsights);
+            return dataInsights;
+        }
+        catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            computing.remove(key);
+        }
+    }
+
+    /**
+     * Remove the entries from memory, the entries on disk are kept.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return the number of entries in memory.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return the requests answered from memory, including the ones waiting for another request's computation.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the requests answered from the entries on disk.
+     */
+    public long getDiskHitCount() {
+        return diskHitCount.get();
+    }
+
+    /**
+     * @return the requests computed by the calculator.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the entries removed from memory to make room for newer ones.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    private static DataInsights join(CompletableFuture<DataInsights> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the statistics", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private DataInsights readEntry(String key) {
+        if (directory == null) {
+            return null;
+        }
+        Path path = directory.resolve(key + ENTRY_SUFFIX);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            return DataInsights.readBinary(in);
+        }
+        catch (IOException | ClassCastException e) {
+            logger.log(Level.WARNING, "Cannot read cached statistics " + path, e);
+            deleteEntry(path);
+            return null;
+        }
+    }
+
+    private void writeEntry(String key, DataInsights dataInsights) {
+        if (directory == null) {
+            return;
+        }
+        Path path = directory.resolve(key + ENTRY_SUFFIX);
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, key, ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                dataInsights.writeBinary(out);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException | IllegalArgumentException e) {
+            logger.log(Level.WARNING, "Cannot write cached statistics " + path, e);
+            if (temp != null) {
+                deleteEntry(temp);
+            }
+        }
+    }
+
+    private static void deleteEntry(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        }
+        catch (IOException e) {
+            logger.log(Level.FINE, "Cannot delete " + path, e);
+        }
+    }
+
+    private String getKey(TempFile tempParquetFile, List<FieldMetadata> fields) throws IOException {
+        File file = new File(tempParquetFile.getPath()).getAbsoluteFile();
+        StringBuilder builder = new StringBuilder();
+        append(builder, file.getPath());
+        append(builder, String.valueOf(file.length()));
+        append(builder, String.valueOf(file.lastModified()));
+        append(builder, Long.toHexString(getFooterChecksum(file)));
+        for (FieldMetadata field : fields) {
+            append(builder, field.getFieldName());
+            append(builder, field.getFieldType());
+        }
+        append(builder, calculator.getScanMode() == ScanMode.METADATA ? "metadata" : "scan");
+        append(builder, calculator.getCardinalityCalculatorFactory().getName());
+        if (calculator.getMemoryBudget() != null) {
+            // a budget can turn exact distinct counts into estimates
+            append(builder, "budget/" + calculator.getMemoryBudget().getPolicy());
+        }
+        AccumulatorOptions options = calculator.getAccumulatorOptions();
+        append(builder, options.getQuantileSketchSize() + "/" + options.getTopValueCount() + "/" + options.getTopValueCapacity()
+                + "/" + options.getHistogramBuckets());
+        if (!ProfileSpec.ALL.equals(calculator.getProfileSpec())) {
+            append(builder, calculator.getProfileSpec().toString());
+        }
+        SampleSpec sampleSpec = calculator.getSampleSpec();
+        if (sampleSpec != null) {
+            append(builder, sampleSpec.getRows() + "/" + sampleSpec.getFraction() + "/" + sampleSpec.getSeed()
+                    + "/" + sampleSpec.getConfidence());
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(builder.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // length prefixed so that no two field lists give the same key
+    private static void append(StringBuilder builder, String value) {
+        String text = String.valueOf(value);
+        builder.append(text.length()).append(':').append(text);
+    }
+
+    /**
+     * @return the CRC32 of the footer, 0 if the file does not end with a parquet footer.
+     */
+    private static long getFooterChecksum(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            long length = in.length();
+            if (length < 12) {
+                return 0;
+            }
+            byte[] tail = new byte[8];
+            in.seek(length - 8);
+            in.readFully(tail);
+            for (int i = 0; i < 4; i++) {
+                if (tail[4 + i] != PARQUET_MAGIC[i]) {
+                    return 0;
+                }
+            }
+            int footerLength = (tail[0] & 0xff) | (tail[1] & 0xff) << 8 | (tail[2] & 0xff) << 16 | (tail[3] & 0xff) << 24;
+            if (footerLength <= 0 || footerLength > length - 12) {
+                return 0;
+            }
+            byte[] footer = new byte[footerLength];
+            in.seek(length - 8 - footerLength);
+            in.readFully(footer);
+            CRC32 crc = new CRC32();
+            crc.update(footer);
+            return crc.getValue();
+        }
+    }
+}
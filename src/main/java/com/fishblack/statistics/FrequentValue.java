@@ -0,0 +1,58 @@
+package com.fishblack.statistics;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+
+/**
+ * One of the most frequent values of a column with the number of rows holding it.
+ * The count is an upper bound, the value is held by at least count - error rows.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+public class FrequentValue {
+
+    private Object value;
+    private long count;
+    private long error;
+
+    public FrequentValue() {
+    }
+
+    public FrequentValue(Object value, long count, long error) {
+        this.value = value;
+        this.count = count;
+        this.error = error;
+    }
+
+    @JsonProperty("value")
+    public Object getValue() {
+        return value;
+    }
+
+    public void setValue(Object value) {
+        this.value = value;
+    }
+
+    @JsonProperty("count")
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    /**
+     * @return the most the count can exceed the rows holding the value, 0 when the count is exact.
+     */
+    @JsonProperty("error")
+    public long getError() {
+        return error;
+    }
+
+    public void setError(long error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,51 @@
+package com.fishblack.statistics;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Histogram of the values of a column, bucket i holds the values from bound i included to bound i + 1 excluded,
+ * the last bucket includes its upper bound.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class Histogram {
+
+    private List<Object> bounds;
+    private long[] counts;
+
+    public Histogram() {
+    }
+
+    public Histogram(List<Object> bounds, long[] counts) {
+        this.bounds = bounds;
+        this.counts = counts;
+    }
+
+    /**
+     * @return the bucket bounds formatted like the min and max of the column, one more than the buckets.
+     */
+    @JsonProperty("bounds")
+    public List<Object> getBounds() {
+        return bounds;
+    }
+
+    public void setBounds(List<Object> bounds) {
+        this.bounds = bounds;
+    }
+
+    /**
+     * @return the rows of every bucket.
+     */
+    @JsonProperty("counts")
+    public long[] getCounts() {
+        return counts;
+    }
+
+    public void setCounts(long[] counts) {
+        this.counts = counts;
+    }
+}
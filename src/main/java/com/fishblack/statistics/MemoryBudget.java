@@ -0,0 +1,335 @@
+package com.fishblack.statistics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory shared by the distinct count calculators of all the jobs of a process, see
+ * {@link Calculator#setMemoryBudget(MemoryBudget)}. A calculator reserves the bytes of its distinct values before
+ * they grow and releases them when its column is finished. A reservation that does not fit is denied and the
+ * calculator applies the policy of the budget instead. The memory of the fallbacks is bounded and reserved even
+ * past the limit, so the reserved bytes are always the memory held. Published as an MBean with
+ * {@link #register(String)}.
+ * <p>
+ * The calculators of a job reserve from a view of the budget that tracks the bytes the job holds. With the BLOCK
+ * policy a reservation only waits for the memory of other jobs, when the bytes would not fit even after the other
+ * jobs release theirs it is denied without waiting.
+ */
+public class MemoryBudget implements MemoryBudgetMBean {
+
+    public enum Policy {
+        /** write the distinct values to sorted runs on disk, the count stays exact */
+        SPILL,
+        /** switch to a HyperLogLog estimate */
+        APPROXIMATE,
+        /** wait for other calculators to release memory, switch to the estimate after the block timeout */
+        BLOCK
+    }
+
+    public static final long DEFAULT_BLOCK_TIMEOUT_MILLIS = 10000;
+
+    private final long limitBytes;
+    private final Policy policy;
+    private long blockTimeoutMillis = DEFAULT_BLOCK_TIMEOUT_MILLIS;
+    private long reservedBytes;
+    private long peakReservedBytes;
+    private long reservationCount;
+    private long deniedCount;
+    private long waitCount;
+    private ObjectName objectName;
+
+    /**
+     * @param limitBytes the bytes the calculators may reserve together.
+     * @param policy what a calculator does when its reservation does not fit.
+     */
+    public MemoryBudget(long limitBytes, Policy policy) {
+        if (limitBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive: " + limitBytes);
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("Memory budget policy is required");
+        }
+        this.limitBytes = limitBytes;
+        this.policy = policy;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public synchronized long getBlockTimeoutMillis() {
+        return blockTimeoutMillis;
+    }
+
+    /**
+     * Set the longest time a reservation waits with the BLOCK policy for other jobs, 10 seconds by default.
+     * @param blockTimeoutMillis
+     */
+    public synchronized void setBlockTimeoutMillis(long blockTimeoutMillis) {
+        this.blockTimeoutMillis = blockTimeoutMillis;
+    }
+
+    /**
+     * Reserve bytes if they fit in the budget, with the BLOCK policy wait up to the block timeout for them to fit.
+     * @param bytes the bytes to reserve.
+     * @return true if the bytes are reserved, false if the caller must apply the policy.
+     */
+    public boolean reserve(long bytes) {
+        return reserve(bytes, null);
+    }
+
+    /**
+     * Reserve bytes held by a job, see {@link #reserve(long)}.
+     * @param bytes the bytes to reserve.
+     * @param job the job the bytes are reserved for, null if it is not known.
+     * @return true if the bytes are reserved, false if the caller must apply the policy.
+     */
+    private synchronized boolean reserve(long bytes, JobMemoryBudget job) {
+        if (bytes <= 0) {
+            return true;
+        }
+        if (reservedBytes + bytes > limitBytes && policy == Policy.BLOCK && canFitAfterOtherJobs(bytes, job)) {
+            waitCount++;
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis);
+            long remaining = deadline - System.nanoTime();
+            while (reservedBytes + bytes > limitBytes && canFitAfterOtherJobs(bytes, job) && remaining > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                remaining = deadline - System.nanoTime();
+            }
+        }
+        if (reservedBytes + bytes > limitBytes) {
+            deniedCount++;
+            return false;
+        }
+        add(bytes, job);
+        return true;
+    }
+
+    /**
+     * Reserve bytes even past the limit, for the bounded memory of the fallback of a denied reservation.
+     * @param bytes the bytes to reserve.
+     */
+    public void reserveUnchecked(long bytes) {
+        reserveUnchecked(bytes, null);
+    }
+
+    private synchronized void reserveUnchecked(long bytes, JobMemoryBudget job) {
+        if (bytes > 0) {
+            add(bytes, job);
+        }
+    }
+
+    /**
+     * Give back reserved bytes and wake up the reservations waiting for them.
+     * @param bytes the bytes to release.
+     */
+    public void release(long bytes) {
+        release(bytes, null);
+    }
+
+    private synchronized void release(long bytes, JobMemoryBudget job) {
+        if (bytes <= 0) {
+            return;
+        }
+        reservedBytes = Math.max(0, reservedBytes - bytes);
+        if (job != null) {
+            job.heldBytes = Math.max(0, job.heldBytes - bytes);
+        }
+        notifyAll();
+    }
+
+    /**
+     * @return a view of this budget for the calculators of one job, reserving from this budget.
+     */
+    MemoryBudget forJob() {
+        return new JobMemoryBudget(this);
+    }
+
+    /**
+     * Register this budget in the platform MBean server.
+     * @param name the name property of the MBean, e.g. the name of the host application.
+     * @throws JMException if the name is not valid or already registered.
+     */
+    public synchronized void register(String name) throws JMException {
+        if (objectName != null) {
+            throw new IllegalStateException("Memory budget already registered as " + objectName);
+        }
+        ObjectName newName = new ObjectName(ProfileMetricsCollector.DOMAIN + ":type=MemoryBudget,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+        objectName = newName;
+    }
+
+    /**
+     * Remove this budget from the platform MBean server, nothing is done if it is not registered.
+     * @throws JMException
+     */
+    public synchronized void unregister() throws JMException {
+        if (objectName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        objectName = null;
+    }
+
+    @Override
+    public String getPolicyName() {
+        return policy.name();
+    }
+
+    @Override
+    public long getLimitBytes() {
+        return limitBytes;
+    }
+
+    @Override
+    public synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    @Override
+    public synchronized long getAvailableBytes() {
+        return Math.max(0, limitBytes - reservedBytes);
+    }
+
+    @Override
+    public synchronized long getPeakReservedBytes() {
+        return peakReservedBytes;
+    }
+
+    @Override
+    public synchronized long getReservationCount() {
+        return reservationCount;
+    }
+
+    @Override
+    public synchronized long getDeniedCount() {
+        return deniedCount;
+    }
+
+    @Override
+    public synchronized long getWaitCount() {
+        return waitCount;
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryBudget " + policy + " " + getReservedBytes() + "/" + limitBytes + " bytes";
+    }
+
+    /**
+     * @return true if the bytes fit once the jobs other than the given job release their memory.
+     */
+    private boolean canFitAfterOtherJobs(long bytes, JobMemoryBudget job) {
+        return (job == null ? 0 : job.heldBytes) + bytes <= limitBytes;
+    }
+
+    private void add(long bytes, JobMemoryBudget job) {
+        reservedBytes += bytes;
+        reservationCount++;
+        peakReservedBytes = Math.max(peakReservedBytes, reservedBytes);
+        if (job != null) {
+            job.heldBytes += bytes;
+        }
+    }
+
+    /**
+     * The budget as seen by the calculators of one job, the attributes are those of the shared budget.
+     */
+    private static final class JobMemoryBudget extends MemoryBudget {
+
+        private final MemoryBudget shared;
+        // guarded by the shared budget
+        private long heldBytes;
+
+        JobMemoryBudget(MemoryBudget shared) {
+            super(shared.getLimitBytes(), shared.getPolicy());
+            this.shared = shared;
+        }
+
+        @Override
+        public boolean reserve(long bytes) {
+            return shared.reserve(bytes, this);
+        }
+
+        @Override
+        public void reserveUnchecked(long bytes) {
+            shared.reserveUnchecked(bytes, this);
+        }
+
+        @Override
+        public void release(long bytes) {
+            shared.release(bytes, this);
+        }
+
+        @Override
+        MemoryBudget forJob() {
+            return shared.forJob();
+        }
+
+        @Override
+        public long getBlockTimeoutMillis() {
+            return shared.getBlockTimeoutMillis();
+        }
+
+        @Override
+        public void setBlockTimeoutMillis(long blockTimeoutMillis) {
+            shared.setBlockTimeoutMillis(blockTimeoutMillis);
+        }
+
+        @Override
+        public void register(String name) {
+            throw new IllegalStateException("The budget of a job is registered by its shared budget");
+        }
+
+        @Override
+        public void unregister() {
+        }
+
+        @Override
+        public long getReservedBytes() {
+            return shared.getReservedBytes();
+        }
+
+        @Override
+        public long getAvailableBytes() {
+            return shared.getAvailableBytes();
+        }
+
+        @Override
+        public long getPeakReservedBytes() {
+            return shared.getPeakReservedBytes();
+        }
+
+        @Override
+        public long getReservationCount() {
+            return shared.getReservationCount();
+        }
+
+        @Override
+        public long getDeniedCount() {
+            return shared.getDeniedCount();
+        }
+
+        @Override
+        public long getWaitCount() {
+            return shared.getWaitCount();
+        }
+
+        @Override
+        public String toString() {
+            return shared.toString();
+        }
+    }
+}
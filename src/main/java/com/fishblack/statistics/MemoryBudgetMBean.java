@@ -0,0 +1,32 @@
+package com.fishblack.statistics;
+
+/**
+ * The JMX attributes of a {@link MemoryBudget}.
+ */
+public interface MemoryBudgetMBean {
+
+    String getPolicyName();
+
+    long getLimitBytes();
+
+    /**
+     * @return the bytes reserved now, more than the limit when denied reservations fell back to bounded memory.
+     */
+    long getReservedBytes();
+
+    long getAvailableBytes();
+
+    long getPeakReservedBytes();
+
+    long getReservationCount();
+
+    /**
+     * @return the reservations that did not fit, the calculators applied the policy instead.
+     */
+    long getDeniedCount();
+
+    /**
+     * @return the reservations that waited for memory with the BLOCK policy.
+     */
+    long getWaitCount();
+}
@@ -0,0 +1,75 @@
+package com.fishblack.statistics;
+
+import com.fishblack.statistics.parquet.ScanControl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A profiling job running in the background, see
+ * {@link Calculator#getDataInsightsFromParquetFileAsync(com.fishblack.fastparquet.common.TempFile, java.util.List, Consumer)}.
+ * The statistics computed so far are published as snapshots while the file is scanned, their columns not read in
+ * full are marked partial. Completing or cancelling the future stops the scan.
+ */
+public class ProfileHandle {
+    private static final Logger logger = Logger.getLogger(ProfileHandle.class.getName());
+
+    private final CompletableFuture<DataInsights> future = new CompletableFuture<>();
+    private final ScanControl scanControl;
+    private final Consumer<DataInsights> snapshotListener;
+    private volatile DataInsights snapshot;
+
+    ProfileHandle(ScanControl scanControl, Consumer<DataInsights> snapshotListener) {
+        this.scanControl = scanControl;
+        this.snapshotListener = snapshotListener;
+        future.whenComplete((dataInsights, e) -> scanControl.cancel());
+    }
+
+    /**
+     * @return the future of the statistics of the job, partial when its deadline was reached.
+     */
+    public CompletableFuture<DataInsights> getFuture() {
+        return future;
+    }
+
+    /**
+     * @return the latest snapshot, the final statistics once the job is done, null before the first snapshot.
+     */
+    public DataInsights getSnapshot() {
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            return future.join();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Cancel the job, its scan stops at the next row group or column and the future is cancelled.
+     * @return false if the job was already done.
+     */
+    public boolean cancel() {
+        return future.cancel(false);
+    }
+
+    public boolean isCancelled() {
+        return future.isCancelled();
+    }
+
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    void publish(DataInsights snapshot) {
+        this.snapshot = snapshot;
+        if (snapshotListener == null) {
+            return;
+        }
+        try {
+            snapshotListener.accept(snapshot);
+        }
+        catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Profile snapshot listener failed", e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.fishblack.statistics;
+
+/**
+ * Receives the metrics of the profiling jobs of a {@link Calculator}, see {@link ProfileMetricsCollector} for
+ * metrics published over JMX.
+ */
+@FunctionalInterface
+public interface ProfileListener {
+
+    /**
+     * Called once a job has its statistics, on the thread that ran the job. Jobs running on several threads
+     * call it concurrently.
+     * @param metrics the metrics of the job.
+     */
+    void profiled(ProfileMetrics metrics);
+}
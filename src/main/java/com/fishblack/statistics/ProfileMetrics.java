@@ -0,0 +1,112 @@
+package com.fishblack.statistics;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How long a profiling job took and what it read, reported to the {@link ProfileListener} of the calculator and
+ * added to the {@link DataInsights} when asked for, see {@link Calculator#setProfileListener(ProfileListener)}.
+ * The scanned columns have their {@link ColumnMetrics}, the columns answered by the footer statistics do not.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+public class ProfileMetrics {
+
+    private String scanMode;
+    private int fileCount;
+    private long rowCount;
+    private long wallNanos;
+    private List<ColumnMetrics> columnMetrics = new ArrayList<>();
+    private List<String> failedColumns = new ArrayList<>();
+
+    @JsonProperty("scan_mode")
+    public String getScanMode() {
+        return scanMode;
+    }
+
+    public void setScanMode(String scanMode) {
+        this.scanMode = scanMode;
+    }
+
+    @JsonProperty("files")
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public void setFileCount(int fileCount) {
+        this.fileCount = fileCount;
+    }
+
+    /**
+     * @return the rows of the profiled files.
+     */
+    @JsonProperty("rows")
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public void setRowCount(long rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * @return the time from the start of the job to its statistics.
+     */
+    @JsonProperty("wall_nanos")
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public void setWallNanos(long wallNanos) {
+        this.wallNanos = wallNanos;
+    }
+
+    @JsonProperty("column_metrics")
+    public List<ColumnMetrics> getColumnMetrics() {
+        return columnMetrics;
+    }
+
+    public void setColumnMetrics(List<ColumnMetrics> columnMetrics) {
+        this.columnMetrics = columnMetrics;
+    }
+
+    /**
+     * @return the columns that could not be read and are missing from the statistics.
+     */
+    @JsonProperty("failed_columns")
+    public List<String> getFailedColumns() {
+        return failedColumns;
+    }
+
+    public void setFailedColumns(List<String> failedColumns) {
+        this.failedColumns = failedColumns;
+    }
+
+    /**
+     * @return the compressed bytes read by all the scanned columns, 0 when the column metrics are not known.
+     */
+    @JsonProperty("bytes")
+    public long getByteCount() {
+        long byteCount = 0;
+        if (columnMetrics != null) {
+            for (ColumnMetrics metrics : columnMetrics) {
+                byteCount += metrics.getByteCount();
+            }
+        }
+        return byteCount;
+    }
+
+    @JsonProperty("rows_per_second")
+    public double getRowsPerSecond() {
+        return wallNanos == 0 ? 0 : rowCount * 1e9 / wallNanos;
+    }
+
+    @JsonProperty("bytes_per_second")
+    public double getBytesPerSecond() {
+        return wallNanos == 0 ? 0 : getByteCount() * 1e9 / wallNanos;
+    }
+}
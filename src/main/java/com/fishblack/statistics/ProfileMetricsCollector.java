@@ -0,0 +1,182 @@
+package com.fishblack.statistics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A profile listener adding up the metrics of the jobs, to be shared by the calculators of a long running host and
+ * published as an MBean with {@link #register(String)}.
+ */
+public class ProfileMetricsCollector implements ProfileListener, ProfileMetricsCollectorMBean {
+
+    public static final String DOMAIN = "com.fishblack.statistics";
+
+    private long jobCount;
+    private long rowCount;
+    private long byteCount;
+    private long wallNanos;
+    private long readNanos;
+    private long decodeNanos;
+    private long accumulationNanos;
+    private long cardinalityNanos;
+    private long spillCount;
+    private long spillBytes;
+    private long failedColumnCount;
+    private long peakCardinalityMemory;
+    private long lastWallNanos;
+    private double lastRowsPerSecond;
+    private double lastBytesPerSecond;
+    private ObjectName objectName;
+
+    @Override
+    public synchronized void profiled(ProfileMetrics metrics) {
+        jobCount++;
+        rowCount += metrics.getRowCount();
+        byteCount += metrics.getByteCount();
+        wallNanos += metrics.getWallNanos();
+        // metrics read back from a stored DataInsights may lack their lists
+        if (metrics.getFailedColumns() != null) {
+            failedColumnCount += metrics.getFailedColumns().size();
+        }
+        if (metrics.getColumnMetrics() != null) {
+            for (ColumnMetrics columnMetrics : metrics.getColumnMetrics()) {
+                readNanos += columnMetrics.getReadNanos();
+                decodeNanos += columnMetrics.getDecodeNanos();
+                accumulationNanos += columnMetrics.getAccumulationNanos();
+                cardinalityNanos += columnMetrics.getCardinalityNanos();
+                spillCount += columnMetrics.getSpillCount();
+                spillBytes += columnMetrics.getSpillBytes();
+                peakCardinalityMemory = Math.max(peakCardinalityMemory, columnMetrics.getPeakCardinalityMemory());
+            }
+        }
+        lastWallNanos = metrics.getWallNanos();
+        lastRowsPerSecond = metrics.getRowsPerSecond();
+        lastBytesPerSecond = metrics.getBytesPerSecond();
+    }
+
+    /**
+     * Register this collector in the platform MBean server.
+     * @param name the name property of the MBean, e.g. the name of the host application.
+     * @throws JMException if the name is not valid or already registered.
+     */
+    public synchronized void register(String name) throws JMException {
+        if (objectName != null) {
+            throw new IllegalStateException("Profile metrics already registered as " + objectName);
+        }
+        ObjectName newName = new ObjectName(DOMAIN + ":type=ProfileMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+        objectName = newName;
+    }
+
+    /**
+     * Remove this collector from the platform MBean server, nothing is done if it is not registered.
+     * @throws JMException
+     */
+    public synchronized void unregister() throws JMException {
+        if (objectName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        objectName = null;
+    }
+
+    @Override
+    public synchronized long getJobCount() {
+        return jobCount;
+    }
+
+    @Override
+    public synchronized long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public synchronized long getByteCount() {
+        return byteCount;
+    }
+
+    @Override
+    public synchronized long getWallMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(wallNanos);
+    }
+
+    @Override
+    public synchronized long getReadMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readNanos);
+    }
+
+    @Override
+    public synchronized long getDecodeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(decodeNanos);
+    }
+
+    @Override
+    public synchronized long getAccumulationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(accumulationNanos);
+    }
+
+    @Override
+    public synchronized long getCardinalityMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(cardinalityNanos);
+    }
+
+    @Override
+    public synchronized long getSpillCount() {
+        return spillCount;
+    }
+
+    @Override
+    public synchronized long getSpillBytes() {
+        return spillBytes;
+    }
+
+    @Override
+    public synchronized long getFailedColumnCount() {
+        return failedColumnCount;
+    }
+
+    @Override
+    public synchronized long getPeakCardinalityMemory() {
+        return peakCardinalityMemory;
+    }
+
+    @Override
+    public synchronized long getLastWallMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastWallNanos);
+    }
+
+    @Override
+    public synchronized double getLastRowsPerSecond() {
+        return lastRowsPerSecond;
+    }
+
+    @Override
+    public synchronized double getLastBytesPerSecond() {
+        return lastBytesPerSecond;
+    }
+
+    @Override
+    public synchronized void reset() {
+        jobCount = 0;
+        rowCount = 0;
+        byteCount = 0;
+        wallNanos = 0;
+        readNanos = 0;
+        decodeNanos = 0;
+        accumulationNanos = 0;
+        cardinalityNanos = 0;
+        spillCount = 0;
+        spillBytes = 0;
+        failedColumnCount = 0;
+        peakCardinalityMemory = 0;
+        lastWallNanos = 0;
+        lastRowsPerSecond = 0;
+        lastBytesPerSecond = 0;
+    }
+}
@@ -0,0 +1,42 @@
+package com.fishblack.statistics;
+
+/**
+ * The JMX attributes of a {@link ProfileMetricsCollector}, the totals are over all the jobs since the last reset.
+ */
+public interface ProfileMetricsCollectorMBean {
+
+    long getJobCount();
+
+    long getRowCount();
+
+    long getByteCount();
+
+    long getWallMillis();
+
+    long getReadMillis();
+
+    long getDecodeMillis();
+
+    long getAccumulationMillis();
+
+    long getCardinalityMillis();
+
+    long getSpillCount();
+
+    long getSpillBytes();
+
+    long getFailedColumnCount();
+
+    /**
+     * @return the most memory a distinct count of a single column held.
+     */
+    long getPeakCardinalityMemory();
+
+    long getLastWallMillis();
+
+    double getLastRowsPerSecond();
+
+    double getLastBytesPerSecond();
+
+    void reset();
+}
@@ -0,0 +1,388 @@
+package com.fishblack.statistics;
+
+import com.fishblack.fastparquet.common.FieldMetadata;
+import com.fishblack.fastparquet.common.SchemaConverter;
+import com.fishblack.statistics.accumulator.AbstractColumnAccumulator;
+import com.fishblack.statistics.accumulator.AccumulatorOptions;
+import com.fishblack.statistics.accumulator.ColumnAccumulator;
+import com.fishblack.statistics.accumulator.ColumnAccumulators;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.commons.text.StringEscapeUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Profiles rows pushed by their producers instead of read from a file, e.g. the record batches of a job right
+ * before they are written to parquet, see {@link Calculator#newProfileSink(List)}. The batches are added from any
+ * number of threads: a batch is added to one of several stripes of accumulators, the first stripe not busy from the
+ * home stripe of the thread, and a producer only waits for its home stripe when every stripe is busy.
+ * {@link #finish()} merges the stripes and returns the statistics the file of the rows would get.
+ * <p>
+ * The batches of a single producer thread, when no other thread adds batches, all go to its home stripe, as do
+ * all the batches of a sink of one stripe: the statistics are the same as a single pass scan of the rows in the
+ * order they were added. Concurrent producers spread their batches over the stripes, a batch goes to another stripe
+ * whenever the home stripe is busy. Their statistics are like a {@link ScanMode#PARALLEL} scan: the percentiles
+ * and the sums of doubles may differ slightly.
+ */
+public class ProfileSink implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(ProfileSink.class.getName());
+
+    private final Calculator calculator;
+    private final ProfileSpec profileSpec;
+    private final CardinalityCalculatorFactory factory;
+    private final AccumulatorOptions options;
+    private final ProfileMetrics metrics;
+    private final long start;
+    // the profiled columns in field order
+    private final List<SinkColumn> columns = new ArrayList<>();
+    // the index in the columns by field name, -1 for the fields not profiled
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
+    private final Stripe[] stripes;
+    private final ReentrantLock finishLock = new ReentrantLock();
+    private volatile boolean finished;
+
+    ProfileSink(Calculator calculator, List<FieldMetadata> fields, int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Profile sink stripes must be positive: " + stripes);
+        }
+        this.calculator = calculator;
+        this.profileSpec = calculator.getProfileSpec();
+        this.metrics = calculator.newProfileMetrics(0);
+        this.factory = calculator.getCardinalityCalculatorFactory(metrics, profileSpec);
+        this.options = profileSpec.getAccumulatorOptions(calculator.getAccumulatorOptions());
+        this.start = System.nanoTime();
+        List<Schema.Field> avroFields = SchemaConverter.toAvroSchema(fields).getFields();
+        for (int i = 0; i < fields.size(); i++) {
+            FieldMetadata field = fields.get(i);
+            String originalColumnName = StringEscapeUtils.escapeJava(field.getFieldName());
+            if (!profileSpec.isSelected(originalColumnName)) {
+                columnIndexes.put(field.getFieldName(), -1);
+                continue;
+            }
+            columnIndexes.put(field.getFieldName(), columns.size());
+            columns.add(new SinkColumn(originalColumnName, Calculator.convertOACDataType(field.getFieldType()),
+                    avroFields.get(i), metrics == null ? null : new ColumnMetrics(originalColumnName)));
+        }
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Add a batch of records, the fields are found by name in the schema of the records, the avro schema of the
+     * fields of the sink. A field the records do not have is null. The values are the generic avro values,
+     * or the java.time and BigDecimal values of a data model with logical type conversions.
+     * @param records the records, all of the same schema.
+     * @throws IOException
+     * @throws IllegalStateException if the sink is finished or closed.
+     */
+    public void addRecords(List<? extends GenericRecord> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        Stripe stripe = acquireStripe();
+        try {
+            AvroValueFeeder[] feeders = stripe.getFeeders(records.get(0).getSchema());
+            for (int i = 0; i < columns.size(); i++) {
+                AvroValueFeeder feeder = feeders[i];
+                int position = stripe.positions[i];
+                long addStart = System.nanoTime();
+                if (position < 0) {
+                    ColumnAccumulator accumulator = stripe.accumulators[i];
+                    for (int row = 0; row < records.size(); row++) {
+                        accumulator.addNull();
+                    }
+                }
+                else {
+                    for (GenericRecord record : records) {
+                        feeder.feed(record.get(position));
+                    }
+                }
+                addColumnMetrics(i, records.size(), addStart);
+            }
+            stripe.rows += records.size();
+        }
+        finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Add a batch of rows given column by column. The values are the values of the parquet column reader: String,
+     * Double, Long or Integer, BigDecimal, LocalDate for a date and LocalDateTime for a time or a timestamp, null
+     * for a null. A field without a column in the batch is null.
+     * @param columnValues the values of every column by field name, all of the same size.
+     * @throws IOException
+     * @throws IllegalArgumentException if a column is not a field of the sink or the columns differ in size.
+     * @throws IllegalStateException if the sink is finished or closed.
+     */
+    public void addColumns(Map<String, ? extends List<?>> columnValues) throws IOException {
+        List<?>[] values = new List<?>[columns.size()];
+        int rows = -1;
+        for (Map.Entry<String, ? extends List<?>> entry : columnValues.entrySet()) {
+            Integer index = columnIndexes.get(entry.getKey());
+            if (index == null) {
+                throw new IllegalArgumentException("Profile sink has no field: " + entry.getKey());
+            }
+            if (rows >= 0 && entry.getValue().size() != rows) {
+                throw new IllegalArgumentException("Column " + entry.getKey() + " has " + entry.getValue().size()
+                        + " values instead of " + rows);
+            }
+            rows = entry.getValue().size();
+            if (index >= 0) {
+                values[index] = entry.getValue();
+            }
+        }
+        if (rows <= 0) {
+            return;
+        }
+        Stripe stripe = acquireStripe();
+        try {
+            ColumnAccumulator[] accumulators = stripe.getAccumulators();
+            for (int i = 0; i < columns.size(); i++) {
+                ColumnAccumulator accumulator = accumulators[i];
+                long addStart = System.nanoTime();
+                if (values[i] == null) {
+                    for (int row = 0; row < rows; row++) {
+                        accumulator.addNull();
+                    }
+                }
+                else {
+                    for (Object value : values[i]) {
+                        accumulator.add(value);
+                    }
+                }
+                addColumnMetrics(i, rows, addStart);
+            }
+            stripe.rows += rows;
+        }
+        finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Merge the stripes and build the statistics of every row added, once. Waits for the batches being added,
+     * the batches added afterwards are rejected.
+     * @return the statistics of the rows.
+     * @throws IOException
+     * @throws IllegalStateException if the sink is already finished or closed.
+     */
+    public DataInsights finish() throws IOException {
+        ColumnAccumulator[] merged = null;
+        DataInsights dataInsights = new DataInsights();
+        finishLock.lock();
+        try {
+            if (finished) {
+                throw new IllegalStateException("Profile sink is already finished");
+            }
+            finished = true;
+            long rowCount = 0;
+            for (Stripe stripe : stripes) {
+                // waits for the batch of the stripe
+                stripe.lock.lock();
+                try {
+                    rowCount += stripe.rows;
+                    if (stripe.accumulators == null) {
+                        continue;
+                    }
+                    if (merged == null) {
+                        merged = stripe.accumulators;
+                    }
+                    else {
+                        for (int i = 0; i < columns.size(); i++) {
+                            merged[i].merge(stripe.accumulators[i]);
+                        }
+                    }
+                    stripe.accumulators = null;
+                }
+                finally {
+                    stripe.lock.unlock();
+                }
+            }
+            logger.log(Level.FINE, "Profile sink merged {0} rows in {1} columns from {2} stripes",
+                    new Object[]{rowCount, columns.size(), stripes.length});
+            if (merged == null) {
+                // no batch was added, the accumulators of no rows are created one at a time and released below
+                merged = new ColumnAccumulator[columns.size()];
+            }
+            dataInsights.setRowCount(rowCount);
+            dataInsights.setColumnCount(columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                SinkColumn column = columns.get(i);
+                if (merged[i] == null) {
+                    merged[i] = newAccumulator(column);
+                }
+                ColumnAccumulator accumulator = merged[i];
+                ColumnStats columnStats = accumulator.finish();
+                profileSpec.retain(columnStats);
+                dataInsights.getColumnStats().add(columnStats);
+                if (metrics != null) {
+                    column.metrics.finish((AbstractColumnAccumulator) accumulator);
+                    metrics.getColumnMetrics().add(column.metrics);
+                }
+            }
+        }
+        finally {
+            // the accumulators not finished when the merge failed
+            releaseAll();
+            if (merged != null) {
+                for (ColumnAccumulator accumulator : merged) {
+                    if (accumulator != null) {
+                        accumulator.release();
+                    }
+                }
+            }
+            finishLock.unlock();
+        }
+        calculator.finishProfileMetrics(metrics, start, dataInsights);
+        return dataInsights;
+    }
+
+    /**
+     * Drop the rows of a sink not finished and give back the memory of its accumulators.
+     */
+    @Override
+    public void close() {
+        finishLock.lock();
+        try {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            for (Stripe stripe : stripes) {
+                stripe.lock.lock();
+                stripe.lock.unlock();
+            }
+            releaseAll();
+        }
+        finally {
+            finishLock.unlock();
+        }
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Lock the first stripe not busy, starting from the home stripe of the thread, or wait for the home stripe
+     * when they are all busy.
+     */
+    private Stripe acquireStripe() throws InterruptedIOException {
+        int home = (int) (Thread.currentThread().getId() % stripes.length);
+        Stripe stripe = null;
+        for (int i = 0; i < stripes.length && stripe == null; i++) {
+            Stripe candidate = stripes[(home + i) % stripes.length];
+            if (candidate.lock.tryLock()) {
+                stripe = candidate;
+            }
+        }
+        if (stripe == null) {
+            stripe = stripes[home];
+            try {
+                stripe.lock.lockInterruptibly();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a profile sink stripe");
+            }
+        }
+        if (finished) {
+            stripe.lock.unlock();
+            throw new IllegalStateException("Profile sink is finished");
+        }
+        return stripe;
+    }
+
+    private void addColumnMetrics(int column, long rows, long addStart) {
+        if (metrics != null) {
+            columns.get(column).metrics.addRowGroup(rows, 0, 0, 0, System.nanoTime() - addStart);
+        }
+    }
+
+    private ColumnAccumulator newAccumulator(SinkColumn column) {
+        return ColumnAccumulators.create(column.name, column.dataType, factory, options);
+    }
+
+    private void releaseAll() {
+        for (Stripe stripe : stripes) {
+            if (stripe.accumulators != null) {
+                for (ColumnAccumulator accumulator : stripe.accumulators) {
+                    accumulator.release();
+                }
+                stripe.accumulators = null;
+            }
+        }
+    }
+
+    private static final class SinkColumn {
+        private final String name;
+        private final String dataType;
+        // the field of the avro schema of the sink
+        private final Schema.Field field;
+        private final ColumnMetrics metrics;
+
+        private SinkColumn(String name, String dataType, Schema.Field field, ColumnMetrics metrics) {
+            this.name = name;
+            this.dataType = dataType;
+            this.field = field;
+            this.metrics = metrics;
+        }
+    }
+
+    /**
+     * The accumulators of the rows added by the producers holding the lock, created with the first batch.
+     */
+    private final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private ColumnAccumulator[] accumulators;
+        private long rows;
+        // the feeders of the last record schema
+        private Schema recordSchema;
+        private AvroValueFeeder[] feeders;
+        private int[] positions;
+
+        private ColumnAccumulator[] getAccumulators() {
+            if (accumulators == null) {
+                accumulators = new ColumnAccumulator[columns.size()];
+                for (int i = 0; i < columns.size(); i++) {
+                    accumulators[i] = newAccumulator(columns.get(i));
+                }
+            }
+            return accumulators;
+        }
+
+        private AvroValueFeeder[] getFeeders(Schema schema) {
+            if (schema == recordSchema && accumulators != null) {
+                return feeders;
+            }
+            ColumnAccumulator[] columnAccumulators = getAccumulators();
+            feeders = new AvroValueFeeder[columns.size()];
+            positions = new int[columns.size()];
+            for (int i = 0; i < columns.size(); i++) {
+                Schema.Field sinkField = columns.get(i).field;
+                Schema.Field field = schema.getField(sinkField.name());
+                positions[i] = field == null ? -1 : field.pos();
+                feeders[i] = AvroValueFeeder.forField(field == null ? sinkField.schema() : field.schema(), columnAccumulators[i]);
+            }
+            recordSchema = schema;
+            return feeders;
+        }
+    }
+}
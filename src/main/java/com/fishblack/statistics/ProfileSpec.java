@@ -0,0 +1,231 @@
+package com.fishblack.statistics;
+
+import com.fishblack.statistics.accumulator.AccumulatorOptions;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Which columns {@link Calculator} profiles and which statistics it computes, every column and statistic by default.
+ * The columns left out are not read, and the statistics left out are not accumulated when they have a cost of their
+ * own: the distinct count, the percentiles, the top values and the histograms. A profile of only null counts and
+ * min / max is answered by the parquet footer when it has them, without reading any page. The row count is always
+ * reported. Instances are immutable, the with methods return a changed copy.
+ */
+public final class ProfileSpec {
+
+    public enum Statistic {
+        NULLS,
+        MIN_MAX,
+        SUM_MEAN,
+        DISTINCT,
+        AVG_LENGTH,
+        /** variance, standard deviation, skewness and kurtosis */
+        MOMENTS,
+        PERCENTILES,
+        TOP_VALUES,
+        /** the equi-width and equi-depth histograms */
+        HISTOGRAMS
+    }
+
+    public static final ProfileSpec ALL = new ProfileSpec(null, Collections.unmodifiableSet(EnumSet.allOf(Statistic.class)));
+
+    private static final Set<Statistic> FOOTER_STATISTICS = EnumSet.of(Statistic.NULLS, Statistic.MIN_MAX);
+
+    private final Set<String> columns;
+    private final Set<Statistic> statistics;
+
+    private ProfileSpec(Set<String> columns, Set<Statistic> statistics) {
+        this.columns = columns;
+        this.statistics = statistics;
+    }
+
+    /**
+     * @return a spec of every column and of the given statistics only.
+     */
+    public static ProfileSpec of(Statistic statistic, Statistic... statistics) {
+        return new ProfileSpec(null, Collections.unmodifiableSet(EnumSet.of(statistic, statistics)));
+    }
+
+    /**
+     * @param columns the names of the profiled columns as given by the field metadata, names not in the file are
+     *                ignored. Null for every column.
+     * @return the spec with the given columns.
+     */
+    public ProfileSpec withColumns(Collection<String> columns) {
+        return new ProfileSpec(columns == null ? null : Collections.unmodifiableSet(new TreeSet<>(columns)), statistics);
+    }
+
+    public ProfileSpec withColumns(String... columns) {
+        return withColumns(Arrays.asList(columns));
+    }
+
+    /**
+     * @param statistics the computed statistics, at least one.
+     * @return the spec with the given statistics.
+     */
+    public ProfileSpec withStatistics(Collection<Statistic> statistics) {
+        if (statistics.isEmpty()) {
+            throw new IllegalArgumentException("A profile needs at least one statistic");
+        }
+        return new ProfileSpec(columns, Collections.unmodifiableSet(EnumSet.copyOf(statistics)));
+    }
+
+    /**
+     * @return the names of the profiled columns, null for every column.
+     */
+    public Set<String> getColumns() {
+        return columns;
+    }
+
+    public Set<Statistic> getStatistics() {
+        return statistics;
+    }
+
+    public boolean isSelected(String fieldName) {
+        return columns == null || columns.contains(fieldName);
+    }
+
+    public boolean isComputed(Statistic statistic) {
+        return statistics.contains(statistic);
+    }
+
+    /**
+     * @return true when the statistics are all in the footer of a parquet file.
+     */
+    public boolean isAnsweredByFooter() {
+        return FOOTER_STATISTICS.containsAll(statistics);
+    }
+
+    /**
+     * @param options the options of the calculator.
+     * @return the options without the sketches, counters and histograms of the statistics left out.
+     */
+    AccumulatorOptions getAccumulatorOptions(AccumulatorOptions options) {
+        if (!isComputed(Statistic.PERCENTILES) && !isComputed(Statistic.HISTOGRAMS)) {
+            // the equi-depth histogram is read from the percentile sketch
+            options = options.withQuantileSketchSize(0);
+        }
+        if (!isComputed(Statistic.TOP_VALUES)) {
+            options = options.withTopValues(0, 0);
+        }
+        if (!isComputed(Statistic.HISTOGRAMS)) {
+            options = options.withHistogramBuckets(0);
+        }
+        return options;
+    }
+
+    /**
+     * @param factory the factory of the calculator.
+     * @return the factory, or one counting nothing when the distinct count is left out.
+     */
+    CardinalityCalculatorFactory getCardinalityCalculatorFactory(CardinalityCalculatorFactory factory) {
+        return isComputed(Statistic.DISTINCT) ? factory : CardinalityCalculatorFactory.NONE;
+    }
+
+    /**
+     * Clear the statistics left out, the cheap ones are computed with the others and only dropped here.
+     * @param columnStats the stats of a profiled column.
+     */
+    void retain(ColumnStats columnStats) {
+        if (statistics.size() == Statistic.values().length) {
+            return;
+        }
+        if (!isComputed(Statistic.NULLS)) {
+            columnStats.setNullValueCount(0);
+        }
+        if (!isComputed(Statistic.MIN_MAX)) {
+            columnStats.setMin(null);
+            columnStats.setMax(null);
+        }
+        if (!isComputed(Statistic.SUM_MEAN)) {
+            columnStats.setSum(null);
+            columnStats.setMean(null);
+            columnStats.setMeanInterval(null);
+        }
+        if (!isComputed(Statistic.DISTINCT)) {
+            columnStats.setCardinality(0);
+            columnStats.setCardinalityEstimated(false);
+            columnStats.setCardinalityInterval(null);
+        }
+        if (!isComputed(Statistic.AVG_LENGTH)) {
+            columnStats.setAvgColumnLen(0);
+        }
+        if (!isComputed(Statistic.MOMENTS)) {
+            columnStats.setVariance(null);
+            columnStats.setStdDev(null);
+            columnStats.setSkewness(null);
+            columnStats.setKurtosis(null);
+        }
+        if (!isComputed(Statistic.PERCENTILES)) {
+            columnStats.setPercentiles(null);
+        }
+        if (!isComputed(Statistic.HISTOGRAMS)) {
+            columnStats.setHistogram(null);
+            columnStats.setEquiDepthHistogram(null);
+        }
+        if (columnStats.getEstimatedFields() != null) {
+            columnStats.getEstimatedFields().removeIf(field -> !isComputed(getStatistic(field)));
+            if (columnStats.getEstimatedFields().isEmpty()) {
+                columnStats.setEstimatedFields(null);
+            }
+        }
+    }
+
+    /**
+     * @param field a field of the json of the column stats, see {@link ColumnStats#getEstimatedFields()}.
+     */
+    private static Statistic getStatistic(String field) {
+        switch (field) {
+            case "nulls":
+                return Statistic.NULLS;
+            case "min":
+            case "max":
+                return Statistic.MIN_MAX;
+            case "sum":
+            case "mean":
+                return Statistic.SUM_MEAN;
+            case "distinct":
+                return Statistic.DISTINCT;
+            case "avg_len":
+                return Statistic.AVG_LENGTH;
+            case "percentiles":
+                return Statistic.PERCENTILES;
+            case "top_values":
+                return Statistic.TOP_VALUES;
+            case "histogram":
+            case "equi_depth_histogram":
+                return Statistic.HISTOGRAMS;
+            default:
+                return Statistic.MOMENTS;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ProfileSpec)) {
+            return false;
+        }
+        ProfileSpec other = (ProfileSpec) o;
+        return Objects.equals(columns, other.columns) && statistics.equals(other.statistics);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(columns, statistics);
+    }
+
+    @Override
+    public String toString() {
+        return "columns=" + (columns == null ? "*" : columns) + " statistics=" + statistics;
+    }
+}
@@ -0,0 +1,190 @@
+package com.fishblack.statistics;
+
+import com.fishblack.statistics.accumulator.AbstractColumnAccumulator;
+import com.fishblack.statistics.accumulator.AccumulatorOptions;
+import com.fishblack.statistics.accumulator.ColumnAccumulator;
+import com.fishblack.statistics.accumulator.ColumnAccumulators;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The unfinished statistics of a profiled dataset, see {@link Calculator#getProfileStateFromParquetFile}.
+ * A state can be saved next to the dataset and merged with the state of the rows appended later, the
+ * {@link DataInsights} of the merged state are the ones of a full scan of all the rows in order, but for the
+ * percentiles whose sketches keep the same accuracy but not the same values.
+ * Saving needs a distinct count calculator that can be saved, the default adaptive one or HyperLogLog. The saved
+ * state records the name of the factory of the calculators and the accumulator options, and is read back with them.
+ */
+public class ProfileState {
+
+    private static final int MAGIC = 0x45535053;
+    private static final int VERSION = 7;
+
+    private long rowCount;
+    private int columnCount;
+    private final List<AbstractColumnAccumulator> accumulators = new ArrayList<>();
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public void setRowCount(long rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    public void setColumnCount(int columnCount) {
+        this.columnCount = columnCount;
+    }
+
+    /**
+     * Add the accumulator of the next profiled column.
+     * @param accumulator
+     */
+    public void addColumn(AbstractColumnAccumulator accumulator) {
+        accumulators.add(accumulator);
+    }
+
+    /**
+     * @return the accumulators of the profiled columns.
+     */
+    List<AbstractColumnAccumulator> getAccumulators() {
+        return accumulators;
+    }
+
+    /**
+     * Merge the state of the rows following the rows of this state, the other state must not be used afterwards.
+     * @param following the state of the appended rows.
+     * @throws IOException
+     * @throws IllegalArgumentException if the states do not have the same columns.
+     */
+    public void merge(ProfileState following) throws IOException {
+        if (columnCount != following.columnCount || accumulators.size() != following.accumulators.size()) {
+            throw new IllegalArgumentException("Profile states have " + accumulators.size() + " and "
+                    + following.accumulators.size() + " profiled columns");
+        }
+        for (int i = 0; i < accumulators.size(); i++) {
+            AbstractColumnAccumulator accumulator = accumulators.get(i);
+            AbstractColumnAccumulator other = following.accumulators.get(i);
+            if (!accumulator.getFieldName().equals(other.getFieldName()) || !accumulator.getDataType().equals(other.getDataType())) {
+                throw new IllegalArgumentException("Profile state column " + other.getFieldName() + " " + other.getDataType()
+                        + " does not match " + accumulator.getFieldName() + " " + accumulator.getDataType());
+            }
+        }
+        for (int i = 0; i < accumulators.size(); i++) {
+            accumulators.get(i).merge(following.accumulators.get(i));
+        }
+        rowCount += following.rowCount;
+    }
+
+    /**
+     * @return the statistics of all the rows of the state.
+     * @throws IOException
+     */
+    public DataInsights toDataInsights() throws IOException {
+        DataInsights dataInsights = new DataInsights();
+        dataInsights.setRowCount(rowCount);
+        dataInsights.setColumnCount(columnCount);
+        for (ColumnAccumulator accumulator : accumulators) {
+            dataInsights.getColumnStats().add(accumulator.finish());
+        }
+        return dataInsights;
+    }
+
+    /**
+     * Give back the memory the accumulators reserved from the {@link MemoryBudget}, done by {@link #toDataInsights()}.
+     * A state dropped without being turned into data insights must be released.
+     */
+    public void release() {
+        for (ColumnAccumulator accumulator : accumulators) {
+            accumulator.release();
+        }
+    }
+
+    /**
+     * Write the state, the stream is not closed.
+     * @param outputStream
+     * @throws IOException
+     */
+    public void save(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(rowCount);
+        out.writeInt(columnCount);
+        out.writeInt(accumulators.size());
+        // the columns of a state share the factory and the options
+        AbstractColumnAccumulator first = accumulators.isEmpty() ? null : accumulators.get(0);
+        out.writeUTF(first == null ? "" : getFactoryName(first.getCardinalityCalculatorFactory()));
+        AccumulatorOptions options = first == null ? AccumulatorOptions.DEFAULT : first.getOptions();
+        out.writeInt(options.getQuantileSketchSize());
+        out.writeInt(options.getTopValueCount());
+        out.writeInt(options.getTopValueCapacity());
+        out.writeInt(options.getHistogramBuckets());
+        for (AbstractColumnAccumulator accumulator : accumulators) {
+            out.writeUTF(accumulator.getFieldName());
+            out.writeUTF(accumulator.getDataType());
+            accumulator.writeState(out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Read a state written by {@link #save(OutputStream)}, the stream is not closed.
+     * @param inputStream
+     * @param cardinalityCalculatorFactory the factory of the distinct count calculators the state was saved with.
+     * @return the state, its accumulators have the options the state was saved with.
+     * @throws IOException
+     * @throws IllegalArgumentException if the factory does not have the name of the factory the state was saved with,
+     * see {@link CardinalityCalculatorFactory#getName()}.
+     */
+    public static ProfileState load(InputStream inputStream, CardinalityCalculatorFactory cardinalityCalculatorFactory) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a saved profile state");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported profile state version " + version);
+        }
+        ProfileState state = new ProfileState();
+        state.rowCount = in.readLong();
+        state.columnCount = in.readInt();
+        int accumulatorCount = in.readInt();
+        String factoryName = in.readUTF();
+        if (accumulatorCount > 0 && !factoryName.equals(getFactoryName(cardinalityCalculatorFactory))) {
+            throw new IllegalArgumentException("Profile state was saved with the distinct count calculators of "
+                    + describe(factoryName) + ", not " + describe(getFactoryName(cardinalityCalculatorFactory)));
+        }
+        AccumulatorOptions options = AccumulatorOptions.DEFAULT.withQuantileSketchSize(in.readInt())
+                .withTopValues(in.readInt(), in.readInt())
+                .withHistogramBuckets(in.readInt());
+        for (int i = 0; i < accumulatorCount; i++) {
+            String fieldName = in.readUTF();
+            String dataType = in.readUTF();
+            ColumnAccumulator accumulator = ColumnAccumulators.create(fieldName, dataType, cardinalityCalculatorFactory, options);
+            accumulator.readState(in);
+            state.accumulators.add((AbstractColumnAccumulator) accumulator);
+        }
+        return state;
+    }
+
+    // a factory without a name is only told apart from the named ones
+    private static String getFactoryName(CardinalityCalculatorFactory factory) {
+        return factory.getName() == null ? "" : factory.getName();
+    }
+
+    private static String describe(String factoryName) {
+        return factoryName.isEmpty() ? "a factory without a name" : factoryName;
+    }
+}
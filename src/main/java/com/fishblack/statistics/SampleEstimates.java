@@ -0,0 +1,148 @@
+package com.fishblack.statistics;
+
+import com.fishblack.statistics.accumulator.AbstractColumnAccumulator;
+import com.fishblack.statistics.accumulator.Moments;
+import com.fishblack.statistics.cardinality.SampleCardinalityCalculator;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extrapolates the statistics of a sampled column to the whole file.
+ * Counts and sums are scaled by the sampling ratio, the mean interval is the normal interval of a simple random
+ * sample without replacement and the distinct count is the Guaranteed-Error Estimator of Charikar et al., between
+ * the distinct count of the sample and the count where every value seen once stands for a value per unread row.
+ */
+final class SampleEstimates {
+
+    private SampleEstimates() {
+    }
+
+    /**
+     * @param columnStats the statistics of the sample, updated in place.
+     * @param accumulator the accumulator of the sample.
+     * @param totalRows the row count of the file.
+     * @param sampleRows the rows of the sample.
+     * @param confidence the confidence level of the mean interval.
+     */
+    static void extrapolate(ColumnStats columnStats, AbstractColumnAccumulator accumulator, long totalRows,
+                            long sampleRows, double confidence) {
+        double ratio = (double) totalRows / sampleRows;
+        List<String> estimatedFields = new ArrayList<>();
+        columnStats.setNullValueCount(Math.round(columnStats.getNullValueCount() * ratio));
+        estimatedFields.add("nulls");
+
+        if (accumulator.getCardinalityCalculator() instanceof SampleCardinalityCalculator && columnStats.getCardinality() > 0) {
+            SampleCardinalityCalculator calculator = (SampleCardinalityCalculator) accumulator.getCardinalityCalculator();
+            long distinct = columnStats.getCardinality();
+            // share of the distinct values seen once, the wrapped count may itself be an estimate
+            double singletons = distinct * ((double) calculator.getSingletonCount() / calculator.getSampleDistinctCount());
+            long valueRows = totalRows - columnStats.getNullValueCount();
+            long estimate = Math.round(distinct - singletons + singletons * Math.sqrt(ratio));
+            long upperBound = Math.round(distinct - singletons + singletons * ratio);
+            columnStats.setCardinality(Math.min(estimate, valueRows));
+            columnStats.setCardinalityInterval(new long[]{distinct, Math.max(distinct, Math.min(upperBound, valueRows))});
+            columnStats.setCardinalityEstimated(true);
+            estimatedFields.add("distinct");
+        }
+
+        Object sum = columnStats.getSum();
+        if (sum instanceof BigDecimal) {
+            BigDecimal decimalSum = (BigDecimal) sum;
+            columnStats.setSum(decimalSum.multiply(BigDecimal.valueOf(totalRows))
+                    .divide(BigDecimal.valueOf(sampleRows), decimalSum.scale(), RoundingMode.HALF_UP));
+        }
+        else if (sum instanceof Double) {
+            columnStats.setSum((Double) sum * ratio);
+        }
+        else if (sum instanceof Number) {
+            columnStats.setSum(Math.round(((Number) sum).longValue() * ratio));
+        }
+        if (sum != null) {
+            estimatedFields.add("sum");
+        }
+
+        Moments moments = accumulator.getMoments();
+        if (columnStats.getMean() instanceof Number) {
+            estimatedFields.add("mean");
+            if (moments != null && moments.getCount() > 1) {
+                double mean = ((Number) columnStats.getMean()).doubleValue();
+                double finitePopulation = Math.max(0, 1 - (double) sampleRows / totalRows);
+                double halfWidth = normalQuantile(0.5 + confidence / 2)
+                        * Math.sqrt(moments.getVariance() / moments.getCount() * finitePopulation);
+                columnStats.setMeanInterval(new double[]{mean - halfWidth, mean + halfWidth});
+            }
+        }
+        if (columnStats.getVariance() != null) {
+            estimatedFields.add("variance");
+            estimatedFields.add("stddev");
+        }
+        if (columnStats.getSkewness() != null) {
+            estimatedFields.add("skewness");
+            estimatedFields.add("kurtosis");
+        }
+        if (columnStats.getMin() != null) {
+            estimatedFields.add("min");
+            estimatedFields.add("max");
+        }
+        if (columnStats.getPercentiles() != null) {
+            estimatedFields.add("percentiles");
+        }
+        if (columnStats.getTopValues() != null) {
+            for (FrequentValue topValue : columnStats.getTopValues()) {
+                topValue.setCount(Math.round(topValue.getCount() * ratio));
+                topValue.setError(Math.round(topValue.getError() * ratio));
+            }
+            estimatedFields.add("top_values");
+        }
+        for (Histogram histogram : new Histogram[]{columnStats.getHistogram(), columnStats.getEquiDepthHistogram()}) {
+            if (histogram != null) {
+                long[] counts = histogram.getCounts();
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = Math.round(counts[i] * ratio);
+                }
+            }
+        }
+        if (columnStats.getHistogram() != null) {
+            estimatedFields.add("histogram");
+        }
+        if (columnStats.getEquiDepthHistogram() != null) {
+            estimatedFields.add("equi_depth_histogram");
+        }
+        if (columnStats.getAvgColumnLen() > 0) {
+            estimatedFields.add("avg_len");
+        }
+        columnStats.setEstimatedFields(estimatedFields);
+    }
+
+    /**
+     * Inverse of the standard normal distribution with Acklam's rational approximation, relative error below 1.2e-9.
+     * @param p the probability, between 0 and 1 excluded.
+     * @return the quantile.
+     */
+    static double normalQuantile(double p) {
+        final double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+                1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+        final double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+                6.680131188771972e+01, -1.328068155288572e+01};
+        final double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+                -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+        final double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+                3.754408661907416e+00};
+        double low = 0.02425;
+        if (p < low) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                    / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+        if (p > 1 - low) {
+            return -normalQuantile(1 - p);
+        }
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+                / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+    }
+}
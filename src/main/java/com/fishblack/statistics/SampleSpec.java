@@ -0,0 +1,115 @@
+package com.fishblack.statistics;
+
+/**
+ * How much of a parquet file {@link Calculator} reads when it profiles a sample instead of every row.
+ * The target is a number of rows, a fraction of the rows or a time budget, a row target can be combined with
+ * a time budget and the sample stops at whichever comes first.
+ */
+public class SampleSpec {
+
+    private long rows = -1;
+    private double fraction = -1;
+    private long timeBudgetMillis = -1;
+    private Long seed;
+    private double confidence = 0.95d;
+
+    private SampleSpec() {
+    }
+
+    /**
+     * @param rows the number of rows to sample.
+     * @return a sample of the given number of rows.
+     */
+    public static SampleSpec rows(long rows) {
+        if (rows <= 0) {
+            throw new IllegalArgumentException("Sample rows must be positive: " + rows);
+        }
+        SampleSpec spec = new SampleSpec();
+        spec.rows = rows;
+        return spec;
+    }
+
+    /**
+     * @param fraction the fraction of the rows to sample, between 0 excluded and 1.
+     * @return a sample of the given fraction of the rows.
+     */
+    public static SampleSpec fraction(double fraction) {
+        if (!(fraction > 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("Sample fraction must be in (0, 1]: " + fraction);
+        }
+        SampleSpec spec = new SampleSpec();
+        spec.fraction = fraction;
+        return spec;
+    }
+
+    /**
+     * @param millis the time spent reading row groups, at least one row group is read.
+     * @return a sample of the rows read within the time budget.
+     */
+    public static SampleSpec timeBudget(long millis) {
+        return new SampleSpec().withTimeBudget(millis);
+    }
+
+    public SampleSpec withTimeBudget(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Sample time budget must be positive: " + millis);
+        }
+        timeBudgetMillis = millis;
+        return this;
+    }
+
+    /**
+     * @param seed the seed of the random row group and row choice, a sample with the same seed reads the same rows.
+     * @return this spec.
+     */
+    public SampleSpec withSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param confidence the confidence level of the reported intervals, 0.95 by default.
+     * @return this spec.
+     */
+    public SampleSpec withConfidence(double confidence) {
+        if (!(confidence > 0 && confidence < 1)) {
+            throw new IllegalArgumentException("Sample confidence must be in (0, 1): " + confidence);
+        }
+        this.confidence = confidence;
+        return this;
+    }
+
+    /**
+     * @param totalRows the row count of the file.
+     * @return the number of rows to sample.
+     */
+    public long getTargetRows(long totalRows) {
+        if (rows > 0) {
+            return Math.min(rows, totalRows);
+        }
+        if (fraction > 0) {
+            return (long) Math.ceil(fraction * totalRows);
+        }
+        return totalRows;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public double getFraction() {
+        return fraction;
+    }
+
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    public Long getSeed() {
+        return seed;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+}
@@ -0,0 +1,24 @@
+package com.fishblack.statistics;
+
+/**
+ * How {@link Calculator} walks through a parquet file.
+ */
+public enum ScanMode {
+    /**
+     * Open one column reader per column, the file is read once for every column.
+     */
+    PER_COLUMN,
+    /**
+     * Read every row group once and feed all the columns of the row group in the same pass.
+     */
+    SINGLE_PASS,
+    /**
+     * Split the file by row group and by column and scan the parts on the executor of the {@link Calculator}.
+     */
+    PARALLEL,
+    /**
+     * Take the row count, null counts, min and max from the footer statistics without reading any page.
+     * Only the columns the footer cannot answer are scanned, in a single pass.
+     */
+    METADATA
+}
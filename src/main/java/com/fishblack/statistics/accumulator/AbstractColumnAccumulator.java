@@ -0,0 +1,345 @@
+package com.fishblack.statistics.accumulator;
+
+import com.fishblack.statistics.ColumnStats;
+import com.fishblack.statistics.cardinality.CardinalityCalculator;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.DoubleFunction;
+
+/**
+ * Row counting, null counting and distinct counting shared by the typed column accumulators.
+ * Typed accumulators keep their statistics in primitive fields and only fill the {@link ColumnStats} in {@link #finish()}.
+ */
+public abstract class AbstractColumnAccumulator implements ColumnAccumulator {
+
+    protected final String fieldName;
+    protected final String dataType;
+    protected final CardinalityCalculatorFactory cardinalityCalculatorFactory;
+    protected final CardinalityCalculator cardinalityCalculator;
+    protected final AccumulatorOptions options;
+    protected long currentRowNum = 0;
+    protected long lastValueRowNum = 0;
+    protected long nullValueCount = 0;
+
+    protected AbstractColumnAccumulator(String fieldName, String dataType, CardinalityCalculatorFactory cardinalityCalculatorFactory,
+                                        AccumulatorOptions options) {
+        this.fieldName = fieldName;
+        this.dataType = dataType;
+        this.cardinalityCalculatorFactory = cardinalityCalculatorFactory;
+        this.cardinalityCalculator = cardinalityCalculatorFactory.create(dataType);
+        this.options = options;
+    }
+
+    @Override
+    public void add(Object data) throws IOException {
+        if (data == null) {
+            addNull();
+        }
+        else {
+            addValue(data);
+        }
+    }
+
+    @Override
+    public void addNull() {
+        currentRowNum ++;
+        nullValueCount ++;
+    }
+
+    /**
+     * Record a non-null value given as the object returned by the parquet column reader.
+     * @param data the value.
+     * @throws IOException
+     */
+    protected abstract void addValue(Object data) throws IOException;
+
+    /**
+     * Count the next row as a non-null value whose value is added later, once for all the rows holding it.
+     * Used for dictionary encoded columns, see {@link StringColumnAccumulator#addStringRows(String, long)}.
+     */
+    public void addValueRow() {
+        nextValueRow();
+    }
+
+    /**
+     * Count the next row as a non-null value.
+     */
+    protected final void nextValueRow() {
+        currentRowNum ++;
+        lastValueRowNum = currentRowNum;
+    }
+
+    @Override
+    public void merge(ColumnAccumulator following) throws IOException {
+        AbstractColumnAccumulator other = (AbstractColumnAccumulator) following;
+        cardinalityCalculator.merge(other.cardinalityCalculator);
+        if (other.lastValueRowNum > 0) {
+            lastValueRowNum = currentRowNum + other.lastValueRowNum;
+        }
+        currentRowNum += other.currentRowNum;
+        nullValueCount += other.nullValueCount;
+        mergeValues(other);
+    }
+
+    /**
+     * Merge the value statistics of an accumulator of the same class.
+     * @param other the accumulator of the following rows.
+     */
+    protected abstract void mergeValues(AbstractColumnAccumulator other);
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public String getDataType() {
+        return dataType;
+    }
+
+    /**
+     * @return the factory of the distinct value calculator of the column.
+     */
+    public CardinalityCalculatorFactory getCardinalityCalculatorFactory() {
+        return cardinalityCalculatorFactory;
+    }
+
+    public AccumulatorOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * @return the distinct value calculator of the column.
+     */
+    public CardinalityCalculator getCardinalityCalculator() {
+        return cardinalityCalculator;
+    }
+
+    /**
+     * @return the number of rows recorded, null or not.
+     */
+    public long getRowCount() {
+        return currentRowNum;
+    }
+
+    /**
+     * @return the number of non-null values.
+     */
+    protected long getValueCount() {
+        return currentRowNum - nullValueCount;
+    }
+
+    /**
+     * @return the moments of the values of a numeric column, null for the other columns.
+     */
+    public Moments getMoments() {
+        return null;
+    }
+
+    @Override
+    public boolean isSplittable() {
+        return true;
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(currentRowNum);
+        out.writeLong(lastValueRowNum);
+        out.writeLong(nullValueCount);
+        cardinalityCalculator.writeState(out);
+        writeValues(out);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        currentRowNum = in.readLong();
+        lastValueRowNum = in.readLong();
+        nullValueCount = in.readLong();
+        cardinalityCalculator.readState(in);
+        readValues(in);
+    }
+
+    /**
+     * Save the value statistics of the column.
+     * @param out
+     * @throws IOException
+     */
+    protected abstract void writeValues(DataOutput out) throws IOException;
+
+    /**
+     * Restore the value statistics written by {@link #writeValues(DataOutput)}.
+     * @param in
+     * @throws IOException
+     */
+    protected abstract void readValues(DataInput in) throws IOException;
+
+    /**
+     * @return a new quantile sketch, null when the percentiles are not computed.
+     */
+    protected QuantileSketch newQuantileSketch() {
+        return options.getQuantileSketchSize() == 0 ? null : new QuantileSketch(options.getQuantileSketchSize());
+    }
+
+    /**
+     * @return new counters of the most frequent values, null when the top values are not computed.
+     */
+    protected FrequentValues newFrequentValues() {
+        return options.getTopValueCount() == 0 ? null : new FrequentValues(options.getTopValueCount(), options.getTopValueCapacity());
+    }
+
+    /**
+     * Merge the top value counters of the following rows, the top values are dropped when either side has none.
+     * @return the merged counters.
+     */
+    protected static FrequentValues mergeFrequentValues(FrequentValues frequentValues, FrequentValues following) {
+        if (frequentValues == null || following == null) {
+            return null;
+        }
+        frequentValues.merge(following);
+        return frequentValues;
+    }
+
+    /**
+     * @param minExponent the exponent of the smallest bucket width, see {@link EquiWidthHistogram}.
+     * @return a new equi-width histogram, null when the histograms are not computed.
+     */
+    protected EquiWidthHistogram newEquiWidthHistogram(int minExponent) {
+        return options.getHistogramBuckets() == 0 ? null : new EquiWidthHistogram(options.getHistogramBuckets(), minExponent);
+    }
+
+    /**
+     * Merge the histogram of the following rows, the histogram is dropped when either side has none.
+     * @return the merged histogram.
+     */
+    protected static EquiWidthHistogram mergeEquiWidthHistogram(EquiWidthHistogram histogram, EquiWidthHistogram following) {
+        if (histogram == null || following == null) {
+            return null;
+        }
+        histogram.merge(following);
+        return histogram;
+    }
+
+    protected static void writeEquiWidthHistogram(DataOutput out, EquiWidthHistogram histogram) throws IOException {
+        out.writeBoolean(histogram != null);
+        if (histogram != null) {
+            histogram.writeTo(out);
+        }
+    }
+
+    protected static EquiWidthHistogram readEquiWidthHistogram(DataInput in) throws IOException {
+        return in.readBoolean() ? EquiWidthHistogram.read(in) : null;
+    }
+
+    /**
+     * Fill the equi-width histogram and the equi-depth histogram of the quantile sketch.
+     * @param columnStats the column stats to fill.
+     * @param histogram the equi-width histogram, may be null.
+     * @param quantileSketch the quantile sketch, may be null.
+     * @param widthFormat converts a bound of the equi-width histogram to the value reported in the column stats.
+     * @param depthFormat converts a bound of the equi-depth histogram, a quantile, to the value reported.
+     */
+    protected void finishHistograms(ColumnStats columnStats, EquiWidthHistogram histogram, QuantileSketch quantileSketch,
+                                    DoubleFunction<Object> widthFormat, DoubleFunction<Object> depthFormat) {
+        if (histogram != null) {
+            columnStats.setHistogram(histogram.getHistogram(widthFormat));
+        }
+        if (quantileSketch != null && options.getHistogramBuckets() > 0) {
+            columnStats.setEquiDepthHistogram(quantileSketch.getEquiDepthHistogram(options.getHistogramBuckets(), depthFormat));
+        }
+    }
+
+    /**
+     * Fill the variance, standard deviation, skewness and kurtosis of a numeric column.
+     * @param columnStats the column stats to fill.
+     * @param moments the moments of the column.
+     */
+    protected static void finishMoments(ColumnStats columnStats, Moments moments) {
+        columnStats.setVariance(moments.getVariance());
+        columnStats.setStdDev(moments.getStandardDeviation());
+        if (!Double.isNaN(moments.getSkewness())) {
+            columnStats.setSkewness(moments.getSkewness());
+            columnStats.setKurtosis(moments.getKurtosis());
+        }
+    }
+
+    protected static void writeFrequentValues(DataOutput out, FrequentValues frequentValues) throws IOException {
+        out.writeBoolean(frequentValues != null);
+        if (frequentValues != null) {
+            frequentValues.writeTo(out);
+        }
+    }
+
+    protected static FrequentValues readFrequentValues(DataInput in) throws IOException {
+        return in.readBoolean() ? FrequentValues.read(in) : null;
+    }
+
+    /**
+     * Merge the quantile sketch of the following rows, the percentiles are dropped when either side has no sketch.
+     * @return the merged sketch.
+     */
+    protected static QuantileSketch mergeQuantileSketch(QuantileSketch sketch, QuantileSketch following) {
+        if (sketch == null || following == null) {
+            return null;
+        }
+        sketch.merge(following);
+        return sketch;
+    }
+
+    protected static void writeQuantileSketch(DataOutput out, QuantileSketch sketch) throws IOException {
+        out.writeBoolean(sketch != null);
+        if (sketch != null) {
+            sketch.writeTo(out);
+        }
+    }
+
+    protected static QuantileSketch readQuantileSketch(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        QuantileSketch sketch = new QuantileSketch(QuantileSketch.DEFAULT_SIZE);
+        sketch.readFrom(in);
+        return sketch;
+    }
+
+    @Override
+    public ColumnStats finish() throws IOException {
+        try {
+            return buildStats(cardinalityCalculator.count());
+        }
+        finally {
+            release();
+        }
+    }
+
+    @Override
+    public ColumnStats snapshot() throws IOException {
+        return buildStats(cardinalityCalculator.countSoFar());
+    }
+
+    @Override
+    public void release() {
+        cardinalityCalculator.release();
+    }
+
+    private ColumnStats buildStats(long cardinality) {
+        ColumnStats columnStats = new ColumnStats();
+        columnStats.setFieldName(fieldName);
+        columnStats.setDataType(dataType);
+        columnStats.setNullValueCount(nullValueCount);
+        if (cardinality >= 0) {
+            columnStats.setCardinality(cardinality);
+            columnStats.setCardinalityEstimated(!cardinalityCalculator.isExact());
+        }
+        if (lastValueRowNum > 0) {
+            finishValues(columnStats);
+        }
+        return columnStats;
+    }
+
+    /**
+     * Fill the value statistics of the column, only called when the column has at least one non-null value.
+     * @param columnStats the column stats to fill.
+     */
+    protected abstract void finishValues(ColumnStats columnStats);
+}
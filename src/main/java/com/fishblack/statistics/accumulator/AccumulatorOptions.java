@@ -0,0 +1,77 @@
+package com.fishblack.statistics.accumulator;
+
+/**
+ * The settings of the richer statistics of the column accumulators, shared by all the columns of a scan.
+ * Instances are immutable, the with methods return a changed copy.
+ */
+public final class AccumulatorOptions {
+
+    public static final int DEFAULT_HISTOGRAM_BUCKETS = 20;
+    public static final int MAX_HISTOGRAM_BUCKETS = 1000;
+    public static final AccumulatorOptions DEFAULT = new AccumulatorOptions(QuantileSketch.DEFAULT_SIZE,
+            FrequentValues.DEFAULT_TOP_COUNT, FrequentValues.DEFAULT_CAPACITY, DEFAULT_HISTOGRAM_BUCKETS);
+
+    private final int quantileSketchSize;
+    private final int topValueCount;
+    private final int topValueCapacity;
+    private final int histogramBuckets;
+
+    private AccumulatorOptions(int quantileSketchSize, int topValueCount, int topValueCapacity, int histogramBuckets) {
+        this.quantileSketchSize = quantileSketchSize;
+        this.topValueCount = topValueCount;
+        this.topValueCapacity = topValueCapacity;
+        this.histogramBuckets = histogramBuckets;
+    }
+
+    /**
+     * @param quantileSketchSize the size of the percentile sketches, 0 to skip the percentiles, see {@link QuantileSketch}.
+     * @return the options with the given sketch size.
+     */
+    public AccumulatorOptions withQuantileSketchSize(int quantileSketchSize) {
+        if (quantileSketchSize != 0 && quantileSketchSize < QuantileSketch.MIN_SIZE) {
+            throw new IllegalArgumentException("Quantile sketch size must be 0 or at least " + QuantileSketch.MIN_SIZE + ": " + quantileSketchSize);
+        }
+        return new AccumulatorOptions(quantileSketchSize, topValueCount, topValueCapacity, histogramBuckets);
+    }
+
+    /**
+     * @param topValueCount the number of most frequent values reported, 0 to skip them.
+     * @param topValueCapacity the number of values counted, the counts are off by at most rows / capacity.
+     * @return the options with the given top values.
+     */
+    public AccumulatorOptions withTopValues(int topValueCount, int topValueCapacity) {
+        if (topValueCount < 0 || (topValueCount > 0 && topValueCapacity < topValueCount)) {
+            throw new IllegalArgumentException("Top values must not be negative and capacity at least the count: "
+                    + topValueCount + ", " + topValueCapacity);
+        }
+        return new AccumulatorOptions(quantileSketchSize, topValueCount, topValueCapacity, histogramBuckets);
+    }
+
+    /**
+     * @param histogramBuckets the number of buckets of the histograms, 0 to skip them. The equi-depth histogram
+     *                         also needs the quantile sketch.
+     * @return the options with the given histogram buckets.
+     */
+    public AccumulatorOptions withHistogramBuckets(int histogramBuckets) {
+        if (histogramBuckets < 0 || histogramBuckets > MAX_HISTOGRAM_BUCKETS) {
+            throw new IllegalArgumentException("Histogram buckets must be between 0 and " + MAX_HISTOGRAM_BUCKETS + ": " + histogramBuckets);
+        }
+        return new AccumulatorOptions(quantileSketchSize, topValueCount, topValueCapacity, histogramBuckets);
+    }
+
+    public int getQuantileSketchSize() {
+        return quantileSketchSize;
+    }
+
+    public int getTopValueCount() {
+        return topValueCount;
+    }
+
+    public int getTopValueCapacity() {
+        return topValueCapacity;
+    }
+
+    public int getHistogramBuckets() {
+        return histogramBuckets;
+    }
+}
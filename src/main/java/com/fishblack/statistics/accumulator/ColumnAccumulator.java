@@ -0,0 +1,80 @@
+package com.fishblack.statistics.accumulator;
+
+import com.fishblack.statistics.ColumnStats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Collects the statistics of one column value by value.
+ * A column can be split in consecutive row ranges, every range gets its own partial accumulator
+ * from {@link #newPartial()} and the partials are merged back in row order.
+ */
+public interface ColumnAccumulator {
+
+    /**
+     * Record the next value of the column.
+     * @param data the value, null for a null value.
+     * @throws IOException
+     */
+    void add(Object data) throws IOException;
+
+    /**
+     * Record a null value as the next value of the column.
+     */
+    void addNull();
+
+    /**
+     * @return an empty accumulator for the same column.
+     */
+    ColumnAccumulator newPartial();
+
+    /**
+     * Merge the partial accumulator of the rows following the rows of this accumulator.
+     * @param following the accumulator created by {@link #newPartial()} for the next row range.
+     * @throws IOException
+     */
+    void merge(ColumnAccumulator following) throws IOException;
+
+    /**
+     * @return true if merging partials of row ranges gives exactly the same result as one accumulator
+     * over all the rows, false if the column must be read by one accumulator in row order.
+     */
+    boolean isSplittable();
+
+    /**
+     * Save everything recorded so far, see {@link com.fishblack.statistics.ProfileState}.
+     * @param out the output the state is written to.
+     * @throws IOException
+     */
+    void writeState(DataOutput out) throws IOException;
+
+    /**
+     * Restore a state written by {@link #writeState(DataOutput)} into an empty accumulator of the same column.
+     * @param in the input the state is read from.
+     * @throws IOException
+     */
+    void readState(DataInput in) throws IOException;
+
+    /**
+     * Build the column stats from everything recorded so far and release the accumulator.
+     * @return the column stats.
+     * @throws IOException
+     */
+    ColumnStats finish() throws IOException;
+
+    /**
+     * Build the column stats from everything recorded so far without ending the accumulation, values can still be
+     * added afterwards. The distinct count is left out when the calculator only knows it at the end.
+     * @return the column stats so far.
+     * @throws IOException
+     */
+    ColumnStats snapshot() throws IOException;
+
+    /**
+     * Give back the memory the accumulator reserved from the {@link com.fishblack.statistics.MemoryBudget}, done by
+     * {@link #finish()}. An accumulator dropped without being finished must be released.
+     */
+    void release();
+}
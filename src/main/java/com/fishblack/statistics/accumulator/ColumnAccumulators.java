@@ -0,0 +1,52 @@
+package com.fishblack.statistics.accumulator;
+
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+
+/**
+ * Chooses the column accumulator of a data type.
+ */
+public final class ColumnAccumulators {
+
+    private ColumnAccumulators() {
+    }
+
+    /**
+     * Create the accumulator of a column.
+     * @param fieldName the name reported in the column stats.
+     * @param dataType the data type as returned by Calculator's type conversion.
+     * @param cardinalityCalculatorFactory creates the distinct value calculator of the column.
+     * @return a new accumulator.
+     */
+    public static ColumnAccumulator create(String fieldName, String dataType,
+                                           CardinalityCalculatorFactory cardinalityCalculatorFactory) {
+        return create(fieldName, dataType, cardinalityCalculatorFactory, AccumulatorOptions.DEFAULT);
+    }
+
+    /**
+     * Create the accumulator of a column.
+     * @param fieldName the name reported in the column stats.
+     * @param dataType the data type as returned by Calculator's type conversion.
+     * @param cardinalityCalculatorFactory creates the distinct value calculator of the column.
+     * @param options the settings of the richer statistics.
+     * @return a new accumulator.
+     */
+    public static ColumnAccumulator create(String fieldName, String dataType,
+                                           CardinalityCalculatorFactory cardinalityCalculatorFactory, AccumulatorOptions options) {
+        switch (dataType == null ? "" : dataType) {
+            case "double":
+                return new DoubleColumnAccumulator(fieldName, dataType, cardinalityCalculatorFactory, options);
+            case "integer":
+                return new LongColumnAccumulator(fieldName, dataType, cardinalityCalculatorFactory, options);
+            case "decimal":
+                return new DecimalColumnAccumulator(fieldName, dataType, cardinalityCalculatorFactory, options);
+            case "timestamp":
+            case "date":
+            case "time":
+                return new TemporalColumnAccumulator(fieldName, dataType, cardinalityCalculatorFactory, options);
+            case "string":
+                return new StringColumnAccumulator(fieldName, dataType, cardinalityCalculatorFactory, options);
+            default:
+                return new ObjectColumnAccumulator(fieldName, dataType, cardinalityCalculatorFactory, options);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.fishblack.statistics.accumulator;
+
+import com.fishblack.statistics.ColumnStats;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.function.DoubleFunction;
+
+/**
+ * Accumulator of decimal columns.
+ * Decimals of up to 18 digits, which parquet stores as int32 or int64 unscaled values, are added as unscaled longs of
+ * the scale of the column: the sum is a long that only spills to a BigInteger on overflow, and the decimals of the
+ * sum, min and max are built once when the column stats are filled. Other decimals are added as BigDecimal.
+ */
+public class DecimalColumnAccumulator extends AbstractColumnAccumulator {
+
+    private static final int NO_SCALE = Integer.MIN_VALUE;
+    private static final long MAX_UNSCALED = 999_999_999_999_999_999L;
+    // the powers of ten exactly held by a double
+    private static final double[] DOUBLE_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // the unscaled values, scale is NO_SCALE until the first one
+    private int scale = NO_SCALE;
+    private long unscaledSum = 0;
+    // the additions that overflowed the long sum, null until then
+    private BigInteger unscaledSumOverflow;
+    private long unscaledMin = Long.MAX_VALUE;
+    private long unscaledMax = Long.MIN_VALUE;
+    // the decimals that are not unscaled values, null until the first one
+    private BigDecimal sum;
+    private BigDecimal min;
+    private BigDecimal max;
+    private final Moments moments = new Moments();
+    private QuantileSketch quantileSketch;
+    private FrequentValues frequentValues;
+    private EquiWidthHistogram histogram;
+
+    public DecimalColumnAccumulator(String fieldName, String dataType, CardinalityCalculatorFactory cardinalityCalculatorFactory) {
+        this(fieldName, dataType, cardinalityCalculatorFactory, AccumulatorOptions.DEFAULT);
+    }
+
+    public DecimalColumnAccumulator(String fieldName, String dataType, CardinalityCalculatorFactory cardinalityCalculatorFactory,
+                                    AccumulatorOptions options) {
+        super(fieldName, dataType, cardinalityCalculatorFactory, options);
+        this.quantileSketch = newQuantileSketch();
+        this.frequentValues = newFrequentValues();
+        this.histogram = newEquiWidthHistogram(Integer.MIN_VALUE);
+    }
+
+    @Override
+    protected void addValue(Object data) throws IOException {
+        addDecimal((BigDecimal) data);
+    }
+
+    public void addDecimal(BigDecimal value) throws IOException {
+        nextValueRow();
+        addDecimalRows(value, 1);
+    }
+
+    /**
+     * Add a value held by several rows already counted with {@link #addValueRow()}.
+     * @param value the value.
+     * @param rows the number of rows holding the value.
+     * @throws IOException
+     */
+    public void addDecimalRows(BigDecimal value, long rows) throws IOException {
+        if (value.precision() <= 18 && (scale == NO_SCALE || scale == value.scale())) {
+            addUnscaledRows(value.unscaledValue().longValue(), value.scale(), rows);
+        }
+        else {
+            addBigDecimalRows(value, rows);
+        }
+    }
+
+    /**
+     * Add the decimal {@code BigDecimal.valueOf(unscaledValue, scale)}.
+     * @param unscaledValue
+     * @param scale
+     * @throws IOException
+     */
+    public void addUnscaled(long unscaledValue, int scale) throws IOException {
+        nextValueRow();
+        addUnscaledRows(unscaledValue, scale, 1);
+    }
+
+    /**
+     * Add a decimal given as its unscaled value held by several rows already counted with {@link #addValueRow()}.
+     * @param unscaledValue
+     * @param scale
+     * @param rows the number of rows holding the value.
+     * @throws IOException
+     */
+    public void addUnscaledRows(long unscaledValue, int scale, long rows) throws IOException {
+        if (unscaledValue > MAX_UNSCALED || unscaledValue < -MAX_UNSCALED || (this.scale != NO_SCALE && this.scale != scale)) {
+            addBigDecimalRows(BigDecimal.valueOf(unscaledValue, scale), rows);
+            return;
+        }
+        this.scale = scale;
+        cardinalityCalculator.addDecimalRows(unscaledValue, scale, rows);
+        double value = toDouble(unscaledValue, scale);
+        moments.add(value, rows);
+        if (quantileSketch != null) {
+            quantileSketch.add(value, rows);
+        }
+        if (frequentValues != null) {
+            frequentValues.addDecimal(unscaledValue, scale, rows);
+        }
+        if (histogram != null) {
+            histogram.add(value, rows);
+        }
+        addUnscaledSum(unscaledValue, rows);
+        unscaledMin = Math.min(unscaledMin, unscaledValue);
+        unscaledMax = Math.max(unscaledMax, unscaledValue);
+    }
+
+    private void addBigDecimalRows(BigDecimal value, long rows) throws IOException {
+        cardinalityCalculator.addRows(value, rows);
+        moments.add(value.doubleValue(), rows);
+        if (quantileSketch != null) {
+            quantileSketch.add(value.doubleValue(), rows);
+        }
+        if (frequentValues != null) {
+            frequentValues.addDecimal(value, rows);
+        }
+        if (histogram != null) {
+            histogram.add(value.doubleValue(), rows);
+        }
+        BigDecimal total = rows == 1 ? value : value.multiply(BigDecimal.valueOf(rows));
+        if (sum == null) {
+            sum = total;
+            min = value;
+            max = value;
+        }
+        else {
+            sum = sum.add(total);
+            min = value.min(min);
+            max = value.max(max);
+        }
+    }
+
+    private void addUnscaledSum(long unscaledValue, long rows) {
+        if (rows != 1 && Math.abs(unscaledValue) > Long.MAX_VALUE / rows) {
+            addUnscaledSumOverflow(BigInteger.valueOf(unscaledValue).multiply(BigInteger.valueOf(rows)));
+            return;
+        }
+        long total = unscaledValue * rows;
+        long result = unscaledSum + total;
+        if (((unscaledSum ^ result) & (total ^ result)) < 0) {
+            // the long sum moves to the BigInteger and restarts from the value
+            addUnscaledSumOverflow(BigInteger.valueOf(unscaledSum));
+            unscaledSum = total;
+        }
+        else {
+            unscaledSum = result;
+        }
+    }
+
+    private void addUnscaledSumOverflow(BigInteger total) {
+        unscaledSumOverflow = unscaledSumOverflow == null ? total : unscaledSumOverflow.add(total);
+    }
+
+    /**
+     * @return the double closest to the decimal, the same as {@link BigDecimal#doubleValue()} without building it.
+     */
+    private static double toDouble(long unscaledValue, int scale) {
+        if (scale == 0) {
+            return unscaledValue;
+        }
+        // both operands are exact, so the division is correctly rounded like BigDecimal.doubleValue()
+        if (Math.abs(unscaledValue) < 1L << 52 && scale > 0 && scale < DOUBLE_POWERS_OF_TEN.length) {
+            return unscaledValue / DOUBLE_POWERS_OF_TEN[scale];
+        }
+        return BigDecimal.valueOf(unscaledValue, scale).doubleValue();
+    }
+
+    @Override
+    public ColumnAccumulator newPartial() {
+        return new DecimalColumnAccumulator(fieldName, dataType, cardinalityCalculatorFactory, options);
+    }
+
+    @Override
+    protected void mergeValues(AbstractColumnAccumulator other) {
+        DecimalColumnAccumulator accumulator = (DecimalColumnAccumulator) other;
+        if (accumulator.scale != NO_SCALE) {
+            if (scale == NO_SCALE || scale == accumulator.scale) {
+                scale = accumulator.scale;
+                addUnscaledSum(accumulator.unscaledSum, 1);
+                if (accumulator.unscaledSumOverflow != null) {
+                    addUnscaledSumOverflow(accumulator.unscaledSumOverflow);
+                }
+                unscaledMin = Math.min(unscaledMin, accumulator.unscaledMin);
+                unscaledMax = Math.max(unscaledMax, accumulator.unscaledMax);
+            }
+            else {
+                mergeBigDecimals(accumulator.getUnscaledSum(), BigDecimal.valueOf(accumulator.unscaledMin, accumulator.scale),
+                        BigDecimal.valueOf(accumulator.unscaledMax, accumulator.scale));
+            }
+        }
+        if (accumulator.sum != null) {
+            mergeBigDecimals(accumulator.sum, accumulator.min, accumulator.max);
+        }
+        moments.merge(accumulator.moments);
+        quantileSketch = mergeQuantileSketch(quantileSketch, accumulator.quantileSketch);
+        frequentValues = mergeFrequentValues(frequentValues, accumulator.frequentValues);
+        histogram = mergeEquiWidthHistogram(histogram, accumulator.histogram);
+    }
+
+    private void mergeBigDecimals(BigDecimal otherSum, BigDecimal otherMin, BigDecimal otherMax) {
+        if (sum == null) {
+            sum = otherSum;
+            min = otherMin;
+            max = otherMax;
+        }
+        else {
+            sum = sum.add(otherSum);
+            min = otherMin.compareTo(min) < 0 ? otherMin : min;
+            max = otherMax.compareTo(max) > 0 ? otherMax : max;
+        }
+    }
+
+    /**
+     * @return the sum of the unscaled values as a decimal.
+     */
+    private BigDecimal getUnscaledSum() {
+        if (unscaledSumOverflow == null) {
+            return BigDecimal.valueOf(unscaledSum, scale);
+        }
+        return new BigDecimal(unscaledSumOverflow.add(BigInteger.valueOf(unscaledSum)), scale);
+    }
+
+    @Override
+    public Moments getMoments() {
+        return moments;
+    }
+
+    /**
+     * The decimals are written as strings, which keep their scale.
+     */
+    @Override
+    protected void writeValues(DataOutput out) throws IOException {
+        out.writeInt(scale);
+        if (scale != NO_SCALE) {
+            out.writeLong(unscaledSum);
+            out.writeUTF(unscaledSumOverflow == null ? "" : unscaledSumOverflow.toString());
+            out.writeLong(unscaledMin);
+            out.writeLong(unscaledMax);
+        }
+        out.writeBoolean(sum != null);
+        if (sum != null) {
+            out.writeUTF(sum.toString());
+            out.writeUTF(min.toString());
+            out.writeUTF(max.toString());
+        }
+        moments.writeTo(out);
+        writeQuantileSketch(out, quantileSketch);
+        writeFrequentValues(out, frequentValues);
+        writeEquiWidthHistogram(out, histogram);
+    }
+
+    @Override
+    protected void readValues(DataInput in) throws IOException {
+        scale = in.readInt();
+        if (scale != NO_SCALE) {
+            unscaledSum = in.readLong();
+            String overflow = in.readUTF();
+            unscaledSumOverflow = overflow.isEmpty() ? null : new BigInteger(overflow);
+            unscaledMin = in.readLong();
+            unscaledMax = in.readLong();
+        }
+        if (in.readBoolean()) {
+            sum = new BigDecimal(in.readUTF());
+            min = new BigDecimal(in.readUTF());
+            max = new BigDecimal(in.readUTF());
+        }
+        moments.readFrom(in);
+        quantileSketch = readQuantileSketch(in);
+        frequentValues = readFrequentValues(in);
+        histogram = readEquiWidthHistogram(in);
+    }
+
+    @Override
+    protected void finishValues(ColumnStats columnStats) {
+        BigDecimal sum = this.sum;
+        BigDecimal min = this.min;
+        BigDecimal max = this.max;
+        if (scale != NO_SCALE) {
+            BigDecimal unscaledMin = BigDecimal.valueOf(this.unscaledMin, scale);
+            BigDecimal unscaledMax = BigDecimal.valueOf(this.unscaledMax, scale);
+            sum = sum == null ? getUnscaledSum() : sum.add(getUnscaledSum());
+            min = min == null ? unscaledMin : unscaledMin.min(min);
+            max = max == null ? unscaledMax : unscaledMax.max(max);
+        }
+        columnStats.setSum(sum);
+        columnStats.setMean(sum.divide(new BigDecimal(getValueCount()), RoundingMode.UP));
+        finishMoments(columnStats, moments);
+        columnStats.setMin(min);
+        columnStats.setMax(max);
+        // the sketch keeps doubles, the percentiles get back the scale of the values
+        int scale = Math.max(min.scale(), max.scale());
+        DoubleFunction<Object> quantileFormat = value -> BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP);
+        if (quantileSketch != null) {
+            columnStats.setPercentiles(quantileSketch.getPercentiles(quantileFormat));
+        }
+        if (frequentValues != null) {
+            columnStats.setTopValues(frequentValues.getTopValues(value -> value));
+        }
+        // the bucket bounds are powers of two multiples, finer than the scale for a narrow range
+        finishHistograms(columnStats, histogram, quantileSketch, BigDecimal::valueOf, quantileFormat);
+    }
+}
@@ -0,0 +1,126 @@
+package com.fishblack.statistics.accumulator;
+
+import com.fishblack.statistics.ColumnStats;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Accumulator of double columns.
+ */
+public class DoubleColumnAccumulator extends AbstractColumnAccumulator {
+
+    // -0.0 is the identity of double addition, 0.0 would turn a sum of -0.0 values into 0.0
+    private double sum = -0.0d;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private final Moments moments = new Moments();
+    private QuantileSketch quantileSketch;
+    private FrequentValues frequentValues;
+    private EquiWidthHistogram histogram;
+
+    public DoubleColumnAccumulator(String fieldName, String dataType, CardinalityCalculatorFactory cardinalityCalculatorFactory) {
+        this(fieldName, dataType, cardinalityCalculatorFactory, AccumulatorOptions.DEFAULT);
+    }
+
+    public DoubleColumnAccumulator(String fieldName, String dataType, CardinalityCalculatorFactory cardinalityCalculatorFactory,
+                                   AccumulatorOptions options) {
+        super(fieldName, dataType, cardinalityCalculatorFactory, options);
+        this.quantileSketch = newQuantileSketch();
+        this.frequentValues = newFrequentValues();
+        this.histogram = newEquiWidthHistogram(Integer.MIN_VALUE);
+    }
+
+    @Override
+    protected void addValue(Object data) throws IOException {
+        addDouble((Double) data);
+    }
+
+    public void addDouble(double value) throws IOException {
+        nextValueRow();
+        cardinalityCalculator.addDouble(value);
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        moments.add(value);
+        if (quantileSketch != null) {
+            quantileSketch.add(value);
+        }
+        if (frequentValues != null) {
+            frequentValues.addDouble(value, 1);
+        }
+        if (histogram != null) {
+            histogram.add(value, 1);
+        }
+    }
+
+    @Override
+    public ColumnAccumulator newPartial() {
+        return new DoubleColumnAccumulator(fieldName, dataType, cardinalityCalculatorFactory, options);
+    }
+
+    @Override
+    protected void mergeValues(AbstractColumnAccumulator other) {
+        DoubleColumnAccumulator accumulator = (DoubleColumnAccumulator) other;
+        sum += accumulator.sum;
+        min = Math.min(min, accumulator.min);
+        max = Math.max(max, accumulator.max);
+        moments.merge(accumulator.moments);
+        quantileSketch = mergeQuantileSketch(quantileSketch, accumulator.quantileSketch);
+        frequentValues = mergeFrequentValues(frequentValues, accumulator.frequentValues);
+        histogram = mergeEquiWidthHistogram(histogram, accumulator.histogram);
+    }
+
+    @Override
+    public Moments getMoments() {
+        return moments;
+    }
+
+    @Override
+    protected void writeValues(DataOutput out) throws IOException {
+        out.writeDouble(sum);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        moments.writeTo(out);
+        writeQuantileSketch(out, quantileSketch);
+        writeFrequentValues(out, frequentValues);
+        writeEquiWidthHistogram(out, histogram);
+    }
+
+    @Override
+    protected void readValues(DataInput in) throws IOException {
+        sum = in.readDouble();
+        min = in.readDouble();
+        max = in.readDouble();
+        moments.readFrom(in);
+        quantileSketch = readQuantileSketch(in);
+        frequentValues = readFrequentValues(in);
+        histogram = readEquiWidthHistogram(in);
+    }
+
+    /**
+     * Double sums depend on the order of the additions, so double columns are not split.
+     */
+    @Override
+    public boolean isSplittable() {
+        return false;
+    }
+
+    @Override
+    protected void finishValues(ColumnStats columnStats) {
+        columnStats.setSum(sum);
+        columnStats.setMean(sum / getValueCount());
+        finishMoments(columnStats, moments);
+        columnStats.setMin(min);
+        columnStats.setMax(max);
+        if (quantileSketch != null) {
+            columnStats.setPercentiles(quantileSketch.getPercentiles(value -> value));
+        }
+        if (frequentValues != null) {
+            columnStats.setTopValues(frequentValues.getTopValues(value -> value));
+        }
+        finishHistograms(columnStats, histogram, quantileSketch, value -> value, value -> value);
+    }
+}
@@ -0,0 +1,221 @@
+package com.fishblack.statistics.accumulator;
+
+import com.fishblack.statistics.Histogram;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleFunction;
+
+/**
+ * Equi-width histogram built in one pass without knowing the range of the values first.
+ * The buckets are aligned on multiples of a power of two width, the smallest width for which the values fit in the
+ * buckets. When a value falls outside of the buckets the width doubles, merging every two neighbour buckets, until
+ * it fits. The width only depends on the min and max of the values, so the counts are exact and the same whichever
+ * way the rows are split and merged. The reported buckets go from the bucket of the min to the bucket of the max,
+ * more than half of the configured buckets unless the column has a single value, the first bucket starts at the min
+ * and the last one ends at the max.
+ * Infinite and NaN values are not counted.
+ */
+public class EquiWidthHistogram {
+
+    private final int bucketCount;
+    private final int minExponent;
+    private long count = 0;
+    private double min;
+    private double max;
+    // null while every value equals min, the buckets then start at bucket index start of width 2^exponent
+    private long[] buckets;
+    private long start;
+    private int exponent;
+
+    /**
+     * @param bucketCount the number of buckets.
+     * @param minExponent the exponent of the smallest width, 0 for integer values, Integer.MIN_VALUE for any width.
+     */
+    public EquiWidthHistogram(int bucketCount, int minExponent) {
+        this.bucketCount = bucketCount;
+        this.minExponent = minExponent;
+    }
+
+    public void add(double value, long rows) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+        if (count == 0) {
+            min = value;
+            max = value;
+        }
+        else if (value != min || buckets != null) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            if (buckets == null) {
+                // the second distinct value, the single value counted so far gets its bucket
+                long singleValueRows = count;
+                double singleValue = value == min ? max : min;
+                rebucket(fitExponent(lowExponent()));
+                buckets[(int) (index(singleValue) - start)] += singleValueRows;
+            }
+            else if (index(value) < start || index(value) >= start + bucketCount) {
+                rebucket(fitExponent(exponent));
+            }
+            buckets[(int) (index(value) - start)] += rows;
+        }
+        count += rows;
+    }
+
+    /**
+     * Merge the histogram of another column part, the other histogram is left unchanged.
+     * @param other a histogram of the same bucket count.
+     */
+    public void merge(EquiWidthHistogram other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (other.buckets == null) {
+            add(other.min, other.count);
+            return;
+        }
+        if (buckets == null) {
+            double singleValue = min;
+            long singleValueRows = count;
+            count = other.count;
+            min = other.min;
+            max = other.max;
+            exponent = other.exponent;
+            start = other.start;
+            buckets = other.buckets.clone();
+            if (singleValueRows > 0) {
+                add(singleValue, singleValueRows);
+            }
+            return;
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        rebucket(fitExponent(Math.max(exponent, other.exponent)));
+        for (int i = 0; i < other.buckets.length; i++) {
+            if (other.buckets[i] > 0) {
+                buckets[(int) (coarser(other.start + i, exponent - other.exponent) - start)] += other.buckets[i];
+            }
+        }
+        count += other.count;
+    }
+
+    /**
+     * @param format converts a bucket bound to the value reported in the column stats.
+     * @return the histogram, null when no value was counted.
+     */
+    public Histogram getHistogram(DoubleFunction<Object> format) {
+        if (count == 0) {
+            return null;
+        }
+        List<Object> bounds = new ArrayList<>();
+        if (buckets == null) {
+            bounds.add(format.apply(min));
+            bounds.add(format.apply(max));
+            return new Histogram(bounds, new long[]{count});
+        }
+        int first = (int) (index(min) - start);
+        int last = (int) (index(max) - start);
+        // the outer bounds are the min and max rather than the bucket edges
+        bounds.add(format.apply(min));
+        for (int i = first + 1; i <= last; i++) {
+            bounds.add(format.apply(Math.scalb((double) (start + i), exponent)));
+        }
+        bounds.add(format.apply(max));
+        return new Histogram(bounds, Arrays.copyOfRange(buckets, first, last + 1));
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(bucketCount);
+        out.writeInt(minExponent);
+        out.writeLong(count);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeBoolean(buckets != null);
+        if (buckets != null) {
+            out.writeLong(start);
+            out.writeInt(exponent);
+            for (long bucket : buckets) {
+                out.writeLong(bucket);
+            }
+        }
+    }
+
+    /**
+     * Read a histogram written by {@link #writeTo(DataOutput)}.
+     * @param in
+     * @return the histogram.
+     * @throws IOException
+     */
+    public static EquiWidthHistogram read(DataInput in) throws IOException {
+        EquiWidthHistogram histogram = new EquiWidthHistogram(in.readInt(), in.readInt());
+        histogram.count = in.readLong();
+        histogram.min = in.readDouble();
+        histogram.max = in.readDouble();
+        if (in.readBoolean()) {
+            histogram.start = in.readLong();
+            histogram.exponent = in.readInt();
+            histogram.buckets = new long[histogram.bucketCount];
+            for (int i = 0; i < histogram.bucketCount; i++) {
+                histogram.buckets[i] = in.readLong();
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * @return an exponent below the smallest width fitting min and max.
+     */
+    private int lowExponent() {
+        int exponent = Math.getExponent(max - min) - (32 - Integer.numberOfLeadingZeros(bucketCount)) - 1;
+        return Math.max(exponent, minExponent);
+    }
+
+    /**
+     * @return the smallest exponent from the given one for which min and max are at most bucketCount buckets apart.
+     */
+    private int fitExponent(int from) {
+        int fit = from;
+        while (index(max, fit) - index(min, fit) >= bucketCount) {
+            fit++;
+        }
+        return fit;
+    }
+
+    private void rebucket(int newExponent) {
+        long newStart = index(min, newExponent);
+        long[] newBuckets = new long[bucketCount];
+        if (buckets != null) {
+            for (int i = 0; i < buckets.length; i++) {
+                if (buckets[i] > 0) {
+                    newBuckets[(int) (coarser(start + i, newExponent - exponent) - newStart)] += buckets[i];
+                }
+            }
+        }
+        buckets = newBuckets;
+        start = newStart;
+        exponent = newExponent;
+    }
+
+    /**
+     * @return the index of the bucket holding the given bucket once the width is 2^shift times larger.
+     */
+    private static long coarser(long index, int shift) {
+        if (shift >= Long.SIZE - 1) {
+            return index < 0 ? -1 : 0;
+        }
+        return index >> shift;
+    }
+
+    private long index(double value) {
+        return index(value, exponent);
+    }
+
+    private static long index(double value, int exponent) {
+        return (long) Math.floor(Math.scalb(value, -exponent));
+    }
+}
@@ -0,0 +1,361 @@
+package com.fishblack.statistics.accumulator;
+
+import com.fishblack.statistics.FrequentValue;
+import com.fishblack.statistics.cardinality.Hashing;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Space-Saving counters of the most frequent values of a column, Metwally, Agrawal and El Abbadi.
+ * A fixed number of values are counted, a value that is not counted takes the counter of the least counted value and
+ * starts from its count, which becomes the error of the new value. A count is never below the rows holding the value
+ * and at most rows / capacity above it, so every value held by more rows than that is counted.
+ * Values are told apart by their 64 bit hash, the typed value is only kept for the report. The counters are in a
+ * min-heap on their count and found through an open addressing table on the hash.
+ * Two counters are merged the way of Cafaro et al., a value missing from one side gets the least count of that side.
+ */
+public class FrequentValues {
+
+    public static final int DEFAULT_TOP_COUNT = 10;
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private static final byte LONG_VALUE = 0;
+    private static final byte DOUBLE_VALUE = 1;
+    private static final byte STRING_VALUE = 2;
+    private static final byte DECIMAL_VALUE = 3;
+
+    private final int topCount;
+    private final int capacity;
+    private int size = 0;
+    private final long[] hashes;
+    private final long[] counts;
+    private final long[] errors;
+    private final Object[] values;
+    // counter ids in a min-heap on their count, and the heap position of every counter
+    private final int[] heap;
+    private final int[] heapPositions;
+    // counter id + 1 by hash, 0 for an empty slot
+    private final int[] table;
+    private final int mask;
+
+    /**
+     * @param topCount the number of values reported.
+     * @param capacity the number of values counted, at least topCount.
+     */
+    public FrequentValues(int topCount, int capacity) {
+        this.topCount = topCount;
+        this.capacity = capacity;
+        this.hashes = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.values = new Object[capacity];
+        this.heap = new int[capacity];
+        this.heapPositions = new int[capacity];
+        this.table = new int[Integer.highestOneBit(Math.max(2, capacity) - 1) << 2];
+        this.mask = table.length - 1;
+    }
+
+    public void addLong(long value, long rows) {
+        int id = offer(Hashing.hashLong(value), rows);
+        if (id >= 0) {
+            values[id] = value;
+        }
+    }
+
+    public void addDouble(double value, long rows) {
+        int id = offer(Hashing.hashDouble(value), rows);
+        if (id >= 0) {
+            values[id] = value;
+        }
+    }
+
+    public void addString(String value, long rows) {
+        int id = offer(Hashing.hashString(value), rows);
+        if (id >= 0) {
+            values[id] = value;
+        }
+    }
+
+    public void addDecimal(BigDecimal value, long rows) {
+        int id = offer(Hashing.hashDecimal(value), rows);
+        if (id >= 0) {
+            values[id] = value;
+        }
+    }
+
+    /**
+     * Count a decimal given as its unscaled value, the decimal is only built when the value starts being counted.
+     */
+    public void addDecimal(long unscaledValue, int scale, long rows) {
+        int id = offer(Hashing.hashDecimal(unscaledValue, scale), rows);
+        if (id >= 0) {
+            values[id] = BigDecimal.valueOf(unscaledValue, scale);
+        }
+    }
+
+    /**
+     * Merge the counters of another column part, the other counters are left unchanged.
+     * @param other counters of the same capacity.
+     */
+    public void merge(FrequentValues other) {
+        long leastCount = size < capacity ? 0 : counts[heap[0]];
+        long otherLeastCount = other.size < other.capacity ? 0 : other.counts[other.heap[0]];
+        int total = size + other.size;
+        long[] mergedHashes = new long[total];
+        long[] mergedCounts = new long[total];
+        long[] mergedErrors = new long[total];
+        Object[] mergedValues = new Object[total];
+        int n = 0;
+        for (int id = 0; id < size; id++) {
+            int otherId = other.find(hashes[id]);
+            mergedHashes[n] = hashes[id];
+            mergedValues[n] = values[id];
+            mergedCounts[n] = counts[id] + (otherId >= 0 ? other.counts[otherId] : otherLeastCount);
+            mergedErrors[n++] = errors[id] + (otherId >= 0 ? other.errors[otherId] : otherLeastCount);
+        }
+        for (int otherId = 0; otherId < other.size; otherId++) {
+            if (find(other.hashes[otherId]) < 0) {
+                mergedHashes[n] = other.hashes[otherId];
+                mergedValues[n] = other.values[otherId];
+                mergedCounts[n] = other.counts[otherId] + leastCount;
+                mergedErrors[n++] = other.errors[otherId] + leastCount;
+            }
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(mergedCounts[b], mergedCounts[a]));
+        Arrays.fill(table, 0);
+        size = 0;
+        for (int i = 0; i < Math.min(n, capacity); i++) {
+            int from = order[i];
+            put(mergedHashes[from], mergedCounts[from], mergedErrors[from], mergedValues[from]);
+        }
+    }
+
+    /**
+     * Only the values held by more rows than any value that is not counted are reported, a column whose values
+     * are all about as frequent has no top values once the counters are full.
+     * @param format converts a counted value to the value reported in the column stats.
+     * @return the most frequent values by decreasing count, ties by increasing value, null when there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public List<FrequentValue> getTopValues(Function<Object, Object> format) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Comparator<Integer> byCount = (a, b) -> Long.compare(counts[b], counts[a]);
+        Arrays.sort(order, byCount.thenComparing(id -> (Comparable<Object>) values[id]));
+        // the most rows a value that is not counted can have
+        long leastCount = size < capacity ? 0 : counts[heap[0]];
+        List<FrequentValue> topValues = new ArrayList<>();
+        for (int i = 0; i < Math.min(topCount, size); i++) {
+            int id = order[i];
+            if (counts[id] - errors[id] > leastCount) {
+                topValues.add(new FrequentValue(format.apply(values[id]), counts[id], errors[id]));
+            }
+        }
+        return topValues.isEmpty() ? null : topValues;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(topCount);
+        out.writeInt(capacity);
+        out.writeInt(size);
+        for (int id = 0; id < size; id++) {
+            out.writeLong(hashes[id]);
+            out.writeLong(counts[id]);
+            out.writeLong(errors[id]);
+            Object value = values[id];
+            if (value instanceof Long) {
+                out.writeByte(LONG_VALUE);
+                out.writeLong((Long) value);
+            }
+            else if (value instanceof Double) {
+                out.writeByte(DOUBLE_VALUE);
+                out.writeDouble((Double) value);
+            }
+            else if (value instanceof BigDecimal) {
+                out.writeByte(DECIMAL_VALUE);
+                out.writeUTF(value.toString());
+            }
+            else {
+                // not writeUTF, which is limited to 64 KB
+                byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+                out.writeByte(STRING_VALUE);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Read counters written by {@link #writeTo(DataOutput)}.
+     * @param in
+     * @return the counters.
+     * @throws IOException
+     */
+    public static FrequentValues read(DataInput in) throws IOException {
+        FrequentValues frequentValues = new FrequentValues(in.readInt(), in.readInt());
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            long hash = in.readLong();
+            long count = in.readLong();
+            long error = in.readLong();
+            Object value;
+            switch (in.readByte()) {
+                case LONG_VALUE:
+                    value = in.readLong();
+                    break;
+                case DOUBLE_VALUE:
+                    value = in.readDouble();
+                    break;
+                case DECIMAL_VALUE:
+                    value = new BigDecimal(in.readUTF());
+                    break;
+                default:
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    value = new String(bytes, StandardCharsets.UTF_8);
+            }
+            frequentValues.put(hash, count, error, value);
+        }
+        return frequentValues;
+    }
+
+    public int getTopCount() {
+        return topCount;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Count the rows of a value.
+     * @return the id of the counter when the value was not counted and its typed value must be set, -1 otherwise.
+     */
+    private int offer(long hash, long rows) {
+        int id = find(hash);
+        if (id >= 0) {
+            counts[id] += rows;
+            siftDown(heapPositions[id]);
+            return -1;
+        }
+        if (size < capacity) {
+            return put(hash, rows, 0, null);
+        }
+        id = heap[0];
+        remove(hashes[id]);
+        errors[id] = counts[id];
+        counts[id] += rows;
+        hashes[id] = hash;
+        insert(hash, id);
+        siftDown(0);
+        return id;
+    }
+
+    private int put(long hash, long count, long error, Object value) {
+        int id = size++;
+        hashes[id] = hash;
+        counts[id] = count;
+        errors[id] = error;
+        values[id] = value;
+        insert(hash, id);
+        heap[id] = id;
+        heapPositions[id] = id;
+        siftUp(id);
+        return id;
+    }
+
+    private int find(long hash) {
+        for (int slot = home(hash); table[slot] != 0; slot = (slot + 1) & mask) {
+            if (hashes[table[slot] - 1] == hash) {
+                return table[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(long hash, int id) {
+        int slot = home(hash);
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = id + 1;
+    }
+
+    // linear probing removal, the following entries of the probe run are shifted back
+    private void remove(long hash) {
+        int slot = home(hash);
+        while (hashes[table[slot] - 1] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (table[next] == 0) {
+                break;
+            }
+            int nextHome = home(hashes[table[next] - 1]);
+            boolean movable = next > slot ? nextHome <= slot || nextHome > next : nextHome <= slot && nextHome > next;
+            if (movable) {
+                table[slot] = table[next];
+                slot = next;
+            }
+        }
+        table[slot] = 0;
+    }
+
+    private int home(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void siftUp(int position) {
+        int id = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[id]) {
+                break;
+            }
+            move(heap[parent], position);
+            position = parent;
+        }
+        move(id, position);
+    }
+
+    private void siftDown(int position) {
+        int id = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[heap[child]] >= counts[id]) {
+                break;
+            }
+            move(heap[child], position);
+            position = child;
+        }
+        move(id, position);
+    }
+
+    private void move(int id, int position) {
+        heap[position] = id;
+        heapPositions[id] = position;
+    }
+}
@@ -0,0 +1,126 @@
+package com.fishblack.statistics.accumulator;
+
+import com.fishblack.statistics.ColumnStats;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.DoubleFunction;
+
+/**
+ * Accumulator of integer columns, the sum is a long and min and max are reported as integers.
+ */
+public class LongColumnAccumulator extends AbstractColumnAccumulator {
+
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+    private final Moments moments = new Moments();
+    private QuantileSketch quantileSketch;
+    private FrequentValues frequentValues;
+    private EquiWidthHistogram histogram;
+
+    public LongColumnAccumulator(String fieldName, String dataType, CardinalityCalculatorFactory cardinalityCalculatorFactory) {
+        this(fieldName, dataType, cardinalityCalculatorFactory, AccumulatorOptions.DEFAULT);
+    }
+
+    public LongColumnAccumulator(String fieldName, String dataType, CardinalityCalculatorFactory cardinalityCalculatorFactory,
+                                 AccumulatorOptions options) {
+        super(fieldName, dataType, cardinalityCalculatorFactory, options);
+        this.quantileSketch = newQuantileSketch();
+        this.frequentValues = newFrequentValues();
+        this.histogram = newEquiWidthHistogram(0);
+    }
+
+    @Override
+    protected void addValue(Object data) throws IOException {
+        addLong(((Number) data).longValue());
+    }
+
+    public void addLong(long value) throws IOException {
+        nextValueRow();
+        cardinalityCalculator.addLong(value);
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        moments.add(value);
+        if (quantileSketch != null) {
+            quantileSketch.add(value);
+        }
+        if (frequentValues != null) {
+            frequentValues.addLong(value, 1);
+        }
+        if (histogram != null) {
+            histogram.add(value, 1);
+        }
+    }
+
+    @Override
+    public ColumnAccumulator newPartial() {
+        return new LongColumnAccumulator(fieldName, dataType, cardinalityCalculatorFactory, options);
+    }
+
+    @Override
+    protected void mergeValues(AbstractColumnAccumulator other) {
+        LongColumnAccumulator accumulator = (LongColumnAccumulator) other;
+        sum += accumulator.sum;
+        min = Math.min(min, accumulator.min);
+        max = Math.max(max, accumulator.max);
+        moments.merge(accumulator.moments);
+        quantileSketch = mergeQuantileSketch(quantileSketch, accumulator.quantileSketch);
+        frequentValues = mergeFrequentValues(frequentValues, accumulator.frequentValues);
+        histogram = mergeEquiWidthHistogram(histogram, accumulator.histogram);
+    }
+
+    @Override
+    public Moments getMoments() {
+        return moments;
+    }
+
+    @Override
+    protected void writeValues(DataOutput out) throws IOException {
+        out.writeLong(sum);
+        out.writeLong(min);
+        out.writeLong(max);
+        moments.writeTo(out);
+        writeQuantileSketch(out, quantileSketch);
+        writeFrequentValues(out, frequentValues);
+        writeEquiWidthHistogram(out, histogram);
+    }
+
+    @Override
+    protected void readValues(DataInput in) throws IOException {
+        sum = in.readLong();
+        min = in.readLong();
+        max = in.readLong();
+        moments.readFrom(in);
+        quantileSketch = readQuantileSketch(in);
+        frequentValues = readFrequentValues(in);
+        histogram = readEquiWidthHistogram(in);
+    }
+
+    @Override
+    protected void finishValues(ColumnStats columnStats) {
+        columnStats.setSum(sum);
+        columnStats.setMean(((double) sum) / getValueCount());
+        finishMoments(columnStats, moments);
+        columnStats.setMin(toNumber(min));
+        columnStats.setMax(toNumber(max));
+        if (quantileSketch != null) {
+            columnStats.setPercentiles(quantileSketch.getPercentiles(value -> toNumber((long) value)));
+        }
+        if (frequentValues != null) {
+            columnStats.setTopValues(frequentValues.getTopValues(value -> toNumber((Long) value)));
+        }
+        DoubleFunction<Object> format = value -> toNumber((long) value);
+        finishHistograms(columnStats, histogram, quantileSketch, format, format);
+    }
+
+    private static Number toNumber(long value) {
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return (int) value;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,129 @@
+package com.fishblack.statistics.accumulator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Count, mean and sums of the 2nd, 3rd and 4th powers of the deviations of the values of a column, updated with
+ * Welford's method extended by Terriberry and merged with the pairwise formulas of Chan and Pebay, so partials of
+ * parallel scans combine without the cancellation of raw power sums.
+ */
+public class Moments {
+
+    private long count = 0;
+    private double mean = 0;
+    private double m2 = 0;
+    private double m3 = 0;
+    private double m4 = 0;
+
+    public void add(double value) {
+        long previous = count;
+        count++;
+        double delta = value - mean;
+        double deltaN = delta / count;
+        double deltaN2 = deltaN * deltaN;
+        double term = delta * deltaN * previous;
+        mean += deltaN;
+        m4 += term * deltaN2 * ((double) count * count - 3 * count + 3) + 6 * deltaN2 * m2 - 4 * deltaN * m3;
+        m3 += term * deltaN * (count - 2) - 3 * deltaN * m2;
+        m2 += term;
+    }
+
+    /**
+     * Add a value held by several rows.
+     * @param value the value.
+     * @param rows the number of rows holding the value.
+     */
+    public void add(double value, long rows) {
+        if (rows == 1) {
+            add(value);
+        }
+        else {
+            combine(rows, value, 0, 0, 0);
+        }
+    }
+
+    public void merge(Moments other) {
+        combine(other.count, other.mean, other.m2, other.m3, other.m4);
+    }
+
+    private void combine(long otherCount, double otherMean, double otherM2, double otherM3, double otherM4) {
+        if (otherCount == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = otherCount;
+            mean = otherMean;
+            m2 = otherM2;
+            m3 = otherM3;
+            m4 = otherM4;
+            return;
+        }
+        double n1 = count;
+        double n2 = otherCount;
+        double n = n1 + n2;
+        double delta = otherMean - mean;
+        double deltaN = delta / n;
+        double deltaN2 = deltaN * deltaN;
+        m4 += otherM4 + delta * deltaN * deltaN2 * n1 * n2 * (n1 * n1 - n1 * n2 + n2 * n2)
+                + 6 * deltaN2 * (n1 * n1 * otherM2 + n2 * n2 * m2) + 4 * deltaN * (n1 * otherM3 - n2 * m3);
+        m3 += otherM3 + delta * deltaN2 * n1 * n2 * (n1 - n2) + 3 * deltaN * (n1 * otherM2 - n2 * m2);
+        m2 += otherM2 + delta * deltaN * n1 * n2;
+        mean += deltaN * n2;
+        count += otherCount;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(count);
+        out.writeDouble(mean);
+        out.writeDouble(m2);
+        out.writeDouble(m3);
+        out.writeDouble(m4);
+    }
+
+    public void readFrom(DataInput in) throws IOException {
+        count = in.readLong();
+        mean = in.readDouble();
+        m2 = in.readDouble();
+        m3 = in.readDouble();
+        m4 = in.readDouble();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * @return the sample variance of the values, 0 for less than two values.
+     */
+    public double getVariance() {
+        return count < 2 ? 0 : m2 / (count - 1);
+    }
+
+    /**
+     * @return the sample standard deviation of the values, 0 for less than two values.
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * @return the population skewness g1 of the values, NaN when the values are all equal.
+     */
+    public double getSkewness() {
+        return m2 == 0 ? Double.NaN : Math.sqrt(count) * m3 / Math.pow(m2, 1.5);
+    }
+
+    /**
+     * @return the population excess kurtosis g2 of the values, 0 for a normal distribution, NaN when the values
+     * are all equal.
+     */
+    public double getKurtosis() {
+        return m2 == 0 ? Double.NaN : count * m4 / (m2 * m2) - 3;
+    }
+}
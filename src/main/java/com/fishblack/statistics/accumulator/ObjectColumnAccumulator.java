@@ -0,0 +1,57 @@
+package com.fishblack.statistics.accumulator;
+
+import com.fishblack.statistics.ColumnStats;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Accumulator of the columns without a typed accumulator, only nulls and distinct values are counted.
+ * A value printed as an empty string is counted as null.
+ */
+public class ObjectColumnAccumulator extends AbstractColumnAccumulator {
+
+    public ObjectColumnAccumulator(String fieldName, String dataType, CardinalityCalculatorFactory cardinalityCalculatorFactory) {
+        this(fieldName, dataType, cardinalityCalculatorFactory, AccumulatorOptions.DEFAULT);
+    }
+
+    public ObjectColumnAccumulator(String fieldName, String dataType, CardinalityCalculatorFactory cardinalityCalculatorFactory,
+                                   AccumulatorOptions options) {
+        super(fieldName, dataType, cardinalityCalculatorFactory, options);
+    }
+
+    @Override
+    protected void addValue(Object data) throws IOException {
+        cardinalityCalculator.add(data);
+        if (StringUtils.isEmpty(String.valueOf(data))) {
+            addNull();
+        }
+        else {
+            nextValueRow();
+        }
+    }
+
+    @Override
+    public ColumnAccumulator newPartial() {
+        return new ObjectColumnAccumulator(fieldName, dataType, cardinalityCalculatorFactory, options);
+    }
+
+    @Override
+    protected void mergeValues(AbstractColumnAccumulator other) {
+    }
+
+    @Override
+    protected void writeValues(DataOutput out) {
+    }
+
+    @Override
+    protected void readValues(DataInput in) {
+    }
+
+    @Override
+    protected void finishValues(ColumnStats columnStats) {
+    }
+}
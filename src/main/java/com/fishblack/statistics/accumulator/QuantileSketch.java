@@ -0,0 +1,261 @@
+package com.fishblack.statistics.accumulator;
+
+import com.fishblack.statistics.Histogram;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleFunction;
+
+/**
+ * KLL quantile sketch of Karnin, Lang and Liberty over the values of a column.
+ * The values are kept in levels, a value of level h stands for 2^h rows. A full level is sorted and every other value
+ * moves one level up, the lower levels being smaller than the upper ones so the sketch keeps about 3 * size values.
+ * At the default size of 200 the rank of a quantile is off by less than 1.7% of the rows with 99% confidence, the
+ * error shrinks about linearly with the size. The sketch is exact as long as the column has fewer values than its size.
+ * Which half of a level moves up alternates at every compaction of the level instead of being random, so the same
+ * rows always give the same quantiles.
+ */
+public class QuantileSketch {
+
+    public static final int DEFAULT_SIZE = 200;
+    public static final int MIN_SIZE = 8;
+    /**
+     * The percentiles reported in the column stats.
+     */
+    public static final double[] PERCENTILES = {0.05, 0.25, 0.5, 0.75, 0.95, 0.99};
+    private static final int MIN_LEVEL_CAPACITY = 8;
+
+    private int size;
+    private long count = 0;
+    private double[][] levels = new double[1][];
+    private int[] levelSizes = new int[1];
+    private int[] compactions = new int[1];
+    private int retained = 0;
+    // capacity of every level, recomputed when a level is added
+    private int[] capacities;
+    private int totalCapacity;
+
+    /**
+     * @param size the number of values of the largest level, at least {@link #MIN_SIZE}.
+     */
+    public QuantileSketch(int size) {
+        if (size < MIN_SIZE) {
+            throw new IllegalArgumentException("Quantile sketch size must be at least " + MIN_SIZE + ": " + size);
+        }
+        this.size = size;
+        updateCapacities();
+    }
+
+    public void add(double value) {
+        count++;
+        addAt(0, value);
+        compress();
+    }
+
+    /**
+     * Add a value held by several rows, the rows are split in powers of two added to the matching levels.
+     * @param value the value.
+     * @param rows the number of rows holding the value.
+     */
+    public void add(double value, long rows) {
+        count += rows;
+        for (int level = 0; rows != 0; level++, rows >>>= 1) {
+            if ((rows & 1) != 0) {
+                addAt(level, value);
+            }
+        }
+        compress();
+    }
+
+    /**
+     * Merge the values of another sketch, the other sketch is left unchanged.
+     * @param other
+     */
+    public void merge(QuantileSketch other) {
+        count += other.count;
+        for (int level = 0; level < other.levels.length; level++) {
+            for (int i = 0; i < other.levelSizes[level]; i++) {
+                addAt(level, other.levels[level][i]);
+            }
+        }
+        compress();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @param fractions the ranks of the quantiles, between 0 and 1.
+     * @return the smallest value whose rank is at least every fraction of the rows, NaN when the sketch is empty.
+     */
+    public double[] getQuantiles(double[] fractions) {
+        double[] quantiles = new double[fractions.length];
+        if (count == 0) {
+            Arrays.fill(quantiles, Double.NaN);
+            return quantiles;
+        }
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        int n = 0;
+        for (int level = 0; level < levels.length; level++) {
+            for (int i = 0; i < levelSizes[level]; i++) {
+                values[n] = levels[level][i];
+                weights[n++] = 1L << level;
+            }
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        for (int q = 0; q < fractions.length; q++) {
+            double target = fractions[q] * count;
+            long rank = 0;
+            quantiles[q] = values[order[n - 1]];
+            for (int i = 0; i < n; i++) {
+                rank += weights[order[i]];
+                if (rank >= target) {
+                    quantiles[q] = values[order[i]];
+                    break;
+                }
+            }
+        }
+        return quantiles;
+    }
+
+    /**
+     * @param format converts a quantile to the value reported in the column stats.
+     * @return the {@link #PERCENTILES} by name, p50 for the median.
+     */
+    public Map<String, Object> getPercentiles(DoubleFunction<Object> format) {
+        double[] quantiles = getQuantiles(PERCENTILES);
+        Map<String, Object> percentiles = new LinkedHashMap<>();
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            percentiles.put("p" + Math.round(PERCENTILES[i] * 100), format.apply(quantiles[i]));
+        }
+        return percentiles;
+    }
+
+    /**
+     * @param bucketCount the number of buckets.
+     * @param format converts a quantile to the value reported in the column stats.
+     * @return the equi-depth histogram whose bounds are the quantiles splitting the rows in buckets of the same
+     * number of rows, null when the sketch is empty.
+     */
+    public Histogram getEquiDepthHistogram(int bucketCount, DoubleFunction<Object> format) {
+        if (count == 0) {
+            return null;
+        }
+        double[] fractions = new double[bucketCount + 1];
+        for (int i = 0; i <= bucketCount; i++) {
+            fractions[i] = (double) i / bucketCount;
+        }
+        double[] quantiles = getQuantiles(fractions);
+        List<Object> bounds = new ArrayList<>();
+        for (double quantile : quantiles) {
+            bounds.add(format.apply(quantile));
+        }
+        long[] counts = new long[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            counts[i] = Math.round(count * fractions[i + 1]) - Math.round(count * fractions[i]);
+        }
+        return new Histogram(bounds, counts);
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        out.writeLong(count);
+        out.writeInt(levels.length);
+        for (int level = 0; level < levels.length; level++) {
+            out.writeInt(compactions[level]);
+            out.writeInt(levelSizes[level]);
+            for (int i = 0; i < levelSizes[level]; i++) {
+                out.writeDouble(levels[level][i]);
+            }
+        }
+    }
+
+    public void readFrom(DataInput in) throws IOException {
+        size = in.readInt();
+        count = in.readLong();
+        int levelCount = in.readInt();
+        levels = new double[levelCount][];
+        levelSizes = new int[levelCount];
+        compactions = new int[levelCount];
+        retained = 0;
+        for (int level = 0; level < levelCount; level++) {
+            compactions[level] = in.readInt();
+            levelSizes[level] = in.readInt();
+            levels[level] = new double[Math.max(MIN_LEVEL_CAPACITY, levelSizes[level])];
+            for (int i = 0; i < levelSizes[level]; i++) {
+                levels[level][i] = in.readDouble();
+            }
+            retained += levelSizes[level];
+        }
+        updateCapacities();
+    }
+
+    private void addAt(int level, double value) {
+        if (level >= levels.length) {
+            levels = Arrays.copyOf(levels, level + 1);
+            levelSizes = Arrays.copyOf(levelSizes, level + 1);
+            compactions = Arrays.copyOf(compactions, level + 1);
+            updateCapacities();
+        }
+        double[] items = levels[level];
+        if (items == null) {
+            items = levels[level] = new double[MIN_LEVEL_CAPACITY];
+        }
+        else if (levelSizes[level] == items.length) {
+            items = levels[level] = Arrays.copyOf(items, items.length * 2);
+        }
+        items[levelSizes[level]++] = value;
+        retained++;
+    }
+
+    private void updateCapacities() {
+        capacities = new int[levels.length];
+        totalCapacity = 0;
+        for (int level = 0; level < levels.length; level++) {
+            // the top level holds size values, every level below two thirds of the level above
+            int depth = levels.length - 1 - level;
+            capacities[level] = Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(size * Math.pow(2.0 / 3, depth)));
+            totalCapacity += capacities[level];
+        }
+    }
+
+    private void compress() {
+        while (retained > totalCapacity) {
+            int level = 0;
+            while (levelSizes[level] < capacities[level] || levelSizes[level] < 2) {
+                level++;
+            }
+            compact(level);
+        }
+    }
+
+    private void compact(int level) {
+        double[] items = levels[level];
+        int itemCount = levelSizes[level];
+        Arrays.sort(items, 0, itemCount);
+        // an odd value out stays on the level
+        int start = itemCount % 2;
+        int offset = compactions[level]++ & 1;
+        levelSizes[level] = start;
+        retained -= itemCount - start;
+        double[] promoted = new double[(itemCount - start) / 2];
+        for (int i = 0; i < promoted.length; i++) {
+            promoted[i] = items[start + 2 * i + offset];
+        }
+        for (double value : promoted) {
+            addAt(level + 1, value);
+        }
+    }
+}
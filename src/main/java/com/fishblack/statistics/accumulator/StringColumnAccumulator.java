@@ -0,0 +1,88 @@
+package com.fishblack.statistics.accumulator;
+
+import com.fishblack.statistics.ColumnStats;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Accumulator of string columns, only the average length and the most frequent values are calculated besides nulls
+ * and distinct values.
+ */
+public class StringColumnAccumulator extends AbstractColumnAccumulator {
+
+    private long totalLength = 0;
+    private FrequentValues frequentValues;
+
+    public StringColumnAccumulator(String fieldName, String dataType, CardinalityCalculatorFactory cardinalityCalculatorFactory) {
+        this(fieldName, dataType, cardinalityCalculatorFactory, AccumulatorOptions.DEFAULT);
+    }
+
+    public StringColumnAccumulator(String fieldName, String dataType, CardinalityCalculatorFactory cardinalityCalculatorFactory,
+                                   AccumulatorOptions options) {
+        super(fieldName, dataType, cardinalityCalculatorFactory, options);
+        this.frequentValues = newFrequentValues();
+    }
+
+    @Override
+    protected void addValue(Object data) throws IOException {
+        addString(String.valueOf(data));
+    }
+
+    public void addString(String value) throws IOException {
+        nextValueRow();
+        cardinalityCalculator.add(value);
+        totalLength += value.length();
+        if (frequentValues != null) {
+            frequentValues.addString(value, 1);
+        }
+    }
+
+    /**
+     * Add a value held by several rows already counted with {@link #addValueRow()}.
+     * @param value the value.
+     * @param rows the number of rows holding the value.
+     * @throws IOException
+     */
+    public void addStringRows(String value, long rows) throws IOException {
+        cardinalityCalculator.addRows(value, rows);
+        totalLength += value.length() * rows;
+        if (frequentValues != null) {
+            frequentValues.addString(value, rows);
+        }
+    }
+
+    @Override
+    public ColumnAccumulator newPartial() {
+        return new StringColumnAccumulator(fieldName, dataType, cardinalityCalculatorFactory, options);
+    }
+
+    @Override
+    protected void mergeValues(AbstractColumnAccumulator other) {
+        StringColumnAccumulator accumulator = (StringColumnAccumulator) other;
+        totalLength += accumulator.totalLength;
+        frequentValues = mergeFrequentValues(frequentValues, accumulator.frequentValues);
+    }
+
+    @Override
+    protected void writeValues(DataOutput out) throws IOException {
+        out.writeLong(totalLength);
+        writeFrequentValues(out, frequentValues);
+    }
+
+    @Override
+    protected void readValues(DataInput in) throws IOException {
+        totalLength = in.readLong();
+        frequentValues = readFrequentValues(in);
+    }
+
+    @Override
+    protected void finishValues(ColumnStats columnStats) {
+        columnStats.setAvgColumnLen(totalLength / lastValueRowNum);
+        if (frequentValues != null) {
+            columnStats.setTopValues(frequentValues.getTopValues(value -> value));
+        }
+    }
+}
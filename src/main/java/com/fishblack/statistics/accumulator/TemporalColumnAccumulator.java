@@ -0,0 +1,135 @@
+package com.fishblack.statistics.accumulator;
+
+import com.fishblack.statistics.ColumnStats;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static com.fishblack.statistics.Calculator.MILLIS_PER_DAY;
+import static com.fishblack.statistics.Calculator.getLocalDate;
+import static com.fishblack.statistics.Calculator.getLocalDateMillis;
+import static com.fishblack.statistics.Calculator.getLocalDateTime;
+import static com.fishblack.statistics.Calculator.getLocalDateTimeMillis;
+import static com.fishblack.statistics.Calculator.localDateFormatter;
+import static com.fishblack.statistics.Calculator.localDateTimeFormatter;
+import static com.fishblack.statistics.Calculator.timeFormatter;
+
+/**
+ * Accumulator of date, time and timestamp columns, the values are kept as UTC epoch milliseconds.
+ */
+public class TemporalColumnAccumulator extends AbstractColumnAccumulator {
+
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+    private QuantileSketch quantileSketch;
+    private FrequentValues frequentValues;
+    private EquiWidthHistogram histogram;
+
+    public TemporalColumnAccumulator(String fieldName, String dataType, CardinalityCalculatorFactory cardinalityCalculatorFactory) {
+        this(fieldName, dataType, cardinalityCalculatorFactory, AccumulatorOptions.DEFAULT);
+    }
+
+    public TemporalColumnAccumulator(String fieldName, String dataType, CardinalityCalculatorFactory cardinalityCalculatorFactory,
+                                     AccumulatorOptions options) {
+        super(fieldName, dataType, cardinalityCalculatorFactory, options);
+        this.quantileSketch = newQuantileSketch();
+        this.frequentValues = newFrequentValues();
+        // dates are counted in days so that a bucket is a whole number of days
+        this.histogram = newEquiWidthHistogram(0);
+    }
+
+    @Override
+    protected void addValue(Object data) throws IOException {
+        if (data instanceof LocalDate) {
+            addMillis(getLocalDateMillis((LocalDate) data));
+        }
+        else {
+            addMillis(getLocalDateTimeMillis((LocalDateTime) data));
+        }
+    }
+
+    public void addMillis(long millis) throws IOException {
+        nextValueRow();
+        cardinalityCalculator.addLong(millis);
+        min = Math.min(min, millis);
+        max = Math.max(max, millis);
+        if (quantileSketch != null) {
+            quantileSketch.add(millis);
+        }
+        if (frequentValues != null) {
+            frequentValues.addLong(millis, 1);
+        }
+        if (histogram != null) {
+            histogram.add("date".equals(dataType) ? Math.floorDiv(millis, MILLIS_PER_DAY) : millis, 1);
+        }
+    }
+
+    @Override
+    public ColumnAccumulator newPartial() {
+        return new TemporalColumnAccumulator(fieldName, dataType, cardinalityCalculatorFactory, options);
+    }
+
+    @Override
+    protected void mergeValues(AbstractColumnAccumulator other) {
+        TemporalColumnAccumulator accumulator = (TemporalColumnAccumulator) other;
+        min = Math.min(min, accumulator.min);
+        max = Math.max(max, accumulator.max);
+        quantileSketch = mergeQuantileSketch(quantileSketch, accumulator.quantileSketch);
+        frequentValues = mergeFrequentValues(frequentValues, accumulator.frequentValues);
+        histogram = mergeEquiWidthHistogram(histogram, accumulator.histogram);
+    }
+
+    @Override
+    protected void writeValues(DataOutput out) throws IOException {
+        out.writeLong(min);
+        out.writeLong(max);
+        writeQuantileSketch(out, quantileSketch);
+        writeFrequentValues(out, frequentValues);
+        writeEquiWidthHistogram(out, histogram);
+    }
+
+    @Override
+    protected void readValues(DataInput in) throws IOException {
+        min = in.readLong();
+        max = in.readLong();
+        quantileSketch = readQuantileSketch(in);
+        frequentValues = readFrequentValues(in);
+        histogram = readEquiWidthHistogram(in);
+    }
+
+    @Override
+    protected void finishValues(ColumnStats columnStats) {
+        columnStats.setMin(format(dataType, min));
+        columnStats.setMax(format(dataType, max));
+        if (quantileSketch != null) {
+            columnStats.setPercentiles(quantileSketch.getPercentiles(value -> format(dataType, (long) value)));
+        }
+        if (frequentValues != null) {
+            columnStats.setTopValues(frequentValues.getTopValues(value -> format(dataType, (Long) value)));
+        }
+        long unit = "date".equals(dataType) ? MILLIS_PER_DAY : 1;
+        finishHistograms(columnStats, histogram, quantileSketch, value -> format(dataType, (long) value * unit),
+                value -> format(dataType, (long) value));
+    }
+
+    /**
+     * Format a value the way the min and max of a column are reported.
+     * @param dataType date, time or timestamp.
+     * @param millis the value as UTC epoch milliseconds.
+     * @return the formatted value.
+     */
+    public static String format(String dataType, long millis) {
+        switch (dataType) {
+            case "date":
+                return getLocalDate(millis).format(localDateFormatter);
+            case "time":
+                return getLocalDateTime(millis).format(timeFormatter);
+            default:
+                return getLocalDateTime(millis).format(localDateTimeFormatter);
+        }
+    }
+}
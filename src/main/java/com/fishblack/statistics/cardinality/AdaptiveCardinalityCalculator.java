@@ -0,0 +1,429 @@
+package com.fishblack.statistics.cardinality;
+
+import com.fishblack.statistics.MemoryBudget;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executor;
+
+import static com.fishblack.statistics.Calculator.getLocalDateMillis;
+import static com.fishblack.statistics.Calculator.getLocalDateTimeMillis;
+
+/**
+ * Exact distinct count until the distinct values take more memory than a threshold, then a HyperLogLog estimate.
+ * Integer, double, date, time and timestamp values are kept in a {@link LongOpenHashSet}, strings and decimals
+ * are encoded in a {@link BytesOpenHashSet}. The memory usage is the real size of the set, duplicates do not
+ * count. When the threshold is passed the sketch is seeded with the hashes of the values seen so far and the
+ * set is released, {@link #isExact()} tells which of the two the count comes from.
+ * With a {@link MemoryBudget} the set reserves its memory as it grows. When a reservation is denied the set is
+ * moved to a {@link FileCardinalityCalculator} with the SPILL policy, and switched to the sketch otherwise.
+ * A spilled count is exact, but a spilled calculator merged with a sketch or saved becomes a sketch.
+ */
+public class AdaptiveCardinalityCalculator implements CardinalityCalculator {
+
+    public static final long DEFAULT_MEMORY_THRESHOLD = 100 * 1024 * 1024;
+
+    private static final byte LONG_SET_STATE = 0;
+    private static final byte BYTES_SET_STATE = 1;
+    private static final byte SKETCH_STATE = 2;
+    // the set reserves its memory from the budget in chunks of this size
+    private static final long RESERVATION_CHUNK = 256 * 1024;
+
+    private final String dataType;
+    private final long memoryThreshold;
+    private final int precision;
+    private final MemoryBudget budget;
+    private final Executor executor;
+    private long reservedBytes = 0;
+    private LongOpenHashSet longSet;
+    private BytesOpenHashSet bytesSet;
+    private HyperLogLogCardinalityCalculator sketch;
+    private FileCardinalityCalculator spill;
+    private byte[] buffer = new byte[64];
+    private long peakMemoryUsage = 0;
+
+    public AdaptiveCardinalityCalculator(String dataType) {
+        this(dataType, DEFAULT_MEMORY_THRESHOLD, HyperLogLogCardinalityCalculator.DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param dataType the data type of the column.
+     * @param memoryThreshold the memory in bytes the exact set may use before switching to the sketch.
+     * @param precision the precision of the sketch.
+     */
+    public AdaptiveCardinalityCalculator(String dataType, long memoryThreshold, int precision) {
+        this(dataType, memoryThreshold, precision, null);
+    }
+
+    /**
+     * @param dataType the data type of the column.
+     * @param memoryThreshold the memory in bytes the exact set may use before switching to the sketch.
+     * @param precision the precision of the sketch.
+     * @param budget the budget the memory of the set is reserved from, null for none.
+     */
+    public AdaptiveCardinalityCalculator(String dataType, long memoryThreshold, int precision, MemoryBudget budget) {
+        this(dataType, memoryThreshold, precision, budget, null);
+    }
+
+    /**
+     * @param dataType the data type of the column.
+     * @param memoryThreshold the memory in bytes the exact set may use before switching to the sketch.
+     * @param precision the precision of the sketch.
+     * @param budget the budget the memory of the set is reserved from, null for none.
+     * @param executor the executor writing the runs of a spilled set, null for the common ForkJoinPool.
+     */
+    public AdaptiveCardinalityCalculator(String dataType, long memoryThreshold, int precision, MemoryBudget budget,
+                                         Executor executor) {
+        this.dataType = dataType;
+        this.executor = executor;
+        this.memoryThreshold = memoryThreshold;
+        this.precision = precision;
+        this.budget = budget;
+        if ("string".equals(dataType) || "decimal".equals(dataType)) {
+            bytesSet = new BytesOpenHashSet();
+        }
+        else {
+            longSet = new LongOpenHashSet();
+        }
+    }
+
+    @Override
+    public void add(Object data) throws IOException {
+        if (data == null) {
+            return;
+        }
+        switch (dataType) {
+            case "string":
+                addString(String.valueOf(data));
+                break;
+            case "decimal":
+                addDecimal((BigDecimal) data);
+                break;
+            case "integer":
+                addLong(((Number) data).longValue());
+                break;
+            case "double":
+                addDouble((Double) data);
+                break;
+            case "date":
+                addLong(getLocalDateMillis((LocalDate) data));
+                break;
+            case "timestamp":
+            case "time":
+                addLong(getLocalDateTimeMillis((LocalDateTime) data));
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void addLong(long value) throws IOException {
+        if (longSet != null) {
+            if (longSet.add(value)) {
+                checkMemoryUsage();
+            }
+        }
+        else if (sketch != null) {
+            sketch.addHash(Hashing.hashLong(value));
+        }
+        else {
+            spill.addLong(value);
+        }
+    }
+
+    /**
+     * Doubles are compared like {@link Double#equals(Object)}: all NaN are equal, 0.0 and -0.0 are not.
+     */
+    @Override
+    public void addDouble(double value) throws IOException {
+        addLong(Double.doubleToLongBits(value));
+    }
+
+    public void addString(CharSequence value) throws IOException {
+        ensureBuffer(ValueBytes.maxStringLength(value));
+        addBuffer(ValueBytes.encodeString(value, buffer));
+    }
+
+    /**
+     * Decimals are compared like their string form: both unscaled value and scale must be equal.
+     * @param unscaledValue
+     * @param scale
+     */
+    @Override
+    public void addDecimal(long unscaledValue, int scale) throws IOException {
+        addBuffer(ValueBytes.encodeDecimal(unscaledValue, scale, buffer));
+    }
+
+    public void addDecimal(BigDecimal value) throws IOException {
+        ensureBuffer(ValueBytes.decimalLength(value));
+        addBuffer(ValueBytes.encodeDecimal(value, buffer));
+    }
+
+    @Override
+    public long count() throws IOException {
+        if (sketch != null) {
+            return sketch.count();
+        }
+        if (spill != null) {
+            return spill.count();
+        }
+        return longSet != null ? longSet.size() : bytesSet.size();
+    }
+
+    /**
+     * @return the distinct count so far, -1 once the values are spilled to disk.
+     */
+    @Override
+    public long countSoFar() throws IOException {
+        return spill != null ? -1 : count();
+    }
+
+    @Override
+    public boolean isExact() {
+        return sketch == null;
+    }
+
+    /**
+     * The memory reserved by the other calculator is released.
+     */
+    @Override
+    public void merge(CardinalityCalculator other) throws IOException {
+        AdaptiveCardinalityCalculator calculator = (AdaptiveCardinalityCalculator) other;
+        peakMemoryUsage = Math.max(peakMemoryUsage, calculator.peakMemoryUsage);
+        if (calculator.sketch != null) {
+            switchToSketch();
+            sketch.merge(calculator.sketch);
+        }
+        else if (sketch != null) {
+            calculator.addHashesTo(sketch);
+        }
+        else if (calculator.spill != null) {
+            switchToSpill();
+            spill.merge(calculator.spill);
+        }
+        else if (spill != null) {
+            calculator.addValuesTo(spill);
+        }
+        else if (longSet != null) {
+            calculator.longSet.forEach(longSet::add);
+            checkMemoryUsage();
+        }
+        else {
+            bytesSet.addAll(calculator.bytesSet);
+            checkMemoryUsage();
+        }
+        calculator.release();
+    }
+
+    /**
+     * Write a mode byte then the exact set or the sketch.
+     */
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        if (spill != null) {
+            // the spilled values are not read back into memory
+            switchToSketch();
+        }
+        if (sketch != null) {
+            out.writeByte(SKETCH_STATE);
+            sketch.writeState(out);
+        }
+        else if (longSet != null) {
+            out.writeByte(LONG_SET_STATE);
+            longSet.writeTo(out);
+        }
+        else {
+            out.writeByte(BYTES_SET_STATE);
+            bytesSet.writeTo(out);
+        }
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        AdaptiveCardinalityCalculator saved = new AdaptiveCardinalityCalculator(dataType, memoryThreshold, precision, budget);
+        byte state = in.readByte();
+        switch (state) {
+            case SKETCH_STATE:
+                saved.sketch = new HyperLogLogCardinalityCalculator(dataType, precision);
+                saved.sketch.readState(in);
+                saved.longSet = null;
+                saved.bytesSet = null;
+                break;
+            case LONG_SET_STATE:
+                if (saved.longSet == null) {
+                    throw new IllegalArgumentException("Saved distinct values of a " + dataType + " column are longs");
+                }
+                saved.longSet.readFrom(in);
+                break;
+            case BYTES_SET_STATE:
+                if (saved.bytesSet == null) {
+                    throw new IllegalArgumentException("Saved distinct values of a " + dataType + " column are bytes");
+                }
+                saved.bytesSet.readFrom(in);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown saved distinct count state " + state);
+        }
+        merge(saved);
+    }
+
+    /**
+     * @return the bytes used by the exact set or by the sketch, the buffers of the spilled values are not counted.
+     */
+    public long getMemoryUsage() {
+        if (sketch != null) {
+            return sketch.getMemoryUsage();
+        }
+        if (spill != null) {
+            return 0;
+        }
+        return longSet != null ? longSet.getMemoryUsage() : bytesSet.getMemoryUsage();
+    }
+
+    @Override
+    public long getPeakMemoryUsage() {
+        long peak = Math.max(peakMemoryUsage, getMemoryUsage());
+        return spill != null ? Math.max(peak, spill.getPeakMemoryUsage()) : peak;
+    }
+
+    @Override
+    public int getSpillCount() {
+        return spill != null ? spill.getSpillCount() : 0;
+    }
+
+    @Override
+    public long getSpillBytes() {
+        return spill != null ? spill.getSpillBytes() : 0;
+    }
+
+    @Override
+    public void release() {
+        releaseReservation();
+        if (spill != null) {
+            spill.release();
+        }
+    }
+
+    private void addBuffer(int length) throws IOException {
+        long hash = Hashing.hashBytes(buffer, 0, length);
+        if (bytesSet != null) {
+            if (bytesSet.add(buffer, 0, length, hash)) {
+                checkMemoryUsage();
+            }
+        }
+        else if (sketch != null) {
+            sketch.addHash(hash);
+        }
+        else {
+            spill.addEncoded(buffer, 0, length);
+        }
+    }
+
+    private void checkMemoryUsage() throws IOException {
+        long memoryUsage = getMemoryUsage();
+        if (memoryUsage > peakMemoryUsage) {
+            peakMemoryUsage = memoryUsage;
+        }
+        if (memoryUsage > memoryThreshold) {
+            switchToSketch();
+        }
+        else if (budget != null && memoryUsage > reservedBytes) {
+            long bytes = (memoryUsage - reservedBytes + RESERVATION_CHUNK - 1) / RESERVATION_CHUNK * RESERVATION_CHUNK;
+            if (budget.reserve(bytes)) {
+                reservedBytes += bytes;
+            }
+            else if (budget.getPolicy() == MemoryBudget.Policy.SPILL) {
+                switchToSpill();
+            }
+            else {
+                switchToSketch();
+            }
+        }
+    }
+
+    /**
+     * Move the exact set to a file calculator, the values are kept on disk instead of memory.
+     */
+    private void switchToSpill() throws IOException {
+        if (spill != null || sketch != null) {
+            return;
+        }
+        FileCardinalityCalculator newSpill = new FileCardinalityCalculator(dataType, FileCardinalityCalculator.SPILL_RUN_MEMORY, budget, executor);
+        addValuesTo(newSpill);
+        spill = newSpill;
+        longSet = null;
+        bytesSet = null;
+        releaseReservation();
+    }
+
+    private void switchToSketch() throws IOException {
+        if (sketch != null) {
+            return;
+        }
+        HyperLogLogCardinalityCalculator newSketch = new HyperLogLogCardinalityCalculator(dataType, precision);
+        addHashesTo(newSketch);
+        sketch = newSketch;
+        longSet = null;
+        bytesSet = null;
+        spill = null;
+        releaseReservation();
+        if (budget != null) {
+            // the sketch is small and bounded
+            reservedBytes = sketch.getMemoryUsage();
+            budget.reserveUnchecked(reservedBytes);
+        }
+    }
+
+    private void releaseReservation() {
+        if (budget != null) {
+            budget.release(reservedBytes);
+            reservedBytes = 0;
+        }
+    }
+
+    private void addHashesTo(HyperLogLogCardinalityCalculator target) throws IOException {
+        if (longSet != null) {
+            longSet.forEach(value -> target.addHash(Hashing.hashLong(value)));
+        }
+        else if (bytesSet != null) {
+            bytesSet.forEachHash(target::addHash);
+        }
+        else {
+            // counting the spilled values ends the file calculator and gives back its buffers
+            spill.forEachHash(target::addHash);
+        }
+    }
+
+    private void addValuesTo(FileCardinalityCalculator target) throws IOException {
+        if (longSet != null) {
+            try {
+                longSet.forEach(value -> {
+                    try {
+                        target.addLong(value);
+                    }
+                    catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        else {
+            bytesSet.forEach(target::addEncoded);
+        }
+    }
+
+    private void ensureBuffer(int capacity) {
+        if (buffer.length < capacity) {
+            buffer = new byte[Math.max(capacity, buffer.length * 2)];
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.fishblack.statistics.cardinality;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.LongConsumer;
+
+/**
+ * Set of byte sequences with open addressing and linear probing.
+ * The values are copied one after the other in a single byte array, prefixed by their length as a varint,
+ * and the table only keeps their offset and their 64 bit hash.
+ */
+public class BytesOpenHashSet {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int INITIAL_ARENA_SIZE = 256;
+    private static final double LOAD_FACTOR = 0.75d;
+
+    @FunctionalInterface
+    public interface ValueConsumer {
+        void accept(byte[] bytes, int offset, int length) throws IOException;
+    }
+
+    // offset + 1 of the value in the arena, 0 for an empty slot
+    private int[] offsets;
+    private long[] hashes;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    private byte[] arena = new byte[INITIAL_ARENA_SIZE];
+    private int arenaLength = 0;
+
+    public BytesOpenHashSet() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Add a value.
+     * @param bytes the buffer holding the value.
+     * @param offset the offset of the value in the buffer.
+     * @param length the length of the value.
+     * @param hash the hash of the value, see {@link Hashing#hashBytes(byte[], int, int)}.
+     * @return true if the value was not in the set yet.
+     */
+    public boolean add(byte[] bytes, int offset, int length, long hash) {
+        int slot = (int) hash & mask;
+        while (offsets[slot] != 0) {
+            if (hashes[slot] == hash && equalsAt(offsets[slot] - 1, bytes, offset, length)) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        offsets[slot] = append(bytes, offset, length) + 1;
+        hashes[slot] = hash;
+        if (++size > resizeThreshold) {
+            resize();
+        }
+        return true;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the bytes used by the table and the stored values.
+     */
+    public long getMemoryUsage() {
+        return (long) offsets.length * (Integer.BYTES + Long.BYTES) + arena.length;
+    }
+
+    /**
+     * Visit the hashes of all the values.
+     * @param consumer
+     */
+    public void forEachHash(LongConsumer consumer) {
+        for (int slot = 0; slot < offsets.length; slot++) {
+            if (offsets[slot] != 0) {
+                consumer.accept(hashes[slot]);
+            }
+        }
+    }
+
+    /**
+     * Visit all the values, the bytes given to the consumer are only valid during the call.
+     * @param consumer
+     * @throws IOException
+     */
+    public void forEach(ValueConsumer consumer) throws IOException {
+        for (int slot = 0; slot < offsets.length; slot++) {
+            if (offsets[slot] != 0) {
+                int position = offsets[slot] - 1;
+                int length = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = arena[position++];
+                    length |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                consumer.accept(arena, position, length);
+            }
+        }
+    }
+
+    /**
+     * Add all the values of another set.
+     * @param other
+     */
+    public void addAll(BytesOpenHashSet other) {
+        for (int slot = 0; slot < other.offsets.length; slot++) {
+            if (other.offsets[slot] != 0) {
+                int position = other.offsets[slot] - 1;
+                int length = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = other.arena[position++];
+                    length |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                add(other.arena, position, length, other.hashes[slot]);
+            }
+        }
+    }
+
+    /**
+     * Write the size then the length, bytes and hash of every value of the set.
+     * @param out
+     * @throws IOException
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int slot = 0; slot < offsets.length; slot++) {
+            if (offsets[slot] != 0) {
+                int position = offsets[slot] - 1;
+                int length = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = arena[position++];
+                    length |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                out.writeInt(length);
+                out.write(arena, position, length);
+                out.writeLong(hashes[slot]);
+            }
+        }
+    }
+
+    /**
+     * Add the values written by {@link #writeTo(DataOutput)}.
+     * @param in
+     * @throws IOException
+     */
+    public void readFrom(DataInput in) throws IOException {
+        int count = in.readInt();
+        byte[] buffer = new byte[64];
+        for (int i = 0; i < count; i++) {
+            int length = in.readInt();
+            if (buffer.length < length) {
+                buffer = new byte[Math.max(length, buffer.length * 2)];
+            }
+            in.readFully(buffer, 0, length);
+            add(buffer, 0, length, in.readLong());
+        }
+    }
+
+    private boolean equalsAt(int position, byte[] bytes, int offset, int length) {
+        int storedLength = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = arena[position++];
+            storedLength |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        if (storedLength != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (arena[position + i] != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int append(byte[] bytes, int offset, int length) {
+        ensureArenaCapacity(arenaLength + 5 + length);
+        int position = arenaLength;
+        int remaining = length;
+        while (remaining > 0x7f) {
+            arena[arenaLength++] = (byte) ((remaining & 0x7f) | 0x80);
+            remaining >>>= 7;
+        }
+        arena[arenaLength++] = (byte) remaining;
+        System.arraycopy(bytes, offset, arena, arenaLength, length);
+        arenaLength += length;
+        return position;
+    }
+
+    private void ensureArenaCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalStateException("BytesOpenHashSet cannot store more than 2 GB of values");
+        }
+        if (capacity > arena.length) {
+            long newLength = arena.length;
+            while (newLength < capacity) {
+                newLength *= 2;
+            }
+            byte[] newArena = new byte[(int) Math.min(newLength, Integer.MAX_VALUE - 8)];
+            System.arraycopy(arena, 0, newArena, 0, arenaLength);
+            arena = newArena;
+        }
+    }
+
+    private void resize() {
+        int[] oldOffsets = offsets;
+        long[] oldHashes = hashes;
+        allocate(oldOffsets.length * 2);
+        for (int i = 0; i < oldOffsets.length; i++) {
+            if (oldOffsets[i] != 0) {
+                int slot = (int) oldHashes[i] & mask;
+                while (offsets[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                offsets[slot] = oldOffsets[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        offsets = new int[capacity];
+        hashes = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+}
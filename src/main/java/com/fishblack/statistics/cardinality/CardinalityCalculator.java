@@ -1,8 +1,132 @@
 package com.fishblack.statistics.cardinality;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.math.BigDecimal;
 
 public interface CardinalityCalculator {
     void add(Object data) throws IOException;
     long count() throws IOException;
+
+    /**
+     * Count the distinct values added so far, values can still be added afterwards unlike after {@link #count()}.
+     * @return the distinct count so far, -1 if it is only known once the counting ends.
+     * @throws IOException
+     */
+    default long countSoFar() throws IOException {
+        return count();
+    }
+
+    /**
+     * Add an integer, date, time or timestamp value, the temporal values given as epoch milliseconds.
+     * @param value
+     * @throws IOException
+     */
+    default void addLong(long value) throws IOException {
+        add(value);
+    }
+
+    /**
+     * Add a double value.
+     * @param value
+     * @throws IOException
+     */
+    default void addDouble(double value) throws IOException {
+        add(value);
+    }
+
+    /**
+     * Add a decimal given as its unscaled value, the same value as {@code BigDecimal.valueOf(unscaledValue, scale)}.
+     * @param unscaledValue
+     * @param scale
+     * @throws IOException
+     */
+    default void addDecimal(long unscaledValue, int scale) throws IOException {
+        add(BigDecimal.valueOf(unscaledValue, scale));
+    }
+
+    /**
+     * Add a value held by several rows, e.g. a dictionary value of a row group. The distinct count does not depend
+     * on the rows, only the calculators counting the repeats of the values use them.
+     * @param data the value.
+     * @param rows the rows holding the value.
+     * @throws IOException
+     */
+    default void addRows(Object data, long rows) throws IOException {
+        add(data);
+    }
+
+    /**
+     * Add a decimal given as its unscaled value held by several rows, see {@link #addRows(Object, long)}.
+     * @param unscaledValue
+     * @param scale
+     * @param rows the rows holding the value.
+     * @throws IOException
+     */
+    default void addDecimalRows(long unscaledValue, int scale, long rows) throws IOException {
+        addDecimal(unscaledValue, scale);
+    }
+
+    /**
+     * @return true if {@link #count()} is the exact distinct count, false if it is an estimate.
+     */
+    default boolean isExact() {
+        return true;
+    }
+
+    /**
+     * @return the most bytes the calculator held in memory at once so far, -1 if it is not known.
+     */
+    default long getPeakMemoryUsage() {
+        return -1;
+    }
+
+    /**
+     * @return the number of runs of values written to disk so far.
+     */
+    default int getSpillCount() {
+        return 0;
+    }
+
+    /**
+     * @return the bytes of the runs written to disk so far.
+     */
+    default long getSpillBytes() {
+        return 0;
+    }
+
+    /**
+     * Give back the memory reserved from the {@link com.fishblack.statistics.MemoryBudget} of the calculator, once
+     * it is counted or dropped. Calling it again does nothing.
+     */
+    default void release() {
+    }
+
+    /**
+     * Merge the values added to another calculator of the same kind into this one.
+     * @param other the calculator to merge, it must not be used afterwards.
+     * @throws IOException
+     */
+    default void merge(CardinalityCalculator other) throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot be merged");
+    }
+
+    /**
+     * Save the values added to this calculator so they can be merged into another calculator later.
+     * @param out the output the state is written to.
+     * @throws IOException
+     */
+    default void writeState(DataOutput out) throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot be saved");
+    }
+
+    /**
+     * Merge a state written by {@link #writeState(DataOutput)} of the same kind of calculator into this one.
+     * @param in the input the state is read from.
+     * @throws IOException
+     */
+    default void readState(DataInput in) throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot be loaded");
+    }
 }
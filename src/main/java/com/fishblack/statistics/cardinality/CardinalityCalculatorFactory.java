@@ -0,0 +1,149 @@
+package com.fishblack.statistics.cardinality;
+
+import com.fishblack.statistics.MemoryBudget;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Creates the cardinality calculator of a column from its data type.
+ * The built-in factories have a name telling their calculators and parameters apart, see {@link #getName()}.
+ */
+@FunctionalInterface
+public interface CardinalityCalculatorFactory {
+
+    CardinalityCalculatorFactory MEMORY = named("memory", MemoryCardinalityCalculator::new);
+
+    CardinalityCalculatorFactory HYPER_LOG_LOG = named(
+            NamedCardinalityCalculatorFactory.hyperLogLogName(HyperLogLogCardinalityCalculator.DEFAULT_PRECISION),
+            HyperLogLogCardinalityCalculator::new);
+
+    CardinalityCalculatorFactory ADAPTIVE = named(
+            NamedCardinalityCalculatorFactory.adaptiveName(AdaptiveCardinalityCalculator.DEFAULT_MEMORY_THRESHOLD,
+                    HyperLogLogCardinalityCalculator.DEFAULT_PRECISION),
+            AdaptiveCardinalityCalculator::new);
+
+    CardinalityCalculatorFactory FILE = named(
+            NamedCardinalityCalculatorFactory.fileName(FileCardinalityCalculator.DEFAULT_RUN_MEMORY),
+            FileCardinalityCalculator::new);
+
+    CardinalityCalculatorFactory NONE = named("none", dataType -> NoCardinalityCalculator.INSTANCE);
+
+    CardinalityCalculator create(String dataType);
+
+    /**
+     * The name is the same in every JVM for the same calculators and parameters, and differs when either does, so
+     * it can key the statistics and the saved states counted by the factory. The memory budget and the executor
+     * are not part of it.
+     * @return the name of the factory, null when it has none and its calculators cannot be told apart.
+     */
+    default String getName() {
+        return null;
+    }
+
+    /**
+     * @param name the name of the calculators and of their parameters, see {@link #getName()}.
+     * @param factory a factory.
+     * @return the factory with the given name.
+     */
+    static CardinalityCalculatorFactory named(String name, CardinalityCalculatorFactory factory) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Cardinality calculator factory name must not be empty");
+        }
+        return new NamedCardinalityCalculatorFactory(name, factory);
+    }
+
+    /**
+     * @param precision the precision of the sketches.
+     * @return a factory of HyperLogLog sketches with the given precision.
+     */
+    static CardinalityCalculatorFactory hyperLogLog(int precision) {
+        return named(NamedCardinalityCalculatorFactory.hyperLogLogName(precision),
+                dataType -> new HyperLogLogCardinalityCalculator(dataType, precision));
+    }
+
+    /**
+     * @param memoryThreshold the memory in bytes the exact set of a column may use.
+     * @param precision the precision of the sketch used past the threshold.
+     * @return a factory of adaptive calculators.
+     */
+    static CardinalityCalculatorFactory adaptive(long memoryThreshold, int precision) {
+        return adaptive(memoryThreshold, precision, null, null);
+    }
+
+    /**
+     * @param memoryThreshold the memory in bytes the exact set of a column may use.
+     * @param precision the precision of the sketch used past the threshold.
+     * @param budget the budget the exact sets are reserved from.
+     * @return a factory of adaptive calculators sharing the budget.
+     */
+    static CardinalityCalculatorFactory adaptive(long memoryThreshold, int precision, MemoryBudget budget) {
+        return adaptive(memoryThreshold, precision, budget, null);
+    }
+
+    /**
+     * @param memoryThreshold the memory in bytes the exact set of a column may use.
+     * @param precision the precision of the sketch used past the threshold.
+     * @param budget the budget the exact sets are reserved from, null for none.
+     * @param executor the executor writing the runs of the spilled sets, null for the common ForkJoinPool.
+     * @return a factory of adaptive calculators sharing the budget.
+     */
+    static CardinalityCalculatorFactory adaptive(long memoryThreshold, int precision, MemoryBudget budget, Executor executor) {
+        return named(NamedCardinalityCalculatorFactory.adaptiveName(memoryThreshold, precision),
+                dataType -> new AdaptiveCardinalityCalculator(dataType, memoryThreshold, precision, budget, executor));
+    }
+
+    /**
+     * @param runMemory the bytes of values buffered in memory before a run is written.
+     * @param budget the budget the buffers are reserved from, null for none.
+     * @return a factory of file calculators.
+     */
+    static CardinalityCalculatorFactory file(long runMemory, MemoryBudget budget) {
+        return file(runMemory, budget, null);
+    }
+
+    /**
+     * @param runMemory the bytes of values buffered in memory before a run is written.
+     * @param budget the budget the buffers are reserved from, null for none.
+     * @param executor the executor sorting and writing the runs, null for the common ForkJoinPool.
+     * @return a factory of file calculators.
+     */
+    static CardinalityCalculatorFactory file(long runMemory, MemoryBudget budget, Executor executor) {
+        return named(NamedCardinalityCalculatorFactory.fileName(runMemory),
+                dataType -> new FileCardinalityCalculator(dataType, runMemory, budget, executor));
+    }
+
+    /**
+     * @param factory a factory.
+     * @param budget the budget shared by the calculators, null for none.
+     * @return the built-in {@link #ADAPTIVE}, {@link #FILE} and {@link #MEMORY} factories with their calculators
+     * reserving their memory from the budget, any other factory as it is.
+     */
+    static CardinalityCalculatorFactory withBudget(CardinalityCalculatorFactory factory, MemoryBudget budget) {
+        return withResources(factory, budget, null);
+    }
+
+    /**
+     * @param factory a factory.
+     * @param budget the budget shared by the calculators, null for none.
+     * @param executor the executor writing the runs of the calculators, null for the common ForkJoinPool.
+     * @return the built-in {@link #ADAPTIVE} and {@link #FILE} factories with their calculators reserving their
+     * memory from the budget and writing their runs on the executor, {@link #MEMORY} with its calculators reserving
+     * from the budget, any other factory as it is.
+     */
+    static CardinalityCalculatorFactory withResources(CardinalityCalculatorFactory factory, MemoryBudget budget, Executor executor) {
+        if (budget == null && executor == null) {
+            return factory;
+        }
+        if (factory == ADAPTIVE) {
+            return adaptive(AdaptiveCardinalityCalculator.DEFAULT_MEMORY_THRESHOLD, HyperLogLogCardinalityCalculator.DEFAULT_PRECISION,
+                    budget, executor);
+        }
+        if (factory == FILE) {
+            return file(FileCardinalityCalculator.DEFAULT_RUN_MEMORY, budget, executor);
+        }
+        if (factory == MEMORY && budget != null) {
+            return named(MEMORY.getName(), dataType -> new MemoryCardinalityCalculator(dataType, budget));
+        }
+        return factory;
+    }
+}
@@ -1,247 +1,823 @@
 package com.fishblack.statistics.cardinality;
 
-import com.fishblack.fastparquet.common.TempFile;
+import com.fishblack.statistics.MemoryBudget;
 import org.apache.commons.io.FileUtils;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
-import java.util.Collections;
-import java.util.Date;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.io.InterruptedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongConsumer;
 
+import static com.fishblack.statistics.Calculator.getLocalDateMillis;
+import static com.fishblack.statistics.Calculator.getLocalDateTimeMillis;
+
+/**
+ * Exact distinct count in bounded memory with an external sort.
+ * Values are buffered in primitive arrays, a full buffer is sorted, deduplicated and written as a binary run
+ * on the executor while the next buffer fills. {@link #count()} merges all the runs at once with a heap and
+ * counts the distinct values while streaming them. Integer, double, date, time and timestamp values are runs of
+ * longs, strings and decimals are runs of (hash, length, bytes) records ordered by hash then bytes.
+ * The memory used is at most {@value #MAX_PENDING_RUNS} + 1 buffers of the run memory, a buffer grows up to the
+ * run memory as values are added. A run the executor has not started when it is waited for is written by the
+ * waiting thread, a busy executor never blocks the calculator. The runs are written in a
+ * temporary directory of their own that is deleted by {@link #count()}. With a {@link MemoryBudget} the buffers are
+ * reserved up front, when they do not fit the runs are written from buffers of {@value #SPILL_RUN_MEMORY} bytes.
+ * When those do not fit either the buffers of {@value #MIN_RUN_MEMORY} bytes are reserved past the limit, a spilling
+ * calculator holds at most {@value #MAX_PENDING_RUNS} + 1 of them beyond the budget.
+ */
 public class FileCardinalityCalculator implements CardinalityCalculator {
 
-    private TempFile carFile;
-    private FileOutputStream fos;
-    private final String LINE_BREAK = "\r\n";
-    private long rowNumber = 0;
-    private final String SPLIT_FILE_NAME_PRE = "/dss.part";
-    private final String COMBINED_FILE_NAME_PRE = "/dss.c";
-    private final int MAX_FILE_ROWS = 100000;
+    public static final long DEFAULT_RUN_MEMORY = 32L * 1024 * 1024;
+
+    public static final long SPILL_RUN_MEMORY = 1024 * 1024;
+
+    public static final long MIN_RUN_MEMORY = 64 * 1024;
+
+    private static final int MAX_PENDING_RUNS = 2;
+    private static final int MAX_MERGE_WIDTH = 128;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    // hash, offset, length and sort index of a buffered bytes value
+    private static final int BYTES_ENTRY_OVERHEAD = 20;
+    private static final int INITIAL_LONG_CAPACITY = 1024;
+
+    private final String dataType;
+    private final boolean longValues;
+    private final long runMemory;
+    private final MemoryBudget budget;
+    private final Executor executor;
+    private long reservedBytes = 0;
+    private final List<Path> runs = new ArrayList<>();
+    private final Deque<FutureTask<Path>> pendingRuns = new ArrayDeque<>();
+    private final List<Path> workDirs = new ArrayList<>();
+    private Path workDir;
+    private long result = -1;
+
+    private long[] longBuffer;
+    private int longCount;
+    private int maxLongCount;
+
+    private byte[] arena;
+    private int arenaLength;
+    private long[] hashes;
+    private int[] offsets;
+    private int[] lengths;
+    private int bytesCount;
+    private byte[] scratch = new byte[64];
+    private int spillCount = 0;
+    private long spillBytes = 0;
+    private long peakMemoryUsage = 0;
 
+    /**
+     * Count the values by their string form.
+     * @throws IOException
+     */
     public FileCardinalityCalculator() throws IOException {
-        carFile = new TempFile();
-        fos = new FileOutputStream(carFile.getPath(), true);
+        this(null);
+    }
+
+    public FileCardinalityCalculator(String dataType) {
+        this(dataType, DEFAULT_RUN_MEMORY);
+    }
+
+    /**
+     * @param dataType the data type of the column.
+     * @param runMemory the bytes of values buffered in memory before a run is written.
+     */
+    public FileCardinalityCalculator(String dataType, long runMemory) {
+        this(dataType, runMemory, null);
+    }
+
+    /**
+     * @param dataType the data type of the column.
+     * @param runMemory the bytes of values buffered in memory before a run is written.
+     * @param budget the budget the buffers are reserved from, null for none.
+     */
+    public FileCardinalityCalculator(String dataType, long runMemory, MemoryBudget budget) {
+        this(dataType, runMemory, budget, null);
+    }
+
+    /**
+     * @param dataType the data type of the column.
+     * @param runMemory the bytes of values buffered in memory before a run is written.
+     * @param budget the budget the buffers are reserved from, null for none.
+     * @param executor the executor sorting and writing the runs, null for the common ForkJoinPool.
+     */
+    public FileCardinalityCalculator(String dataType, long runMemory, MemoryBudget budget, Executor executor) {
+        this.dataType = dataType;
+        this.budget = budget;
+        this.executor = executor == null ? ForkJoinPool.commonPool() : executor;
+        if (budget != null) {
+            reservedBytes = runMemory * (MAX_PENDING_RUNS + 1);
+            if (!budget.reserve(reservedBytes)) {
+                runMemory = Math.min(runMemory, SPILL_RUN_MEMORY);
+                reservedBytes = runMemory * (MAX_PENDING_RUNS + 1);
+                if (!budget.reserve(reservedBytes)) {
+                    runMemory = Math.min(runMemory, MIN_RUN_MEMORY);
+                    reservedBytes = runMemory * (MAX_PENDING_RUNS + 1);
+                    budget.reserveUnchecked(reservedBytes);
+                }
+            }
+        }
+        this.runMemory = runMemory;
+        this.longValues = "integer".equals(dataType) || "double".equals(dataType) || "date".equals(dataType)
+                || "time".equals(dataType) || "timestamp".equals(dataType);
+        if (longValues) {
+            maxLongCount = (int) Math.max(1, Math.min(runMemory / Long.BYTES, Integer.MAX_VALUE - 8));
+            longBuffer = new long[Math.min(INITIAL_LONG_CAPACITY, maxLongCount)];
+        }
+        else {
+            newBytesBuffer();
+        }
+    }
+
+    @Override
+    public void add(Object data) throws IOException {
+        if (data == null) {
+            return;
+        }
+        switch (dataType == null ? "" : dataType) {
+            case "integer":
+                addLong(((Number) data).longValue());
+                break;
+            case "double":
+                addDouble((Double) data);
+                break;
+            case "date":
+                addLong(getLocalDateMillis((LocalDate) data));
+                break;
+            case "timestamp":
+            case "time":
+                addLong(getLocalDateTimeMillis((LocalDateTime) data));
+                break;
+            case "decimal":
+                BigDecimal decimal = (BigDecimal) data;
+                ensureScratch(ValueBytes.decimalLength(decimal));
+                addBytes(ValueBytes.encodeDecimal(decimal, scratch));
+                break;
+            default:
+                CharSequence value = data instanceof CharSequence ? (CharSequence) data : String.valueOf(data);
+                ensureScratch(ValueBytes.maxStringLength(value));
+                addBytes(ValueBytes.encodeString(value, scratch));
+                break;
+        }
     }
 
     @Override
-    public void add(Object data) throws IOException{
-        fos.write(String.valueOf(data).getBytes());
-        fos.write(LINE_BREAK.getBytes());
-        rowNumber++;
+    public void addLong(long value) throws IOException {
+        if (!longValues) {
+            add(value);
+            return;
+        }
+        checkNotCounted();
+        if (longCount == longBuffer.length) {
+            if (longBuffer.length < maxLongCount) {
+                longBuffer = Arrays.copyOf(longBuffer, (int) Math.min(longBuffer.length * 2L, maxLongCount));
+            }
+            else {
+                spillLongs();
+            }
+        }
+        longBuffer[longCount++] = value;
     }
 
+    /**
+     * Doubles are compared like {@link Double#equals(Object)}: all NaN are equal, 0.0 and -0.0 are not.
+     */
     @Override
-    public long count() throws IOException{
-        fos.close();
-        File tempFile = new File(carFile.getPath());
-        String workDir = tempFile.getParent() + "/" + new Date().getTime();
-        File randomWorkDir = new File(workDir);
-        if (!randomWorkDir.exists()){
-            randomWorkDir.mkdirs();
-        }
-        int fileCount = (int) Math.ceil((double)rowNumber / MAX_FILE_ROWS);
-        splitFile(carFile.getPath(), workDir, fileCount);
-        sortFiles(workDir, fileCount);
-        String totalOrderedFile = combineAllSplitFiles(workDir, fileCount);
-        return getCardinality(totalOrderedFile);
-    }
-
-    private void splitFile(String sourceFilePath, String workDir,
-                                 int fileCount) throws IOException {
-        FileWriter fw = null;
-        BufferedWriter bw = null;
-        FileReader fr = new FileReader(sourceFilePath);
-        BufferedReader br = new BufferedReader(fr);
-
-        int i = 1;
-        LinkedList fwLists=new LinkedList();
-        LinkedList bwLists=new LinkedList();
-        for (int j = 1; j <= fileCount; j++) {
-            fw = new FileWriter(workDir + SPLIT_FILE_NAME_PRE + j ,false);
-            bw=new BufferedWriter(fw);
-
-            fwLists.add(fw);
-            bwLists.add(bw);
-        }
-        while (br.ready()) {
-
-            int count=1;
-            for (Iterator iterator = bwLists.iterator(); iterator.hasNext();) {
-                BufferedWriter type = (BufferedWriter) iterator.next();
-                if(i==count){
-                    type.write(br.readLine() + LINE_BREAK);
-                    break;
-                }
-                count++;
-            }
-            if (i >= fileCount) {
-                i = 1;
-            } else
-                i++;
-        }
-        br.close();
-        fr.close();
-        for (Iterator iterator = bwLists.iterator(); iterator.hasNext();) {
-            BufferedWriter object = (BufferedWriter) iterator.next();
-            object.close();
-        }
-        for (Iterator iterator = fwLists.iterator(); iterator.hasNext();) {
-            FileWriter object = (FileWriter) iterator.next();
-            object.close();
-        }
-    }
-
-    private void sortFiles(String workDir, int fileCount) throws IOException {
-        LinkedList values = null;
-        for (int i = 1; i <= fileCount; i++) {
-            values = new LinkedList();
-            String path = workDir + SPLIT_FILE_NAME_PRE + i;
-            try {
-                FileReader fr = new FileReader(path);
-                BufferedReader br = new BufferedReader(fr);
-                while (br.ready()) {
-                    values.add(br.readLine());
+    public void addDouble(double value) throws IOException {
+        if (!longValues) {
+            add(value);
+            return;
+        }
+        addLong(Double.doubleToLongBits(value));
+    }
+
+    @Override
+    public void addDecimal(long unscaledValue, int scale) throws IOException {
+        if (longValues) {
+            add(BigDecimal.valueOf(unscaledValue, scale));
+            return;
+        }
+        addBytes(ValueBytes.encodeDecimal(unscaledValue, scale, scratch));
+    }
+
+    @Override
+    public long count() throws IOException {
+        if (result >= 0) {
+            return result;
+        }
+        return countDistinct(null);
+    }
+
+    /**
+     * Count the distinct values like {@link #count()} and visit their hashes, the hash of a long value is
+     * {@link Hashing#hashLong(long)} and the hash of the bytes of a string or decimal is
+     * {@link Hashing#hashBytes(byte[], int, int)}.
+     * @param consumer receives the hash of every distinct value once.
+     * @throws IOException
+     */
+    void forEachHash(LongConsumer consumer) throws IOException {
+        checkNotCounted();
+        countDistinct(consumer);
+    }
+
+    /**
+     * Add a string or decimal already encoded by {@link ValueBytes}.
+     */
+    void addEncoded(byte[] bytes, int offset, int length) throws IOException {
+        ensureScratch(length);
+        System.arraycopy(bytes, offset, scratch, 0, length);
+        addBytes(length);
+    }
+
+    /**
+     * Counting sorts the buffered values in place and merges the runs, so the count is only known at the end.
+     */
+    @Override
+    public long countSoFar() {
+        return -1;
+    }
+
+    /**
+     * The runs of the other calculator are taken over, it must not be used afterwards.
+     */
+    @Override
+    public void merge(CardinalityCalculator other) throws IOException {
+        FileCardinalityCalculator calculator = (FileCardinalityCalculator) other;
+        checkNotCounted();
+        calculator.checkNotCounted();
+        calculator.flushRuns();
+        runs.addAll(calculator.runs);
+        spillCount += calculator.spillCount;
+        spillBytes += calculator.spillBytes;
+        peakMemoryUsage = Math.max(peakMemoryUsage, calculator.getPeakMemoryUsage());
+        workDirs.addAll(calculator.workDirs);
+        calculator.runs.clear();
+        calculator.workDirs.clear();
+        calculator.release();
+    }
+
+    /**
+     * @return the number of runs written to disk so far.
+     */
+    public int getRunCount() {
+        return runs.size() + pendingRuns.size();
+    }
+
+    /**
+     * The runs written by merged calculators are included.
+     */
+    @Override
+    public int getSpillCount() {
+        return spillCount;
+    }
+
+    @Override
+    public long getSpillBytes() {
+        return spillBytes;
+    }
+
+    /**
+     * @return the most bytes of buffered values, counting the buffers of the runs being written.
+     */
+    @Override
+    public long getPeakMemoryUsage() {
+        return Math.max(peakMemoryUsage, getBufferMemory());
+    }
+
+    /**
+     * Delete the runs and give back the reserved buffers, done by {@link #count()}.
+     */
+    @Override
+    public void release() {
+        for (FutureTask<Path> future : pendingRuns) {
+            future.cancel(true);
+        }
+        pendingRuns.clear();
+        for (Path dir : workDirs) {
+            FileUtils.deleteQuietly(dir.toFile());
+        }
+        workDirs.clear();
+        runs.clear();
+        workDir = null;
+        longBuffer = null;
+        arena = null;
+        hashes = null;
+        offsets = null;
+        lengths = null;
+        if (budget != null) {
+            budget.release(reservedBytes);
+            reservedBytes = 0;
+        }
+    }
+
+    private long countDistinct(LongConsumer consumer) throws IOException {
+        try {
+            if (runs.isEmpty() && pendingRuns.isEmpty()) {
+                if (longValues) {
+                    result = sortLongs(longBuffer, longCount);
+                    if (consumer != null) {
+                        for (int i = 0; i < result; i++) {
+                            consumer.accept(Hashing.hashLong(longBuffer[i]));
+                        }
+                    }
+                }
+                else {
+                    int[] order = sortBytes(arena, hashes, offsets, lengths, bytesCount);
+                    result = order.length;
+                    if (consumer != null) {
+                        for (int index : order) {
+                            consumer.accept(hashes[index]);
+                        }
+                    }
                 }
-                Collections.sort(values);
-                writeBackSortedValues(values, path);
+            }
+            else {
+                flushRuns();
+                result = mergeAllRuns(consumer);
+            }
+            return result;
+        }
+        finally {
+            release();
+        }
+    }
+
+    private long getBufferMemory() {
+        if (longBuffer != null) {
+            return (long) longBuffer.length * Long.BYTES;
+        }
+        return arena == null ? 0 : arena.length + (long) hashes.length * BYTES_ENTRY_OVERHEAD;
+    }
 
-                br.close();
-                fr.close();
-            } catch (NumberFormatException e) {
-                e.printStackTrace();
+    private void checkNotCounted() {
+        if (result >= 0) {
+            throw new IllegalStateException("FileCardinalityCalculator already counted");
+        }
+    }
+
+    private void addBytes(int length) throws IOException {
+        checkNotCounted();
+        if (arenaLength + length > arena.length || bytesCount == hashes.length) {
+            if (bytesCount > 0 && (long) arenaLength + length + (long) (bytesCount + 1) * BYTES_ENTRY_OVERHEAD > runMemory) {
+                spillBytes();
             }
+            growBytesBuffer(length);
         }
+        System.arraycopy(scratch, 0, arena, arenaLength, length);
+        hashes[bytesCount] = Hashing.hashBytes(scratch, 0, length);
+        offsets[bytesCount] = arenaLength;
+        lengths[bytesCount] = length;
+        arenaLength += length;
+        bytesCount++;
     }
 
-    private void writeBackSortedValues(LinkedList list, String path) {
-        try {
-            FileWriter fs = new FileWriter(path);
-            BufferedWriter fw=new BufferedWriter(fs);
-            for (Iterator iterator = list.iterator(); iterator.hasNext();) {
-                Object object = (Object) iterator.next();
-                fw.write(object + LINE_BREAK);
-            }
-            fw.close();
-            fs.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
-    private String combineTwoOrderedFiles(String fileAPath, String fileBPath, String workDirPath) throws IOException{
-        File workDir = new File(workDirPath);
-        if (!workDir.exists()){
-            workDir.mkdirs();
-        }
-        int i = 1;
-        File combinedFile = new File(workDir + COMBINED_FILE_NAME_PRE + i);
-        while (!combinedFile.createNewFile()) {
-            i ++;
-            combinedFile = new File(workDir + COMBINED_FILE_NAME_PRE + i);
-        }
-        FileWriter fw = null;
-        BufferedWriter bw = null;
-        FileReader frA = new FileReader(fileAPath);
-        BufferedReader brA = new BufferedReader(frA);
-        FileReader frB = new FileReader(fileBPath);
-        BufferedReader brB = new BufferedReader(frB);
-
-        fw = new FileWriter(combinedFile);
-        bw = new BufferedWriter(fw);
-
-
-        String A = brA.readLine();
-        String B = brB.readLine();
-        while(true) {
-            if (A != null && B != null) {
-                if (A.compareTo(B) < 0) {
-                    bw.write(A + LINE_BREAK);
-                    A = brA.readLine();
-                } else if (A.compareTo(B) > 0) {
-                    bw.write(B + LINE_BREAK);
-                    B = brB.readLine();
-                } else {
-                    bw.write(A + LINE_BREAK);
-                    bw.write(B + LINE_BREAK);
-                    A = brA.readLine();
-                    B = brB.readLine();
-                }
-            }
-            else if(A == null){
-                brA.close();
-                frA.close();
-                while( B!= null){
-                    bw.write(B + LINE_BREAK);
-                    B = brB.readLine();
+    private void ensureScratch(int capacity) {
+        if (scratch.length < capacity) {
+            scratch = new byte[Math.max(capacity, scratch.length * 2)];
+        }
+    }
+
+    private void newBytesBuffer() {
+        arena = new byte[1024];
+        arenaLength = 0;
+        hashes = new long[64];
+        offsets = new int[64];
+        lengths = new int[64];
+        bytesCount = 0;
+    }
+
+    private void growBytesBuffer(int length) {
+        if (arenaLength + length > arena.length) {
+            arena = Arrays.copyOf(arena, (int) Math.max(arenaLength + length, Math.min(Math.min(arena.length * 2L, runMemory), Integer.MAX_VALUE - 8)));
+        }
+        if (bytesCount == hashes.length) {
+            hashes = Arrays.copyOf(hashes, hashes.length * 2);
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            lengths = Arrays.copyOf(lengths, lengths.length * 2);
+        }
+    }
+
+    private void spillLongs() throws IOException {
+        long[] values = longBuffer;
+        int count = longCount;
+        Path runFile = newRunFile();
+        submitRun(() -> {
+            int distinct = sortLongs(values, count);
+            try (RunWriter writer = new RunWriter(runFile)) {
+                for (int i = 0; i < distinct; i++) {
+                    writer.writeLong(values[i]);
                 }
-                break;
             }
-            else if ( B == null){
-                brB.close();
-                frB.close();
-                while( A!= null){
-                    bw.write(A + LINE_BREAK);
-                    A = brA.readLine();
+            return runFile;
+        });
+        longBuffer = new long[values.length];
+        longCount = 0;
+    }
+
+    private void spillBytes() throws IOException {
+        byte[] runArena = arena;
+        long[] runHashes = hashes;
+        int[] runOffsets = offsets;
+        int[] runLengths = lengths;
+        int count = bytesCount;
+        Path runFile = newRunFile();
+        submitRun(() -> {
+            int[] order = sortBytes(runArena, runHashes, runOffsets, runLengths, count);
+            try (RunWriter writer = new RunWriter(runFile)) {
+                for (int index : order) {
+                    writer.writeBytes(runHashes[index], runArena, runOffsets[index], runLengths[index]);
                 }
-                break;
             }
+            return runFile;
+        });
+        newBytesBuffer();
+    }
+
+    private void submitRun(Callable<Path> task) throws IOException {
+        while (pendingRuns.size() >= MAX_PENDING_RUNS) {
+            addRun(waitFor(pendingRuns.removeFirst()));
+        }
+        spillCount++;
+        peakMemoryUsage = Math.max(peakMemoryUsage, getBufferMemory() * (pendingRuns.size() + 2));
+        FutureTask<Path> future = new FutureTask<>(task);
+        pendingRuns.addLast(future);
+        try {
+            executor.execute(future);
+        }
+        catch (RejectedExecutionException e) {
+            // written when waited for
         }
-        bw.close();
-        fw.close();
-        FileUtils.forceDelete(new File(fileAPath));
-        FileUtils.forceDelete(new File(fileBPath));
-        return combinedFile.getPath();
     }
 
-    private long getCardinality(String filePath){
-        long ret = 0L;
-        if (filePath == null || !new File(filePath).exists()){
-            return ret;
+    private void flushRuns() throws IOException {
+        if (longValues ? longCount > 0 : bytesCount > 0) {
+            if (longValues) {
+                spillLongs();
+            }
+            else {
+                spillBytes();
+            }
+        }
+        while (!pendingRuns.isEmpty()) {
+            addRun(waitFor(pendingRuns.removeFirst()));
         }
+    }
+
+    private void addRun(Path run) throws IOException {
+        runs.add(run);
+        spillBytes += Files.size(run);
+    }
+
+    private static Path waitFor(FutureTask<Path> future) throws IOException {
+        // writes the run on this thread when the executor has not started it, does nothing otherwise
+        future.run();
         try {
-            FileReader fr = new FileReader(filePath);
-            BufferedReader br = new BufferedReader(fr);
-            String value = null;
-            while (br.ready()) {
-                String current = br.readLine();
-                if (!current.equals(value)){
-                    value = current;
-                    ret ++;
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing a cardinality run");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private Path newRunFile() throws IOException {
+        if (workDir == null) {
+            workDir = Files.createTempDirectory("easystatistics-cardinality-");
+            workDirs.add(workDir);
+        }
+        return Files.createTempFile(workDir, "run", ".bin");
+    }
+
+    private long mergeAllRuns(LongConsumer consumer) throws IOException {
+        List<Path> current = new ArrayList<>(runs);
+        while (current.size() > MAX_MERGE_WIDTH) {
+            List<Path> merged = new ArrayList<>();
+            for (int i = 0; i < current.size(); i += MAX_MERGE_WIDTH) {
+                List<Path> group = current.subList(i, Math.min(i + MAX_MERGE_WIDTH, current.size()));
+                Path output = newRunFile();
+                try (RunWriter writer = new RunWriter(output)) {
+                    mergeRuns(group, writer, null);
                 }
+                for (Path run : group) {
+                    Files.deleteIfExists(run);
+                }
+                merged.add(output);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            current = merged;
         }
-        return ret;
+        return mergeRuns(current, null, consumer);
     }
 
-    private String combineAllSplitFiles(String workDir, int fileCount) throws IOException{
-        String startA = workDir+ SPLIT_FILE_NAME_PRE + "1";
-        String startB = workDir+ SPLIT_FILE_NAME_PRE + "2";
-        if (new File(startA).exists()){
-            if (new File(startB).exists()){
-                String output = combineTwoOrderedFiles(startA, startB, workDir);
-                for (int j = 3; j<=fileCount; j++){
-                    String next = workDir+ SPLIT_FILE_NAME_PRE + j;
-                    output = combineTwoOrderedFiles(output, next, workDir);
+    /**
+     * Merge sorted runs with a heap of run readers and count the distinct values.
+     * @param group the runs to merge.
+     * @param writer receives the distinct values in order, may be null.
+     * @param consumer receives the hashes of the distinct values, may be null.
+     * @return the number of distinct values.
+     */
+    private long mergeRuns(List<Path> group, RunWriter writer, LongConsumer consumer) throws IOException {
+        PriorityQueue<RunReader> heap = new PriorityQueue<>(group.size());
+        long distinct = 0;
+        try {
+            for (Path run : group) {
+                RunReader reader = new RunReader(run, longValues);
+                if (reader.next()) {
+                    heap.add(reader);
+                }
+                else {
+                    reader.close();
                 }
-                return output;
             }
-            else{
-                return startA;
+            RunReader previous = new RunReader(null, longValues);
+            boolean first = true;
+            while (!heap.isEmpty()) {
+                RunReader reader = heap.poll();
+                if (first || reader.compareTo(previous) != 0) {
+                    distinct++;
+                    first = false;
+                    previous.copyCurrent(reader);
+                    if (writer != null) {
+                        reader.writeCurrent(writer);
+                    }
+                    if (consumer != null) {
+                        consumer.accept(longValues ? Hashing.hashLong(reader.current) : reader.current);
+                    }
+                }
+                if (reader.next()) {
+                    heap.add(reader);
+                }
+                else {
+                    reader.close();
+                }
             }
         }
-        else {
-            return null;
+        finally {
+            for (RunReader reader : heap) {
+                reader.close();
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Sort and deduplicate the values in place.
+     * @return the number of distinct values, they are the first values of the array.
+     */
+    private static int sortLongs(long[] values, int count) {
+        if (count == 0) {
+            return 0;
+        }
+        Arrays.sort(values, 0, count);
+        int distinct = 1;
+        for (int i = 1; i < count; i++) {
+            if (values[i] != values[distinct - 1]) {
+                values[distinct++] = values[i];
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Sort the buffered values by hash then bytes and drop the duplicates.
+     * @return the indexes of the distinct values in order.
+     */
+    private static int[] sortBytes(byte[] arena, long[] hashes, int[] offsets, int[] lengths, int count) {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        quickSort(order, 0, count - 1, arena, hashes, offsets, lengths);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || compareEntries(order[distinct - 1], order[i], arena, hashes, offsets, lengths) != 0) {
+                order[distinct++] = order[i];
+            }
+        }
+        return Arrays.copyOf(order, distinct);
+    }
+
+    private static void quickSort(int[] order, int low, int high, byte[] arena, long[] hashes, int[] offsets, int[] lengths) {
+        while (high - low > 16) {
+            int pivot = order[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compareEntries(order[i], pivot, arena, hashes, offsets, lengths) < 0) {
+                    i++;
+                }
+                while (compareEntries(order[j], pivot, arena, hashes, offsets, lengths) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i++] = order[j];
+                    order[j--] = swap;
+                }
+            }
+            // recurse into the smaller side to bound the stack depth
+            if (j - low < high - i) {
+                quickSort(order, low, j, arena, hashes, offsets, lengths);
+                low = i;
+            }
+            else {
+                quickSort(order, i, high, arena, hashes, offsets, lengths);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            int entry = order[i];
+            int j = i - 1;
+            while (j >= low && compareEntries(order[j], entry, arena, hashes, offsets, lengths) > 0) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = entry;
+        }
+    }
+
+    private static int compareEntries(int a, int b, byte[] arena, long[] hashes, int[] offsets, int[] lengths) {
+        int result = Long.compare(hashes[a], hashes[b]);
+        if (result != 0) {
+            return result;
+        }
+        return ValueBytes.compare(arena, offsets[a], lengths[a], arena, offsets[b], lengths[b]);
+    }
+
+    private static class RunWriter implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+
+        private RunWriter(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        private void writeLong(long value) throws IOException {
+            ensureRemaining(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        private void writeBytes(long hash, byte[] bytes, int offset, int length) throws IOException {
+            ensureRemaining(Long.BYTES + Integer.BYTES);
+            buffer.putLong(hash);
+            buffer.putInt(length);
+            while (length > 0) {
+                ensureRemaining(1);
+                int chunk = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+                length -= chunk;
+            }
+        }
+
+        private void ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            }
+            finally {
+                channel.close();
+            }
         }
     }
 
+    private static class RunReader implements Closeable, Comparable<RunReader> {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final boolean longValues;
+        private long current;
+        private byte[] bytes = new byte[64];
+        private int length;
+
+        private RunReader(Path path, boolean longValues) throws IOException {
+            this.longValues = longValues;
+            if (path == null) {
+                channel = null;
+                buffer = null;
+            }
+            else {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+                buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+                buffer.flip();
+            }
+        }
 
+        private boolean next() throws IOException {
+            if (!fill(Long.BYTES)) {
+                return false;
+            }
+            current = buffer.getLong();
+            if (!longValues) {
+                if (!fill(Integer.BYTES)) {
+                    throw new EOFException("Truncated cardinality run");
+                }
+                length = buffer.getInt();
+                if (bytes.length < length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                int read = 0;
+                while (read < length) {
+                    if (!fill(1)) {
+                        throw new EOFException("Truncated cardinality run");
+                    }
+                    int chunk = Math.min(length - read, buffer.remaining());
+                    buffer.get(bytes, read, chunk);
+                    read += chunk;
+                }
+            }
+            return true;
+        }
+
+        private boolean fill(int needed) throws IOException {
+            if (buffer.remaining() >= needed) {
+                return true;
+            }
+            buffer.compact();
+            while (buffer.position() < needed) {
+                if (channel.read(buffer) < 0) {
+                    buffer.flip();
+                    return false;
+                }
+            }
+            buffer.flip();
+            return true;
+        }
+
+        private void copyCurrent(RunReader other) {
+            current = other.current;
+            if (!longValues) {
+                if (bytes.length < other.length) {
+                    bytes = new byte[other.bytes.length];
+                }
+                System.arraycopy(other.bytes, 0, bytes, 0, other.length);
+                length = other.length;
+            }
+        }
+
+        private void writeCurrent(RunWriter writer) throws IOException {
+            if (longValues) {
+                writer.writeLong(current);
+            }
+            else {
+                writer.writeBytes(current, bytes, 0, length);
+            }
+        }
+
+        @Override
+        public int compareTo(RunReader other) {
+            int result = Long.compare(current, other.current);
+            if (result != 0 || longValues) {
+                return result;
+            }
+            return ValueBytes.compare(bytes, 0, length, other.bytes, 0, other.length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
 }
@@ -0,0 +1,92 @@
+package com.fishblack.statistics.cardinality;
+
+import java.math.BigDecimal;
+
+/**
+ * 64 bit hashes of the typed column values, used by the sketches instead of the hash of their string form.
+ */
+public final class Hashing {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashing() {
+    }
+
+    /**
+     * Murmur3 64 bit finalizer, every input bit affects every output bit.
+     * @param value
+     * @return the hash of the value.
+     */
+    public static long hashLong(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Hash a double the way {@link Double#equals(Object)} compares them: all NaN are equal, 0.0 and -0.0 are not.
+     * @param value
+     * @return the hash of the value.
+     */
+    public static long hashDouble(double value) {
+        return hashLong(Double.doubleToLongBits(value));
+    }
+
+    /**
+     * FNV-1a over the UTF-16 chars followed by the murmur3 finalizer.
+     * @param value
+     * @return the hash of the value.
+     */
+    public static long hashString(CharSequence value) {
+        long h = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return hashLong(h ^ value.length());
+    }
+
+    /**
+     * FNV-1a over the bytes followed by the murmur3 finalizer.
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return the hash of the bytes.
+     */
+    public static long hashBytes(byte[] bytes, int offset, int length) {
+        long h = FNV_OFFSET_BASIS;
+        for (int i = offset; i < offset + length; i++) {
+            h ^= bytes[i] & 0xff;
+            h *= FNV_PRIME;
+        }
+        return hashLong(h ^ length);
+    }
+
+    /**
+     * Hash of an unscaled decimal value, decimals are equal only when both unscaled value and scale are equal.
+     * @param unscaledValue
+     * @param scale
+     * @return the hash of the decimal.
+     */
+    public static long hashDecimal(long unscaledValue, int scale) {
+        return hashLong(hashLong(unscaledValue) + scale);
+    }
+
+    /**
+     * Hash of a decimal, consistent with {@link #hashDecimal(long, int)} when the unscaled value fits in a long.
+     * @param value
+     * @return the hash of the decimal.
+     */
+    public static long hashDecimal(BigDecimal value) {
+        if (value.precision() <= 18) {
+            return hashDecimal(value.unscaledValue().longValue(), value.scale());
+        }
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        return hashLong(hashBytes(unscaled, 0, unscaled.length) + value.scale());
+    }
+}
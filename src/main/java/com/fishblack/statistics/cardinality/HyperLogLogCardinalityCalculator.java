@@ -0,0 +1,248 @@
+package com.fishblack.statistics.cardinality;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static com.fishblack.statistics.Calculator.getLocalDateMillis;
+import static com.fishblack.statistics.Calculator.getLocalDateTimeMillis;
+
+/**
+ * Approximate distinct count with a HyperLogLog++ sketch: 64 bit hashes of the typed values and
+ * 2^precision one byte registers, so the memory is fixed whatever the number of values.
+ * The estimate is the improved estimator of Ertl (2017), which needs neither the linear counting switch nor the
+ * empirical bias tables of the original HyperLogLog++ and stays unbiased from small to very large cardinalities.
+ * The relative standard error is 1.04 / sqrt(2^precision), about 0.81% for the default precision 14 with 16 KB of registers.
+ * Sketches of the same precision can be merged and serialized with {@link #toBytes()}.
+ */
+public class HyperLogLogCardinalityCalculator implements CardinalityCalculator {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+    public static final int DEFAULT_PRECISION = 14;
+
+    private static final byte SERIALIZATION_VERSION = 1;
+
+    private final String dataType;
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLogCardinalityCalculator(String dataType) {
+        this(dataType, DEFAULT_PRECISION);
+    }
+
+    public HyperLogLogCardinalityCalculator(String dataType, int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between " + MIN_PRECISION + " and "
+                    + MAX_PRECISION + ": " + precision);
+        }
+        this.dataType = dataType;
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    @Override
+    public void add(Object data) {
+        if (data == null) {
+            return;
+        }
+        switch (dataType) {
+            case "string":
+                addHash(Hashing.hashString(String.valueOf(data)));
+                break;
+            case "decimal":
+                addHash(Hashing.hashDecimal((BigDecimal) data));
+                break;
+            case "integer":
+                addLong(((Number) data).longValue());
+                break;
+            case "double":
+                addDouble((Double) data);
+                break;
+            case "date":
+                addLong(getLocalDateMillis((LocalDate) data));
+                break;
+            case "timestamp":
+            case "time":
+                addLong(getLocalDateTimeMillis((LocalDateTime) data));
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void addLong(long value) {
+        addHash(Hashing.hashLong(value));
+    }
+
+    @Override
+    public void addDecimal(long unscaledValue, int scale) {
+        addHash(Hashing.hashDecimal(unscaledValue, scale));
+    }
+
+    @Override
+    public void addDouble(double value) {
+        addHash(Hashing.hashDouble(value));
+    }
+
+    /**
+     * Add a value by its 64 bit hash, see {@link Hashing}.
+     * @param hash
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // the marker bit caps the rank at 64 - precision + 1
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    @Override
+    public long count() {
+        return Math.round(estimate());
+    }
+
+    @Override
+    public boolean isExact() {
+        return false;
+    }
+
+    @Override
+    public void merge(CardinalityCalculator other) {
+        HyperLogLogCardinalityCalculator sketch = (HyperLogLogCardinalityCalculator) other;
+        if (sketch.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge HyperLogLog sketches of precision " + precision
+                    + " and " + sketch.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (sketch.registers[i] > registers[i]) {
+                registers[i] = sketch.registers[i];
+            }
+        }
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * @return the relative standard error of the estimate, 1.04 / sqrt(2^precision).
+     */
+    public double getStandardError() {
+        return getStandardError(precision);
+    }
+
+    public static double getStandardError(int precision) {
+        return 1.04d / Math.sqrt(1 << precision);
+    }
+
+    /**
+     * @return the memory used by the registers in bytes.
+     */
+    public long getMemoryUsage() {
+        return registers.length;
+    }
+
+    @Override
+    public long getPeakMemoryUsage() {
+        return getMemoryUsage();
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        byte[] bytes = toBytes();
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        merge(fromBytes(dataType, bytes));
+    }
+
+    /**
+     * Serialize the sketch: a version byte, the precision byte and the registers.
+     * @return the serialized sketch.
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[registers.length + 2];
+        bytes[0] = SERIALIZATION_VERSION;
+        bytes[1] = (byte) precision;
+        System.arraycopy(registers, 0, bytes, 2, registers.length);
+        return bytes;
+    }
+
+    /**
+     * Read a sketch written by {@link #toBytes()}.
+     * @param dataType the data type of the column.
+     * @param bytes the serialized sketch.
+     * @return the sketch.
+     */
+    public static HyperLogLogCardinalityCalculator fromBytes(String dataType, byte[] bytes) {
+        if (bytes.length < 2 || bytes[0] != SERIALIZATION_VERSION) {
+            throw new IllegalArgumentException("Not a serialized HyperLogLog sketch");
+        }
+        HyperLogLogCardinalityCalculator sketch = new HyperLogLogCardinalityCalculator(dataType, bytes[1]);
+        if (bytes.length != sketch.registers.length + 2) {
+            throw new IllegalArgumentException("Serialized HyperLogLog sketch has " + (bytes.length - 2)
+                    + " registers instead of " + sketch.registers.length);
+        }
+        System.arraycopy(bytes, 2, sketch.registers, 0, sketch.registers.length);
+        return sketch;
+    }
+
+    double estimate() {
+        int q = 64 - precision;
+        int m = registers.length;
+        int[] histogram = new int[q + 2];
+        for (byte register : registers) {
+            histogram[register] ++;
+        }
+        double z = m * tau(1.0d - (double) histogram[q + 1] / m);
+        for (int k = q; k >= 1; k--) {
+            z += histogram[k];
+            z *= 0.5d;
+        }
+        z += m * sigma((double) histogram[0] / m);
+        return m * (m / (2.0d * Math.log(2.0d))) / z;
+    }
+
+    private static double sigma(double x) {
+        if (x == 1.0d) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1.0d;
+        double z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (previous != z);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if (x == 0.0d || x == 1.0d) {
+            return 0.0d;
+        }
+        double y = 1.0d;
+        double z = 1.0d - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5d;
+            z -= Math.pow(1.0d - x, 2) * y;
+        } while (previous != z);
+        return z / 3.0d;
+    }
+}
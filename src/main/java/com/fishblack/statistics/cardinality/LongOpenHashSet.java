@@ -0,0 +1,138 @@
+package com.fishblack.statistics.cardinality;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.LongConsumer;
+
+/**
+ * Set of primitive longs with open addressing and linear probing, no object is allocated per value.
+ * 0 marks an empty slot, the value 0 itself is tracked apart.
+ */
+public class LongOpenHashSet {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final double LOAD_FACTOR = 0.75d;
+
+    private long[] keys;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    private boolean containsZero;
+
+    public LongOpenHashSet() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Add a value.
+     * @param value
+     * @return true if the value was not in the set yet.
+     */
+    public boolean add(long value) {
+        if (value == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            return true;
+        }
+        int slot = (int) Hashing.hashLong(value) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = value;
+        if (++size > resizeThreshold) {
+            resize();
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+        int slot = (int) Hashing.hashLong(value) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public long size() {
+        return containsZero ? size + 1 : size;
+    }
+
+    /**
+     * @return the bytes used by the table.
+     */
+    public long getMemoryUsage() {
+        return (long) keys.length * Long.BYTES;
+    }
+
+    public void forEach(LongConsumer consumer) {
+        if (containsZero) {
+            consumer.accept(0L);
+        }
+        for (long key : keys) {
+            if (key != 0) {
+                consumer.accept(key);
+            }
+        }
+    }
+
+    /**
+     * Write the size then the values of the set.
+     * @param out
+     * @throws IOException
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(size());
+        if (containsZero) {
+            out.writeLong(0L);
+        }
+        for (long key : keys) {
+            if (key != 0) {
+                out.writeLong(key);
+            }
+        }
+    }
+
+    /**
+     * Add the values written by {@link #writeTo(DataOutput)}.
+     * @param in
+     * @throws IOException
+     */
+    public void readFrom(DataInput in) throws IOException {
+        long count = in.readLong();
+        for (long i = 0; i < count; i++) {
+            add(in.readLong());
+        }
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        allocate(oldKeys.length * 2);
+        for (long key : oldKeys) {
+            if (key != 0) {
+                int slot = (int) Hashing.hashLong(key) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+}
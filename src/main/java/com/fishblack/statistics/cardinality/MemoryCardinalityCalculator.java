@@ -1,5 +1,6 @@
 package com.fishblack.statistics.cardinality;
 
+import com.fishblack.statistics.MemoryBudget;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -9,16 +10,36 @@ import static com.fishblack.statistics.Calculator.getLocalDateMillis;
 import static com.fishblack.statistics.Calculator.getLocalDateTimeMillis;
 
 
+/**
+ * Exact distinct count in a hash set of the values, the count is -1 past {@value #MAX_MEMORY_USAGE_LIMIT} bytes of
+ * estimated memory. With a {@link MemoryBudget} the memory is reserved in chunks of {@value #RESERVATION_CHUNK}
+ * bytes, a denied reservation gives up like the limit whatever the policy.
+ */
 public class MemoryCardinalityCalculator implements CardinalityCalculator {
 
     private static final long MAX_MEMORY_USAGE_LIMIT = 100 * 1024 * 1024;
+    private static final long RESERVATION_CHUNK = 1024 * 1024;
 
     private HashSet<Object> distinctSet = new HashSet<>();
     private String dataType ;
     private long currentMemoryUsage = 0;
+    private final long longValueMemoryUsage;
+    private final MemoryBudget budget;
+    private long reservedBytes = 0;
+    private boolean denied = false;
 
     public MemoryCardinalityCalculator(String datatype){
+        this(datatype, null);
+    }
+
+    /**
+     * @param datatype the data type of the column.
+     * @param budget the budget the memory of the set is reserved from, null for none.
+     */
+    public MemoryCardinalityCalculator(String datatype, MemoryBudget budget){
         dataType = datatype;
+        longValueMemoryUsage = "integer".equals(datatype) ? 16 : 24;
+        this.budget = budget;
     }
 
     @Override
@@ -50,6 +71,40 @@ public class MemoryCardinalityCalculator implements CardinalityCalculator {
         }
     }
 
+    @Override
+    public void addLong(long value) {
+        if (isCanProceed()) {
+            distinctSet.add(value);
+            currentMemoryUsage += longValueMemoryUsage;
+        }
+    }
+
+    @Override
+    public void addDouble(double value) {
+        if (isCanProceed()) {
+            distinctSet.add(value);
+            currentMemoryUsage += 24;
+        }
+    }
+
+    /**
+     * The memory usage of both calculators adds up, so the merged count is -1 exactly when
+     * one calculator fed with all the values would have exceeded the limit.
+     */
+    @Override
+    public void merge(CardinalityCalculator other) {
+        MemoryCardinalityCalculator calculator = (MemoryCardinalityCalculator) other;
+        currentMemoryUsage += calculator.currentMemoryUsage;
+        denied |= calculator.denied;
+        calculator.release();
+        if (isCanProceed()) {
+            distinctSet.addAll(calculator.distinctSet);
+        }
+        else {
+            distinctSet = new HashSet<>();
+        }
+    }
+
     @Override
     public long count() {
         if (isCanProceed()){
@@ -58,7 +113,38 @@ public class MemoryCardinalityCalculator implements CardinalityCalculator {
         else return -1;
     }
 
+    /**
+     * The estimated memory of the distinct values only grows, it keeps growing past the limit.
+     */
+    @Override
+    public long getPeakMemoryUsage() {
+        return currentMemoryUsage;
+    }
+
+    @Override
+    public void release() {
+        if (budget != null) {
+            budget.release(reservedBytes);
+            reservedBytes = 0;
+        }
+    }
+
     private boolean isCanProceed(){
-        return currentMemoryUsage < MAX_MEMORY_USAGE_LIMIT;
+        if (budget != null && !denied && currentMemoryUsage > reservedBytes && currentMemoryUsage < MAX_MEMORY_USAGE_LIMIT) {
+            reserve();
+        }
+        return currentMemoryUsage < MAX_MEMORY_USAGE_LIMIT && !denied;
+    }
+
+    private void reserve() {
+        long bytes = (currentMemoryUsage - reservedBytes + RESERVATION_CHUNK - 1) / RESERVATION_CHUNK * RESERVATION_CHUNK;
+        if (budget.reserve(bytes)) {
+            reservedBytes += bytes;
+        }
+        else {
+            denied = true;
+            distinctSet = new HashSet<>();
+            release();
+        }
     }
 }
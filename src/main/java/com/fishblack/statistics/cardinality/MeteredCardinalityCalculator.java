@@ -0,0 +1,186 @@
+package com.fishblack.statistics.cardinality;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Wraps a cardinality calculator and measures the time spent in it.
+ * One value out of {@value #SAMPLE_INTERVAL} is timed and the time of the others is extrapolated from it, so the
+ * clock is not read for every value. {@link #count()} is always timed, it is where the file runs are merged.
+ */
+public class MeteredCardinalityCalculator implements CardinalityCalculator {
+
+    public static final int SAMPLE_INTERVAL = 64;
+
+    private final CardinalityCalculator calculator;
+    private long calls = 0;
+    private long sampledCalls = 0;
+    private long sampledNanos = 0;
+    private long countNanos = 0;
+
+    public MeteredCardinalityCalculator(CardinalityCalculator calculator) {
+        this.calculator = calculator;
+    }
+
+    /**
+     * @param factory the factory of the wrapped calculators.
+     * @return a factory wrapping the calculators of the given factory, with its name as the counts are the same.
+     */
+    public static CardinalityCalculatorFactory factory(CardinalityCalculatorFactory factory) {
+        CardinalityCalculatorFactory meteredFactory = dataType -> new MeteredCardinalityCalculator(factory.create(dataType));
+        return factory.getName() == null ? meteredFactory : CardinalityCalculatorFactory.named(factory.getName(), meteredFactory);
+    }
+
+    /**
+     * @param calculator a calculator, possibly wrapped in a {@link SampleCardinalityCalculator}.
+     * @return the metered calculator of the given calculator, null if it is not metered.
+     */
+    public static MeteredCardinalityCalculator of(CardinalityCalculator calculator) {
+        if (calculator instanceof SampleCardinalityCalculator) {
+            calculator = ((SampleCardinalityCalculator) calculator).getCalculator();
+        }
+        return calculator instanceof MeteredCardinalityCalculator ? (MeteredCardinalityCalculator) calculator : null;
+    }
+
+    @Override
+    public void add(Object data) throws IOException {
+        if (++calls % SAMPLE_INTERVAL != 0) {
+            calculator.add(data);
+            return;
+        }
+        long start = System.nanoTime();
+        calculator.add(data);
+        sample(start);
+    }
+
+    @Override
+    public void addLong(long value) throws IOException {
+        if (++calls % SAMPLE_INTERVAL != 0) {
+            calculator.addLong(value);
+            return;
+        }
+        long start = System.nanoTime();
+        calculator.addLong(value);
+        sample(start);
+    }
+
+    @Override
+    public void addDouble(double value) throws IOException {
+        if (++calls % SAMPLE_INTERVAL != 0) {
+            calculator.addDouble(value);
+            return;
+        }
+        long start = System.nanoTime();
+        calculator.addDouble(value);
+        sample(start);
+    }
+
+    @Override
+    public void addDecimal(long unscaledValue, int scale) throws IOException {
+        if (++calls % SAMPLE_INTERVAL != 0) {
+            calculator.addDecimal(unscaledValue, scale);
+            return;
+        }
+        long start = System.nanoTime();
+        calculator.addDecimal(unscaledValue, scale);
+        sample(start);
+    }
+
+    @Override
+    public void addRows(Object data, long rows) throws IOException {
+        if (++calls % SAMPLE_INTERVAL != 0) {
+            calculator.addRows(data, rows);
+            return;
+        }
+        long start = System.nanoTime();
+        calculator.addRows(data, rows);
+        sample(start);
+    }
+
+    @Override
+    public void addDecimalRows(long unscaledValue, int scale, long rows) throws IOException {
+        if (++calls % SAMPLE_INTERVAL != 0) {
+            calculator.addDecimalRows(unscaledValue, scale, rows);
+            return;
+        }
+        long start = System.nanoTime();
+        calculator.addDecimalRows(unscaledValue, scale, rows);
+        sample(start);
+    }
+
+    @Override
+    public long count() throws IOException {
+        long start = System.nanoTime();
+        try {
+            return calculator.count();
+        }
+        finally {
+            countNanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public long countSoFar() throws IOException {
+        return calculator.countSoFar();
+    }
+
+    @Override
+    public boolean isExact() {
+        return calculator.isExact();
+    }
+
+    @Override
+    public void merge(CardinalityCalculator other) throws IOException {
+        MeteredCardinalityCalculator metered = (MeteredCardinalityCalculator) other;
+        long start = System.nanoTime();
+        calculator.merge(metered.calculator);
+        countNanos += metered.countNanos + System.nanoTime() - start;
+        calls += metered.calls;
+        sampledCalls += metered.sampledCalls;
+        sampledNanos += metered.sampledNanos;
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        calculator.writeState(out);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        calculator.readState(in);
+    }
+
+    @Override
+    public long getPeakMemoryUsage() {
+        return calculator.getPeakMemoryUsage();
+    }
+
+    @Override
+    public int getSpillCount() {
+        return calculator.getSpillCount();
+    }
+
+    @Override
+    public long getSpillBytes() {
+        return calculator.getSpillBytes();
+    }
+
+    @Override
+    public void release() {
+        calculator.release();
+    }
+
+    /**
+     * @return the estimated nanoseconds spent adding values, merging and counting so far.
+     */
+    public long getNanos() {
+        long addNanos = sampledCalls == 0 ? 0 : (long) ((double) sampledNanos * calls / sampledCalls);
+        return addNanos + countNanos;
+    }
+
+    private void sample(long start) {
+        sampledNanos += System.nanoTime() - start;
+        sampledCalls++;
+    }
+}
@@ -0,0 +1,42 @@
+package com.fishblack.statistics.cardinality;
+
+/**
+ * A factory of cardinality calculators with a name, see {@link CardinalityCalculatorFactory#getName()}.
+ */
+final class NamedCardinalityCalculatorFactory implements CardinalityCalculatorFactory {
+
+    private final String name;
+    private final CardinalityCalculatorFactory factory;
+
+    NamedCardinalityCalculatorFactory(String name, CardinalityCalculatorFactory factory) {
+        this.name = name;
+        this.factory = factory;
+    }
+
+    @Override
+    public CardinalityCalculator create(String dataType) {
+        return factory.create(dataType);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    static String hyperLogLogName(int precision) {
+        return "hyperloglog/" + precision;
+    }
+
+    static String adaptiveName(long memoryThreshold, int precision) {
+        return "adaptive/" + memoryThreshold + "/" + precision;
+    }
+
+    static String fileName(long runMemory) {
+        return "file/" + runMemory;
+    }
+}
@@ -0,0 +1,54 @@
+package com.fishblack.statistics.cardinality;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+
+/**
+ * Counts nothing, for the profiles that do not ask for the distinct count: the values are dropped and the count is 0.
+ * It holds no state, so one instance is shared by all the columns.
+ */
+public final class NoCardinalityCalculator implements CardinalityCalculator {
+
+    public static final NoCardinalityCalculator INSTANCE = new NoCardinalityCalculator();
+
+    private NoCardinalityCalculator() {
+    }
+
+    @Override
+    public void add(Object data) {
+    }
+
+    @Override
+    public void addLong(long value) {
+    }
+
+    @Override
+    public void addDouble(double value) {
+    }
+
+    @Override
+    public void addDecimal(long unscaledValue, int scale) {
+    }
+
+    @Override
+    public long count() {
+        return 0;
+    }
+
+    @Override
+    public long getPeakMemoryUsage() {
+        return 0;
+    }
+
+    @Override
+    public void merge(CardinalityCalculator other) {
+    }
+
+    @Override
+    public void writeState(DataOutput out) {
+    }
+
+    @Override
+    public void readState(DataInput in) {
+    }
+}
@@ -0,0 +1,301 @@
+package com.fishblack.statistics.cardinality;
+
+import com.fishblack.statistics.MemoryBudget;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static com.fishblack.statistics.Calculator.getLocalDateMillis;
+import static com.fishblack.statistics.Calculator.getLocalDateTimeMillis;
+
+/**
+ * Wraps the cardinality calculator of a sampled column and also counts the values seen exactly once in the sample,
+ * which the distinct count estimate of the whole column is extrapolated from. A value added for several rows is
+ * repeated. The values are told apart by their 64 bit hash.
+ * The hashes tracked are bounded: past {@link #DEFAULT_MAX_TRACKED} hashes, or when the {@link MemoryBudget} denies
+ * their memory, only the hashes whose top bits are zero are kept, one more bit every time. The values kept are then
+ * a uniform sample of the distinct values, and the share of singletons among them an estimate of the share of all.
+ */
+public class SampleCardinalityCalculator implements CardinalityCalculator {
+
+    public static final long DEFAULT_MAX_TRACKED = 1024 * 1024;
+
+    // the sets reserve their memory from the budget in chunks of this size
+    private static final long RESERVATION_CHUNK = 256 * 1024;
+    private static final int MAX_LEVEL = 63;
+
+    private final CardinalityCalculator calculator;
+    private final MemoryBudget budget;
+    private final long maxTracked;
+    private LongOpenHashSet seen = new LongOpenHashSet();
+    private LongOpenHashSet repeated = new LongOpenHashSet();
+    // the top bits of the hashes tracked that are zero
+    private int level = 0;
+    private long reservedBytes = 0;
+    private long peakTrackedMemory = 0;
+
+    public SampleCardinalityCalculator(CardinalityCalculator calculator) {
+        this(calculator, null, DEFAULT_MAX_TRACKED);
+    }
+
+    /**
+     * @param calculator the wrapped calculator.
+     * @param budget the budget the memory of the hashes is reserved from, null for none.
+     * @param maxTracked the most hashes tracked.
+     */
+    public SampleCardinalityCalculator(CardinalityCalculator calculator, MemoryBudget budget, long maxTracked) {
+        if (maxTracked <= 0) {
+            throw new IllegalArgumentException("Tracked sample hashes must be positive: " + maxTracked);
+        }
+        this.calculator = calculator;
+        this.budget = budget;
+        this.maxTracked = maxTracked;
+    }
+
+    /**
+     * @param factory the factory of the wrapped calculators.
+     * @return a factory wrapping the calculators of the given factory.
+     */
+    public static CardinalityCalculatorFactory factory(CardinalityCalculatorFactory factory) {
+        return factory(factory, null);
+    }
+
+    /**
+     * @param factory the factory of the wrapped calculators.
+     * @param budget the budget the memory of the hashes is reserved from, null for none.
+     * @return a factory wrapping the calculators of the given factory, named after it.
+     */
+    public static CardinalityCalculatorFactory factory(CardinalityCalculatorFactory factory, MemoryBudget budget) {
+        CardinalityCalculatorFactory sampleFactory =
+                dataType -> new SampleCardinalityCalculator(factory.create(dataType), budget, DEFAULT_MAX_TRACKED);
+        return factory.getName() == null ? sampleFactory
+                : CardinalityCalculatorFactory.named("sample/" + factory.getName(), sampleFactory);
+    }
+
+    @Override
+    public void add(Object data) throws IOException {
+        if (data == null) {
+            return;
+        }
+        calculator.add(data);
+        addHash(hash(data), 1);
+    }
+
+    @Override
+    public void addLong(long value) throws IOException {
+        calculator.addLong(value);
+        addHash(Hashing.hashLong(value), 1);
+    }
+
+    @Override
+    public void addDouble(double value) throws IOException {
+        calculator.addDouble(value);
+        addHash(Hashing.hashDouble(value), 1);
+    }
+
+    @Override
+    public void addDecimal(long unscaledValue, int scale) throws IOException {
+        calculator.addDecimal(unscaledValue, scale);
+        addHash(Hashing.hashDecimal(unscaledValue, scale), 1);
+    }
+
+    @Override
+    public void addRows(Object data, long rows) throws IOException {
+        if (data == null) {
+            return;
+        }
+        calculator.addRows(data, rows);
+        addHash(hash(data), rows);
+    }
+
+    @Override
+    public void addDecimalRows(long unscaledValue, int scale, long rows) throws IOException {
+        calculator.addDecimalRows(unscaledValue, scale, rows);
+        addHash(Hashing.hashDecimal(unscaledValue, scale), rows);
+    }
+
+    @Override
+    public long count() throws IOException {
+        return calculator.count();
+    }
+
+    @Override
+    public long countSoFar() throws IOException {
+        return calculator.countSoFar();
+    }
+
+    @Override
+    public boolean isExact() {
+        return calculator.isExact();
+    }
+
+    @Override
+    public void merge(CardinalityCalculator other) throws IOException {
+        SampleCardinalityCalculator sample = (SampleCardinalityCalculator) other;
+        calculator.merge(sample.calculator);
+        if (sample.level > level) {
+            retainLevel(sample.level);
+        }
+        sample.seen.forEach(hash -> {
+            if (isTracked(hash) && !seen.add(hash)) {
+                repeated.add(hash);
+            }
+        });
+        sample.repeated.forEach(hash -> {
+            if (isTracked(hash)) {
+                repeated.add(hash);
+            }
+        });
+        peakTrackedMemory = Math.max(peakTrackedMemory, sample.peakTrackedMemory);
+        sample.releaseReservation();
+        checkMemoryUsage();
+    }
+
+    /**
+     * The hashes of the sample values are counted with the memory of the wrapped calculator.
+     */
+    @Override
+    public long getPeakMemoryUsage() {
+        long peak = calculator.getPeakMemoryUsage();
+        return peak < 0 ? peak : peak + Math.max(peakTrackedMemory, getTrackedMemory());
+    }
+
+    @Override
+    public int getSpillCount() {
+        return calculator.getSpillCount();
+    }
+
+    @Override
+    public long getSpillBytes() {
+        return calculator.getSpillBytes();
+    }
+
+    @Override
+    public void release() {
+        calculator.release();
+        releaseReservation();
+    }
+
+    /**
+     * @return the wrapped calculator.
+     */
+    public CardinalityCalculator getCalculator() {
+        return calculator;
+    }
+
+    /**
+     * @return the number of distinct values tracked in the sample, all of them until the hashes are bounded.
+     */
+    public long getSampleDistinctCount() {
+        return seen.size();
+    }
+
+    /**
+     * @return the number of values tracked seen exactly once in the sample.
+     */
+    public long getSingletonCount() {
+        return seen.size() - repeated.size();
+    }
+
+    /**
+     * @return the top bits of the hashes tracked that are zero, 0 when every hash is tracked.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    private void addHash(long hash, long rows) {
+        if (!isTracked(hash)) {
+            return;
+        }
+        boolean added = seen.add(hash);
+        if ((!added || rows > 1) && repeated.add(hash)) {
+            added = true;
+        }
+        if (added) {
+            checkMemoryUsage();
+        }
+    }
+
+    private boolean isTracked(long hash) {
+        return level == 0 || hash >>> (64 - level) == 0;
+    }
+
+    private long getTrackedMemory() {
+        return seen.getMemoryUsage() + repeated.getMemoryUsage();
+    }
+
+    /**
+     * Keep one more bit of hashes out while there are too many or the budget denies their memory.
+     */
+    private void checkMemoryUsage() {
+        while (seen.size() > maxTracked && level < MAX_LEVEL) {
+            retainLevel(level + 1);
+        }
+        long usage = getTrackedMemory();
+        peakTrackedMemory = Math.max(peakTrackedMemory, usage);
+        if (budget == null || usage <= reservedBytes) {
+            return;
+        }
+        long bytes = Math.max(RESERVATION_CHUNK, usage - reservedBytes);
+        if (budget.reserve(bytes)) {
+            reservedBytes += bytes;
+            return;
+        }
+        if (level < MAX_LEVEL) {
+            retainLevel(level + 1);
+            usage = getTrackedMemory();
+        }
+        // the sets left are bounded by the halving
+        if (usage > reservedBytes) {
+            budget.reserveUnchecked(usage - reservedBytes);
+            reservedBytes = usage;
+        }
+    }
+
+    private void retainLevel(int newLevel) {
+        level = newLevel;
+        LongOpenHashSet keptSeen = new LongOpenHashSet();
+        LongOpenHashSet keptRepeated = new LongOpenHashSet();
+        seen.forEach(hash -> {
+            if (isTracked(hash)) {
+                keptSeen.add(hash);
+            }
+        });
+        repeated.forEach(hash -> {
+            if (isTracked(hash)) {
+                keptRepeated.add(hash);
+            }
+        });
+        seen = keptSeen;
+        repeated = keptRepeated;
+    }
+
+    private void releaseReservation() {
+        if (budget != null) {
+            budget.release(reservedBytes);
+            reservedBytes = 0;
+        }
+    }
+
+    private static long hash(Object data) {
+        if (data instanceof Double) {
+            return Hashing.hashDouble((Double) data);
+        }
+        if (data instanceof Long || data instanceof Integer) {
+            return Hashing.hashLong(((Number) data).longValue());
+        }
+        if (data instanceof BigDecimal) {
+            return Hashing.hashDecimal((BigDecimal) data);
+        }
+        if (data instanceof LocalDate) {
+            return Hashing.hashLong(getLocalDateMillis((LocalDate) data));
+        }
+        if (data instanceof LocalDateTime) {
+            return Hashing.hashLong(getLocalDateTimeMillis((LocalDateTime) data));
+        }
+        return Hashing.hashString(String.valueOf(data));
+    }
+}
@@ -0,0 +1,107 @@
+package com.fishblack.statistics.cardinality;
+
+import java.math.BigDecimal;
+
+/**
+ * Compact binary forms of the string and decimal values, two values have the same bytes only when they are equal.
+ */
+final class ValueBytes {
+
+    private ValueBytes() {
+    }
+
+    /**
+     * @param value
+     * @return the maximum number of bytes {@link #encodeString(CharSequence, byte[])} writes for the value.
+     */
+    static int maxStringLength(CharSequence value) {
+        return value.length() * 3;
+    }
+
+    /**
+     * Encode the UTF-16 chars one by one as UTF-8, surrogates included.
+     * @param value
+     * @param target
+     * @return the number of bytes written.
+     */
+    static int encodeString(CharSequence value, byte[] target) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                target[length++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                target[length++] = (byte) (0xc0 | (c >> 6));
+                target[length++] = (byte) (0x80 | (c & 0x3f));
+            }
+            else {
+                target[length++] = (byte) (0xe0 | (c >> 12));
+                target[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                target[length++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @param value
+     * @return the number of bytes {@link #encodeDecimal(BigDecimal, byte[])} writes for the value.
+     */
+    static int decimalLength(BigDecimal value) {
+        return value.precision() <= 18 ? 12 : 4 + value.unscaledValue().bitLength() / 8 + 1;
+    }
+
+    /**
+     * Encode the scale then the unscaled value on 8 bytes, both big endian.
+     * Decimals are equal like their string form: both unscaled value and scale must be equal.
+     * @param unscaledValue
+     * @param scale
+     * @param target
+     * @return the number of bytes written.
+     */
+    static int encodeDecimal(long unscaledValue, int scale, byte[] target) {
+        writeInt(scale, target, 0);
+        writeInt((int) (unscaledValue >>> 32), target, 4);
+        writeInt((int) unscaledValue, target, 8);
+        return 12;
+    }
+
+    /**
+     * Encode a decimal, the same bytes as {@link #encodeDecimal(long, int, byte[])} up to precision 18 and the
+     * scale followed by the two's complement of the unscaled value above.
+     * @param value
+     * @param target at least {@link #decimalLength(BigDecimal)} bytes.
+     * @return the number of bytes written.
+     */
+    static int encodeDecimal(BigDecimal value, byte[] target) {
+        if (value.precision() <= 18) {
+            return encodeDecimal(value.unscaledValue().longValue(), value.scale(), target);
+        }
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        writeInt(value.scale(), target, 0);
+        System.arraycopy(unscaled, 0, target, 4, unscaled.length);
+        return 4 + unscaled.length;
+    }
+
+    /**
+     * Unsigned lexicographic order of two byte sequences.
+     */
+    static int compare(byte[] a, int aOffset, int aLength, byte[] b, int bOffset, int bLength) {
+        int length = Math.min(aLength, bLength);
+        for (int i = 0; i < length; i++) {
+            int diff = (a[aOffset + i] & 0xff) - (b[bOffset + i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    private static void writeInt(int value, byte[] target, int position) {
+        target[position] = (byte) (value >>> 24);
+        target[position + 1] = (byte) (value >>> 16);
+        target[position + 2] = (byte) (value >>> 8);
+        target[position + 3] = (byte) value;
+    }
+}
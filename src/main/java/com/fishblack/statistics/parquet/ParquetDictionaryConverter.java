@@ -0,0 +1,158 @@
+package com.fishblack.statistics.parquet;
+
+import com.fishblack.statistics.accumulator.AbstractColumnAccumulator;
+import com.fishblack.statistics.accumulator.ColumnAccumulator;
+import com.fishblack.statistics.accumulator.DecimalColumnAccumulator;
+import com.fishblack.statistics.accumulator.StringColumnAccumulator;
+import org.apache.parquet.column.Dictionary;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.PrimitiveConverter;
+import org.apache.parquet.schema.OriginalType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Feeds a string or decimal accumulator from the dictionary ids of a dictionary encoded column chunk.
+ * A row of a dictionary encoded page only counts its id, the values of the ids used by the row group are
+ * decoded once in {@link #flush()} and added with the number of rows holding them. Values of plain encoded
+ * pages are decoded and added one by one.
+ */
+abstract class ParquetDictionaryConverter extends PrimitiveConverter {
+
+    private final AbstractColumnAccumulator accumulator;
+    private Dictionary dictionary;
+    // rows holding every dictionary id in the current row group, 0 for the unused ids
+    private int[] idRows;
+
+    private ParquetDictionaryConverter(AbstractColumnAccumulator accumulator) {
+        this.accumulator = accumulator;
+    }
+
+    /**
+     * @return the converter of the column, null if the column is not read through its dictionary.
+     */
+    static ParquetDictionaryConverter forColumn(PrimitiveType type, ColumnAccumulator accumulator) {
+        OriginalType originalType = type.getOriginalType();
+        PrimitiveTypeName typeName = type.getPrimitiveTypeName();
+        if (accumulator instanceof StringColumnAccumulator && typeName == PrimitiveTypeName.BINARY
+                && originalType != OriginalType.DECIMAL) {
+            StringColumnAccumulator stringAccumulator = (StringColumnAccumulator) accumulator;
+            return new ParquetDictionaryConverter(stringAccumulator) {
+                @Override
+                void addDictionaryValue(Dictionary dictionary, int id, int rows) throws IOException {
+                    stringAccumulator.addStringRows(dictionary.decodeToBinary(id).toStringUsingUTF8(), rows);
+                }
+
+                @Override
+                void addPlainValue(Binary value) throws IOException {
+                    stringAccumulator.addString(value.toStringUsingUTF8());
+                }
+            };
+        }
+        if (accumulator instanceof DecimalColumnAccumulator && originalType == OriginalType.DECIMAL) {
+            DecimalColumnAccumulator decimalAccumulator = (DecimalColumnAccumulator) accumulator;
+            int scale = type.getDecimalMetadata().getScale();
+            return new ParquetDictionaryConverter(decimalAccumulator) {
+                @Override
+                void addDictionaryValue(Dictionary dictionary, int id, int rows) throws IOException {
+                    switch (typeName) {
+                        case INT32:
+                            decimalAccumulator.addUnscaledRows(dictionary.decodeToInt(id), scale, rows);
+                            break;
+                        case INT64:
+                            decimalAccumulator.addUnscaledRows(dictionary.decodeToLong(id), scale, rows);
+                            break;
+                        default:
+                            decimalAccumulator.addDecimalRows(new BigDecimal(new BigInteger(dictionary.decodeToBinary(id).getBytes()), scale), rows);
+                    }
+                }
+
+                @Override
+                void addPlainValue(Binary value) throws IOException {
+                    decimalAccumulator.addDecimal(new BigDecimal(new BigInteger(value.getBytes()), scale));
+                }
+
+                @Override
+                void addPlainValue(long unscaledValue) throws IOException {
+                    decimalAccumulator.addUnscaled(unscaledValue, scale);
+                }
+            };
+        }
+        return null;
+    }
+
+    /**
+     * Add the value of a dictionary id for all the rows of the row group holding it.
+     */
+    abstract void addDictionaryValue(Dictionary dictionary, int id, int rows) throws IOException;
+
+    abstract void addPlainValue(Binary value) throws IOException;
+
+    void addPlainValue(long value) throws IOException {
+        throw new UnsupportedOperationException(getClass().getName());
+    }
+
+    /**
+     * Add the values of the dictionary ids used since the last flush, called at the end of every row group.
+     * @throws IOException
+     */
+    void flush() throws IOException {
+        if (idRows == null) {
+            return;
+        }
+        for (int id = 0; id < idRows.length; id++) {
+            if (idRows[id] > 0) {
+                addDictionaryValue(dictionary, id, idRows[id]);
+            }
+        }
+        dictionary = null;
+        idRows = null;
+    }
+
+    @Override
+    public boolean hasDictionarySupport() {
+        return true;
+    }
+
+    @Override
+    public void setDictionary(Dictionary dictionary) {
+        this.dictionary = dictionary;
+        this.idRows = new int[dictionary.getMaxId() + 1];
+    }
+
+    @Override
+    public void addValueFromDictionary(int dictionaryId) {
+        accumulator.addValueRow();
+        idRows[dictionaryId]++;
+    }
+
+    @Override
+    public void addBinary(Binary value) {
+        try {
+            addPlainValue(value);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void addInt(int value) {
+        addLong(value);
+    }
+
+    @Override
+    public void addLong(long value) {
+        try {
+            addPlainValue(value);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
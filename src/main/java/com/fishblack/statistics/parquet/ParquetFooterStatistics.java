@@ -0,0 +1,158 @@
+package com.fishblack.statistics.parquet;
+
+import com.fishblack.statistics.ColumnStats;
+import com.fishblack.statistics.accumulator.TemporalColumnAccumulator;
+import org.apache.parquet.column.statistics.Statistics;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.OriginalType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.Type;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import static com.fishblack.statistics.Calculator.MILLIS_PER_DAY;
+
+/**
+ * Column statistics answered from the column chunk statistics of a parquet footer, no page is read.
+ * Only the null count, min and max are known this way, they are converted to the same representation
+ * as the scanned statistics.
+ */
+public final class ParquetFooterStatistics {
+
+    private ParquetFooterStatistics() {
+    }
+
+    /**
+     * Aggregate the row group statistics of a column.
+     * @param footer the footer of the file.
+     * @param column the top level column.
+     * @param fieldName the name reported for the column.
+     * @param dataType the data type of the column.
+     * @return the null count, min and max of the column, null if the footer cannot answer all of them.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static ColumnStats forColumn(ParquetMetadata footer, Type column, String fieldName, String dataType) {
+        if (!column.isPrimitive() || column.isRepetition(Type.Repetition.REPEATED)
+                || !isSupported(column.asPrimitiveType(), dataType)) {
+            return null;
+        }
+        // string columns do not report min and max
+        boolean needsMinMax = !"string".equals(dataType);
+        long nullValueCount = 0;
+        Comparable min = null;
+        Comparable max = null;
+        // the column chunks of a row group are in the order of the schema columns
+        MessageType schema = footer.getFileMetaData().getSchema();
+        int chunkIndex = schema.getColumns().indexOf(schema.getColumnDescription(new String[]{column.getName()}));
+        for (BlockMetaData block : footer.getBlocks()) {
+            if (chunkIndex < 0 || chunkIndex >= block.getColumns().size()) {
+                return null;
+            }
+            ColumnChunkMetaData chunk = block.getColumns().get(chunkIndex);
+            Statistics statistics = chunk.getStatistics();
+            if (statistics == null || !statistics.isNumNullsSet()) {
+                return null;
+            }
+            nullValueCount += statistics.getNumNulls();
+            if (!needsMinMax || statistics.getNumNulls() >= block.getRowCount()) {
+                continue;
+            }
+            if (!statistics.hasNonNullValue()) {
+                return null;
+            }
+            if (min == null || statistics.comparator().compare(statistics.genericGetMin(), min) < 0) {
+                min = statistics.genericGetMin();
+            }
+            if (max == null || statistics.comparator().compare(statistics.genericGetMax(), max) > 0) {
+                max = statistics.genericGetMax();
+            }
+        }
+
+        ColumnStats columnStats = new ColumnStats();
+        columnStats.setFieldName(fieldName);
+        columnStats.setDataType(dataType);
+        columnStats.setNullValueCount(nullValueCount);
+        if (min != null) {
+            Object minValue = toValue(column.asPrimitiveType(), dataType, min);
+            Object maxValue = toValue(column.asPrimitiveType(), dataType, max);
+            if (minValue == null || maxValue == null) {
+                return null;
+            }
+            columnStats.setMin(minValue);
+            columnStats.setMax(maxValue);
+        }
+        return columnStats;
+    }
+
+    /**
+     * The footer order of the supported columns is the order of their values, unsigned integers are not supported.
+     */
+    private static boolean isSupported(PrimitiveType type, String dataType) {
+        OriginalType originalType = type.getOriginalType();
+        PrimitiveType.PrimitiveTypeName typeName = type.getPrimitiveTypeName();
+        switch (dataType == null ? "" : dataType) {
+            case "string":
+                return true;
+            case "integer":
+                return (typeName == PrimitiveType.PrimitiveTypeName.INT32 || typeName == PrimitiveType.PrimitiveTypeName.INT64)
+                        && (originalType == null || originalType == OriginalType.INT_8 || originalType == OriginalType.INT_16
+                        || originalType == OriginalType.INT_32 || originalType == OriginalType.INT_64);
+            case "double":
+                return (typeName == PrimitiveType.PrimitiveTypeName.DOUBLE || typeName == PrimitiveType.PrimitiveTypeName.FLOAT)
+                        && originalType == null;
+            case "decimal":
+                return originalType == OriginalType.DECIMAL;
+            case "date":
+            case "time":
+            case "timestamp":
+                return originalType == OriginalType.DATE || originalType == OriginalType.TIME_MILLIS
+                        || originalType == OriginalType.TIME_MICROS || originalType == OriginalType.TIMESTAMP_MILLIS
+                        || originalType == OriginalType.TIMESTAMP_MICROS;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Convert a min or max of the footer like the scanned values are reported.
+     * @return the value, null if it cannot be reported.
+     */
+    private static Object toValue(PrimitiveType type, String dataType, Comparable<?> value) {
+        switch (dataType) {
+            case "integer":
+                long longValue = ((Number) value).longValue();
+                if (longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE) {
+                    return (int) longValue;
+                }
+                return longValue;
+            case "double":
+                double doubleValue = ((Number) value).doubleValue();
+                return Double.isNaN(doubleValue) ? null : doubleValue;
+            case "decimal":
+                int scale = type.getDecimalMetadata().getScale();
+                if (value instanceof Binary) {
+                    return new BigDecimal(new BigInteger(((Binary) value).getBytes()), scale);
+                }
+                return BigDecimal.valueOf(((Number) value).longValue(), scale);
+            default:
+                return TemporalColumnAccumulator.format(dataType, toMillis(type.getOriginalType(), ((Number) value).longValue()));
+        }
+    }
+
+    private static long toMillis(OriginalType originalType, long value) {
+        switch (originalType) {
+            case DATE:
+                return value * MILLIS_PER_DAY;
+            case TIME_MICROS:
+            case TIMESTAMP_MICROS:
+                return Math.floorDiv(value, 1000L);
+            default:
+                return value;
+        }
+    }
+}
@@ -0,0 +1,702 @@
+package com.fishblack.statistics.parquet;
+
+import com.fishblack.statistics.ColumnMetrics;
+import com.fishblack.statistics.accumulator.ColumnAccumulator;
+import com.fishblack.statistics.cardinality.MeteredCardinalityCalculator;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.HadoopReadOptions;
+import org.apache.parquet.column.ColumnDescriptor;
+import org.apache.parquet.column.ColumnReader;
+import org.apache.parquet.column.impl.ColumnReadStoreImpl;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.apache.parquet.io.api.Converter;
+import org.apache.parquet.io.api.GroupConverter;
+import org.apache.parquet.io.api.PrimitiveConverter;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.Type;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a parquet file row group by row group, the footer is read once and every row group is read once
+ * for all the registered columns.
+ */
+public class ParquetRowGroupScanner implements Closeable {
+
+    private static final PrimitiveConverter NO_OP_CONVERTER = new PrimitiveConverter() {};
+
+    private final String parquetFilePath;
+    private final ParquetFileReader fileReader;
+    private final ParquetMetadata footer;
+    private final MessageType fileSchema;
+    private final String createdBy;
+    private final List<ScanColumn> scanColumns = new ArrayList<>();
+    private ScanControl scanControl;
+    // the scanner of a parallel task feeds partial accumulators, it does not report progress
+    private boolean partialScan;
+    // set when the scan control ended the last scan before its last row group
+    private boolean stopped;
+
+    public ParquetRowGroupScanner(String parquetFilePath) throws IOException {
+        this.parquetFilePath = parquetFilePath;
+        fileReader = ParquetFileReader.open(HadoopInputFile.fromPath(new Path(parquetFilePath), new Configuration()));
+        footer = fileReader.getFooter();
+        fileSchema = footer.getFileMetaData().getSchema();
+        createdBy = footer.getFileMetaData().getCreatedBy();
+    }
+
+    /**
+     * Open the file with a footer already read, only the row groups of the footer are scanned.
+     * @param parquetFilePath the parquet file.
+     * @param footer the footer of the file, possibly limited to some of its row groups kept in file order.
+     * @throws IOException
+     */
+    public ParquetRowGroupScanner(String parquetFilePath, ParquetMetadata footer) throws IOException {
+        this.parquetFilePath = parquetFilePath;
+        this.footer = footer;
+        fileReader = openRowGroups(footer.getBlocks());
+        fileSchema = footer.getFileMetaData().getSchema();
+        createdBy = footer.getFileMetaData().getCreatedBy();
+    }
+
+    public ParquetMetadata getFooter() {
+        return footer;
+    }
+
+    /**
+     * @return the top level columns of the file.
+     */
+    public List<Type> getColumns() {
+        return fileSchema.getFields();
+    }
+
+    /**
+     * @return the row count of the file taken from the footer.
+     */
+    public long getRowCount() {
+        return fileReader.getRecordCount();
+    }
+
+    public ScanControl getScanControl() {
+        return scanControl;
+    }
+
+    /**
+     * Set the control stopping the scans of this scanner and getting their progress, null for none.
+     * @param scanControl
+     */
+    public void setScanControl(ScanControl scanControl) {
+        this.scanControl = scanControl;
+    }
+
+    /**
+     * Register a column to be fed to the given accumulator during {@link #scan()}.
+     * @param fieldName the top level column name.
+     * @param accumulator the accumulator of the column.
+     * @throws IllegalArgumentException if the column is not a flat primitive column.
+     */
+    public void addColumn(String fieldName, ColumnAccumulator accumulator) {
+        addColumn(fieldName, accumulator, null);
+    }
+
+    /**
+     * Register a column to be fed to the given accumulator and measure its scan. The values of a measured column
+     * are read by a slower loop timing some of them, the other columns are not slowed down.
+     * @param fieldName the top level column name.
+     * @param accumulator the accumulator of the column.
+     * @param metrics the metrics the row groups of the column are added to, null not to measure the column.
+     * @throws IllegalArgumentException if the column is not a flat primitive column.
+     */
+    public void addColumn(String fieldName, ColumnAccumulator accumulator, ColumnMetrics metrics) {
+        Type type = fileSchema.getType(fieldName);
+        if (!type.isPrimitive() || type.isRepetition(Type.Repetition.REPEATED)) {
+            throw new IllegalArgumentException("Column " + fieldName + " is not a flat primitive column");
+        }
+        ColumnDescriptor descriptor = fileSchema.getColumnDescription(new String[]{fieldName});
+        scanColumns.add(new ScanColumn(type, descriptor, fileSchema.getColumns().indexOf(descriptor),
+                ParquetValueFeeder.forColumn(type.asPrimitiveType(), accumulator),
+                ParquetDictionaryConverter.forColumn(type.asPrimitiveType(), accumulator), accumulator, metrics));
+    }
+
+    /**
+     * Read all the row groups of the file once and feed the values of every registered column to its accumulator.
+     * A stopped scan control ends the scan early, the columns then hold the first rows of the file.
+     * @throws IOException
+     */
+    public void scan() throws IOException {
+        if (scanColumns.isEmpty()) {
+            return;
+        }
+        MessageType projection = getProjection();
+        fileReader.setRequestedSchema(projection);
+        GroupConverter recordConverter = newRecordConverter();
+        boolean metered = isMetered();
+        List<BlockMetaData> blocks = fileReader.getRowGroups();
+        stopped = false;
+        for (BlockMetaData block : blocks) {
+            if (isStopped()) {
+                stopped = true;
+                break;
+            }
+            long start = metered ? System.nanoTime() : 0;
+            PageReadStore pages = fileReader.readNextRowGroup();
+            if (pages == null) {
+                break;
+            }
+            readRowGroup(pages, recordConverter, projection, null, block, metered ? System.nanoTime() - start : 0);
+            progress();
+        }
+    }
+
+    /**
+     * Scan a random sample of the rows. Whole row groups are picked at random until the target rows are reached,
+     * the row group that would pass the target is sampled down to the missing rows with a reservoir over its row
+     * indexes. The picked row groups are read in file order, unless there is a time budget: then they are read in
+     * random order until the target or the budget is reached.
+     * @param targetRows the number of rows to sample.
+     * @param timeBudgetNanos the time after which no row group is started, at least one row group is read,
+     *                        0 or less for no time budget.
+     * @param random the source of the row group and row choice.
+     * @return the number of rows sampled, fewer than the target when the scan control stopped the scan.
+     * @throws IOException
+     */
+    public long scanSample(long targetRows, long timeBudgetNanos, Random random) throws IOException {
+        if (scanColumns.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        List<BlockMetaData> blocks = new ArrayList<>(footer.getBlocks());
+        Collections.shuffle(blocks, random);
+        // the row group sampled down to the rows missing from the other picked row groups, read in file order
+        BlockMetaData partialBlock = null;
+        long partialRows = 0;
+        if (timeBudgetNanos <= 0) {
+            long pickedRows = 0;
+            int picked = 0;
+            while (picked < blocks.size() && pickedRows < targetRows) {
+                pickedRows += blocks.get(picked++).getRowCount();
+            }
+            blocks = new ArrayList<>(blocks.subList(0, picked));
+            if (pickedRows > targetRows) {
+                partialBlock = blocks.get(picked - 1);
+                partialRows = targetRows - (pickedRows - partialBlock.getRowCount());
+            }
+            blocks.sort(Comparator.comparingLong(BlockMetaData::getStartingPos));
+        }
+        MessageType projection = getProjection();
+        GroupConverter recordConverter = newRecordConverter();
+        long sampledRows = 0;
+        // a reader reads its row groups in file order, the random order of a time budget takes one per row group
+        ParquetFileReader sampleReader = null;
+        try {
+            for (BlockMetaData block : blocks) {
+                if (sampledRows >= targetRows || isStopped()
+                        || (sampledRows > 0 && timeBudgetNanos > 0 && System.nanoTime() - start >= timeBudgetNanos)) {
+                    break;
+                }
+                if (sampleReader == null || timeBudgetNanos > 0) {
+                    if (sampleReader != null) {
+                        sampleReader.close();
+                    }
+                    sampleReader = openRowGroups(timeBudgetNanos > 0 ? Collections.singletonList(block) : blocks);
+                    sampleReader.setRequestedSchema(projection);
+                }
+                long readStart = System.nanoTime();
+                PageReadStore pages = sampleReader.readNextRowGroup();
+                long readNanos = System.nanoTime() - readStart;
+                long sampleSize = block == partialBlock ? partialRows : Math.min(pages.getRowCount(), targetRows - sampledRows);
+                BitSet rows = sampleSize < pages.getRowCount() ? sampleRows(pages.getRowCount(), (int) sampleSize, random) : null;
+                readRowGroup(pages, recordConverter, projection, rows, block, readNanos);
+                sampledRows += sampleSize;
+                progress();
+            }
+        }
+        finally {
+            if (sampleReader != null) {
+                sampleReader.close();
+            }
+        }
+        return sampledRows;
+    }
+
+    /**
+     * Open the file reading only the given row groups, they are read in file order.
+     */
+    private ParquetFileReader openRowGroups(List<BlockMetaData> blocks) throws IOException {
+        long[] offsets = new long[blocks.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = blocks.get(i).getStartingPos();
+        }
+        Configuration configuration = new Configuration();
+        return ParquetFileReader.open(HadoopInputFile.fromPath(new Path(parquetFilePath), configuration),
+                HadoopReadOptions.builder(configuration).withOffsets(offsets).build());
+    }
+
+    /**
+     * Choose rows of a row group with a reservoir over the row indexes.
+     * @param rowCount the rows of the row group.
+     * @param sampleSize the number of rows to choose.
+     * @param random the source of the choice.
+     * @return the chosen row indexes.
+     */
+    private static BitSet sampleRows(long rowCount, int sampleSize, Random random) {
+        int[] reservoir = new int[sampleSize];
+        for (int i = 0; i < sampleSize; i++) {
+            reservoir[i] = i;
+        }
+        for (int i = sampleSize; i < rowCount; i++) {
+            int j = random.nextInt(i + 1);
+            if (j < sampleSize) {
+                reservoir[j] = i;
+            }
+        }
+        BitSet rows = new BitSet((int) rowCount);
+        for (int row : reservoir) {
+            rows.set(row);
+        }
+        return rows;
+    }
+
+    private MessageType getProjection() {
+        List<Type> projectedTypes = new ArrayList<>();
+        for (ScanColumn scanColumn : scanColumns) {
+            projectedTypes.add(scanColumn.type);
+        }
+        return new MessageType(fileSchema.getName(), projectedTypes);
+    }
+
+    /**
+     * @return the converter of the records of the projection, its fields are the scan columns in order.
+     */
+    private GroupConverter newRecordConverter() {
+        return new GroupConverter() {
+            @Override
+            public Converter getConverter(int fieldIndex) {
+                PrimitiveConverter converter = scanColumns.get(fieldIndex).dictionaryConverter;
+                return converter == null ? NO_OP_CONVERTER : converter;
+            }
+
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void end() {
+            }
+        };
+    }
+
+    private boolean isStopped() {
+        return scanControl != null && scanControl.isStopped();
+    }
+
+    private void progress() {
+        if (scanControl != null && !partialScan) {
+            scanControl.progress();
+        }
+    }
+
+    private boolean isMetered() {
+        for (ScanColumn scanColumn : scanColumns) {
+            if (scanColumn.metrics != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param block the metadata of the row group, for the bytes of the measured columns.
+     * @param readNanos the time reading the row group, shared by the measured columns by their bytes.
+     */
+    private void readRowGroup(PageReadStore pages, GroupConverter recordConverter, MessageType projection,
+                              BitSet rows, BlockMetaData block, long readNanos) throws IOException {
+        ColumnReadStoreImpl readStore = new ColumnReadStoreImpl(pages, recordConverter, projection, createdBy);
+        long totalBytes = 0;
+        for (ScanColumn scanColumn : scanColumns) {
+            totalBytes += scanColumn.getChunkBytes(block);
+        }
+        for (ScanColumn scanColumn : scanColumns) {
+            if (isStopped()) {
+                stopped = true;
+                break;
+            }
+            ColumnReader reader = readStore.getColumnReader(scanColumn.descriptor);
+            if (scanColumn.metrics == null) {
+                scanColumn.read(reader, rows);
+            }
+            else {
+                long bytes = scanColumn.getChunkBytes(block);
+                scanColumn.readMetered(reader, rows, bytes, totalBytes == 0 ? 0 : (long) ((double) readNanos * bytes / totalBytes));
+            }
+        }
+    }
+
+    /**
+     * Scan the registered columns on the given executor, the work is split by row group and by column.
+     * Every row group task feeds partial accumulators that are merged back in row group order, columns
+     * whose accumulator is not splittable are read by one task over all the row groups. A stopped scan control
+     * ends the merge at the first row group not read in full, the row groups after it are dropped. The row group
+     * tasks are submitted as the previous ones are merged, at most as many are read or waiting to be merged as the
+     * parallelism so the partials held do not grow with the row groups of the file.
+     * @param executorService the executor running the tasks.
+     * @param parallelism the number of tasks expected to run at the same time.
+     * @throws IOException
+     */
+    public void scanParallel(ExecutorService executorService, int parallelism) throws IOException {
+        List<BlockMetaData> blocks = footer.getBlocks();
+        List<ScanColumn> splittableColumns = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (ScanColumn scanColumn : scanColumns) {
+            if (scanColumn.accumulator.isSplittable()) {
+                splittableColumns.add(scanColumn);
+            }
+            else {
+                futures.add(executorService.submit(() -> scanPartial(footer, Collections.singletonList(scanColumn))));
+            }
+        }
+
+        List<List<ScanColumn>> batches = new ArrayList<>();
+        if (!splittableColumns.isEmpty() && !blocks.isEmpty()) {
+            int tasksPerRowGroup = Math.min(splittableColumns.size(),
+                    Math.max(1, (parallelism + blocks.size() - 1) / blocks.size()));
+            int batchSize = (splittableColumns.size() + tasksPerRowGroup - 1) / tasksPerRowGroup;
+            for (int i = 0; i < splittableColumns.size(); i += batchSize) {
+                batches.add(splittableColumns.subList(i, Math.min(i + batchSize, splittableColumns.size())));
+            }
+        }
+        List<ParquetMetadata> blockFooters = new ArrayList<>();
+        for (BlockMetaData block : blocks) {
+            blockFooters.add(new ParquetMetadata(footer.getFileMetaData(), Collections.singletonList(block)));
+        }
+        // the tasks in row group order, batch by batch, at most as many running or waiting to be merged as the
+        // parallelism and at least the batches of one row group
+        int tasks = blocks.size() * batches.size();
+        int maxPending = Math.max(batches.size(), parallelism);
+        Deque<Future<List<ColumnAccumulator>>> pending = new ArrayDeque<>();
+        // the partials of the row group being merged, merged once all its batches are read
+        List<List<ColumnAccumulator>> blockPartials = new ArrayList<>();
+        int next = 0;
+        try {
+            while (next < tasks && pending.size() < maxPending) {
+                pending.add(submitPartial(executorService, blockFooters, batches, next++));
+            }
+            while (!pending.isEmpty()) {
+                List<ColumnAccumulator> partials = waitFor(pending.poll());
+                if (partials == null) {
+                    break;
+                }
+                blockPartials.add(partials);
+                if (next < tasks) {
+                    pending.add(submitPartial(executorService, blockFooters, batches, next++));
+                }
+                if (blockPartials.size() == batches.size()) {
+                    for (int k = 0; k < batches.size(); k++) {
+                        List<ScanColumn> batch = batches.get(k);
+                        for (int j = 0; j < batch.size(); j++) {
+                            batch.get(j).accumulator.merge(blockPartials.get(k).get(j));
+                        }
+                    }
+                    blockPartials.clear();
+                    // a snapshot would read the accumulators of the columns still read by their own task
+                    if (isDone(futures)) {
+                        progress();
+                    }
+                }
+            }
+            for (Future<?> future : futures) {
+                waitFor(future);
+            }
+        }
+        finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            for (Future<List<ColumnAccumulator>> future : pending) {
+                future.cancel(true);
+                releasePartials(future);
+            }
+            for (List<ColumnAccumulator> partials : blockPartials) {
+                partials.forEach(ColumnAccumulator::release);
+            }
+        }
+    }
+
+    private static boolean isDone(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            if (!future.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Future<List<ColumnAccumulator>> submitPartial(ExecutorService executorService, List<ParquetMetadata> blockFooters,
+                                                          List<List<ScanColumn>> batches, int task) {
+        ParquetMetadata blockFooter = blockFooters.get(task / batches.size());
+        List<ScanColumn> batch = batches.get(task % batches.size());
+        return executorService.submit(() -> scanPartial(blockFooter, batch));
+    }
+
+    /**
+     * Release the partial accumulators of a row group task that completed but was not merged.
+     */
+    private static void releasePartials(Future<List<ColumnAccumulator>> future) {
+        if (!future.isDone() || future.isCancelled()) {
+            return;
+        }
+        try {
+            List<ColumnAccumulator> partials = future.get();
+            if (partials != null) {
+                partials.forEach(ColumnAccumulator::release);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            // the failed task released its partials
+        }
+    }
+
+    /**
+     * @return the partial accumulators of the columns, null when the scan control stopped the scan of a row group
+     * or the task was cancelled.
+     */
+    private List<ColumnAccumulator> scanPartial(ParquetMetadata partFooter, List<ScanColumn> columns) throws IOException {
+        boolean wholeFile = partFooter == footer;
+        List<ColumnAccumulator> partials = new ArrayList<>();
+        boolean kept = wholeFile;
+        try (ParquetRowGroupScanner scanner = new ParquetRowGroupScanner(parquetFilePath, partFooter)) {
+            scanner.scanControl = scanControl;
+            scanner.partialScan = true;
+            for (ScanColumn scanColumn : columns) {
+                ColumnAccumulator partial = wholeFile ? scanColumn.accumulator : scanColumn.accumulator.newPartial();
+                partials.add(partial);
+                scanner.addColumn(scanColumn.type.getName(), partial, scanColumn.metrics);
+            }
+            scanner.scan();
+            if (!wholeFile && (scanner.stopped || Thread.currentThread().isInterrupted())) {
+                return null;
+            }
+            kept = true;
+        }
+        finally {
+            // the partials that will not be merged give back their memory
+            if (!kept) {
+                partials.forEach(ColumnAccumulator::release);
+            }
+        }
+        return partials;
+    }
+
+    private static <T> T waitFor(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the parquet scan tasks");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileReader.close();
+    }
+
+    private static class ScanColumn {
+        private final Type type;
+        private final ColumnDescriptor descriptor;
+        // the index of the column chunk in a row group, the chunks are in the order of the schema columns
+        private final int chunkIndex;
+        private final ParquetValueFeeder feeder;
+        private final ParquetDictionaryConverter dictionaryConverter;
+        private final ColumnAccumulator accumulator;
+        private final ColumnMetrics metrics;
+
+        private ScanColumn(Type type, ColumnDescriptor descriptor, int chunkIndex, ParquetValueFeeder feeder,
+                           ParquetDictionaryConverter dictionaryConverter, ColumnAccumulator accumulator,
+                           ColumnMetrics metrics) {
+            this.type = type;
+            this.descriptor = descriptor;
+            this.chunkIndex = chunkIndex;
+            this.feeder = feeder;
+            this.dictionaryConverter = dictionaryConverter;
+            this.accumulator = accumulator;
+            this.metrics = metrics;
+        }
+
+        /**
+         * @return the compressed bytes of the column chunk in the row group, 0 when the column is not measured.
+         */
+        private long getChunkBytes(BlockMetaData block) {
+            if (metrics == null || chunkIndex >= block.getColumns().size()) {
+                return 0;
+            }
+            return block.getColumns().get(chunkIndex).getTotalSize();
+        }
+
+        /**
+         * Feed the values of a row group to the accumulator.
+         * @param reader the reader of the column in the row group.
+         * @param rows the indexes of the rows to feed, null for all the rows.
+         * @throws IOException
+         */
+        private void read(ColumnReader reader, BitSet rows) throws IOException {
+            int maxDefinitionLevel = descriptor.getMaxDefinitionLevel();
+            long valueCount = reader.getTotalValueCount();
+            try {
+                for (long i = 0; i < valueCount; i++) {
+                    boolean isNull = reader.getCurrentDefinitionLevel() < maxDefinitionLevel;
+                    if (rows != null && !rows.get((int) i)) {
+                        if (!isNull) {
+                            reader.skip();
+                        }
+                    }
+                    else if (isNull) {
+                        accumulator.addNull();
+                    }
+                    else if (dictionaryConverter != null) {
+                        // the dictionary converter gets the dictionary ids of the dictionary encoded pages
+                        reader.writeCurrentValueToConverter();
+                    }
+                    else {
+                        feeder.feed(reader);
+                    }
+                    reader.consume();
+                }
+            }
+            catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (dictionaryConverter != null) {
+                dictionaryConverter.flush();
+            }
+        }
+
+        /**
+         * Feed the values of a row group like {@link #read(ColumnReader, BitSet)} and add the metrics of the row
+         * group. The accumulation of one value out of {@value MeteredCardinalityCalculator#SAMPLE_INTERVAL} is
+         * timed, once the value is decoded, and the rest of the time is the decoding.
+         * @param reader the reader of the column in the row group.
+         * @param rows the indexes of the rows to feed, null for all the rows.
+         * @param bytes the compressed bytes of the column chunk.
+         * @param readNanos the share of the column in the time reading the row group.
+         * @throws IOException
+         */
+        private void readMetered(ColumnReader reader, BitSet rows, long bytes, long readNanos) throws IOException {
+            long start = System.nanoTime();
+            int maxDefinitionLevel = descriptor.getMaxDefinitionLevel();
+            long valueCount = reader.getTotalValueCount();
+            long fedRows = 0;
+            long values = 0;
+            long sampledValues = 0;
+            long sampledNanos = 0;
+            try {
+                for (long i = 0; i < valueCount; i++) {
+                    boolean isNull = reader.getCurrentDefinitionLevel() < maxDefinitionLevel;
+                    if (rows != null && !rows.get((int) i)) {
+                        if (!isNull) {
+                            reader.skip();
+                        }
+                    }
+                    else if (isNull) {
+                        accumulator.addNull();
+                        fedRows++;
+                    }
+                    else if (++values % MeteredCardinalityCalculator.SAMPLE_INTERVAL != 0) {
+                        feed(reader);
+                        fedRows++;
+                    }
+                    else {
+                        decode(reader);
+                        long feedStart = System.nanoTime();
+                        feed(reader);
+                        sampledNanos += System.nanoTime() - feedStart;
+                        sampledValues++;
+                        fedRows++;
+                    }
+                    reader.consume();
+                }
+            }
+            catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            long flushStart = System.nanoTime();
+            if (dictionaryConverter != null) {
+                dictionaryConverter.flush();
+            }
+            long end = System.nanoTime();
+            long accumulationNanos = (sampledValues == 0 ? 0 : (long) ((double) sampledNanos * values / sampledValues))
+                    + end - flushStart;
+            metrics.addRowGroup(fedRows, bytes, readNanos, Math.max(0, end - start - accumulationNanos), accumulationNanos);
+        }
+
+        private void feed(ColumnReader reader) throws IOException {
+            if (dictionaryConverter != null) {
+                reader.writeCurrentValueToConverter();
+            }
+            else {
+                feeder.feed(reader);
+            }
+        }
+
+        /**
+         * Decode the current value, the reader keeps it until the value is consumed.
+         */
+        private void decode(ColumnReader reader) {
+            switch (descriptor.getPrimitiveType().getPrimitiveTypeName()) {
+                case INT32:
+                    reader.getInteger();
+                    break;
+                case INT64:
+                    reader.getLong();
+                    break;
+                case FLOAT:
+                    reader.getFloat();
+                    break;
+                case DOUBLE:
+                    reader.getDouble();
+                    break;
+                case BOOLEAN:
+                    reader.getBoolean();
+                    break;
+                default:
+                    reader.getBinary();
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.fishblack.statistics.parquet;
+
+import org.apache.parquet.column.ColumnReader;
+import org.apache.parquet.schema.OriginalType;
+import org.apache.parquet.schema.PrimitiveType;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+
+import static com.fishblack.statistics.Calculator.getLocalDateTime;
+
+/**
+ * Turns the current value of a parquet column reader into the java object the statistics are calculated on.
+ * The decoder is chosen once per column from its physical and original type.
+ */
+public abstract class ParquetValueDecoder {
+
+    public abstract Object decode(ColumnReader reader);
+
+    public static ParquetValueDecoder forColumn(PrimitiveType type) {
+        OriginalType originalType = type.getOriginalType();
+        PrimitiveType.PrimitiveTypeName typeName = type.getPrimitiveTypeName();
+        if (originalType == OriginalType.DECIMAL) {
+            int scale = type.getDecimalMetadata().getScale();
+            switch (typeName) {
+                case INT32:
+                    return new ParquetValueDecoder() {
+                        @Override
+                        public Object decode(ColumnReader reader) {
+                            return BigDecimal.valueOf(reader.getInteger(), scale);
+                        }
+                    };
+                case INT64:
+                    return new ParquetValueDecoder() {
+                        @Override
+                        public Object decode(ColumnReader reader) {
+                            return BigDecimal.valueOf(reader.getLong(), scale);
+                        }
+                    };
+                case BINARY:
+                case FIXED_LEN_BYTE_ARRAY:
+                    return new ParquetValueDecoder() {
+                        @Override
+                        public Object decode(ColumnReader reader) {
+                            return new BigDecimal(new BigInteger(reader.getBinary().getBytes()), scale);
+                        }
+                    };
+                default:
+                    break;
+            }
+        }
+        else if (originalType == OriginalType.DATE && typeName == PrimitiveType.PrimitiveTypeName.INT32) {
+            return new ParquetValueDecoder() {
+                @Override
+                public Object decode(ColumnReader reader) {
+                    return LocalDate.ofEpochDay(reader.getInteger());
+                }
+            };
+        }
+        else if (originalType == OriginalType.TIME_MILLIS && typeName == PrimitiveType.PrimitiveTypeName.INT32) {
+            return new ParquetValueDecoder() {
+                @Override
+                public Object decode(ColumnReader reader) {
+                    return getLocalDateTime(reader.getInteger());
+                }
+            };
+        }
+        else if (originalType == OriginalType.TIMESTAMP_MILLIS && typeName == PrimitiveType.PrimitiveTypeName.INT64) {
+            return new ParquetValueDecoder() {
+                @Override
+                public Object decode(ColumnReader reader) {
+                    return getLocalDateTime(reader.getLong());
+                }
+            };
+        }
+        else if ((originalType == OriginalType.TIME_MICROS || originalType == OriginalType.TIMESTAMP_MICROS)
+                && typeName == PrimitiveType.PrimitiveTypeName.INT64) {
+            return new ParquetValueDecoder() {
+                @Override
+                public Object decode(ColumnReader reader) {
+                    return getLocalDateTime(Math.floorDiv(reader.getLong(), 1000L));
+                }
+            };
+        }
+
+        switch (typeName) {
+            case INT32:
+                return new ParquetValueDecoder() {
+                    @Override
+                    public Object decode(ColumnReader reader) {
+                        return reader.getInteger();
+                    }
+                };
+            case INT64:
+                return new ParquetValueDecoder() {
+                    @Override
+                    public Object decode(ColumnReader reader) {
+                        return reader.getLong();
+                    }
+                };
+            case DOUBLE:
+                return new ParquetValueDecoder() {
+                    @Override
+                    public Object decode(ColumnReader reader) {
+                        return reader.getDouble();
+                    }
+                };
+            case FLOAT:
+                return new ParquetValueDecoder() {
+                    @Override
+                    public Object decode(ColumnReader reader) {
+                        return (double) reader.getFloat();
+                    }
+                };
+            case BOOLEAN:
+                return new ParquetValueDecoder() {
+                    @Override
+                    public Object decode(ColumnReader reader) {
+                        return reader.getBoolean();
+                    }
+                };
+            case BINARY:
+                return new ParquetValueDecoder() {
+                    @Override
+                    public Object decode(ColumnReader reader) {
+                        return reader.getBinary().toStringUsingUTF8();
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unsupported parquet column type " + type);
+        }
+    }
+}
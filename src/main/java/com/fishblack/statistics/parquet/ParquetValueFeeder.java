@@ -0,0 +1,87 @@
+package com.fishblack.statistics.parquet;
+
+import com.fishblack.statistics.accumulator.ColumnAccumulator;
+import com.fishblack.statistics.accumulator.DecimalColumnAccumulator;
+import com.fishblack.statistics.accumulator.DoubleColumnAccumulator;
+import com.fishblack.statistics.accumulator.LongColumnAccumulator;
+import com.fishblack.statistics.accumulator.StringColumnAccumulator;
+import com.fishblack.statistics.accumulator.TemporalColumnAccumulator;
+import org.apache.parquet.column.ColumnReader;
+import org.apache.parquet.schema.OriginalType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+
+import java.io.IOException;
+
+import static com.fishblack.statistics.Calculator.MILLIS_PER_DAY;
+
+/**
+ * Pushes the current value of a parquet column reader to a column accumulator.
+ * Typed accumulators are fed through the primitive getters of the reader when the column type allows it,
+ * the other columns go through {@link ParquetValueDecoder}.
+ */
+interface ParquetValueFeeder {
+
+    void feed(ColumnReader reader) throws IOException;
+
+    static ParquetValueFeeder forColumn(PrimitiveType type, ColumnAccumulator accumulator) {
+        OriginalType originalType = type.getOriginalType();
+        PrimitiveTypeName typeName = type.getPrimitiveTypeName();
+        if (accumulator instanceof DoubleColumnAccumulator && originalType == null) {
+            DoubleColumnAccumulator doubleAccumulator = (DoubleColumnAccumulator) accumulator;
+            if (typeName == PrimitiveTypeName.DOUBLE) {
+                return reader -> doubleAccumulator.addDouble(reader.getDouble());
+            }
+            if (typeName == PrimitiveTypeName.FLOAT) {
+                return reader -> doubleAccumulator.addDouble(reader.getFloat());
+            }
+        }
+        else if (accumulator instanceof LongColumnAccumulator && isInteger(originalType)) {
+            LongColumnAccumulator longAccumulator = (LongColumnAccumulator) accumulator;
+            if (typeName == PrimitiveTypeName.INT32) {
+                return reader -> longAccumulator.addLong(reader.getInteger());
+            }
+            if (typeName == PrimitiveTypeName.INT64) {
+                return reader -> longAccumulator.addLong(reader.getLong());
+            }
+        }
+        else if (accumulator instanceof TemporalColumnAccumulator && originalType != null) {
+            TemporalColumnAccumulator temporalAccumulator = (TemporalColumnAccumulator) accumulator;
+            switch (originalType) {
+                case DATE:
+                    return reader -> temporalAccumulator.addMillis(reader.getInteger() * MILLIS_PER_DAY);
+                case TIME_MILLIS:
+                    return reader -> temporalAccumulator.addMillis(reader.getInteger());
+                case TIMESTAMP_MILLIS:
+                    return reader -> temporalAccumulator.addMillis(reader.getLong());
+                case TIME_MICROS:
+                case TIMESTAMP_MICROS:
+                    return reader -> temporalAccumulator.addMillis(Math.floorDiv(reader.getLong(), 1000L));
+                default:
+                    break;
+            }
+        }
+        else if (accumulator instanceof DecimalColumnAccumulator && originalType == OriginalType.DECIMAL) {
+            DecimalColumnAccumulator decimalAccumulator = (DecimalColumnAccumulator) accumulator;
+            int scale = type.getDecimalMetadata().getScale();
+            if (typeName == PrimitiveTypeName.INT32) {
+                return reader -> decimalAccumulator.addUnscaled(reader.getInteger(), scale);
+            }
+            if (typeName == PrimitiveTypeName.INT64) {
+                return reader -> decimalAccumulator.addUnscaled(reader.getLong(), scale);
+            }
+        }
+        else if (accumulator instanceof StringColumnAccumulator && typeName == PrimitiveTypeName.BINARY
+                && originalType != OriginalType.DECIMAL) {
+            StringColumnAccumulator stringAccumulator = (StringColumnAccumulator) accumulator;
+            return reader -> stringAccumulator.addString(reader.getBinary().toStringUsingUTF8());
+        }
+        ParquetValueDecoder decoder = ParquetValueDecoder.forColumn(type);
+        return reader -> accumulator.add(decoder.decode(reader));
+    }
+
+    static boolean isInteger(OriginalType originalType) {
+        return originalType == null || originalType == OriginalType.INT_8 || originalType == OriginalType.INT_16
+                || originalType == OriginalType.INT_32 || originalType == OriginalType.INT_64;
+    }
+}
@@ -0,0 +1,70 @@
+package com.fishblack.statistics.parquet;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops a running scan and reports its progress. The scanners check it before every row group and between the
+ * columns of a row group, a stopped scan returns normally and its accumulators keep the rows read so far.
+ */
+public class ScanControl {
+
+    private final long start = System.nanoTime();
+    private final long deadlineNanos;
+    private Runnable progressListener;
+    private long progressIntervalNanos;
+    private volatile boolean cancelled;
+    private long lastProgress = start;
+
+    /**
+     * @param deadlineMillis the time from now after which the scan stops, 0 or less for no deadline.
+     */
+    public ScanControl(long deadlineMillis) {
+        this.deadlineNanos = deadlineMillis <= 0 ? 0 : TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+    }
+
+    /**
+     * Set the listener called on the thread owning the accumulators when rows were added to them, before the scan.
+     * @param progressListener the listener, null for none.
+     * @param progressIntervalMillis the least time between two calls of the listener.
+     */
+    public void setProgressListener(Runnable progressListener, long progressIntervalMillis) {
+        this.progressListener = progressListener;
+        this.progressIntervalNanos = TimeUnit.MILLISECONDS.toNanos(progressIntervalMillis);
+    }
+
+    /**
+     * Stop the scan at the next check, from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDeadlineReached() {
+        return deadlineNanos > 0 && System.nanoTime() - start >= deadlineNanos;
+    }
+
+    /**
+     * @return true once the scan is cancelled or its deadline reached, it stays true.
+     */
+    public boolean isStopped() {
+        return cancelled || isDeadlineReached();
+    }
+
+    /**
+     * Called after rows were added to the accumulators, when they are not being fed.
+     */
+    public void progress() {
+        if (progressListener == null || isStopped()) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - lastProgress >= progressIntervalNanos) {
+            lastProgress = now;
+            progressListener.run();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.fishblack.statistics.text;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The layout of a CSV file: RFC 4180 records, quoted fields may hold separators, line breaks and doubled quotes.
+ * Instances are immutable, the with methods return a changed copy.
+ */
+public final class CsvFormat {
+
+    public static final CsvFormat DEFAULT = new CsvFormat(',', '"', true, StandardCharsets.UTF_8);
+
+    private final char separator;
+    private final char quoteChar;
+    private final boolean header;
+    private final Charset charset;
+
+    private CsvFormat(char separator, char quoteChar, boolean header, Charset charset) {
+        this.separator = separator;
+        this.quoteChar = quoteChar;
+        this.header = header;
+        this.charset = charset;
+    }
+
+    /**
+     * @param separator the field separator, a comma by default.
+     * @return the format with the given separator.
+     */
+    public CsvFormat withSeparator(char separator) {
+        checkAscii(separator, quoteChar);
+        return new CsvFormat(separator, quoteChar, header, charset);
+    }
+
+    /**
+     * @param quoteChar the quote of the fields, a double quote by default.
+     * @return the format with the given quote.
+     */
+    public CsvFormat withQuoteChar(char quoteChar) {
+        checkAscii(separator, quoteChar);
+        return new CsvFormat(separator, quoteChar, header, charset);
+    }
+
+    /**
+     * @param header true if the first record holds the column names, the default, false to match the columns
+     *               to the fields by position.
+     * @return the format with the given header.
+     */
+    public CsvFormat withHeader(boolean header) {
+        return new CsvFormat(separator, quoteChar, header, charset);
+    }
+
+    /**
+     * @param charset the encoding of the file, UTF-8 by default. The file is split at line breaks found in its
+     *                bytes, so the encoding must write ASCII characters as single bytes like UTF-8 or ISO-8859-1.
+     * @return the format with the given encoding.
+     */
+    public CsvFormat withCharset(Charset charset) {
+        if (charset == null || !charset.newEncoder().canEncode('\n') || "\n".getBytes(charset).length != 1) {
+            throw new IllegalArgumentException("CSV charset must encode ASCII characters as single bytes: " + charset);
+        }
+        return new CsvFormat(separator, quoteChar, header, charset);
+    }
+
+    public char getSeparator() {
+        return separator;
+    }
+
+    public char getQuoteChar() {
+        return quoteChar;
+    }
+
+    public boolean hasHeader() {
+        return header;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    private static void checkAscii(char separator, char quoteChar) {
+        if (separator >= 0x80 || quoteChar >= 0x80 || separator == '\n' || quoteChar == '\n' || separator == quoteChar) {
+            throw new IllegalArgumentException("CSV separator and quote must be distinct ASCII characters other than a line break: "
+                    + separator + ", " + quoteChar);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CsvFormat separator=" + separator + " quote=" + quoteChar + " header=" + header + " charset=" + charset;
+    }
+}
@@ -0,0 +1,377 @@
+package com.fishblack.statistics.text;
+
+import com.fishblack.statistics.accumulator.ColumnAccumulator;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.RFC4180ParserBuilder;
+import com.opencsv.exceptions.CsvValidationException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a CSV file through memory mapped windows. {@link #scanParallel(ExecutorService, int)} splits the records
+ * in chunks parsed concurrently: the quotes of every chunk of bytes are counted first, their parity tells whether
+ * a chunk starts inside a quoted field, and each chunk is moved to the first line break outside of quotes.
+ */
+public class CsvScanner extends TextScanner {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final int READER_BUFFER_SIZE = 64 * 1024;
+    // the records between two checks of the scan control in a sequential scan
+    private static final int CHECK_INTERVAL = 16384;
+
+    private final String csvFilePath;
+    private final CsvFormat format;
+    private final FileChannel channel;
+    private final long size;
+    private final long dataStart;
+    private final List<String> header;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    public CsvScanner(String csvFilePath, CsvFormat format) throws IOException {
+        this.csvFilePath = csvFilePath;
+        this.format = format;
+        channel = FileChannel.open(Paths.get(csvFilePath), StandardOpenOption.READ);
+        try {
+            size = channel.size();
+            long start = getBomLength();
+            if (format.hasHeader()) {
+                long headerEnd = findRecordEnd(start, false);
+                String[] names = readFirstRecord(start, headerEnd);
+                header = names == null ? new ArrayList<>() : Arrays.asList(names);
+                dataStart = headerEnd;
+            }
+            else {
+                header = null;
+                dataStart = start;
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public List<String> getHeader() {
+        return header;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Set the bytes of the chunks of a parallel scan, 8 MB by default. A chunk holds whole records, it is longer
+     * when a record crosses its end.
+     * @param chunkSize
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("CSV chunk size must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void scan() throws IOException {
+        rowCount = 0;
+        stopped = false;
+        if (scanColumns.isEmpty()) {
+            return;
+        }
+        List<ColumnAccumulator> accumulators = new ArrayList<>();
+        for (ScanColumn scanColumn : scanColumns) {
+            accumulators.add(scanColumn.accumulator);
+        }
+        RecordFeeder feeder = new RecordFeeder(scanColumns, accumulators);
+        stopped = readChunk(dataStart, size, feeder, true);
+        feeder.finish(size - dataStart);
+        rowCount = feeder.getRows();
+    }
+
+    /**
+     * Scan the registered columns on the given executor, the records are split in chunks parsed by one task each.
+     * Every task feeds partial accumulators that are merged back in chunk order, the values of the columns whose
+     * accumulator is not splittable are parsed by the tasks and added in file order when their chunk is merged.
+     * At most as many chunks are parsed or waiting to be merged as the given parallelism. A stopped scan control
+     * ends the merge at the first chunk not parsed, the chunks after it are dropped.
+     * @param executorService the executor running the tasks.
+     * @param parallelism the number of tasks expected to run at the same time.
+     * @throws IOException
+     */
+    public void scanParallel(ExecutorService executorService, int parallelism) throws IOException {
+        rowCount = 0;
+        stopped = false;
+        if (scanColumns.isEmpty()) {
+            return;
+        }
+        long[] boundaries = getChunkBoundaries(executorService);
+        int chunks = boundaries.length - 1;
+        Deque<Future<RecordFeeder>> pending = new ArrayDeque<>();
+        int next = 0;
+        try {
+            while (next < chunks && pending.size() < Math.max(1, parallelism)) {
+                long start = boundaries[next];
+                long end = boundaries[++next];
+                pending.add(executorService.submit(() -> readPartial(start, end)));
+            }
+            List<ColumnAccumulator> accumulators = new ArrayList<>();
+            for (ScanColumn scanColumn : scanColumns) {
+                accumulators.add(scanColumn.accumulator);
+            }
+            while (!pending.isEmpty()) {
+                RecordFeeder partial = waitFor(pending.poll());
+                if (partial == null) {
+                    stopped = true;
+                    break;
+                }
+                if (next < chunks) {
+                    long start = boundaries[next];
+                    long end = boundaries[++next];
+                    pending.add(executorService.submit(() -> readPartial(start, end)));
+                }
+                List<ColumnAccumulator> partials = partial.getAccumulators();
+                for (int i = 0; i < scanColumns.size(); i++) {
+                    if (partials.get(i) != null) {
+                        accumulators.get(i).merge(partials.get(i));
+                    }
+                }
+                partial.addBuffered(accumulators);
+                rowCount += partial.getRows();
+                progress();
+            }
+        }
+        finally {
+            for (Future<RecordFeeder> future : pending) {
+                future.cancel(true);
+                releasePartial(future);
+            }
+        }
+    }
+
+    /**
+     * @return the feeder of the partial accumulators of the chunk, null when the scan control stopped the scan
+     * or the task was cancelled.
+     */
+    private RecordFeeder readPartial(long start, long end) throws IOException {
+        if (isStopping() || Thread.currentThread().isInterrupted()) {
+            return null;
+        }
+        List<ColumnAccumulator> partials = new ArrayList<>();
+        for (ScanColumn scanColumn : scanColumns) {
+            partials.add(scanColumn.accumulator.isSplittable() ? scanColumn.accumulator.newPartial() : null);
+        }
+        RecordFeeder feeder = new RecordFeeder(scanColumns, partials);
+        boolean kept = false;
+        try {
+            readChunk(start, end, feeder, false);
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            feeder.finish(end - start);
+            kept = true;
+        }
+        finally {
+            // the partials that will not be merged give back their memory
+            if (!kept) {
+                feeder.release();
+            }
+        }
+        return feeder;
+    }
+
+    /**
+     * Release the partial accumulators of a chunk task that completed but was not merged.
+     */
+    private static void releasePartial(Future<RecordFeeder> future) {
+        if (!future.isDone() || future.isCancelled()) {
+            return;
+        }
+        try {
+            RecordFeeder partial = future.get();
+            if (partial != null) {
+                partial.release();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            // the failed task released its partials
+        }
+    }
+
+    /**
+     * Feed the records between two record boundaries.
+     * @param checked true to check the scan control between records.
+     * @return true if the scan control stopped the reading before the end.
+     */
+    private boolean readChunk(long start, long end, RecordFeeder feeder, boolean checked) throws IOException {
+        try (CSVReader reader = newReader(start, end)) {
+            String[] record;
+            long records = 0;
+            while ((record = reader.readNext()) != null) {
+                if (!isBlank(record)) {
+                    feeder.add(record);
+                }
+                if (checked && ++records % CHECK_INTERVAL == 0) {
+                    if (isStopping()) {
+                        return reader.readNext() != null;
+                    }
+                    progress();
+                }
+            }
+            return false;
+        }
+        catch (CsvValidationException e) {
+            throw new IOException("Invalid CSV record in " + csvFilePath, e);
+        }
+    }
+
+    private String[] readFirstRecord(long start, long end) throws IOException {
+        try (CSVReader reader = newReader(start, end)) {
+            return reader.readNext();
+        }
+        catch (CsvValidationException e) {
+            throw new IOException("Invalid CSV header in " + csvFilePath, e);
+        }
+    }
+
+    private CSVReader newReader(long start, long end) {
+        BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(
+                new MappedInputStream(channel, start, end), format.getCharset()), READER_BUFFER_SIZE);
+        return new CSVReaderBuilder(bufferedReader)
+                .withCSVParser(new RFC4180ParserBuilder()
+                        .withSeparator(format.getSeparator())
+                        .withQuoteChar(format.getQuoteChar())
+                        .build())
+                .withVerifyReader(false)
+                .build();
+    }
+
+    /**
+     * @return the offsets of the chunks of records, the first is the start of the records and the last the end
+     * of the file.
+     */
+    private long[] getChunkBoundaries(ExecutorService executorService) throws IOException {
+        int pieces = (int) Math.max(1, (size - dataStart + chunkSize - 1) / chunkSize);
+        List<Future<Boolean>> oddQuotes = new ArrayList<>();
+        // the last piece does not tell where a chunk starts
+        for (int i = 0; i < pieces - 1; i++) {
+            long start = dataStart + (long) i * chunkSize;
+            oddQuotes.add(executorService.submit(() -> hasOddQuotes(start, start + chunkSize)));
+        }
+        long[] boundaries = new long[pieces + 1];
+        boundaries[0] = dataStart;
+        boundaries[pieces] = size;
+        boolean inQuote = false;
+        try {
+            for (int i = 1; i < pieces; i++) {
+                inQuote ^= waitFor(oddQuotes.get(i - 1));
+                // a quoted field longer than a piece puts several boundaries after it, the chunks between are empty
+                boundaries[i] = Math.max(boundaries[i - 1], findRecordEnd(dataStart + (long) i * chunkSize, inQuote));
+            }
+        }
+        finally {
+            for (Future<Boolean> future : oddQuotes) {
+                future.cancel(true);
+            }
+        }
+        return boundaries;
+    }
+
+    private boolean hasOddQuotes(long start, long end) throws IOException {
+        byte quote = (byte) format.getQuoteChar();
+        MappedInputStream in = new MappedInputStream(channel, start, end);
+        boolean odd = false;
+        MappedByteBuffer bytes;
+        while ((bytes = in.nextBytes()) != null) {
+            for (int i = bytes.position(); i < bytes.limit(); i++) {
+                if (bytes.get(i) == quote) {
+                    odd = !odd;
+                }
+            }
+            bytes.position(bytes.limit());
+        }
+        return odd;
+    }
+
+    /**
+     * @param start the offset the search starts at.
+     * @param inQuote true if the offset is inside a quoted field.
+     * @return the offset after the first line break outside of quotes from the start, the size of the file if there
+     * is none.
+     */
+    private long findRecordEnd(long start, boolean inQuote) throws IOException {
+        byte quote = (byte) format.getQuoteChar();
+        MappedInputStream in = new MappedInputStream(channel, start, size);
+        long position = start;
+        MappedByteBuffer bytes;
+        while ((bytes = in.nextBytes()) != null) {
+            while (bytes.hasRemaining()) {
+                byte b = bytes.get();
+                position++;
+                if (b == quote) {
+                    inQuote = !inQuote;
+                }
+                else if (b == '\n' && !inQuote) {
+                    return position;
+                }
+            }
+        }
+        return size;
+    }
+
+    private long getBomLength() throws IOException {
+        if (!StandardCharsets.UTF_8.equals(format.getCharset()) || size < 3) {
+            return 0;
+        }
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, 3);
+        return bytes.get(0) == (byte) 0xEF && bytes.get(1) == (byte) 0xBB && bytes.get(2) == (byte) 0xBF ? 3 : 0;
+    }
+
+    private static <T> T waitFor(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the CSV scan tasks");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,71 @@
+package com.fishblack.statistics.text;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a range of a file through memory mapped windows, a window is mapped when the previous one is read.
+ */
+final class MappedInputStream extends InputStream {
+
+    static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+    private MappedByteBuffer window;
+
+    /**
+     * @param channel the channel of the file, it is not closed with the stream.
+     * @param start the offset of the first byte read.
+     * @param end the offset after the last byte read.
+     */
+    MappedInputStream(FileChannel channel, long start, long end) {
+        this.channel = channel;
+        this.position = start;
+        this.end = end;
+    }
+
+    /**
+     * @return the window holding the next bytes, null at the end of the range.
+     */
+    MappedByteBuffer nextBytes() throws IOException {
+        if (window != null && window.hasRemaining()) {
+            return window;
+        }
+        if (position >= end) {
+            return null;
+        }
+        long length = Math.min(WINDOW_SIZE, end - position);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        position += length;
+        return window;
+    }
+
+    @Override
+    public int read() throws IOException {
+        MappedByteBuffer bytes = nextBytes();
+        return bytes == null ? -1 : bytes.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        MappedByteBuffer bytes = nextBytes();
+        if (bytes == null) {
+            return -1;
+        }
+        int count = Math.min(len, bytes.remaining());
+        bytes.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return window == null ? 0 : window.remaining();
+    }
+}
@@ -0,0 +1,250 @@
+package com.fishblack.statistics.text;
+
+import com.fishblack.statistics.ColumnMetrics;
+import com.fishblack.statistics.accumulator.ColumnAccumulator;
+import com.fishblack.statistics.cardinality.MeteredCardinalityCalculator;
+import com.fishblack.statistics.parquet.ScanControl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a text file record by record and feeds the cells of the registered columns to their accumulators, every
+ * cell parsed by the {@link TextValueParser} of its column. Blank records are skipped.
+ */
+public abstract class TextScanner implements Closeable {
+
+    protected final List<ScanColumn> scanColumns = new ArrayList<>();
+    protected ScanControl scanControl;
+    // the records fed by the last scan
+    protected long rowCount;
+    // set when the scan control ended the last scan before the end of the file
+    protected boolean stopped;
+
+    /**
+     * @return the names of the columns in the first record, null when the file has no header.
+     * @throws IOException
+     */
+    public abstract List<String> getHeader() throws IOException;
+
+    /**
+     * Read the file once and feed the cells of every registered column to its accumulator.
+     * A stopped scan control ends the scan early, the columns then hold the first records of the file.
+     * @throws IOException
+     */
+    public abstract void scan() throws IOException;
+
+    /**
+     * Register a column to be fed to the given accumulator during the scan.
+     * @param index the position of the column in the records.
+     * @param accumulator the accumulator of the column.
+     * @param parser the parser of the cells of the column.
+     * @param metrics the metrics the column scan is added to, null not to measure the column.
+     */
+    public void addColumn(int index, ColumnAccumulator accumulator, TextValueParser parser, ColumnMetrics metrics) {
+        if (index < 0) {
+            throw new IllegalArgumentException("Column index must not be negative: " + index);
+        }
+        scanColumns.add(new ScanColumn(index, accumulator, parser, metrics));
+    }
+
+    /**
+     * @return the records fed by the last scan, without the header.
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return true if the scan control ended the last scan before the end of the file.
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    public ScanControl getScanControl() {
+        return scanControl;
+    }
+
+    /**
+     * Set the control stopping the scans of this scanner and getting their progress, null for none.
+     * @param scanControl
+     */
+    public void setScanControl(ScanControl scanControl) {
+        this.scanControl = scanControl;
+    }
+
+    protected boolean isStopping() {
+        return scanControl != null && scanControl.isStopped();
+    }
+
+    protected void progress() {
+        if (scanControl != null) {
+            scanControl.progress();
+        }
+    }
+
+    // an empty line, or a spreadsheet row without cells
+    protected static boolean isBlank(String[] record) {
+        return record.length == 0 || (record.length == 1 && (record[0] == null || record[0].isEmpty()));
+    }
+
+    protected static final class ScanColumn {
+        final int index;
+        final ColumnAccumulator accumulator;
+        final TextValueParser parser;
+        final ColumnMetrics metrics;
+
+        private ScanColumn(int index, ColumnAccumulator accumulator, TextValueParser parser, ColumnMetrics metrics) {
+            this.index = index;
+            this.accumulator = accumulator;
+            this.parser = parser;
+            this.metrics = metrics;
+        }
+    }
+
+    /**
+     * Feeds the records of a part of the file to one accumulator per column, or to a buffer for the columns whose
+     * values must be added in file order by {@link #addBuffered(List)}. The parsing and the accumulation of one
+     * record out of {@value MeteredCardinalityCalculator#SAMPLE_INTERVAL} are timed for the measured columns,
+     * the rest of the time is the reading of the records.
+     */
+    protected static final class RecordFeeder {
+        private final List<ScanColumn> columns;
+        private final ColumnAccumulator[] accumulators;
+        private final List<List<Object>> buffers = new ArrayList<>();
+        private final boolean metered;
+        private final long[] decodeNanos;
+        private final long[] accumulationNanos;
+        private final long start = System.nanoTime();
+        private long rows;
+        private long sampledRows;
+
+        /**
+         * @param columns the columns fed.
+         * @param accumulators the accumulator of every column, null to buffer the values of the column.
+         */
+        RecordFeeder(List<ScanColumn> columns, List<ColumnAccumulator> accumulators) {
+            this.columns = columns;
+            this.accumulators = accumulators.toArray(new ColumnAccumulator[0]);
+            boolean measured = false;
+            for (int i = 0; i < columns.size(); i++) {
+                buffers.add(this.accumulators[i] == null ? new ArrayList<>() : null);
+                measured |= columns.get(i).metrics != null;
+            }
+            this.metered = measured;
+            this.decodeNanos = new long[columns.size()];
+            this.accumulationNanos = new long[columns.size()];
+        }
+
+        void add(String[] record) throws IOException {
+            if (metered && rows % MeteredCardinalityCalculator.SAMPLE_INTERVAL == 0) {
+                addMetered(record);
+            }
+            else {
+                for (int i = 0; i < accumulators.length; i++) {
+                    ScanColumn column = columns.get(i);
+                    Object value = column.parser.parse(column.index < record.length ? record[column.index] : null);
+                    if (accumulators[i] != null) {
+                        accumulators[i].add(value);
+                    }
+                    else {
+                        buffers.get(i).add(value);
+                    }
+                }
+            }
+            rows++;
+        }
+
+        private void addMetered(String[] record) throws IOException {
+            for (int i = 0; i < accumulators.length; i++) {
+                ScanColumn column = columns.get(i);
+                long parseStart = System.nanoTime();
+                Object value = column.parser.parse(column.index < record.length ? record[column.index] : null);
+                long addStart = System.nanoTime();
+                if (accumulators[i] != null) {
+                    accumulators[i].add(value);
+                }
+                else {
+                    buffers.get(i).add(value);
+                }
+                decodeNanos[i] += addStart - parseStart;
+                accumulationNanos[i] += System.nanoTime() - addStart;
+            }
+            sampledRows++;
+        }
+
+        long getRows() {
+            return rows;
+        }
+
+        List<ColumnAccumulator> getAccumulators() {
+            List<ColumnAccumulator> fed = new ArrayList<>();
+            for (ColumnAccumulator accumulator : accumulators) {
+                fed.add(accumulator);
+            }
+            return fed;
+        }
+
+        /**
+         * Add the metrics of the records fed so far to the measured columns.
+         * @param bytes the bytes of the records.
+         */
+        void finish(long bytes) {
+            if (!metered) {
+                return;
+            }
+            double scale = sampledRows == 0 ? 0 : (double) rows / sampledRows;
+            long measuredNanos = 0;
+            for (int i = 0; i < accumulators.length; i++) {
+                measuredNanos += (long) ((decodeNanos[i] + accumulationNanos[i]) * scale);
+            }
+            long readNanos = Math.max(0, System.nanoTime() - start - measuredNanos) / accumulators.length;
+            for (int i = 0; i < accumulators.length; i++) {
+                ColumnMetrics metrics = columns.get(i).metrics;
+                if (metrics != null) {
+                    // the buffered values are accumulated when they are added, see addBuffered
+                    metrics.addRowGroup(rows, bytes / accumulators.length, readNanos, (long) (decodeNanos[i] * scale),
+                            accumulators[i] == null ? 0 : (long) (accumulationNanos[i] * scale));
+                }
+            }
+        }
+
+        /**
+         * Add the buffered values to the given accumulators, in file order after the values added before.
+         * @param targets the accumulator of every column, those of the columns fed directly are not used.
+         * @throws IOException
+         */
+        void addBuffered(List<ColumnAccumulator> targets) throws IOException {
+            for (int i = 0; i < accumulators.length; i++) {
+                List<Object> buffer = buffers.get(i);
+                if (buffer == null) {
+                    continue;
+                }
+                ColumnAccumulator target = targets.get(i);
+                ColumnMetrics metrics = columns.get(i).metrics;
+                long addStart = System.nanoTime();
+                for (Object value : buffer) {
+                    target.add(value);
+                }
+                if (metrics != null) {
+                    metrics.addRowGroup(0, 0, 0, 0, System.nanoTime() - addStart);
+                }
+                buffers.set(i, null);
+            }
+        }
+
+        /**
+         * Release the accumulators of the feeder that will not be merged.
+         */
+        void release() {
+            for (ColumnAccumulator accumulator : accumulators) {
+                if (accumulator != null) {
+                    accumulator.release();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.fishblack.statistics.text;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+
+/**
+ * Turns the text of a cell into the object the parquet column reader returns for the same data type, so that the
+ * column accumulators get the same values from a text file as from its parquet conversion. Empty cells and cells
+ * that do not parse as the data type are null. Dates, times and timestamps are written like
+ * {@code 2020-01-31 23:59:59.999}, the seconds and the fraction are optional and a T may separate the date
+ * and the time. They are kept to the millisecond like the parquet temporal types.
+ * Instances are immutable and can be shared by the threads of a scan.
+ */
+public final class TextValueParser {
+
+    private static final DateTimeFormatter TIME = new DateTimeFormatterBuilder()
+            .appendPattern("HH:mm[:ss]")
+            .optionalStart().appendFraction(ChronoField.NANO_OF_SECOND, 1, 9, true).optionalEnd()
+            .toFormatter();
+    private static final DateTimeFormatter DATE_TIME = new DateTimeFormatterBuilder()
+            .appendPattern("uuuu-MM-dd")
+            .optionalStart()
+            .optionalStart().appendLiteral(' ').optionalEnd()
+            .optionalStart().appendLiteral('T').optionalEnd()
+            .append(TIME)
+            .optionalEnd()
+            .toFormatter();
+    private static final LocalDate EPOCH = LocalDate.ofEpochDay(0);
+
+    private final String dataType;
+    private final int scale;
+
+    /**
+     * @param dataType the data type as returned by Calculator's type conversion.
+     * @param scale the scale of the decimals, -1 to keep the scale they are written with.
+     */
+    public TextValueParser(String dataType, int scale) {
+        this.dataType = dataType == null ? "" : dataType;
+        this.scale = scale;
+    }
+
+    public String getDataType() {
+        return dataType;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * @param text the text of the cell, null for a missing cell.
+     * @return the value, null for an empty cell or a text that is not of the data type.
+     */
+    public Object parse(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        try {
+            switch (dataType) {
+                case "string":
+                    return text;
+                case "double":
+                    return Double.parseDouble(text.trim());
+                case "integer":
+                    return parseLong(text.trim());
+                case "decimal":
+                    BigDecimal decimal = new BigDecimal(text.trim());
+                    return scale < 0 ? decimal : decimal.setScale(scale, RoundingMode.HALF_UP);
+                case "date":
+                    return LocalDate.from(DATE_TIME.parse(text.trim()));
+                case "time":
+                    return LocalDateTime.of(EPOCH, parseTime(text.trim()));
+                case "timestamp":
+                    return parseTimestamp(text.trim());
+                default:
+                    return text;
+            }
+        }
+        catch (NumberFormatException | ArithmeticException | DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    // integral decimals like 3.0 are integers, a spreadsheet may hold them so
+    private static Long parseLong(String text) {
+        try {
+            return Long.parseLong(text);
+        }
+        catch (NumberFormatException e) {
+            return new BigDecimal(text).longValueExact();
+        }
+    }
+
+    private static LocalTime parseTime(String text) {
+        TemporalAccessor parsed = text.indexOf('-') > 0 ? DATE_TIME.parse(text) : TIME.parse(text);
+        LocalTime time = parsed.query(TemporalQueries.localTime());
+        return time == null ? LocalTime.MIDNIGHT : time.truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    private static LocalDateTime parseTimestamp(String text) {
+        TemporalAccessor parsed = DATE_TIME.parse(text);
+        LocalTime time = parsed.query(TemporalQueries.localTime());
+        return LocalDateTime.of(LocalDate.from(parsed), time == null ? LocalTime.MIDNIGHT : time.truncatedTo(ChronoUnit.MILLIS));
+    }
+}
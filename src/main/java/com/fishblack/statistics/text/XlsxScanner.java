@@ -0,0 +1,240 @@
+package com.fishblack.statistics.text;
+
+import com.fishblack.statistics.Calculator;
+import com.fishblack.statistics.accumulator.ColumnAccumulator;
+import org.apache.poi.ooxml.util.SAXHelper;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Reads a sheet of an XLSX file with the streaming SAX reader of POI, the rows are never held in memory.
+ * The cells are read as text like a CSV export of the sheet: date formatted numbers are written as timestamps
+ * and the other numbers in plain notation, whatever their format, and formulas give their cached result.
+ */
+public class XlsxScanner extends TextScanner {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    // the records between two checks of the scan control
+    private static final int CHECK_INTERVAL = 16384;
+
+    private final String xlsxFilePath;
+    private final String sheetName;
+    private final boolean hasHeader;
+    private final OPCPackage opcPackage;
+    private final XSSFReader reader;
+    private final ReadOnlySharedStringsTable sharedStrings;
+    private final StylesTable styles;
+    private List<String> header;
+
+    /**
+     * @param xlsxFilePath the XLSX file.
+     * @param sheetName the name of the sheet read, null for the first sheet.
+     * @param hasHeader true if the first row holds the column names.
+     * @throws IOException if the file can not be read or has no such sheet.
+     */
+    public XlsxScanner(String xlsxFilePath, String sheetName, boolean hasHeader) throws IOException {
+        this.xlsxFilePath = xlsxFilePath;
+        this.sheetName = sheetName;
+        this.hasHeader = hasHeader;
+        try {
+            opcPackage = OPCPackage.open(xlsxFilePath, PackageAccess.READ);
+        }
+        catch (OpenXML4JException e) {
+            throw new IOException("Cannot open XLSX file " + xlsxFilePath, e);
+        }
+        try {
+            reader = new XSSFReader(opcPackage);
+            sharedStrings = new ReadOnlySharedStringsTable(opcPackage);
+            styles = reader.getStylesTable();
+            // fails early on a missing sheet
+            openSheet().close();
+        }
+        catch (OpenXML4JException | SAXException e) {
+            opcPackage.revert();
+            throw new IOException("Cannot read XLSX file " + xlsxFilePath, e);
+        }
+        catch (IOException | RuntimeException e) {
+            opcPackage.revert();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the cells of the first row, null when the sheet has no header. The sheet is read up to its first row.
+     * @throws IOException
+     */
+    @Override
+    public List<String> getHeader() throws IOException {
+        if (!hasHeader) {
+            return null;
+        }
+        if (header == null) {
+            List<String> names = new ArrayList<>();
+            readSheet(record -> {
+                names.addAll(Arrays.asList(record));
+                throw new EndOfSheet();
+            });
+            header = names;
+        }
+        return header;
+    }
+
+    @Override
+    public void scan() throws IOException {
+        rowCount = 0;
+        stopped = false;
+        if (scanColumns.isEmpty()) {
+            return;
+        }
+        List<ColumnAccumulator> accumulators = new ArrayList<>();
+        for (ScanColumn scanColumn : scanColumns) {
+            accumulators.add(scanColumn.accumulator);
+        }
+        RecordFeeder feeder = new RecordFeeder(scanColumns, accumulators);
+        boolean[] headerRow = {hasHeader};
+        boolean[] stopping = {false};
+        readSheet(record -> {
+            if (headerRow[0]) {
+                headerRow[0] = false;
+                return;
+            }
+            if (stopping[0]) {
+                // a record after the stop, the sheet is not read in full
+                stopped = true;
+                throw new EndOfSheet();
+            }
+            feeder.add(record);
+            if (feeder.getRows() % CHECK_INTERVAL == 0) {
+                stopping[0] = isStopping();
+                progress();
+            }
+        });
+        feeder.finish(0);
+        rowCount = feeder.getRows();
+    }
+
+    private interface RecordConsumer {
+        void accept(String[] record) throws IOException;
+    }
+
+    private static final class EndOfSheet extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private EndOfSheet() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Give every row of the sheet that has cells to the consumer, the row as an array of the cells by column index.
+     * The consumer may end the reading by throwing an EndOfSheet.
+     */
+    private void readSheet(RecordConsumer consumer) throws IOException {
+        XSSFSheetXMLHandler.SheetContentsHandler rows = new XSSFSheetXMLHandler.SheetContentsHandler() {
+            private final List<String> cells = new ArrayList<>();
+
+            @Override
+            public void startRow(int rowNum) {
+                cells.clear();
+            }
+
+            @Override
+            public void endRow(int rowNum) {
+                String[] record = cells.toArray(new String[0]);
+                if (isBlank(record)) {
+                    return;
+                }
+                try {
+                    consumer.accept(record);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+                int column = cellReference == null ? cells.size() : new CellReference(cellReference).getCol();
+                while (cells.size() <= column) {
+                    cells.add(null);
+                }
+                cells.set(column, formattedValue);
+            }
+        };
+        try (InputStream sheet = openSheet()) {
+            XMLReader xmlReader = SAXHelper.newXMLReader();
+            xmlReader.setContentHandler(new XSSFSheetXMLHandler(styles, null, sharedStrings, rows, new TextFormatter(), false));
+            xmlReader.parse(new InputSource(sheet));
+        }
+        catch (EndOfSheet e) {
+            // the consumer ended the reading
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        catch (SAXException | ParserConfigurationException | OpenXML4JException e) {
+            throw new IOException("Cannot read XLSX sheet of " + xlsxFilePath, e);
+        }
+    }
+
+    private InputStream openSheet() throws IOException, OpenXML4JException {
+        XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+        while (sheets.hasNext()) {
+            InputStream sheet = sheets.next();
+            if (sheetName == null || sheetName.equals(sheets.getSheetName())) {
+                return sheet;
+            }
+            sheet.close();
+        }
+        throw new IOException(sheetName == null ? "No sheet in XLSX file " + xlsxFilePath
+                : "No sheet " + sheetName + " in XLSX file " + xlsxFilePath);
+    }
+
+    @Override
+    public void close() {
+        // opened for reading, nothing is saved
+        opcPackage.revert();
+    }
+
+    /**
+     * Writes the numbers of the cells the way {@link TextValueParser} reads them.
+     */
+    private static final class TextFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                LocalDateTime dateTime = LocalDateTime.ofInstant(
+                        DateUtil.getJavaDate(value, use1904Windowing, UTC).toInstant(), ZoneOffset.UTC);
+                return Calculator.localDateTimeFormatter.format(dateTime);
+            }
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                return Double.toString(value);
+            }
+            return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+        }
+    }
+}
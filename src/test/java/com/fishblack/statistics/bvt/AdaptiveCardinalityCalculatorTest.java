@@ -0,0 +1,122 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.statistics.cardinality.AdaptiveCardinalityCalculator;
+import com.fishblack.statistics.cardinality.HyperLogLogCardinalityCalculator;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveCardinalityCalculatorTest {
+
+    private static final long SMALL_THRESHOLD = 64 * 1024;
+
+    @Test
+    public void countsExactlyUnderTheThreshold() throws IOException {
+        AdaptiveCardinalityCalculator longs = new AdaptiveCardinalityCalculator("integer");
+        AdaptiveCardinalityCalculator strings = new AdaptiveCardinalityCalculator("string");
+        AdaptiveCardinalityCalculator doubles = new AdaptiveCardinalityCalculator("double");
+        for (int i = 0; i < 100000; i++) {
+            longs.addLong(i % 54321);
+            strings.add("value " + (i % 12345));
+            doubles.addDouble((i % 1000) / 8d);
+        }
+        assertExact(54321, longs);
+        assertExact(12345, strings);
+        assertExact(1000, doubles);
+    }
+
+    @Test
+    public void switchesToTheSketchPastTheThreshold() throws IOException {
+        for (String dataType : new String[]{"integer", "string"}) {
+            AdaptiveCardinalityCalculator calculator = new AdaptiveCardinalityCalculator(dataType, SMALL_THRESHOLD,
+                    HyperLogLogCardinalityCalculator.DEFAULT_PRECISION);
+            for (int i = 0; i < 100000; i++) {
+                if ("integer".equals(dataType)) {
+                    calculator.addLong(i);
+                }
+                else {
+                    calculator.add("value " + i);
+                }
+            }
+            assertFalse(dataType, calculator.isExact());
+            assertEstimate(100000, calculator);
+            assertTrue(dataType, calculator.getMemoryUsage() <= SMALL_THRESHOLD);
+        }
+    }
+
+    @Test
+    public void mergeOfExactSetsIsExact() throws IOException {
+        AdaptiveCardinalityCalculator first = new AdaptiveCardinalityCalculator("string");
+        AdaptiveCardinalityCalculator second = new AdaptiveCardinalityCalculator("string");
+        for (int i = 0; i < 30000; i++) {
+            first.add("value " + i);
+            second.add("value " + (i + 10000));
+        }
+        first.merge(second);
+        assertExact(40000, first);
+    }
+
+    @Test
+    public void mergeWithASketchIsAnEstimate() throws IOException {
+        AdaptiveCardinalityCalculator exact = new AdaptiveCardinalityCalculator("integer", SMALL_THRESHOLD,
+                HyperLogLogCardinalityCalculator.DEFAULT_PRECISION);
+        AdaptiveCardinalityCalculator sketch = new AdaptiveCardinalityCalculator("integer", SMALL_THRESHOLD,
+                HyperLogLogCardinalityCalculator.DEFAULT_PRECISION);
+        for (int i = 0; i < 100000; i++) {
+            sketch.addLong(i);
+        }
+        for (int i = 99500; i < 100500; i++) {
+            exact.addLong(i);
+        }
+        assertTrue(exact.isExact());
+        assertFalse(sketch.isExact());
+        exact.merge(sketch);
+        assertFalse(exact.isExact());
+        // half of the values of the exact set are in the sketch too
+        assertEstimate(100500, exact);
+    }
+
+    @Test
+    public void savedStatesReadBackTheSameCount() throws IOException {
+        AdaptiveCardinalityCalculator exact = new AdaptiveCardinalityCalculator("string");
+        AdaptiveCardinalityCalculator sketch = new AdaptiveCardinalityCalculator("integer", SMALL_THRESHOLD,
+                HyperLogLogCardinalityCalculator.DEFAULT_PRECISION);
+        for (int i = 0; i < 100000; i++) {
+            exact.add("value " + (i % 5000));
+            sketch.addLong(i);
+        }
+        AdaptiveCardinalityCalculator exactCopy = new AdaptiveCardinalityCalculator("string");
+        readState(exactCopy, exact);
+        assertExact(5000, exactCopy);
+
+        AdaptiveCardinalityCalculator sketchCopy = new AdaptiveCardinalityCalculator("integer", SMALL_THRESHOLD,
+                HyperLogLogCardinalityCalculator.DEFAULT_PRECISION);
+        readState(sketchCopy, sketch);
+        assertFalse(sketchCopy.isExact());
+        assertEquals(sketch.count(), sketchCopy.count());
+    }
+
+    private static void readState(AdaptiveCardinalityCalculator copy, AdaptiveCardinalityCalculator calculator) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        calculator.writeState(new DataOutputStream(bytes));
+        copy.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    private static void assertExact(long count, AdaptiveCardinalityCalculator calculator) throws IOException {
+        assertTrue(calculator.isExact());
+        assertEquals(count, calculator.count());
+    }
+
+    private static void assertEstimate(long count, AdaptiveCardinalityCalculator calculator) throws IOException {
+        double bound = 4 * HyperLogLogCardinalityCalculator.getStandardError(HyperLogLogCardinalityCalculator.DEFAULT_PRECISION) * count;
+        assertTrue("Estimate " + calculator.count() + " of " + count, Math.abs(calculator.count() - count) <= bound);
+    }
+}
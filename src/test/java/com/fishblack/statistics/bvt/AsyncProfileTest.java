@@ -0,0 +1,110 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.fastparquet.common.TempFile;
+import com.fishblack.statistics.Calculator;
+import com.fishblack.statistics.ColumnStats;
+import com.fishblack.statistics.DataInsights;
+import com.fishblack.statistics.ProfileHandle;
+import com.fishblack.statistics.SampleSpec;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncProfileTest {
+
+    private static final int ROWS = 60000;
+    private static final String[] DISTINCT_COLUMNS = {"s", "i", "dt", "ts"};
+
+    private final File directory;
+
+    public AsyncProfileTest() throws IOException {
+        directory = Files.createTempDirectory("async-profile").toFile();
+    }
+
+    @After
+    public void deleteFiles() {
+        TestParquetFiles.delete(directory);
+    }
+
+    @Test
+    public void sampledJobBoundsTheDistinctCounts() throws Exception {
+        File file = TestParquetFiles.write(directory, ROWS, 1, 100000);
+        DataInsights full = new Calculator().getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+        for (SampleSpec sampleSpec : new SampleSpec[]{SampleSpec.fraction(0.3).withSeed(5), SampleSpec.timeBudget(1).withSeed(6)}) {
+            Calculator calculator = new Calculator();
+            calculator.setSampleSpec(sampleSpec);
+            calculator.setSnapshotIntervalMillis(0);
+            List<DataInsights> snapshots = new CopyOnWriteArrayList<>();
+            ProfileHandle handle = calculator.getDataInsightsFromParquetFileAsync(new TempFile(file.getPath()),
+                    TestParquetFiles.fields(), snapshots::add);
+            DataInsights sample = handle.getFuture().get(60, TimeUnit.SECONDS);
+            assertFalse(snapshots.isEmpty());
+            assertFalse(sample.isPartial());
+            assertEquals(ROWS, sample.getRowCount());
+            assertNotNull(sample.getSampleRowCount());
+            assertTrue(sample.getSampleRowCount() > 0 && sample.getSampleRowCount() < ROWS);
+            for (String column : DISTINCT_COLUMNS) {
+                long cardinality = find(full, column).getCardinality();
+                long[] interval = find(sample, column).getCardinalityInterval();
+                assertNotNull(column, interval);
+                assertTrue(column + " " + cardinality + " not in [" + interval[0] + ", " + interval[1] + "]",
+                        interval[0] <= cardinality && cardinality <= interval[1]);
+            }
+        }
+    }
+
+    @Test
+    public void cancelledJobStops() throws Exception {
+        File file = TestParquetFiles.write(directory, ROWS, 2, 1000);
+        Calculator calculator = new Calculator();
+        calculator.setSnapshotIntervalMillis(0);
+        AtomicReference<ProfileHandle> handle = new AtomicReference<>();
+        List<DataInsights> snapshots = new CopyOnWriteArrayList<>();
+        synchronized (handle) {
+            handle.set(calculator.getDataInsightsFromParquetFileAsync(new TempFile(file.getPath()), TestParquetFiles.fields(),
+                    snapshot -> {
+                        snapshots.add(snapshot);
+                        synchronized (handle) {
+                            handle.get().cancel();
+                        }
+                    }));
+        }
+        try {
+            handle.get().getFuture().get(60, TimeUnit.SECONDS);
+            fail("The cancelled job completed");
+        }
+        catch (CancellationException e) {
+            assertTrue(handle.get().isCancelled());
+        }
+        assertEquals(1, snapshots.size());
+        DataInsights snapshot = snapshots.get(0);
+        assertTrue(snapshot.isPartial());
+        for (ColumnStats columnStats : snapshot.getColumnStats()) {
+            assertTrue(columnStats.getFieldName(), columnStats.isPartial());
+            assertTrue(columnStats.getFieldName(), columnStats.getScannedRowCount() < ROWS);
+        }
+    }
+
+    private static ColumnStats find(DataInsights dataInsights, String column) {
+        for (ColumnStats columnStats : dataInsights.getColumnStats()) {
+            if (column.equals(columnStats.getFieldName())) {
+                return columnStats;
+            }
+        }
+        throw new AssertionError("No column " + column);
+    }
+}
@@ -0,0 +1,117 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.fastparquet.common.TempFile;
+import com.fishblack.statistics.Calculator;
+import com.fishblack.statistics.ColumnStats;
+import com.fishblack.statistics.DataInsights;
+import com.fishblack.statistics.SampleSpec;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DataInsightsBinaryTest {
+
+    private final File directory;
+
+    public DataInsightsBinaryTest() throws IOException {
+        directory = Files.createTempDirectory("data-insights-binary").toFile();
+    }
+
+    @After
+    public void deleteFiles() {
+        TestParquetFiles.delete(directory);
+    }
+
+    @Test
+    public void profileReadsBackTheSameValues() throws IOException {
+        File file = TestParquetFiles.write(directory, 20000, 1, 1000);
+        Calculator calculator = new Calculator();
+        calculator.setMetricsIncluded(true);
+        DataInsights dataInsights = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+        DataInsights copy = roundTrip(dataInsights);
+        assertEquals(dataInsights.toJSON(), copy.toJSON());
+        for (int i = 0; i < dataInsights.getColumnStats().size(); i++) {
+            ColumnStats expected = dataInsights.getColumnStats().get(i);
+            ColumnStats actual = copy.getColumnStats().get(i);
+            assertEquals(expected.getFieldName(), classOf(expected.getMin()), classOf(actual.getMin()));
+            assertEquals(expected.getFieldName(), classOf(expected.getMax()), classOf(actual.getMax()));
+            assertEquals(expected.getFieldName(), classOf(expected.getSum()), classOf(actual.getSum()));
+        }
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        dataInsights.writeJSON(json);
+        assertTrue(binary(dataInsights).length < json.size());
+    }
+
+    @Test
+    public void sampledProfileReadsBackTheSameValues() throws IOException {
+        File file = TestParquetFiles.write(directory, 20000, 2, 1000);
+        Calculator calculator = new Calculator();
+        calculator.setSampleSpec(SampleSpec.rows(2000).withSeed(7L));
+        DataInsights dataInsights = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+        assertEquals(dataInsights.toJSON(), roundTrip(dataInsights).toJSON());
+    }
+
+    @Test
+    public void edgeValuesReadBackTheSameValues() throws IOException {
+        DataInsights dataInsights = new DataInsights();
+        dataInsights.setRowCount(Long.MAX_VALUE);
+        dataInsights.setColumnCount(3);
+        dataInsights.setPartial(true);
+        ColumnStats decimal = new ColumnStats();
+        decimal.setFieldName("amount é中");
+        decimal.setDataType("decimal");
+        decimal.setMin(new BigDecimal("-123456789012345678901234567890.123456789"));
+        decimal.setMax(BigDecimal.valueOf(Long.MIN_VALUE, 4));
+        decimal.setSum(new BigDecimal("1E+400"));
+        decimal.setVariance(Double.NaN);
+        decimal.setSkewness(Double.NEGATIVE_INFINITY);
+        decimal.setPartial(true);
+        decimal.setScannedRowCount(42L);
+        decimal.setEstimatedFields(Arrays.asList("distinct", "mean"));
+        decimal.setCardinalityInterval(new long[]{1, Long.MAX_VALUE});
+        decimal.setMeanInterval(new double[]{-0.0, Double.MIN_VALUE});
+        ColumnStats integer = new ColumnStats();
+        integer.setFieldName("id");
+        integer.setDataType("integer");
+        integer.setMin(Integer.MIN_VALUE);
+        integer.setMax(Long.MAX_VALUE);
+        integer.setCardinality(-1);
+        ColumnStats empty = new ColumnStats();
+        dataInsights.getColumnStats().addAll(Arrays.asList(decimal, integer, empty));
+        DataInsights copy = roundTrip(dataInsights);
+        assertEquals(dataInsights.toJSON(), copy.toJSON());
+        assertEquals(Integer.class, copy.getColumnStats().get(1).getMin().getClass());
+        assertEquals(Long.class, copy.getColumnStats().get(1).getMax().getClass());
+        assertEquals(new BigDecimal("1E+400"), copy.getColumnStats().get(0).getSum());
+    }
+
+    @Test(expected = IOException.class)
+    public void otherStreamsAreRejected() throws IOException {
+        DataInsights.readBinary(new ByteArrayInputStream("{\"rows\":1}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static Class<?> classOf(Object value) {
+        return value == null ? null : value.getClass();
+    }
+
+    private static DataInsights roundTrip(DataInsights dataInsights) throws IOException {
+        return DataInsights.readBinary(new ByteArrayInputStream(binary(dataInsights)));
+    }
+
+    private static byte[] binary(DataInsights dataInsights) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        dataInsights.writeBinary(bytes);
+        return bytes.toByteArray();
+    }
+}
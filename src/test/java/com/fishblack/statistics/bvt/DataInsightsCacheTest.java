@@ -0,0 +1,145 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.fastparquet.common.FieldMetadata;
+import com.fishblack.fastparquet.common.TempFile;
+import com.fishblack.statistics.Calculator;
+import com.fishblack.statistics.DataInsights;
+import com.fishblack.statistics.DataInsightsCache;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DataInsightsCacheTest {
+
+    private final File directory;
+
+    public DataInsightsCacheTest() throws IOException {
+        directory = Files.createTempDirectory("insights-cache").toFile();
+    }
+
+    @After
+    public void deleteFiles() {
+        TestParquetFiles.delete(new File(directory, "entries"));
+        TestParquetFiles.delete(directory);
+    }
+
+    @Test
+    public void changedFilesAreComputedAgain() throws Exception {
+        File file = TestParquetFiles.write(directory, 5000, 1, 100);
+        TempFile tempFile = new TempFile(file.getPath());
+        DataInsightsCache cache = new DataInsightsCache(new Calculator(), 10);
+        DataInsights first = cache.getDataInsightsFromParquetFile(tempFile, TestParquetFiles.fields());
+        assertSame(first, cache.getDataInsightsFromParquetFile(tempFile, TestParquetFiles.fields()));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+
+        // the same content with another modification time
+        assertTrue(file.setLastModified(file.lastModified() + 10000));
+        DataInsights touched = cache.getDataInsightsFromParquetFile(tempFile, TestParquetFiles.fields());
+        assertEquals(2, cache.getMissCount());
+        TestParquetFiles.assertSameStatistics(first, touched);
+
+        // another content under the same path
+        long lastModified = file.lastModified();
+        File larger = TestParquetFiles.write(directory, 6000, 1, 100);
+        Files.move(larger.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        // the checksum hadoop keeps next to the file
+        Files.move(checksumOf(larger).toPath(), checksumOf(file).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        assertTrue(file.setLastModified(lastModified));
+        DataInsights rewritten = cache.getDataInsightsFromParquetFile(tempFile, TestParquetFiles.fields());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(6000, rewritten.getRowCount());
+
+        // other published fields are another entry
+        List<FieldMetadata> fields = new ArrayList<>(TestParquetFiles.fields());
+        fields.set(0, new FieldMetadata("s", "varchar(30)"));
+        cache.getDataInsightsFromParquetFile(tempFile, fields);
+        assertEquals(4, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void evictedEntriesAreReadFromDisk() throws Exception {
+        File first = TestParquetFiles.write(directory, 5000, 1, 100);
+        File second = TestParquetFiles.write(directory, 5000, 2, 100);
+        DataInsightsCache cache = new DataInsightsCache(new Calculator(), 1, new File(directory, "entries").getPath());
+        DataInsights expected = cache.getDataInsightsFromParquetFile(new TempFile(first.getPath()), TestParquetFiles.fields());
+        cache.getDataInsightsFromParquetFile(new TempFile(second.getPath()), TestParquetFiles.fields());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(1, cache.size());
+        DataInsights read = cache.getDataInsightsFromParquetFile(new TempFile(first.getPath()), TestParquetFiles.fields());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.getDiskHitCount());
+        TestParquetFiles.assertSameStatistics(expected, read);
+    }
+
+    @Test
+    public void concurrentRequestsShareOneComputation() throws Exception {
+        File file = TestParquetFiles.write(directory, 5000, 1, 100);
+        TempFile tempFile = new TempFile(file.getPath());
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger computations = new AtomicInteger();
+        Calculator calculator = new Calculator() {
+            @Override
+            public DataInsights getDataInsightsFromParquetFile(TempFile tempParquetFile, List<FieldMetadata> fields) throws IOException {
+                computations.incrementAndGet();
+                computing.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getDataInsightsFromParquetFile(tempParquetFile, fields);
+            }
+        };
+        DataInsightsCache cache = new DataInsightsCache(calculator, 10);
+        int requests = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            List<Future<DataInsights>> futures = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                futures.add(executor.submit(() -> cache.getDataInsightsFromParquetFile(tempFile, TestParquetFiles.fields())));
+            }
+            assertTrue(computing.await(10, TimeUnit.SECONDS));
+            // the other requests count as hits once they wait for the running computation
+            long waitEnd = System.currentTimeMillis() + 10000;
+            while (cache.getHitCount() < requests - 1 && System.currentTimeMillis() < waitEnd) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            DataInsights dataInsights = futures.get(0).get();
+            for (Future<DataInsights> future : futures) {
+                assertSame(dataInsights, future.get());
+            }
+            assertEquals(1, computations.get());
+            assertEquals(1, cache.getMissCount());
+            assertEquals(requests - 1, cache.getHitCount());
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static File checksumOf(File file) {
+        return new File(file.getParentFile(), "." + file.getName() + ".crc");
+    }
+}
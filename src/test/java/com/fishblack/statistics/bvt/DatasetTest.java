@@ -0,0 +1,91 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.fastparquet.common.TempFile;
+import com.fishblack.statistics.Calculator;
+import com.fishblack.statistics.ColumnStats;
+import com.fishblack.statistics.DataInsights;
+import com.fishblack.statistics.Histogram;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class DatasetTest {
+
+    private static final int[] ROWS = {8000, 6000, 7000};
+    private static final long[] SEEDS = {1, 2, 3};
+    private static final String[] PARTITIONS = {"p=a", "p=b", "p=c"};
+
+    private final File directory;
+
+    public DatasetTest() throws IOException {
+        directory = Files.createTempDirectory("dataset").toFile();
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void datasetGivesTheStatisticsOfItsRowsInOneFile() throws IOException {
+        for (int cardinality : new int[]{300, 100000}) {
+            File dataset = writeDataset("dataset-" + cardinality, cardinality);
+            File single = new File(directory, "single-" + cardinality + ".parquet");
+            TestParquetFiles.write(single, ROWS, SEEDS, cardinality, true);
+            Calculator calculator = new Calculator();
+            DataInsights expected = calculator.getDataInsightsFromParquetFile(new TempFile(single.getPath()), TestParquetFiles.fields());
+            DataInsights actual = calculator.getDataInsightsFromParquetDataset(dataset.getPath(), TestParquetFiles.fields());
+            TestParquetFiles.assertSameStatistics(expected, actual);
+            for (ColumnStats columnStats : actual.getColumnStats()) {
+                Histogram histogram = columnStats.getHistogram();
+                if (histogram != null) {
+                    // the merged buckets hold every non null value once
+                    assertEquals(columnStats.getFieldName(), actual.getRowCount() - columnStats.getNullValueCount(),
+                            Arrays.stream(histogram.getCounts()).sum());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void partitionsGiveTheStatisticsOfTheirFiles() throws IOException {
+        File dataset = writeDataset("dataset", 300);
+        Calculator calculator = new Calculator();
+        Map<String, DataInsights> partitions = calculator.getPartitionDataInsightsFromParquetDataset(dataset.getPath(),
+                TestParquetFiles.fields());
+        assertEquals(Arrays.asList(PARTITIONS), Arrays.asList(partitions.keySet().toArray()));
+        for (int i = 0; i < PARTITIONS.length; i++) {
+            File file = new File(new File(dataset, PARTITIONS[i]), "part-0.parquet");
+            DataInsights expected = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+            DataInsights actual = partitions.get(PARTITIONS[i]);
+            assertNotNull(PARTITIONS[i], actual);
+            TestParquetFiles.assertSameStatistics(expected, actual);
+        }
+    }
+
+    /**
+     * @return a directory of one file per partition, the rows of a seed in each.
+     */
+    private File writeDataset(String name, int cardinality) throws IOException {
+        File dataset = new File(directory, name);
+        for (int i = 0; i < PARTITIONS.length; i++) {
+            File partition = new File(dataset, PARTITIONS[i]);
+            partition.mkdirs();
+            TestParquetFiles.write(new File(partition, "part-0.parquet"), new int[]{ROWS[i]}, new long[]{SEEDS[i]}, cardinality, true);
+        }
+        return dataset;
+    }
+}
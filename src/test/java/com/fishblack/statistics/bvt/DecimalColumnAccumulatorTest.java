@@ -0,0 +1,121 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.statistics.ColumnStats;
+import com.fishblack.statistics.accumulator.DecimalColumnAccumulator;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class DecimalColumnAccumulatorTest {
+
+    // the largest unscaled value of 18 digits
+    private static final long MAX_UNSCALED = 999_999_999_999_999_999L;
+
+    @Test
+    public void sumOverflowsIntoABigInteger() throws IOException {
+        DecimalColumnAccumulator accumulator = newAccumulator();
+        BigInteger expected = BigInteger.ZERO;
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            // mostly large positive values, so the long sum overflows many times
+            long value = random.nextInt(10) == 0 ? -MAX_UNSCALED + random.nextInt(1000) : MAX_UNSCALED - random.nextInt(1000);
+            accumulator.addUnscaled(value, 4);
+            expected = expected.add(BigInteger.valueOf(value));
+        }
+        ColumnStats columnStats = accumulator.finish();
+        assertEquals(new BigDecimal(expected, 4), columnStats.getSum());
+        assertEquals(new BigDecimal(expected, 4).divide(BigDecimal.valueOf(10000), RoundingMode.UP), columnStats.getMean());
+    }
+
+    @Test
+    public void sumOfValuesOfSeveralRowsOverflows() throws IOException {
+        DecimalColumnAccumulator accumulator = newAccumulator();
+        long rows = 1000000;
+        for (int i = 0; i < rows; i++) {
+            accumulator.addValueRow();
+        }
+        accumulator.addUnscaledRows(MAX_UNSCALED, 2, rows);
+        ColumnStats columnStats = accumulator.finish();
+        assertEquals(new BigDecimal(BigInteger.valueOf(MAX_UNSCALED).multiply(BigInteger.valueOf(rows)), 2), columnStats.getSum());
+        assertEquals(BigDecimal.valueOf(MAX_UNSCALED, 2), columnStats.getMin());
+        assertEquals(BigDecimal.valueOf(MAX_UNSCALED, 2), columnStats.getMax());
+    }
+
+    @Test
+    public void unscaledValuesGiveTheStatisticsOfTheDecimals() throws IOException {
+        DecimalColumnAccumulator unscaled = newAccumulator();
+        DecimalColumnAccumulator decimals = newAccumulator();
+        Random random = new Random(2);
+        for (int i = 0; i < 10000; i++) {
+            long value = random.nextLong() % MAX_UNSCALED;
+            unscaled.addUnscaled(value, 3);
+            decimals.add(BigDecimal.valueOf(value, 3));
+        }
+        assertEquals(decimals.finish().toJSON(), unscaled.finish().toJSON());
+    }
+
+    @Test
+    public void valuesOfAnotherScaleAreAddedAsDecimals() throws IOException {
+        DecimalColumnAccumulator accumulator = newAccumulator();
+        accumulator.addUnscaled(MAX_UNSCALED, 2);
+        accumulator.addUnscaled(MAX_UNSCALED, 4);
+        // more than 18 digits
+        accumulator.add(new BigDecimal("12345678901234567890.5"));
+        ColumnStats columnStats = accumulator.finish();
+        BigDecimal expected = BigDecimal.valueOf(MAX_UNSCALED, 2).add(BigDecimal.valueOf(MAX_UNSCALED, 4))
+                .add(new BigDecimal("12345678901234567890.5"));
+        assertEquals(0, expected.compareTo((BigDecimal) columnStats.getSum()));
+        assertEquals(BigDecimal.valueOf(MAX_UNSCALED, 4), columnStats.getMin());
+        assertEquals(new BigDecimal("12345678901234567890.5"), columnStats.getMax());
+    }
+
+    @Test
+    public void mergedPartialsGiveTheSequentialSum() throws IOException {
+        DecimalColumnAccumulator sequential = newAccumulator();
+        DecimalColumnAccumulator[] partials = {newAccumulator(), newAccumulator(), newAccumulator()};
+        Random random = new Random(3);
+        for (int i = 0; i < 30000; i++) {
+            long value = MAX_UNSCALED - random.nextInt(1000000);
+            sequential.addUnscaled(value, 4);
+            partials[i / 10000].addUnscaled(value, 4);
+        }
+        partials[0].merge(partials[1]);
+        partials[0].merge(partials[2]);
+        ColumnStats expected = sequential.finish();
+        ColumnStats actual = partials[0].finish();
+        assertEquals(expected.getSum(), actual.getSum());
+        assertEquals(expected.getMean(), actual.getMean());
+        assertEquals(expected.getMin(), actual.getMin());
+        assertEquals(expected.getMax(), actual.getMax());
+        assertEquals(expected.getCardinality(), actual.getCardinality());
+    }
+
+    @Test
+    public void savedStateKeepsTheOverflow() throws IOException {
+        DecimalColumnAccumulator accumulator = newAccumulator();
+        for (int i = 0; i < 1000; i++) {
+            accumulator.addUnscaled(MAX_UNSCALED - i, 4);
+        }
+        accumulator.addNull();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        accumulator.writeState(new DataOutputStream(bytes));
+        DecimalColumnAccumulator copy = newAccumulator();
+        copy.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(accumulator.finish().toJSON(), copy.finish().toJSON());
+    }
+
+    private static DecimalColumnAccumulator newAccumulator() {
+        return new DecimalColumnAccumulator("amount", "decimal", CardinalityCalculatorFactory.ADAPTIVE);
+    }
+}
@@ -0,0 +1,46 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.fastparquet.common.TempFile;
+import com.fishblack.statistics.Calculator;
+import com.fishblack.statistics.DataInsights;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class DictionaryScanTest {
+
+    private final File directory;
+
+    public DictionaryScanTest() throws IOException {
+        directory = Files.createTempDirectory("dictionary-scan").toFile();
+    }
+
+    @After
+    public void deleteFiles() {
+        TestParquetFiles.delete(directory);
+    }
+
+    /**
+     * The low cardinalities are dictionary encoded in every row group, the high one falls back to plain pages
+     * once the dictionary is full.
+     */
+    @Test
+    public void dictionaryEncodedFilesGiveThePlainStatistics() throws IOException {
+        for (int cardinality : new int[]{10, 100000}) {
+            File dictionaryFile = TestParquetFiles.write(directory, 30000, cardinality, cardinality, true);
+            File plainFile = TestParquetFiles.write(directory, 30000, cardinality, cardinality, false);
+            for (CardinalityCalculatorFactory factory : new CardinalityCalculatorFactory[]{CardinalityCalculatorFactory.MEMORY,
+                    CardinalityCalculatorFactory.HYPER_LOG_LOG, CardinalityCalculatorFactory.adaptive(4096, 14)}) {
+                Calculator calculator = new Calculator();
+                calculator.setCardinalityCalculatorFactory(factory);
+                DataInsights plain = calculator.getDataInsightsFromParquetFile(new TempFile(plainFile.getPath()), TestParquetFiles.fields());
+                DataInsights dictionary = calculator.getDataInsightsFromParquetFile(new TempFile(dictionaryFile.getPath()), TestParquetFiles.fields());
+                TestParquetFiles.assertSameStatistics(plain, dictionary);
+            }
+        }
+    }
+}
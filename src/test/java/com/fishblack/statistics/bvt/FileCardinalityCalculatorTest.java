@@ -0,0 +1,99 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.statistics.cardinality.CardinalityCalculator;
+import com.fishblack.statistics.cardinality.FileCardinalityCalculator;
+import com.fishblack.statistics.cardinality.MemoryCardinalityCalculator;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FileCardinalityCalculatorTest {
+
+    // a few thousand values per run
+    private static final long RUN_MEMORY = 16 * 1024;
+
+    @Test
+    public void agreesWithTheExactCount() throws IOException {
+        for (String dataType : new String[]{"integer", "double", "string", "decimal"}) {
+            for (int cardinality : new int[]{1, 1000, 100000}) {
+                FileCardinalityCalculator file = new FileCardinalityCalculator(dataType, RUN_MEMORY);
+                MemoryCardinalityCalculator memory = new MemoryCardinalityCalculator(dataType);
+                add(new Random(cardinality), 200000, cardinality, dataType, file, memory);
+                assertTrue(dataType, file.getRunCount() > 1);
+                assertEquals(dataType + " " + cardinality, memory.count(), file.count());
+                file.release();
+            }
+        }
+    }
+
+    @Test
+    public void mergeTakesOverTheRuns() throws IOException {
+        for (String dataType : new String[]{"integer", "string"}) {
+            FileCardinalityCalculator first = new FileCardinalityCalculator(dataType, RUN_MEMORY);
+            FileCardinalityCalculator second = new FileCardinalityCalculator(dataType, RUN_MEMORY);
+            MemoryCardinalityCalculator memory = new MemoryCardinalityCalculator(dataType);
+            Random random = new Random(3);
+            add(random, 50000, 80000, dataType, first, memory);
+            add(random, 50000, 80000, dataType, second, memory);
+            first.merge(second);
+            assertEquals(dataType, memory.count(), first.count());
+            first.release();
+        }
+    }
+
+    @Test
+    public void writesTheRunsOnTheGivenExecutor() throws Exception {
+        // a single thread busy adding the values must not wait for its own runs
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> count = executor.submit(() -> {
+                FileCardinalityCalculator file = new FileCardinalityCalculator("integer", RUN_MEMORY, null, executor);
+                for (long i = 0; i < 100000; i++) {
+                    file.addLong(i % 50000);
+                }
+                try {
+                    return file.count();
+                }
+                finally {
+                    file.release();
+                }
+            });
+            assertEquals(50000, (long) count.get(60, TimeUnit.SECONDS));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void add(Random random, int rows, int cardinality, String dataType, CardinalityCalculator... calculators)
+            throws IOException {
+        for (int i = 0; i < rows; i++) {
+            int value = random.nextInt(cardinality);
+            for (CardinalityCalculator calculator : calculators) {
+                switch (dataType) {
+                    case "integer":
+                        calculator.addLong(value - cardinality / 2);
+                        break;
+                    case "double":
+                        calculator.addDouble(value / 8d);
+                        break;
+                    case "decimal":
+                        calculator.add(BigDecimal.valueOf(value, 2));
+                        break;
+                    default:
+                        calculator.add("value " + value);
+                        break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.statistics.FrequentValue;
+import com.fishblack.statistics.accumulator.FrequentValues;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class FrequentValuesTest {
+
+    private static final int ROWS = 200000;
+    private static final int DISTINCT = 20000;
+    private static final int PARTS = 8;
+
+    @Test
+    public void mergedCountersOfFewValuesAreExact() {
+        FrequentValues[] parts = newParts(10, 100);
+        Random random = new Random(1);
+        Map<Long, Long> trueCounts = new HashMap<>();
+        for (int row = 0; row < ROWS; row++) {
+            // value v is held by about 2v - 1 times the rows of value 1
+            long value = (long) Math.sqrt(random.nextInt(50 * 50)) + 1;
+            parts[random.nextInt(PARTS)].addLong(value, 1);
+            trueCounts.merge(value, 1L, Long::sum);
+        }
+        List<FrequentValue> topValues = merge(parts).getTopValues(Function.identity());
+        assertNotNull(topValues);
+        assertEquals(10, topValues.size());
+        for (int i = 0; i < topValues.size(); i++) {
+            FrequentValue topValue = topValues.get(i);
+            assertEquals(50L - i, topValue.getValue());
+            assertEquals(topValue.getValue().toString(), (long) trueCounts.get(topValue.getValue()), topValue.getCount());
+            assertEquals(0, topValue.getError());
+        }
+    }
+
+    @Test
+    public void mergedCountersBoundTheTrueCounts() {
+        int capacity = 200;
+        FrequentValues[] parts = newParts(10, capacity);
+        Random random = new Random(2);
+        double[] cumulative = zipf(DISTINCT, 1.1);
+        Map<Long, Long> trueCounts = new HashMap<>();
+        for (int row = 0; row < ROWS; row++) {
+            long value = sample(cumulative, random);
+            parts[random.nextInt(PARTS)].addLong(value, 1);
+            trueCounts.merge(value, 1L, Long::sum);
+        }
+        List<FrequentValue> topValues = merge(parts).getTopValues(Function.identity());
+        assertNotNull(topValues);
+        assertEquals(10, topValues.size());
+        for (int i = 0; i < topValues.size(); i++) {
+            FrequentValue topValue = topValues.get(i);
+            long trueCount = trueCounts.get(topValue.getValue());
+            String message = topValue.getValue() + " " + trueCount + " " + topValue.getCount() + " " + topValue.getError();
+            assertTrue(message, topValue.getCount() - topValue.getError() <= trueCount);
+            assertTrue(message, trueCount <= topValue.getCount());
+            assertTrue(message, topValue.getCount() - trueCount <= ROWS / capacity);
+            // the skew leaves the most frequent values far apart
+            assertEquals(message, i + 1L, topValue.getValue());
+        }
+    }
+
+    private static FrequentValues[] newParts(int topCount, int capacity) {
+        FrequentValues[] parts = new FrequentValues[PARTS];
+        for (int i = 0; i < PARTS; i++) {
+            parts[i] = new FrequentValues(topCount, capacity);
+        }
+        return parts;
+    }
+
+    private static FrequentValues merge(FrequentValues[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            parts[0].merge(parts[i]);
+        }
+        return parts[0];
+    }
+
+    /**
+     * @return the cumulative probabilities of the values 1 to n, value v drawn with a probability proportional to 1 / v^s.
+     */
+    private static double[] zipf(int n, double s) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int v = 1; v <= n; v++) {
+            sum += 1 / Math.pow(v, s);
+            cumulative[v - 1] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static long sample(double[] cumulative, Random random) {
+        double u = random.nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] < u) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low + 1;
+    }
+}
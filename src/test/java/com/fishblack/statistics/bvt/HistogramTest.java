@@ -0,0 +1,101 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.statistics.Histogram;
+import com.fishblack.statistics.accumulator.EquiWidthHistogram;
+import com.fishblack.statistics.accumulator.QuantileSketch;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    private static final int BUCKETS = 20;
+    private static final int ROWS = 100000;
+
+    @Test
+    public void bucketsCountTheValuesBetweenTheirBounds() {
+        Random random = new Random(1);
+        for (double scale : new double[]{1e-3, 1, 1e9}) {
+            double[] values = new double[ROWS];
+            EquiWidthHistogram equiWidth = new EquiWidthHistogram(BUCKETS, Integer.MIN_VALUE);
+            for (int i = 0; i < ROWS; i++) {
+                values[i] = random.nextGaussian() * scale + scale;
+                equiWidth.add(values[i], 1);
+            }
+            Histogram histogram = equiWidth.getHistogram(value -> value);
+            assertTrue(histogram.getCounts().length > BUCKETS / 2);
+            assertTrue(histogram.getCounts().length <= BUCKETS);
+            assertArrayEquals(count(histogram.getBounds(), values), histogram.getCounts());
+        }
+    }
+
+    @Test
+    public void integerBucketsAreAtLeastOneWide() {
+        EquiWidthHistogram equiWidth = new EquiWidthHistogram(BUCKETS, 0);
+        for (int value = 0; value < 10; value++) {
+            equiWidth.add(value, value + 1);
+        }
+        Histogram histogram = equiWidth.getHistogram(value -> value);
+        assertEquals(11, histogram.getBounds().size());
+        assertArrayEquals(new long[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, histogram.getCounts());
+    }
+
+    @Test
+    public void mergedHistogramsAreTheHistogramOfAllTheRows() {
+        Random random = new Random(2);
+        EquiWidthHistogram whole = new EquiWidthHistogram(BUCKETS, Integer.MIN_VALUE);
+        EquiWidthHistogram[] parts = new EquiWidthHistogram[8];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = new EquiWidthHistogram(BUCKETS, Integer.MIN_VALUE);
+        }
+        for (int i = 0; i < ROWS; i++) {
+            // every part has its own range, a few parts only hold a single value
+            int part = random.nextInt(parts.length);
+            double value = part < 2 ? part * 1000 : random.nextDouble() * Math.pow(10, part);
+            whole.add(value, 1);
+            parts[part].add(value, 1);
+        }
+        for (int i = 1; i < parts.length; i++) {
+            parts[0].merge(parts[i]);
+        }
+        Histogram expected = whole.getHistogram(value -> value);
+        Histogram merged = parts[0].getHistogram(value -> value);
+        assertEquals(expected.getBounds(), merged.getBounds());
+        assertArrayEquals(expected.getCounts(), merged.getCounts());
+        assertEquals(ROWS, Arrays.stream(merged.getCounts()).sum());
+    }
+
+    @Test
+    public void equiDepthBucketsHoldTheSameRows() {
+        QuantileSketch sketch = new QuantileSketch(QuantileSketch.DEFAULT_SIZE);
+        for (int value = 0; value < ROWS; value++) {
+            sketch.add(value);
+        }
+        Histogram histogram = sketch.getEquiDepthHistogram(BUCKETS, value -> value);
+        assertEquals(BUCKETS + 1, histogram.getBounds().size());
+        for (int i = 0; i < BUCKETS; i++) {
+            assertEquals(ROWS / BUCKETS, histogram.getCounts()[i]);
+            // the bound splitting the rows is within the rank error of the sketch
+            assertEquals((double) i * ROWS / BUCKETS, (Double) histogram.getBounds().get(i), ROWS * 0.02);
+        }
+        assertEquals((double) ROWS - 1, (Double) histogram.getBounds().get(BUCKETS), 0);
+    }
+
+    private static long[] count(List<Object> bounds, double[] values) {
+        long[] counts = new long[bounds.size() - 1];
+        for (double value : values) {
+            int bucket = 0;
+            while (bucket < counts.length - 1 && value >= (Double) bounds.get(bucket + 1)) {
+                bucket++;
+            }
+            counts[bucket]++;
+        }
+        return counts;
+    }
+}
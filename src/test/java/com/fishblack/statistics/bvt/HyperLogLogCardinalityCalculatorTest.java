@@ -0,0 +1,99 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.statistics.cardinality.HyperLogLogCardinalityCalculator;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HyperLogLogCardinalityCalculatorTest {
+
+    private static final long[] COUNTS = {0, 1, 10, 100, 1000, 10000, 100000, 1000000};
+
+    @Test
+    public void estimatesAreWithinTheErrorBounds() {
+        for (int precision : new int[]{10, HyperLogLogCardinalityCalculator.DEFAULT_PRECISION}) {
+            for (long count : COUNTS) {
+                HyperLogLogCardinalityCalculator longs = new HyperLogLogCardinalityCalculator("integer", precision);
+                HyperLogLogCardinalityCalculator strings = new HyperLogLogCardinalityCalculator("string", precision);
+                for (long i = 0; i < count; i++) {
+                    longs.addLong(i * 7919);
+                    // every value twice, duplicates do not change the estimate
+                    strings.add("id-" + i);
+                    strings.add("id-" + i);
+                }
+                assertEstimate(count, longs);
+                assertEstimate(count, strings);
+            }
+        }
+    }
+
+    @Test
+    public void mergeGivesTheSketchOfTheUnion() {
+        HyperLogLogCardinalityCalculator all = new HyperLogLogCardinalityCalculator("integer");
+        HyperLogLogCardinalityCalculator first = new HyperLogLogCardinalityCalculator("integer");
+        HyperLogLogCardinalityCalculator second = new HyperLogLogCardinalityCalculator("integer");
+        for (long i = 0; i < 200000; i++) {
+            all.addLong(i);
+            // the halves overlap
+            if (i < 120000) {
+                first.addLong(i);
+            }
+            if (i >= 80000) {
+                second.addLong(i);
+            }
+        }
+        first.merge(second);
+        assertArrayEquals(all.toBytes(), first.toBytes());
+        assertEquals(all.count(), first.count());
+        assertEstimate(200000, first);
+    }
+
+    @Test
+    public void serializedSketchesReadBackTheSameCount() throws IOException {
+        HyperLogLogCardinalityCalculator sketch = new HyperLogLogCardinalityCalculator("string", 12);
+        for (int i = 0; i < 50000; i++) {
+            sketch.add("value " + i);
+        }
+        HyperLogLogCardinalityCalculator copy = HyperLogLogCardinalityCalculator.fromBytes("string", sketch.toBytes());
+        assertEquals(12, copy.getPrecision());
+        assertEquals(sketch.count(), copy.count());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeState(new DataOutputStream(bytes));
+        HyperLogLogCardinalityCalculator state = new HyperLogLogCardinalityCalculator("string", 12);
+        state.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(sketch.count(), state.count());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sketchesOfAnotherPrecisionAreNotMerged() {
+        new HyperLogLogCardinalityCalculator("integer", 12).merge(new HyperLogLogCardinalityCalculator("integer", 14));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void precisionIsBounded() {
+        new HyperLogLogCardinalityCalculator("integer", HyperLogLogCardinalityCalculator.MAX_PRECISION + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void corruptSketchesAreRejected() {
+        byte[] bytes = new HyperLogLogCardinalityCalculator("integer", 10).toBytes();
+        HyperLogLogCardinalityCalculator.fromBytes("integer", Arrays.copyOf(bytes, bytes.length - 1));
+    }
+
+    // 4 standard errors, and a value off for the small counts
+    private static void assertEstimate(long count, HyperLogLogCardinalityCalculator sketch) {
+        double bound = 4 * sketch.getStandardError() * count + 1;
+        assertTrue("Estimate " + sketch.count() + " of " + count + " distinct values at precision " + sketch.getPrecision(),
+                Math.abs(sketch.count() - count) <= bound);
+    }
+}
@@ -0,0 +1,122 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.fastparquet.common.TempFile;
+import com.fishblack.statistics.Calculator;
+import com.fishblack.statistics.ColumnStats;
+import com.fishblack.statistics.DataInsights;
+import com.fishblack.statistics.MemoryBudget;
+import com.fishblack.statistics.cardinality.FileCardinalityCalculator;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryBudgetTest {
+
+    private static final int ROWS = 100000;
+    private static final long LIMIT = 512 * 1024;
+    private static final String[] DISTINCT_COLUMNS = {"s", "i", "dt", "ts"};
+
+    private final File directory;
+
+    public MemoryBudgetTest() throws IOException {
+        directory = Files.createTempDirectory("memory-budget").toFile();
+    }
+
+    @After
+    public void deleteFiles() {
+        TestParquetFiles.delete(directory);
+    }
+
+    @Test
+    public void spillKeepsTheExactCounts() throws IOException {
+        File file = TestParquetFiles.write(directory, ROWS, 1, ROWS);
+        DataInsights expected = profile(file, null);
+        MemoryBudget budget = new MemoryBudget(LIMIT, MemoryBudget.Policy.SPILL);
+        DataInsights actual = profile(file, budget);
+        TestParquetFiles.assertSameStatistics(expected, actual);
+        assertTrue(budget.getDeniedCount() > 0);
+        assertEquals(0, budget.getWaitCount());
+        assertEquals(0, budget.getReservedBytes());
+        // past the limit each column spills from the smallest run buffers
+        long columns = actual.getColumnCount();
+        assertTrue(budget.getPeakReservedBytes() + " bytes reserved",
+                budget.getPeakReservedBytes() <= LIMIT + columns * 3 * FileCardinalityCalculator.MIN_RUN_MEMORY);
+    }
+
+    @Test
+    public void approximateEstimatesTheCounts() throws IOException {
+        File file = TestParquetFiles.write(directory, ROWS, 2, ROWS);
+        DataInsights expected = profile(file, null);
+        MemoryBudget budget = new MemoryBudget(LIMIT, MemoryBudget.Policy.APPROXIMATE);
+        DataInsights actual = profile(file, budget);
+        assertEstimated(expected, actual);
+        assertTrue(budget.getDeniedCount() > 0);
+        assertEquals(0, budget.getWaitCount());
+        assertEquals(0, budget.getReservedBytes());
+    }
+
+    @Test
+    public void blockDoesNotWaitForTheMemoryOfItsOwnJob() throws IOException {
+        File file = TestParquetFiles.write(directory, ROWS, 3, ROWS);
+        DataInsights expected = profile(file, null);
+        MemoryBudget budget = new MemoryBudget(LIMIT, MemoryBudget.Policy.BLOCK);
+        budget.setBlockTimeoutMillis(60000);
+        long start = System.nanoTime();
+        DataInsights actual = profile(file, budget);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        assertTrue(elapsedMillis + " ms", elapsedMillis < 30000);
+        assertEstimated(expected, actual);
+        assertTrue(budget.getDeniedCount() > 0);
+        assertEquals(0, budget.getWaitCount());
+        assertEquals(0, budget.getReservedBytes());
+    }
+
+    @Test
+    public void blockWaitsForTheMemoryOfOtherJobs() throws IOException {
+        File file = TestParquetFiles.write(directory, ROWS, 4, ROWS);
+        DataInsights expected = profile(file, null);
+        MemoryBudget budget = new MemoryBudget(LIMIT, MemoryBudget.Policy.BLOCK);
+        budget.setBlockTimeoutMillis(50);
+        // held by another job for longer than the block timeout
+        budget.reserveUnchecked(LIMIT);
+        DataInsights actual = profile(file, budget);
+        assertEstimated(expected, actual);
+        assertTrue(budget.getWaitCount() > 0);
+        assertEquals(budget.getWaitCount(), budget.getDeniedCount());
+        budget.release(LIMIT);
+        assertEquals(0, budget.getReservedBytes());
+    }
+
+    private static DataInsights profile(File file, MemoryBudget budget) throws IOException {
+        Calculator calculator = new Calculator();
+        calculator.setMemoryBudget(budget);
+        return calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+    }
+
+    private static void assertEstimated(DataInsights expected, DataInsights actual) {
+        for (String column : DISTINCT_COLUMNS) {
+            ColumnStats expectedStats = find(expected, column);
+            ColumnStats actualStats = find(actual, column);
+            assertFalse(column, expectedStats.isCardinalityEstimated());
+            assertTrue(column, actualStats.isCardinalityEstimated());
+            assertEquals(column, expectedStats.getCardinality(), actualStats.getCardinality(), expectedStats.getCardinality() * 0.05);
+            assertEquals(column, expectedStats.getNullValueCount(), actualStats.getNullValueCount());
+        }
+    }
+
+    private static ColumnStats find(DataInsights dataInsights, String column) {
+        for (ColumnStats columnStats : dataInsights.getColumnStats()) {
+            if (column.equals(columnStats.getFieldName())) {
+                return columnStats;
+            }
+        }
+        throw new AssertionError("No column " + column);
+    }
+}
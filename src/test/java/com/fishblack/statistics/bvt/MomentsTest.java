@@ -0,0 +1,136 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.statistics.accumulator.Moments;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MomentsTest {
+
+    private static final int ROWS = 200000;
+
+    @Test
+    public void sequentialPassMatchesTheTwoPassMoments() {
+        // a large offset, where the raw power sums lose every digit of the variance
+        double[] values = values(new Random(1), 1e9);
+        Moments moments = new Moments();
+        for (double value : values) {
+            moments.add(value);
+        }
+        double mean = 0;
+        for (double value : values) {
+            mean += value;
+        }
+        mean /= values.length;
+        double m2 = 0;
+        double m3 = 0;
+        double m4 = 0;
+        for (double value : values) {
+            double deviation = value - mean;
+            m2 += deviation * deviation;
+            m3 += deviation * deviation * deviation;
+            m4 += deviation * deviation * deviation * deviation;
+        }
+        assertEquals(ROWS, moments.getCount());
+        assertClose(mean, moments.getMean(), 1e-12);
+        assertClose(m2 / (ROWS - 1), moments.getVariance(), 1e-6);
+        assertClose(Math.sqrt(ROWS) * m3 / Math.pow(m2, 1.5), moments.getSkewness(), 1e-6);
+        assertClose(ROWS * m4 / (m2 * m2) - 3, moments.getKurtosis(), 1e-6);
+    }
+
+    @Test
+    public void mergedPartialsMatchTheSequentialPass() {
+        Random random = new Random(2);
+        for (double offset : new double[]{0, 1e9}) {
+            double[] values = values(random, offset);
+            Moments sequential = new Moments();
+            Moments[] partials = new Moments[7];
+            for (int i = 0; i < partials.length; i++) {
+                partials[i] = new Moments();
+            }
+            for (double value : values) {
+                sequential.add(value);
+                partials[random.nextInt(partials.length)].add(value);
+            }
+            // merged in a tree, like the partials of a parallel scan
+            for (int step = 1; step < partials.length; step *= 2) {
+                for (int i = 0; i + step < partials.length; i += 2 * step) {
+                    partials[i].merge(partials[i + step]);
+                }
+            }
+            // past the offset the values only have about 7 significant digits
+            assertSameMoments(sequential, partials[0], offset == 0 ? 1e-9 : 1e-6);
+        }
+    }
+
+    @Test
+    public void valuesOfSeveralRowsAreWeighted() {
+        Moments weighted = new Moments();
+        Moments repeated = new Moments();
+        Random random = new Random(3);
+        for (int i = 0; i < 10000; i++) {
+            double value = random.nextGaussian();
+            int rows = 1 + random.nextInt(5);
+            weighted.add(value, rows);
+            for (int row = 0; row < rows; row++) {
+                repeated.add(value);
+            }
+        }
+        assertSameMoments(repeated, weighted, 1e-9);
+    }
+
+    @Test
+    public void savedMomentsReadBackTheSameValues() throws IOException {
+        Moments moments = new Moments();
+        for (double value : values(new Random(4), 0)) {
+            moments.add(value);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        moments.writeTo(new DataOutputStream(bytes));
+        Moments copy = new Moments();
+        copy.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(moments.getCount(), copy.getCount());
+        assertEquals(moments.getVariance(), copy.getVariance(), 0);
+        assertEquals(moments.getSkewness(), copy.getSkewness(), 0);
+        assertEquals(moments.getKurtosis(), copy.getKurtosis(), 0);
+    }
+
+    @Test
+    public void equalValuesHaveNoShape() {
+        Moments moments = new Moments();
+        moments.add(4);
+        moments.add(4, 5);
+        assertEquals(0, moments.getVariance(), 0);
+        assertTrue(Double.isNaN(moments.getSkewness()));
+        assertTrue(Double.isNaN(moments.getKurtosis()));
+    }
+
+    // skewed values, a log-normal distribution
+    private static double[] values(Random random, double offset) {
+        double[] values = new double[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            values[i] = offset + Math.exp(random.nextGaussian());
+        }
+        return values;
+    }
+
+    private static void assertSameMoments(Moments expected, Moments actual, double relativeError) {
+        assertEquals(expected.getCount(), actual.getCount());
+        assertClose(expected.getMean(), actual.getMean(), 1e-12);
+        assertClose(expected.getVariance(), actual.getVariance(), relativeError);
+        assertClose(expected.getSkewness(), actual.getSkewness(), relativeError);
+        assertClose(expected.getKurtosis(), actual.getKurtosis(), relativeError);
+    }
+
+    private static void assertClose(double expected, double actual, double relativeError) {
+        assertEquals(expected, actual, relativeError * Math.max(1, Math.abs(expected)));
+    }
+}
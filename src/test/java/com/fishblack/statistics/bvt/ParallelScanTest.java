@@ -0,0 +1,61 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.fastparquet.common.TempFile;
+import com.fishblack.statistics.Calculator;
+import com.fishblack.statistics.DataInsights;
+import com.fishblack.statistics.ScanMode;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ParallelScanTest {
+
+    private final File directory;
+
+    public ParallelScanTest() throws IOException {
+        directory = Files.createTempDirectory("parallel-scan").toFile();
+    }
+
+    @After
+    public void deleteFiles() {
+        TestParquetFiles.delete(directory);
+    }
+
+    @Test
+    public void parallelScanGivesTheSinglePassStatistics() throws IOException {
+        for (int cardinality : new int[]{10, 1000, 100000}) {
+            File file = TestParquetFiles.write(directory, 30000, cardinality, cardinality);
+            Calculator calculator = new Calculator();
+            calculator.setScanMode(ScanMode.SINGLE_PASS);
+            DataInsights singlePass = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+            calculator.setScanMode(ScanMode.PARALLEL);
+            DataInsights parallel = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+            TestParquetFiles.assertSameStatistics(singlePass, parallel);
+        }
+    }
+
+    @Test
+    public void parallelScanOnSmallExecutors() throws IOException {
+        File file = TestParquetFiles.write(directory, 30000, 7, 500);
+        Calculator calculator = new Calculator();
+        calculator.setScanMode(ScanMode.SINGLE_PASS);
+        DataInsights singlePass = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+        calculator.setScanMode(ScanMode.PARALLEL);
+        for (int threads : new int[]{1, 3}) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                calculator.setExecutorService(executor);
+                DataInsights parallel = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+                TestParquetFiles.assertSameStatistics(singlePass, parallel);
+            }
+            finally {
+                executor.shutdown();
+            }
+        }
+    }
+}
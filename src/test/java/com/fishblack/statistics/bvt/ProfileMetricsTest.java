@@ -0,0 +1,96 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.fastparquet.common.TempFile;
+import com.fishblack.statistics.Calculator;
+import com.fishblack.statistics.ColumnMetrics;
+import com.fishblack.statistics.DataInsights;
+import com.fishblack.statistics.ProfileMetrics;
+import com.fishblack.statistics.ProfileMetricsCollector;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProfileMetricsTest {
+
+    private final File directory;
+
+    public ProfileMetricsTest() throws IOException {
+        directory = Files.createTempDirectory("profile-metrics").toFile();
+    }
+
+    @After
+    public void deleteFiles() {
+        TestParquetFiles.delete(directory);
+    }
+
+    @Test
+    public void collectorPublishesTheMetricsOfTheJobs() throws Exception {
+        File file = TestParquetFiles.write(directory, 20000, 1, 300);
+        ProfileMetricsCollector collector = new ProfileMetricsCollector();
+        collector.register("ProfileMetricsTest");
+        try {
+            Calculator calculator = new Calculator();
+            calculator.setProfileListener(collector);
+            calculator.setMetricsIncluded(true);
+            DataInsights first = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+            DataInsights second = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+
+            ProfileMetrics metrics = first.getMetrics();
+            assertNotNull(metrics);
+            assertEquals(20000, metrics.getRowCount());
+            assertEquals(TestParquetFiles.fields().size(), metrics.getColumnMetrics().size());
+            for (ColumnMetrics columnMetrics : metrics.getColumnMetrics()) {
+                assertEquals(columnMetrics.getFieldName(), 20000, columnMetrics.getRowCount());
+                assertTrue(columnMetrics.getFieldName(), columnMetrics.getByteCount() > 0);
+            }
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(ProfileMetricsCollector.DOMAIN + ":type=ProfileMetrics,name="
+                    + ObjectName.quote("ProfileMetricsTest"));
+            assertEquals(2L, server.getAttribute(name, "JobCount"));
+            assertEquals(40000L, server.getAttribute(name, "RowCount"));
+            assertEquals(metrics.getByteCount() + second.getMetrics().getByteCount(), server.getAttribute(name, "ByteCount"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "JobCount"));
+        }
+        finally {
+            collector.unregister();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(ProfileMetricsCollector.DOMAIN
+                + ":type=ProfileMetrics,name=" + ObjectName.quote("ProfileMetricsTest"))));
+    }
+
+    @Test
+    public void metricsWithoutColumnsAreReadBack() throws IOException {
+        ProfileMetrics metrics = new ProfileMetrics();
+        metrics.setRowCount(10);
+        metrics.setWallNanos(1000);
+        metrics.setColumnMetrics(null);
+        DataInsights dataInsights = new DataInsights();
+        dataInsights.setRowCount(10);
+        dataInsights.setMetrics(metrics);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        dataInsights.writeBinary(bytes);
+        ProfileMetrics read = DataInsights.readBinary(new ByteArrayInputStream(bytes.toByteArray())).getMetrics();
+        assertNull(read.getColumnMetrics());
+        assertEquals(0, read.getByteCount());
+        assertEquals(0, read.getBytesPerSecond(), 0);
+        ProfileMetricsCollector collector = new ProfileMetricsCollector();
+        collector.profiled(read);
+        assertEquals(10, collector.getRowCount());
+    }
+}
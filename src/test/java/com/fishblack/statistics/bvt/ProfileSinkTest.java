@@ -0,0 +1,93 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.fastparquet.common.TempFile;
+import com.fishblack.statistics.Calculator;
+import com.fishblack.statistics.DataInsights;
+import com.fishblack.statistics.ProfileSink;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertTrue;
+
+public class ProfileSinkTest {
+
+    private static final int ROWS = 50000;
+    private static final int CARDINALITY = 5000;
+    private static final int BATCH_SIZE = 250;
+    private static final int PRODUCERS = 4;
+
+    private final File directory;
+
+    public ProfileSinkTest() throws IOException {
+        directory = Files.createTempDirectory("profile-sink").toFile();
+    }
+
+    @After
+    public void deleteFiles() {
+        TestParquetFiles.delete(directory);
+    }
+
+    @Test
+    public void singleProducerGivesTheFileStatistics() throws IOException {
+        List<GenericRecord> records = TestParquetFiles.records(ROWS, 1, CARDINALITY);
+        DataInsights expected = profileFile(records);
+        try (ProfileSink sink = new Calculator().newProfileSink(TestParquetFiles.fields())) {
+            for (int start = 0; start < records.size(); start += BATCH_SIZE) {
+                sink.addRecords(records.subList(start, Math.min(records.size(), start + BATCH_SIZE)));
+            }
+            TestParquetFiles.assertSameStatistics(expected, sink.finish());
+        }
+    }
+
+    @Test
+    public void concurrentProducersGiveTheFileStatistics() throws Exception {
+        List<GenericRecord> records = TestParquetFiles.records(ROWS, 2, CARDINALITY);
+        DataInsights expected = profileFile(records);
+        ExecutorService executor = Executors.newFixedThreadPool(PRODUCERS);
+        try {
+            for (int stripes : new int[]{1, 2, PRODUCERS}) {
+                try (ProfileSink sink = new Calculator().newProfileSink(TestParquetFiles.fields(), stripes)) {
+                    AtomicInteger next = new AtomicInteger();
+                    List<Future<Integer>> producers = new ArrayList<>();
+                    for (int p = 0; p < PRODUCERS; p++) {
+                        producers.add(executor.submit((Callable<Integer>) () -> {
+                            int batches = 0;
+                            for (int start = next.getAndAdd(BATCH_SIZE); start < records.size(); start = next.getAndAdd(BATCH_SIZE)) {
+                                sink.addRecords(records.subList(start, Math.min(records.size(), start + BATCH_SIZE)));
+                                batches++;
+                            }
+                            return batches;
+                        }));
+                    }
+                    int batches = 0;
+                    for (Future<Integer> producer : producers) {
+                        batches += producer.get();
+                    }
+                    assertTrue(batches * BATCH_SIZE >= ROWS);
+                    TestParquetFiles.assertSameStatistics(expected, sink.finish());
+                }
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private DataInsights profileFile(List<GenericRecord> records) throws IOException {
+        File file = new File(directory, "rows.parquet");
+        TestParquetFiles.write(file, records);
+        return new Calculator().getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+    }
+}
@@ -0,0 +1,130 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.fastparquet.common.TempFile;
+import com.fishblack.statistics.Calculator;
+import com.fishblack.statistics.ColumnMetrics;
+import com.fishblack.statistics.ColumnStats;
+import com.fishblack.statistics.DataInsights;
+import com.fishblack.statistics.ProfileSpec;
+import com.fishblack.statistics.ProfileSpec.Statistic;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProfileSpecTest {
+
+    private final File directory;
+
+    public ProfileSpecTest() throws IOException {
+        directory = Files.createTempDirectory("profile-spec").toFile();
+    }
+
+    @After
+    public void deleteFiles() {
+        TestParquetFiles.delete(directory);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void allStatisticsCannotBeChanged() {
+        ProfileSpec.ALL.getStatistics().remove(Statistic.DISTINCT);
+    }
+
+    @Test
+    public void onlyTheSelectedColumnsAndStatisticsAreReported() throws IOException {
+        File file = TestParquetFiles.write(directory, 20000, 1, 300);
+        Calculator calculator = new Calculator();
+        DataInsights all = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+        calculator.setProfileSpec(ProfileSpec.of(Statistic.NULLS, Statistic.SUM_MEAN, Statistic.HISTOGRAMS).withColumns("i", "d"));
+        calculator.setMetricsIncluded(true);
+        DataInsights selected = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+        assertEquals(all.getRowCount(), selected.getRowCount());
+        assertEquals(2, selected.getColumnCount());
+        assertEquals(Arrays.asList("d", "i"), Arrays.asList(selected.getColumnStats().get(0).getFieldName(),
+                selected.getColumnStats().get(1).getFieldName()));
+        for (ColumnStats actual : selected.getColumnStats()) {
+            String column = actual.getFieldName();
+            ColumnStats expected = find(all, column);
+            assertEquals(column, expected.getNullValueCount(), actual.getNullValueCount());
+            TestParquetFiles.assertClose(column, expected.getMean(), actual.getMean());
+            TestParquetFiles.assertClose(column, expected.getSum(), actual.getSum());
+            assertEquals(column, 0, actual.getCardinality());
+            assertNull(column, actual.getMin());
+            assertNull(column, actual.getMax());
+            assertNull(column, actual.getVariance());
+            assertNull(column, actual.getPercentiles());
+            assertNull(column, actual.getTopValues());
+            assertNotNull(column, actual.getHistogram());
+            // the equi-depth histogram keeps the quantile sketch without the percentiles
+            assertNotNull(column, actual.getEquiDepthHistogram());
+        }
+        // no distinct count was accumulated
+        assertEquals(2, selected.getMetrics().getColumnMetrics().size());
+        for (ColumnMetrics columnMetrics : selected.getMetrics().getColumnMetrics()) {
+            assertEquals(columnMetrics.getFieldName(), 0, columnMetrics.getPeakCardinalityMemory());
+        }
+    }
+
+    @Test
+    public void distinctCountsAloneAreTheDistinctCountsOfAllTheStatistics() throws IOException {
+        File file = TestParquetFiles.write(directory, 20000, 2, 5000);
+        Calculator calculator = new Calculator();
+        DataInsights all = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+        calculator.setProfileSpec(ProfileSpec.of(Statistic.DISTINCT));
+        calculator.setMetricsIncluded(true);
+        DataInsights distinct = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+        for (ColumnStats actual : distinct.getColumnStats()) {
+            String column = actual.getFieldName();
+            ColumnStats expected = find(all, column);
+            assertEquals(column, expected.getCardinality(), actual.getCardinality());
+            assertEquals(column, expected.isCardinalityEstimated(), actual.isCardinalityEstimated());
+            assertEquals(column, 0, actual.getNullValueCount());
+            assertNull(column, actual.getMean());
+            assertNull(column, actual.getHistogram());
+            assertNull(column, actual.getEquiDepthHistogram());
+        }
+        for (ColumnMetrics columnMetrics : distinct.getMetrics().getColumnMetrics()) {
+            assertTrue(columnMetrics.getFieldName(), columnMetrics.getPeakCardinalityMemory() > 0);
+        }
+    }
+
+    @Test
+    public void nullsAndMinMaxAreAnsweredByTheFooter() throws IOException {
+        File file = TestParquetFiles.write(directory, 20000, 3, 300);
+        Calculator calculator = new Calculator();
+        DataInsights all = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+        ProfileSpec spec = ProfileSpec.of(Statistic.NULLS, Statistic.MIN_MAX);
+        assertTrue(spec.isAnsweredByFooter());
+        assertFalse(ProfileSpec.ALL.isAnsweredByFooter());
+        calculator.setProfileSpec(spec);
+        calculator.setMetricsIncluded(true);
+        DataInsights footer = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+        // no column was scanned
+        assertTrue(footer.getMetrics().getColumnMetrics().isEmpty());
+        for (ColumnStats actual : footer.getColumnStats()) {
+            String column = actual.getFieldName();
+            ColumnStats expected = find(all, column);
+            assertEquals(column, expected.getNullValueCount(), actual.getNullValueCount());
+            assertEquals(column, expected.getMin(), actual.getMin());
+            assertEquals(column, expected.getMax(), actual.getMax());
+        }
+    }
+
+    private static ColumnStats find(DataInsights dataInsights, String column) {
+        for (ColumnStats columnStats : dataInsights.getColumnStats()) {
+            if (column.equals(columnStats.getFieldName())) {
+                return columnStats;
+            }
+        }
+        throw new AssertionError("No column " + column);
+    }
+}
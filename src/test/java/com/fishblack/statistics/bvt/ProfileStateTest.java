@@ -0,0 +1,94 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.fastparquet.common.TempFile;
+import com.fishblack.statistics.Calculator;
+import com.fishblack.statistics.DataInsights;
+import com.fishblack.statistics.ProfileState;
+import com.fishblack.statistics.accumulator.AccumulatorOptions;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProfileStateTest {
+
+    private final File directory;
+
+    public ProfileStateTest() throws IOException {
+        directory = Files.createTempDirectory("profile-state").toFile();
+    }
+
+    @After
+    public void deleteFiles() {
+        TestParquetFiles.delete(directory);
+    }
+
+    @Test
+    public void loadedStateGivesTheStatisticsOfTheScan() throws IOException {
+        File file = TestParquetFiles.write(directory, 20000, 1, 300);
+        Calculator calculator = new Calculator();
+        DataInsights scan = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+        ProfileState state = calculator.getProfileStateFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+        ProfileState loaded = ProfileState.load(new ByteArrayInputStream(save(state)), CardinalityCalculatorFactory.ADAPTIVE);
+        assertEquals(20000, loaded.getRowCount());
+        assertEquals(scan.toJSON(), loaded.toDataInsights().toJSON());
+    }
+
+    @Test
+    public void mergedStatesGiveTheStatisticsOfTheDataset() throws IOException {
+        for (int cardinality : new int[]{300, 200000}) {
+            TempFile first = new TempFile(TestParquetFiles.write(directory, 15000, 1, cardinality).getPath());
+            TempFile second = new TempFile(TestParquetFiles.write(directory, 12000, 2, cardinality).getPath());
+            Calculator calculator = new Calculator();
+            DataInsights dataset = calculator.getDataInsightsFromParquetFiles(Arrays.asList(first, second), TestParquetFiles.fields());
+            ProfileState state = ProfileState.load(new ByteArrayInputStream(save(
+                    calculator.getProfileStateFromParquetFile(first, TestParquetFiles.fields()))), CardinalityCalculatorFactory.ADAPTIVE);
+            state.merge(ProfileState.load(new ByteArrayInputStream(save(
+                    calculator.getProfileStateFromParquetFile(second, TestParquetFiles.fields()))), CardinalityCalculatorFactory.ADAPTIVE));
+            assertEquals(27000, state.getRowCount());
+            TestParquetFiles.assertSameStatistics(dataset, state.toDataInsights());
+        }
+    }
+
+    @Test
+    public void stateKeepsItsFactoryAndOptions() throws IOException {
+        File file = TestParquetFiles.write(directory, 20000, 3, 5000);
+        Calculator calculator = new Calculator();
+        calculator.setCardinalityCalculatorFactory(CardinalityCalculatorFactory.hyperLogLog(10));
+        calculator.setAccumulatorOptions(AccumulatorOptions.DEFAULT.withQuantileSketchSize(64).withTopValues(3, 50)
+                .withHistogramBuckets(7));
+        DataInsights scan = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+        byte[] saved = save(calculator.getProfileStateFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields()));
+        ProfileState loaded = ProfileState.load(new ByteArrayInputStream(saved), CardinalityCalculatorFactory.hyperLogLog(10));
+        assertEquals(scan.toJSON(), loaded.toDataInsights().toJSON());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void stateIsNotLoadedWithAnotherFactory() throws IOException {
+        File file = TestParquetFiles.write(directory, 1000, 4, 100);
+        Calculator calculator = new Calculator();
+        calculator.setCardinalityCalculatorFactory(CardinalityCalculatorFactory.hyperLogLog(10));
+        byte[] saved = save(calculator.getProfileStateFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields()));
+        ProfileState.load(new ByteArrayInputStream(saved), CardinalityCalculatorFactory.HYPER_LOG_LOG);
+    }
+
+    @Test(expected = IOException.class)
+    public void otherStreamsAreRejected() throws IOException {
+        ProfileState.load(new ByteArrayInputStream(new byte[16]), CardinalityCalculatorFactory.ADAPTIVE);
+    }
+
+    private static byte[] save(ProfileState state) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        state.save(bytes);
+        state.release();
+        return bytes.toByteArray();
+    }
+}
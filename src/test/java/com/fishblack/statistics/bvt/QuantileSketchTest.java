@@ -0,0 +1,139 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.statistics.accumulator.QuantileSketch;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QuantileSketchTest {
+
+    private static final double[] FRACTIONS = {0.01, 0.05, 0.25, 0.5, 0.75, 0.95, 0.99};
+    // the rank error at the default size with 99% confidence
+    private static final double RANK_ERROR = 0.017;
+    private static final int ROWS = 1000000;
+
+    @Test
+    public void smallColumnsAreExact() {
+        QuantileSketch sketch = new QuantileSketch(QuantileSketch.DEFAULT_SIZE);
+        for (int i = 100; i > 0; i--) {
+            sketch.add(i);
+        }
+        assertArrayEquals(new double[]{1, 5, 25, 50, 75, 95, 99}, sketch.getQuantiles(FRACTIONS), 0);
+    }
+
+    @Test
+    public void rankErrorIsBounded() {
+        int[][] orders = {ascending(), descending(), shuffled(new Random(1))};
+        for (int[] order : orders) {
+            QuantileSketch sketch = new QuantileSketch(QuantileSketch.DEFAULT_SIZE);
+            for (int value : order) {
+                sketch.add(value);
+            }
+            assertEquals(ROWS, sketch.getCount());
+            assertRankError(sketch);
+        }
+    }
+
+    @Test
+    public void mergedSketchesKeepTheRankError() {
+        QuantileSketch[] sketches = new QuantileSketch[8];
+        for (int i = 0; i < sketches.length; i++) {
+            sketches[i] = new QuantileSketch(QuantileSketch.DEFAULT_SIZE);
+        }
+        Random random = new Random(2);
+        for (int value : shuffled(random)) {
+            sketches[random.nextInt(sketches.length)].add(value);
+        }
+        for (int i = 1; i < sketches.length; i++) {
+            sketches[0].merge(sketches[i]);
+        }
+        assertEquals(ROWS, sketches[0].getCount());
+        assertRankError(sketches[0]);
+    }
+
+    @Test
+    public void valuesOfSeveralRowsAreWeighted() {
+        QuantileSketch sketch = new QuantileSketch(QuantileSketch.DEFAULT_SIZE);
+        // value v held by 1000 rows, the same ranks as the values 1000 v to 1000 v + 999
+        for (int value = 0; value < ROWS / 1000; value++) {
+            sketch.add(value * 1000, 1000);
+        }
+        assertEquals(ROWS, sketch.getCount());
+        double[] quantiles = sketch.getQuantiles(FRACTIONS);
+        for (int i = 0; i < FRACTIONS.length; i++) {
+            assertTrue(FRACTIONS[i] + ": " + quantiles[i], Math.abs(quantiles[i] / ROWS - FRACTIONS[i]) <= RANK_ERROR);
+        }
+    }
+
+    @Test
+    public void savedSketchesGiveTheSameQuantiles() throws IOException {
+        QuantileSketch sketch = new QuantileSketch(64);
+        for (int value : shuffled(new Random(3))) {
+            sketch.add(value);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+        QuantileSketch copy = new QuantileSketch(QuantileSketch.DEFAULT_SIZE);
+        copy.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(sketch.getCount(), copy.getCount());
+        assertArrayEquals(sketch.getQuantiles(FRACTIONS), copy.getQuantiles(FRACTIONS), 0);
+    }
+
+    @Test
+    public void emptySketchHasNoQuantiles() {
+        double[] quantiles = new QuantileSketch(QuantileSketch.DEFAULT_SIZE).getQuantiles(FRACTIONS);
+        for (double quantile : quantiles) {
+            assertTrue(Double.isNaN(quantile));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sizeIsBounded() {
+        new QuantileSketch(QuantileSketch.MIN_SIZE - 1);
+    }
+
+    // the values are 0 to ROWS - 1, value v has the rank v + 1
+    private static void assertRankError(QuantileSketch sketch) {
+        double[] quantiles = sketch.getQuantiles(FRACTIONS);
+        for (int i = 0; i < FRACTIONS.length; i++) {
+            double rank = (quantiles[i] + 1) / ROWS;
+            assertTrue(FRACTIONS[i] + ": rank " + rank, Math.abs(rank - FRACTIONS[i]) <= RANK_ERROR);
+        }
+    }
+
+    private static int[] ascending() {
+        int[] values = new int[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            values[i] = i;
+        }
+        return values;
+    }
+
+    private static int[] descending() {
+        int[] values = new int[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            values[i] = ROWS - 1 - i;
+        }
+        return values;
+    }
+
+    private static int[] shuffled(Random random) {
+        int[] values = ascending();
+        for (int i = ROWS - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+        return values;
+    }
+}
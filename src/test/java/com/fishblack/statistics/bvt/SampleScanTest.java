@@ -0,0 +1,64 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.fastparquet.common.TempFile;
+import com.fishblack.statistics.Calculator;
+import com.fishblack.statistics.ColumnStats;
+import com.fishblack.statistics.DataInsights;
+import com.fishblack.statistics.SampleSpec;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class SampleScanTest {
+
+    private final File directory;
+
+    public SampleScanTest() throws IOException {
+        directory = Files.createTempDirectory("sample-scan").toFile();
+    }
+
+    @After
+    public void deleteFiles() {
+        TestParquetFiles.delete(directory);
+    }
+
+    /**
+     * Every value of a low cardinality column is in the sample, the rows of a dictionary page are repeats of the
+     * same few values and must not be extrapolated to more distinct values than a plain page.
+     */
+    @Test
+    public void sampledDictionaryColumnsCountTheirDistinctValues() throws IOException {
+        for (boolean dictionary : new boolean[]{true, false}) {
+            File file = TestParquetFiles.write(directory, 50000, 10, 10, dictionary);
+            Calculator calculator = new Calculator();
+            DataInsights full = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+            calculator.setSampleSpec(SampleSpec.fraction(0.3).withSeed(7));
+            DataInsights sample = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+            assertEquals(full.getRowCount(), sample.getRowCount());
+            assertNotNull(sample.getSampleRowCount());
+            assertTrue(sample.getSampleRowCount() < full.getRowCount());
+            for (String column : new String[]{"s", "i", "dt", "ts"}) {
+                ColumnStats expected = find(full, column);
+                ColumnStats actual = find(sample, column);
+                assertEquals(column, 10, expected.getCardinality());
+                assertEquals(column, expected.getCardinality(), actual.getCardinality());
+            }
+        }
+    }
+
+    private static ColumnStats find(DataInsights dataInsights, String column) {
+        for (ColumnStats columnStats : dataInsights.getColumnStats()) {
+            if (column.equals(columnStats.getFieldName())) {
+                return columnStats;
+            }
+        }
+        throw new AssertionError("No column " + column);
+    }
+}
@@ -0,0 +1,69 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.fastparquet.common.TempFile;
+import com.fishblack.statistics.Calculator;
+import com.fishblack.statistics.ColumnStats;
+import com.fishblack.statistics.DataInsights;
+import com.fishblack.statistics.ScanMode;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ScanModeTest {
+
+    private final File directory;
+
+    public ScanModeTest() throws IOException {
+        directory = Files.createTempDirectory("scan-mode").toFile();
+    }
+
+    @After
+    public void deleteFiles() {
+        TestParquetFiles.delete(directory);
+    }
+
+    @Test
+    public void perColumnScanGivesTheSinglePassStatistics() throws IOException {
+        for (int cardinality : new int[]{10, 100000}) {
+            File file = TestParquetFiles.write(directory, 30000, cardinality, cardinality);
+            Calculator calculator = new Calculator();
+            calculator.setScanMode(ScanMode.SINGLE_PASS);
+            DataInsights singlePass = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+            calculator.setScanMode(ScanMode.PER_COLUMN);
+            DataInsights perColumn = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+            TestParquetFiles.assertSameStatistics(perColumn, singlePass);
+        }
+    }
+
+    @Test
+    public void metadataGivesTheScannedNullsMinAndMax() throws IOException {
+        for (int cardinality : new int[]{10, 100000}) {
+            File file = TestParquetFiles.write(directory, 30000, cardinality, cardinality);
+            Calculator calculator = new Calculator();
+            calculator.setScanMode(ScanMode.SINGLE_PASS);
+            DataInsights singlePass = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+            calculator.setScanMode(ScanMode.METADATA);
+            DataInsights metadata = calculator.getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+            assertEquals(singlePass.getRowCount(), metadata.getRowCount());
+            assertEquals(singlePass.getColumnStats().size(), metadata.getColumnStats().size());
+            for (int i = 0; i < singlePass.getColumnStats().size(); i++) {
+                ColumnStats expected = singlePass.getColumnStats().get(i);
+                ColumnStats actual = metadata.getColumnStats().get(i);
+                String column = expected.getFieldName();
+                assertEquals(column, actual.getFieldName());
+                // answered by the footer, no value was read
+                assertNull(column, actual.getMean());
+                assertEquals(column, expected.getDataType(), actual.getDataType());
+                assertEquals(column, expected.getNullValueCount(), actual.getNullValueCount());
+                assertEquals(column, expected.getMin(), actual.getMin());
+                assertEquals(column, expected.getMax(), actual.getMax());
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.fastparquet.common.FieldMetadata;
+import com.fishblack.fastparquet.common.SchemaConverter;
+import com.fishblack.statistics.ColumnStats;
+import com.fishblack.statistics.DataInsights;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.avro.AvroParquetWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Writes the parquet files the tests profile: a column of every profiled type, about one value in ten null.
+ */
+final class TestParquetFiles {
+
+    static final int ROW_GROUP_SIZE = 64 * 1024;
+
+    private TestParquetFiles() {
+    }
+
+    static List<FieldMetadata> fields() {
+        return Arrays.asList(new FieldMetadata("s", "varchar(20)"), new FieldMetadata("d", "double"),
+                new FieldMetadata("n", "number(18,4)"), new FieldMetadata("i", "integer"), new FieldMetadata("dt", "date"),
+                new FieldMetadata("tm", "time"), new FieldMetadata("ts", "timestamp"));
+    }
+
+    /**
+     * @param directory the directory of the file.
+     * @param rows the number of rows.
+     * @param seed the seed of the values.
+     * @param cardinality the number of distinct values of the columns but the double and decimal ones.
+     * @return the file, of several row groups past a few thousand rows.
+     * @throws IOException
+     */
+    static File write(File directory, int rows, long seed, int cardinality) throws IOException {
+        return write(directory, rows, seed, cardinality, true);
+    }
+
+    /**
+     * @param dictionary false to write every column chunk plain encoded.
+     */
+    static File write(File directory, int rows, long seed, int cardinality, boolean dictionary) throws IOException {
+        File file = new File(directory, "rows-" + rows + "-" + seed + "-" + cardinality + (dictionary ? "" : "-plain") + ".parquet");
+        write(file, new int[]{rows}, new long[]{seed}, cardinality, dictionary);
+        return file;
+    }
+
+    /**
+     * Write the rows of several seeds one after the other, the rows of a seed are the rows of its own file.
+     * @param file the file to write.
+     * @param rows the number of rows of every seed.
+     * @param seeds the seeds of the values.
+     * @param cardinality the number of distinct values of the columns but the double and decimal ones.
+     * @param dictionary false to write every column chunk plain encoded.
+     * @throws IOException
+     */
+    static void write(File file, int[] rows, long[] seeds, int cardinality, boolean dictionary) throws IOException {
+        Schema schema = SchemaConverter.toAvroSchema(fields());
+        try (ParquetWriter<GenericRecord> writer = AvroParquetWriter.<GenericRecord>builder(new Path(file.getPath()))
+                .withSchema(schema).withRowGroupSize(ROW_GROUP_SIZE).withDictionaryEncoding(dictionary).build()) {
+            for (int k = 0; k < seeds.length; k++) {
+                Random random = new Random(seeds[k]);
+                for (int row = 0; row < rows[k]; row++) {
+                    writer.write(newRecord(schema, random, cardinality));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the records of the file written with the same arguments, to be changed and written by
+     * {@link #write(File, List)}.
+     */
+    static List<GenericRecord> records(int rows, long seed, int cardinality) {
+        Schema schema = SchemaConverter.toAvroSchema(fields());
+        Random random = new Random(seed);
+        List<GenericRecord> records = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            records.add(newRecord(schema, random, cardinality));
+        }
+        return records;
+    }
+
+    static void write(File file, List<GenericRecord> records) throws IOException {
+        try (ParquetWriter<GenericRecord> writer = AvroParquetWriter.<GenericRecord>builder(new Path(file.getPath()))
+                .withSchema(SchemaConverter.toAvroSchema(fields())).withRowGroupSize(ROW_GROUP_SIZE).build()) {
+            for (GenericRecord record : records) {
+                writer.write(record);
+            }
+        }
+    }
+
+    private static GenericRecord newRecord(Schema schema, Random random, int cardinality) {
+        GenericRecord record = new GenericData.Record(schema);
+        if (random.nextInt(10) > 0) {
+            record.put("s", "v" + random.nextInt(cardinality));
+        }
+        if (random.nextInt(10) > 0) {
+            record.put("d", random.nextGaussian() * 1e6);
+        }
+        if (random.nextInt(10) > 0) {
+            record.put("n", ByteBuffer.wrap(BigInteger.valueOf(random.nextInt(2000000) - 1000000).toByteArray()));
+        }
+        if (random.nextInt(10) > 0) {
+            record.put("i", random.nextInt(cardinality) - cardinality / 2);
+        }
+        if (random.nextInt(10) > 0) {
+            record.put("dt", 15000 + random.nextInt(cardinality));
+        }
+        if (random.nextInt(10) > 0) {
+            record.put("tm", random.nextInt(86400000));
+        }
+        if (random.nextInt(10) > 0) {
+            record.put("ts", 1500000000000L + (long) random.nextInt(cardinality) * 1000);
+        }
+        return record;
+    }
+
+    static void delete(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Assert that the statistics are the same but for the sketches, the percentiles, top values and histograms,
+     * and for the rounding of the floating point sums and moments, which depend on the merge order.
+     */
+    static void assertSameStatistics(DataInsights expected, DataInsights actual) {
+        assertEquals(expected.getRowCount(), actual.getRowCount());
+        assertEquals(expected.getColumnCount(), actual.getColumnCount());
+        assertEquals(expected.getColumnStats().size(), actual.getColumnStats().size());
+        for (int i = 0; i < expected.getColumnStats().size(); i++) {
+            ColumnStats expectedStats = expected.getColumnStats().get(i);
+            ColumnStats actualStats = actual.getColumnStats().get(i);
+            String column = expectedStats.getFieldName();
+            assertEquals(column, actualStats.getFieldName());
+            assertEquals(column, expectedStats.getDataType(), actualStats.getDataType());
+            assertEquals(column, expectedStats.getNullValueCount(), actualStats.getNullValueCount());
+            assertEquals(column, expectedStats.getCardinality(), actualStats.getCardinality());
+            assertEquals(column, expectedStats.isCardinalityEstimated(), actualStats.isCardinalityEstimated());
+            assertEquals(column, expectedStats.getAvgColumnLen(), actualStats.getAvgColumnLen());
+            assertEquals(column, expectedStats.getMin(), actualStats.getMin());
+            assertEquals(column, expectedStats.getMax(), actualStats.getMax());
+            assertClose(column, expectedStats.getSum(), actualStats.getSum());
+            assertClose(column, expectedStats.getMean(), actualStats.getMean());
+            assertClose(column, expectedStats.getVariance(), actualStats.getVariance());
+            assertClose(column, expectedStats.getSkewness(), actualStats.getSkewness());
+            assertClose(column, expectedStats.getKurtosis(), actualStats.getKurtosis());
+        }
+    }
+
+    static void assertClose(String message, Object expected, Object actual) {
+        if (expected instanceof Double && actual instanceof Double) {
+            double tolerance = 1e-9 * Math.max(1, Math.abs((Double) expected));
+            assertEquals(message, (Double) expected, (Double) actual, tolerance);
+        }
+        else if (expected instanceof BigDecimal && actual instanceof BigDecimal) {
+            assertEquals(message, 0, ((BigDecimal) expected).compareTo((BigDecimal) actual));
+        }
+        else {
+            assertEquals(message, expected, actual);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.fishblack.statistics.bvt;
+
+import com.fishblack.fastparquet.common.TempFile;
+import com.fishblack.statistics.Calculator;
+import com.fishblack.statistics.DataInsights;
+import com.fishblack.statistics.ScanMode;
+import com.fishblack.statistics.accumulator.ColumnAccumulator;
+import com.fishblack.statistics.accumulator.ColumnAccumulators;
+import com.fishblack.statistics.cardinality.CardinalityCalculatorFactory;
+import com.fishblack.statistics.text.CsvFormat;
+import com.fishblack.statistics.text.CsvScanner;
+import com.fishblack.statistics.text.TextValueParser;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+public class TextScanTest {
+
+    private static final int ROWS = 20000;
+    private static final int CARDINALITY = 5000;
+    private static final String[] COLUMNS = {"s", "d", "n", "i", "dt", "tm", "ts"};
+    private static final String[] DATA_TYPES = {"string", "double", "decimal", "integer", "date", "time", "timestamp"};
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    // the serial number of 1970-01-01 in a spreadsheet
+    private static final int EPOCH_SERIAL = 25569;
+
+    private final File directory;
+
+    public TextScanTest() throws IOException {
+        directory = Files.createTempDirectory("text-scan").toFile();
+    }
+
+    @After
+    public void deleteFiles() {
+        TestParquetFiles.delete(directory);
+    }
+
+    @Test
+    public void csvGivesTheParquetStatistics() throws IOException {
+        List<GenericRecord> records = records(1);
+        DataInsights expected = profileParquet(records);
+        File csvFile = writeCsv(records);
+        for (ScanMode scanMode : new ScanMode[]{ScanMode.SINGLE_PASS, ScanMode.PARALLEL}) {
+            Calculator calculator = new Calculator();
+            calculator.setScanMode(scanMode);
+            DataInsights actual = calculator.getDataInsightsFromCsvFile(new TempFile(csvFile.getPath()),
+                    TestParquetFiles.fields(), CsvFormat.DEFAULT);
+            TestParquetFiles.assertSameStatistics(expected, actual);
+        }
+    }
+
+    @Test
+    public void csvChunksSplitInsideQuotedFieldsGiveTheParquetStatistics() throws Exception {
+        List<GenericRecord> records = records(2);
+        DataInsights expected = profileParquet(records);
+        File csvFile = writeCsv(records);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // most chunks start inside a string spanning lines
+            for (int chunkSize : new int[]{97, 1000, 65536}) {
+                DataInsights actual = new DataInsights();
+                List<ColumnAccumulator> accumulators = new ArrayList<>();
+                try (CsvScanner scanner = new CsvScanner(csvFile.getPath(), CsvFormat.DEFAULT)) {
+                    scanner.setChunkSize(chunkSize);
+                    for (int i = 0; i < COLUMNS.length; i++) {
+                        ColumnAccumulator accumulator = ColumnAccumulators.create(COLUMNS[i], DATA_TYPES[i],
+                                CardinalityCalculatorFactory.ADAPTIVE);
+                        accumulators.add(accumulator);
+                        scanner.addColumn(scanner.getHeader().indexOf(COLUMNS[i]), accumulator,
+                                new TextValueParser(DATA_TYPES[i], "decimal".equals(DATA_TYPES[i]) ? 4 : -1), null);
+                    }
+                    scanner.scanParallel(executor, 4);
+                    actual.setRowCount(scanner.getRowCount());
+                }
+                actual.setColumnCount(COLUMNS.length);
+                for (ColumnAccumulator accumulator : accumulators) {
+                    actual.getColumnStats().add(accumulator.finish());
+                }
+                TestParquetFiles.assertSameStatistics(expected, actual);
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void xlsxGivesTheParquetStatistics() throws IOException {
+        List<GenericRecord> records = records(3);
+        DataInsights expected = profileParquet(records);
+        File xlsxFile = writeXlsx(records);
+        DataInsights actual = new Calculator().getDataInsightsFromXlsxFile(new TempFile(xlsxFile.getPath()),
+                TestParquetFiles.fields(), null);
+        TestParquetFiles.assertSameStatistics(expected, actual);
+        assertEquals(ROWS, actual.getRowCount());
+    }
+
+    /**
+     * @return the rows of a test file, with strings holding quotes, separators and line breaks.
+     */
+    private static List<GenericRecord> records(long seed) {
+        List<GenericRecord> records = TestParquetFiles.records(ROWS, seed, CARDINALITY);
+        for (GenericRecord record : records) {
+            Object s = record.get("s");
+            if (s != null) {
+                record.put("s", "\"" + s + "\", first line\nsecond line of " + s);
+            }
+        }
+        return records;
+    }
+
+    private DataInsights profileParquet(List<GenericRecord> records) throws IOException {
+        File file = new File(directory, "rows.parquet");
+        TestParquetFiles.write(file, records);
+        return new Calculator().getDataInsightsFromParquetFile(new TempFile(file.getPath()), TestParquetFiles.fields());
+    }
+
+    private File writeCsv(List<GenericRecord> records) throws IOException {
+        File file = new File(directory, "rows.csv");
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(String.join(",", COLUMNS));
+            writer.write("\r\n");
+            for (GenericRecord record : records) {
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    String text = toText(record, COLUMNS[i]);
+                    if (text != null) {
+                        writer.write("s".equals(COLUMNS[i]) ? "\"" + text.replace("\"", "\"\"") + "\"" : text);
+                    }
+                }
+                writer.write("\r\n");
+            }
+        }
+        return file;
+    }
+
+    private File writeXlsx(List<GenericRecord> records) throws IOException {
+        File file = new File(directory, "rows.xlsx");
+        SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+        try (OutputStream out = new FileOutputStream(file)) {
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd"));
+            Sheet sheet = workbook.createSheet("rows");
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < COLUMNS.length; i++) {
+                header.createCell(i).setCellValue(COLUMNS[i]);
+            }
+            for (int r = 0; r < records.size(); r++) {
+                GenericRecord record = records.get(r);
+                Row row = sheet.createRow(r + 1);
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    if (record.get(COLUMNS[i]) == null) {
+                        continue;
+                    }
+                    Cell cell = row.createCell(i);
+                    switch (COLUMNS[i]) {
+                        case "d":
+                        case "n":
+                        case "i":
+                            // numbers are numeric cells
+                            cell.setCellValue(Double.parseDouble(toText(record, COLUMNS[i])));
+                            break;
+                        case "dt":
+                            cell.setCellValue(EPOCH_SERIAL + (Integer) record.get("dt"));
+                            cell.setCellStyle(dateStyle);
+                            break;
+                        default:
+                            cell.setCellValue(toText(record, COLUMNS[i]));
+                    }
+                }
+            }
+            workbook.write(out);
+        }
+        finally {
+            workbook.dispose();
+            workbook.close();
+        }
+        return file;
+    }
+
+    private static String toText(GenericRecord record, String column) {
+        Object value = record.get(column);
+        if (value == null) {
+            return null;
+        }
+        switch (column) {
+            case "n":
+                ByteBuffer unscaled = ((ByteBuffer) value).duplicate();
+                byte[] bytes = new byte[unscaled.remaining()];
+                unscaled.get(bytes);
+                return new BigDecimal(new BigInteger(bytes), 4).toPlainString();
+            case "dt":
+                return LocalDate.ofEpochDay((Integer) value).toString();
+            case "tm":
+                return LocalTime.ofNanoOfDay((Integer) value * 1000000L).format(TIME);
+            case "ts":
+                return Calculator.getLocalDateTime((Long) value).format(TIMESTAMP);
+            default:
+                return value.toString();
+        }
+    }
+}